@@ -0,0 +1,144 @@
+package com.uber.coding_challange.food_trucks.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.uber.coding_challange.food_trucks.dataaccess.FoodTruckAccessor;
+import com.uber.coding_challange.food_trucks.model.FoodTruck;
+import com.uber.coding_challange.food_trucks.model.FoodTruckQuery;
+import com.uber.coding_challange.food_trucks.model.enums.DistanceUnitEnum;
+import com.uber.coding_challange.food_trucks.model.enums.FoodTruckStatusEnum;
+
+/**
+ * Read paths of the FoodTruckAccessor: radius query, status query, all food trucks and single food truck lookup.
+ * The batch of BATCH_SIZE radius queries is compared with the same queries one by one.
+ * The storage is filled with 'size' generated food trucks once per fork.
+ * The largest sizes need a large heap, e.g. -Djmh.args="AccessorBenchmark -p size=10000000 -jvmArgs -Xmx8g".
+ *
+ * @author alper.karacelik
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx8g"})
+public class AccessorBenchmark
+{
+	// Constants ---------------------------------------------------------
+	// Number of the precomputed query positions (a power of 2)
+	private static final int QUERY_COUNT = 1024;
+	// Number of the queries of a batch
+	private static final int BATCH_SIZE = 128;
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	@Param({"1000", "100000", "1000000", "10000000"})
+	public int size;
+
+	@Param({"0.5"})
+	public double radius;
+
+	private final FoodTruckAccessor accessor = FoodTruckAccessor.getInstance();
+	private final double[] latitudes = new double[QUERY_COUNT];
+	private final double[] longitudes = new double[QUERY_COUNT];
+	private final long[] objectids = new long[QUERY_COUNT];
+	private final List<FoodTruckQuery> batch = new ArrayList<FoodTruckQuery>();
+	private int next = 0;
+	// -------------------------------------------------------------------
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		FoodTruckGenerator generator = new FoodTruckGenerator(42);
+		generator.fillStorage(size);
+		Random random = new Random(7);
+
+		for (int i = 0; i < QUERY_COUNT; i++)
+		{
+			latitudes[i] = generator.randomLatitude();
+			longitudes[i] = generator.randomLongitude();
+			objectids[i] = 1 + random.nextInt(size);
+		}
+
+		for (int i = 0; i < BATCH_SIZE; i++)
+		{
+			FoodTruckQuery query = new FoodTruckQuery();
+			query.setId(Integer.toString(i));
+			query.setLatitude(latitudes[i]);
+			query.setLongitude(longitudes[i]);
+			query.setRadius(radius);
+			query.setRadiusUnit(DistanceUnitEnum.KILOMETERS.getStrValue());
+			query.setStatus(FoodTruckStatusEnum.APPROVED.getStrValue());
+			batch.add(query);
+		}
+	}
+
+	@Benchmark
+	public List<FoodTruck> radiusQuery()
+	{
+		int i = next++ & (QUERY_COUNT - 1);
+		return accessor.getFoodTrucks(FoodTruckStatusEnum.APPROVED, latitudes[i], longitudes[i],
+				radius, DistanceUnitEnum.KILOMETERS);
+	}
+
+	@Benchmark
+	public List<FoodTruck> radiusQueryAllStatuses()
+	{
+		int i = next++ & (QUERY_COUNT - 1);
+		return accessor.getFoodTrucks(FoodTruckStatusEnum.ALL, latitudes[i], longitudes[i],
+				radius, DistanceUnitEnum.KILOMETERS);
+	}
+
+	@Benchmark
+	public List<List<FoodTruck>> batchRadiusQuery()
+	{
+		return accessor.getFoodTrucks(batch);
+	}
+
+	@Benchmark
+	public List<List<FoodTruck>> batchRadiusQueryOneByOne()
+	{
+		List<List<FoodTruck>> results = new ArrayList<List<FoodTruck>>(BATCH_SIZE);
+		for (FoodTruckQuery query : batch)
+		{
+			results.add(accessor.getFoodTrucks(query.getStatusEnum(), query.getLatitude(), query.getLongitude(),
+					query.getRadius(), query.getRadiusUnitEnum()));
+		}
+		return results;
+	}
+
+	@Benchmark
+	public List<FoodTruck> statusQuery()
+	{
+		return accessor.getFoodTrucks(FoodTruckStatusEnum.APPROVED);
+	}
+
+	@Benchmark
+	public List<FoodTruck> allFoodTrucks()
+	{
+		return accessor.getAllFoodTrucks();
+	}
+
+	@Benchmark
+	public FoodTruck singleLookup()
+	{
+		return accessor.getFoodTruck(objectids[next++ & (QUERY_COUNT - 1)]);
+	}
+}
@@ -0,0 +1,103 @@
+package com.uber.coding_challange.food_trucks.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compares two JMH result files (JSON, see the 'benchmark' profile in pom.xml),
+ * e.g. the results of two commits.
+ * Prints the scores of the benchmarks that exist in both of the files and the change between them.
+ * A change is marked as significant if it is larger than the sum of the score errors.
+ *
+ * @author alper.karacelik
+ *
+ */
+public class BenchmarkReportComparator
+{
+	// Constants ---------------------------------------------------------
+	private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+	// -------------------------------------------------------------------
+
+	/**
+	 * @param args Paths of the old and the new result files
+	 * @throws IOException If a result file can not be read
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length != 2)
+		{
+			System.err.println("Usage: BenchmarkReportComparator <old result file> <new result file>");
+			System.exit(1);
+		}
+
+		Map<String, JsonNode> oldResults = read(args[0]);
+		Map<String, JsonNode> newResults = read(args[1]);
+
+		System.out.println(String.format("%-80s %14s %14s %9s", "Benchmark", "Old", "New", "Change"));
+		for (Map.Entry<String, JsonNode> entry : newResults.entrySet())
+		{
+			JsonNode oldResult = oldResults.get(entry.getKey());
+			if (oldResult == null)
+			{
+				continue;
+			}
+
+			JsonNode oldMetric = oldResult.get("primaryMetric");
+			JsonNode newMetric = entry.getValue().get("primaryMetric");
+			double oldScore = oldMetric.get("score").asDouble();
+			double newScore = newMetric.get("score").asDouble();
+			double error = errorOf(oldMetric) + errorOf(newMetric);
+			double change = oldScore == 0 ? 0 : (newScore - oldScore) * 100 / oldScore;
+
+			System.out.println(String.format("%-80s %14.3f %14.3f %+8.1f%%%s %s",
+					entry.getKey(), oldScore, newScore, change,
+					Math.abs(newScore - oldScore) > error ? "*" : " ",
+					newMetric.get("scoreUnit").asText()));
+		}
+		System.out.println("* significant change (larger than the sum of the score errors)");
+	}
+
+	/**
+	 * Reads the given result file.
+	 *
+	 * @param path Path of the result file
+	 * @return Results by benchmark name, mode and parameters
+	 * @throws IOException If the result file can not be read
+	 */
+	private static Map<String, JsonNode> read(String path) throws IOException
+	{
+		Map<String, JsonNode> results = new LinkedHashMap<String, JsonNode>();
+
+		for (JsonNode result : JSON_MAPPER.readTree(new File(path)))
+		{
+			StringBuilder key = new StringBuilder(result.get("benchmark").asText())
+					.append(" (").append(result.get("mode").asText());
+
+			JsonNode params = result.get("params");
+			if (params != null)
+			{
+				Iterator<Map.Entry<String, JsonNode>> fields = params.fields();
+				while (fields.hasNext())
+				{
+					Map.Entry<String, JsonNode> field = fields.next();
+					key.append(", ").append(field.getKey()).append('=').append(field.getValue().asText());
+				}
+			}
+			results.put(key.append(')').toString(), result);
+		}
+		return results;
+	}
+
+	private static double errorOf(JsonNode metric)
+	{
+		JsonNode error = metric.get("scoreError");
+		// The error is "NaN" if there are not enough measurements
+		return error == null || !error.isNumber() ? 0 : error.asDouble();
+	}
+}
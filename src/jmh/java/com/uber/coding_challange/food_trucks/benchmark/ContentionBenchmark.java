@@ -0,0 +1,99 @@
+package com.uber.coding_challange.food_trucks.benchmark;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.uber.coding_challange.food_trucks.dataaccess.FoodTruckAccessor;
+import com.uber.coding_challange.food_trucks.model.FoodTruck;
+import com.uber.coding_challange.food_trucks.model.enums.DistanceUnitEnum;
+import com.uber.coding_challange.food_trucks.model.enums.FoodTruckStatusEnum;
+
+/**
+ * Mixed read/write load on the FoodTruckAccessor:
+ * readers run radius and status queries while a writer updates food trucks.
+ * The reader/writer thread counts can be scaled with the JMH '-tg' option,
+ * e.g. -Djmh.args="ContentionBenchmark -tg 8,2,1" (radiusQuery, statusQuery and update threads).
+ *
+ * @author alper.karacelik
+ *
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx4g"})
+public class ContentionBenchmark
+{
+	// Constants ---------------------------------------------------------
+	private static final String[] STATUSES = {"APPROVED", "REQUESTED", "EXPIRED"};
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	@Param({"1000", "100000"})
+	public int size;
+
+	private final FoodTruckAccessor accessor = FoodTruckAccessor.getInstance();
+	private FoodTruckGenerator generator;
+	// -------------------------------------------------------------------
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		generator = new FoodTruckGenerator(42);
+		generator.fillStorage(size);
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(3)
+	public List<FoodTruck> radiusQuery()
+	{
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		return accessor.getFoodTrucks(FoodTruckStatusEnum.APPROVED,
+				FoodTruckGenerator.CENTER_LATITUDE + (random.nextDouble() * 2 - 1) * FoodTruckGenerator.SPREAD,
+				FoodTruckGenerator.CENTER_LONGITUDE + (random.nextDouble() * 2 - 1) * FoodTruckGenerator.SPREAD,
+				0.5, DistanceUnitEnum.KILOMETERS);
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(1)
+	public List<FoodTruck> statusQuery()
+	{
+		return accessor.getFoodTrucks(FoodTruckStatusEnum.REQUESTED);
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(1)
+	public void update()
+	{
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		FoodTruck foodTruck;
+
+		// The generator is not thread safe, only this method uses it
+		synchronized (this)
+		{
+			foodTruck = generator.generateFoodTruck(1 + random.nextInt(size));
+		}
+		foodTruck.setStatus(STATUSES[random.nextInt(STATUSES.length)]);
+		accessor.updateFoodTruck(foodTruck);
+	}
+}
@@ -0,0 +1,89 @@
+package com.uber.coding_challange.food_trucks.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.uber.coding_challange.food_trucks.ctrl.GeodesicDistanceCalculator;
+import com.uber.coding_challange.food_trucks.ctrl.GeodesicRadiusFilter;
+import com.uber.coding_challange.food_trucks.model.enums.DistanceUnitEnum;
+
+/**
+ * Distance checks of 'size' positions against a circle:
+ * GeodesicDistanceCalculator.distance() for every position vs. a GeodesicRadiusFilter.
+ * Scores are per batch of 'size' positions.
+ *
+ * @author alper.karacelik
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanceBenchmark
+{
+	// Attributes --------------------------------------------------------
+	@Param({"1000", "100000"})
+	public int size;
+
+	@Param({"0.5", "5"})
+	public double radius;
+
+	private final GeodesicDistanceCalculator calculator = GeodesicDistanceCalculator.getInstance();
+	private double[] latitudes;
+	private double[] longitudes;
+	private int[] matches;
+	// -------------------------------------------------------------------
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		FoodTruckGenerator generator = new FoodTruckGenerator(42);
+
+		latitudes = new double[size];
+		longitudes = new double[size];
+		matches = new int[size];
+		for (int i = 0; i < size; i++)
+		{
+			latitudes[i] = generator.randomLatitude();
+			longitudes[i] = generator.randomLongitude();
+		}
+	}
+
+	@Benchmark
+	public int distance()
+	{
+		int matchCount = 0;
+
+		for (int i = 0; i < size; i++)
+		{
+			if (calculator.distance(latitudes[i], longitudes[i], FoodTruckGenerator.CENTER_LATITUDE,
+					FoodTruckGenerator.CENTER_LONGITUDE, DistanceUnitEnum.KILOMETERS) < radius)
+			{
+				matchCount++;
+			}
+		}
+		return matchCount;
+	}
+
+	@Benchmark
+	public int radiusFilter()
+	{
+		GeodesicRadiusFilter radiusFilter = calculator.newRadiusFilter(FoodTruckGenerator.CENTER_LATITUDE,
+				FoodTruckGenerator.CENTER_LONGITUDE, radius, DistanceUnitEnum.KILOMETERS);
+		return radiusFilter.filter(latitudes, longitudes, size, matches);
+	}
+}
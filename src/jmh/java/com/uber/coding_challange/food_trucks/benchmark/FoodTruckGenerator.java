@@ -0,0 +1,143 @@
+package com.uber.coding_challange.food_trucks.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.uber.coding_challange.food_trucks.dataaccess.FoodTruckAccessor;
+import com.uber.coding_challange.food_trucks.model.FoodTruck;
+
+/**
+ * Generates synthetic food trucks for the benchmarks.
+ * The food trucks are spread around San Francisco (like the DataSF data),
+ * the same seed always generates the same food trucks.
+ * Text attributes are picked from small pools, so millions of food trucks fit in the heap.
+ *
+ * @author alper.karacelik
+ *
+ */
+public class FoodTruckGenerator
+{
+	// Constants ---------------------------------------------------------
+	public static final double CENTER_LATITUDE = 37.7749;
+	public static final double CENTER_LONGITUDE = -122.4194;
+	// Half size of the generated area (in decimal degrees)
+	public static final double SPREAD = 0.25;
+
+	// Status distribution: APPROVED 40%, REQUESTED 30%, EXPIRED 20%, SUSPEND 10%
+	private static final String[] STATUSES = {
+			"APPROVED", "APPROVED", "APPROVED", "APPROVED",
+			"REQUESTED", "REQUESTED", "REQUESTED",
+			"EXPIRED", "EXPIRED",
+			"SUSPEND"};
+	private static final String[] FACILITY_TYPES = {"Truck", "Push Cart"};
+	private static final String[] FOOD_ITEMS = {
+			"Cold Truck: Sandwiches: Noodles: Pre-packaged Snacks: Candy: Desserts",
+			"Tacos: Burritos: Quesadillas: Tortas: Soda",
+			"Hot dogs: Sausages: Chips: Soft drinks",
+			"Coffee: Espresso: Pastries: Muffins",
+			"Kettle Corn: Funnel Cakes: Lemonade",
+			"Asian Fusion: Rice Bowls: Noodles: Dumplings"};
+	private static final int POOL_SIZE = 1024;
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	private final Random random;
+	private final String[] applicants = new String[POOL_SIZE];
+	private final String[] addresses = new String[POOL_SIZE];
+	// -------------------------------------------------------------------
+
+	// Constructor(s) ----------------------------------------------------
+	public FoodTruckGenerator(long seed)
+	{
+		this.random = new Random(seed);
+
+		for (int i = 0; i < POOL_SIZE; i++)
+		{
+			applicants[i] = "Applicant " + i;
+			addresses[i] = (100 + i) + " MARKET ST";
+		}
+	}
+	// -------------------------------------------------------------------
+
+	/**
+	 * Generates the given number of food trucks with the object ids 1..count.
+	 *
+	 * @param count Number of food trucks
+	 * @return Generated food trucks
+	 */
+	public List<FoodTruck> generate(int count)
+	{
+		List<FoodTruck> foodTrucks = new ArrayList<FoodTruck>(count);
+
+		for (int i = 1; i <= count; i++)
+		{
+			foodTrucks.add(generateFoodTruck(i));
+		}
+		return foodTrucks;
+	}
+
+	/**
+	 * Replaces the content of the storage with the given number of generated food trucks
+	 * (object ids 1..count).
+	 *
+	 * @param count Number of food trucks
+	 */
+	public void fillStorage(int count)
+	{
+		FoodTruckAccessor accessor = FoodTruckAccessor.getInstance();
+		List<Long> removedIds = new ArrayList<Long>();
+
+		for (FoodTruck foodTruck : accessor.getAllFoodTrucks())
+		{
+			if (foodTruck.getObjectid() > count)
+			{
+				removedIds.add(foodTruck.getObjectid());
+			}
+		}
+		accessor.applyChanges(generate(count), removedIds);
+	}
+
+	/**
+	 * Generates a food truck with the given object id.
+	 *
+	 * @param objectid Object id of the food truck
+	 * @return Generated food truck
+	 */
+	public FoodTruck generateFoodTruck(long objectid)
+	{
+		FoodTruck foodTruck = new FoodTruck();
+
+		foodTruck.setObjectid(objectid);
+		foodTruck.setApplicant(applicants[random.nextInt(POOL_SIZE)]);
+		foodTruck.setAddress(addresses[random.nextInt(POOL_SIZE)]);
+		foodTruck.setCnn(random.nextInt(20000000));
+		foodTruck.setFacilitytype(FACILITY_TYPES[random.nextInt(FACILITY_TYPES.length)]);
+		foodTruck.setFooditems(FOOD_ITEMS[random.nextInt(FOOD_ITEMS.length)]);
+		foodTruck.setLatitude(randomLatitude());
+		foodTruck.setLongitude(randomLongitude());
+		foodTruck.setStatus(STATUSES[random.nextInt(STATUSES.length)]);
+
+		return foodTruck;
+	}
+
+	/**
+	 * Returns a random latitude in the generated area.
+	 *
+	 * @return Random latitude (in decimal degrees)
+	 */
+	public double randomLatitude()
+	{
+		return CENTER_LATITUDE + (random.nextDouble() * 2 - 1) * SPREAD;
+	}
+
+	/**
+	 * Returns a random longitude in the generated area.
+	 *
+	 * @return Random longitude (in decimal degrees)
+	 */
+	public double randomLongitude()
+	{
+		return CENTER_LONGITUDE + (random.nextDouble() * 2 - 1) * SPREAD;
+	}
+}
@@ -0,0 +1,155 @@
+package com.uber.coding_challange.food_trucks.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.uber.coding_challange.food_trucks.ctrl.FoodTruckSerializer;
+import com.uber.coding_challange.food_trucks.dataaccess.FoodTruckStringPool;
+import com.uber.coding_challange.food_trucks.model.FoodTruck;
+
+/**
+ * Heap footprint of 'size' food trucks parsed from JSON (as in FoodTruckClient.ingest()),
+ * without and with the deduplication of their repetitive strings (FoodTruckStringPool).
+ * The retained heap per food truck (bytes, measured after full GCs) is reported as the secondary result 'bytesPerTruck';
+ * the primary result (the time of the parsing and the GCs) is not relevant.
+ * The generated food trucks have DataSF like permits, schedule URLs and days/hours, in addition to FoodTruckGenerator.
+ *
+ * @author alper.karacelik
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class FootprintBenchmark
+{
+	// Constants ---------------------------------------------------------
+	private static final String[] DAYS_HOURS = {
+			"Mo-Fr:6AM-6PM", "Mo-Su:7AM-8PM", "Sa-Su:10AM-4PM", "Mo/We/Fr:11AM-2PM", "Th-Sa:5PM-10PM"};
+	private static final int PERMIT_COUNT = 2048;
+	private static final String SCHEDULE_URL =
+			"http://bsm.sfdpw.org/PermitsTracker/reports/report.aspx?title=schedule&report=rptSchedule&params=permit=%s&ExportPDF=1&Filename=%s_schedule.pdf";
+	private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	@Param({"200000"})
+	public int size;
+
+	@Param({"false", "true"})
+	public boolean pooled;
+
+	private byte[] json;
+	// Keeps the parsed food trucks reachable while the heap is measured
+	private List<FoodTruck> foodTrucks;
+	// -------------------------------------------------------------------
+
+	/**
+	 * Retained heap per food truck of the last invocation
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Footprint
+	{
+		public long bytesPerTruck;
+	}
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		Random random = new Random(42);
+		List<FoodTruck> generated = new FoodTruckGenerator(42).generate(size);
+
+		for (FoodTruck foodTruck : generated)
+		{
+			String permit = String.format("%02dMFF-%04d", 13 + random.nextInt(6), random.nextInt(PERMIT_COUNT));
+			foodTruck.setPermit(permit);
+			foodTruck.setSchedule(String.format(SCHEDULE_URL, permit, permit));
+			foodTruck.setDayshours(DAYS_HOURS[random.nextInt(DAYS_HOURS.length)]);
+		}
+		json = FoodTruckSerializer.getInstance().toBytes(generated);
+	}
+
+	@Benchmark
+	public int parse(Footprint footprint) throws IOException
+	{
+		foodTrucks = null;
+		long before = usedHeap();
+
+		foodTrucks = parseFoodTrucks();
+
+		footprint.bytesPerTruck = (usedHeap() - before) / size;
+		return foodTrucks.size();
+	}
+
+	/**
+	 * Parses the food trucks one at a time, like FoodTruckClient.ingest().
+	 */
+	private List<FoodTruck> parseFoodTrucks() throws IOException
+	{
+		List<FoodTruck> result = new ArrayList<FoodTruck>(size);
+		ObjectReader reader = JSON_MAPPER.readerFor(FoodTruck.class);
+		FoodTruckStringPool stringPool = FoodTruckStringPool.getInstance();
+		JsonParser parser = JSON_MAPPER.getFactory().createParser(json);
+
+		try
+		{
+			parser.nextToken();
+			while (parser.nextToken() == JsonToken.START_OBJECT)
+			{
+				FoodTruck foodTruck = reader.readValue(parser);
+				result.add(pooled ? stringPool.intern(foodTruck) : foodTruck);
+			}
+		}
+		finally
+		{
+			parser.close();
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the used heap after full GCs.
+	 */
+	private static long usedHeap()
+	{
+		Runtime runtime = Runtime.getRuntime();
+		long used = Long.MAX_VALUE;
+
+		// Repeat until the used heap does not decrease anymore
+		for (int i = 0; i < 10; i++)
+		{
+			System.gc();
+			long current = runtime.totalMemory() - runtime.freeMemory();
+			if (current >= used)
+			{
+				break;
+			}
+			used = current;
+		}
+		return used;
+	}
+}
@@ -0,0 +1,112 @@
+package com.uber.coding_challange.food_trucks.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.uber.coding_challange.food_trucks.ctrl.FoodTruckProjection;
+import com.uber.coding_challange.food_trucks.ctrl.FoodTruckSerializer;
+import com.uber.coding_challange.food_trucks.model.FoodTruck;
+import com.uber.coding_challange.food_trucks.model.enums.ResponseFormatEnum;
+
+/**
+ * Encoding of query results with 'size' food trucks in the response formats (JSON, Smile and CBOR),
+ * with all the properties and with the projection of the map view, and decoding of them (as a client would).
+ * The encoded size (bytes) is reported as the secondary result 'encodedBytes'.
+ *
+ * @author alper.karacelik
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatBenchmark
+{
+	// Attributes --------------------------------------------------------
+	@Param({"100", "1000", "10000"})
+	public int size;
+
+	@Param({"JSON", "SMILE", "CBOR"})
+	public ResponseFormatEnum format;
+
+	private List<FoodTruck> foodTrucks;
+	private FoodTruckSerializer serializer;
+	private ObjectMapper reader;
+	private byte[] encoded;
+	private final FoodTruckProjection mapProjection = FoodTruckProjection.parse("objectid,applicant,latitude,longitude,status");
+	// -------------------------------------------------------------------
+
+	/**
+	 * Size of the last encoded response (reported per iteration)
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class EncodedSize
+	{
+		public long encodedBytes;
+	}
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		foodTrucks = new FoodTruckGenerator(42).generate(size);
+		serializer = FoodTruckSerializer.getInstance(format);
+		encoded = serializer.toBytes(foodTrucks);
+
+		switch (format)
+		{
+			case SMILE:
+				reader = new ObjectMapper(new SmileFactory());
+				break;
+			case CBOR:
+				reader = new ObjectMapper(new CBORFactory());
+				break;
+			default:
+				reader = new ObjectMapper(new JsonFactory());
+				break;
+		}
+	}
+
+	@Benchmark
+	public byte[] encode(EncodedSize encodedSize)
+	{
+		byte[] bytes = serializer.toBytes(foodTrucks);
+		encodedSize.encodedBytes = bytes.length;
+		return bytes;
+	}
+
+	@Benchmark
+	public byte[] encodeProjected(EncodedSize encodedSize)
+	{
+		byte[] bytes = serializer.toBytes(foodTrucks, mapProjection);
+		encodedSize.encodedBytes = bytes.length;
+		return bytes;
+	}
+
+	@Benchmark
+	public FoodTruck[] decode() throws IOException
+	{
+		return reader.readValue(encoded, FoodTruck[].class);
+	}
+}
@@ -0,0 +1,63 @@
+package com.uber.coding_challange.food_trucks.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.uber.coding_challange.food_trucks.ctrl.FoodTruckProjection;
+import com.uber.coding_challange.food_trucks.ctrl.FoodTruckSerializer;
+import com.uber.coding_challange.food_trucks.model.FoodTruck;
+
+/**
+ * Jackson serialization (FoodTruckSerializer) of query results with 'size' food trucks,
+ * with all the properties and with the projection of the map view.
+ *
+ * @author alper.karacelik
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark
+{
+	// Attributes --------------------------------------------------------
+	@Param({"10", "100", "1000", "10000"})
+	public int size;
+
+	private List<FoodTruck> foodTrucks;
+	private final FoodTruckProjection mapProjection = FoodTruckProjection.parse("objectid,applicant,latitude,longitude,status");
+	// -------------------------------------------------------------------
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		foodTrucks = new FoodTruckGenerator(42).generate(size);
+	}
+
+	@Benchmark
+	public byte[] toBytes()
+	{
+		return FoodTruckSerializer.getInstance().toBytes(foodTrucks);
+	}
+
+	@Benchmark
+	public byte[] toBytesProjected()
+	{
+		return FoodTruckSerializer.getInstance().toBytes(foodTrucks, mapProjection);
+	}
+}
@@ -0,0 +1,110 @@
+package com.uber.coding_challange.food_trucks.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.uber.coding_challange.food_trucks.ctrl.FoodTruckClient;
+import com.uber.coding_challange.food_trucks.ctrl.FoodTruckSerializer;
+import com.uber.coding_challange.food_trucks.dataaccess.FoodTruckAccessor;
+import com.uber.coding_challange.food_trucks.dataaccess.FoodTruckSnapshotFile;
+import com.uber.coding_challange.food_trucks.model.FoodTruck;
+
+/**
+ * Cold start: loading 'size' food trucks into an empty storage from the binary snapshot file
+ * and from a local copy of the DataSF JSON feed (FoodTruckClient.ingest), the two ways the storage is filled on startup.
+ * The storage is emptied before every invocation.
+ *
+ * @author alper.karacelik
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx4g", "-Dfoodtrucks.snapshot.file=none"})
+public class SnapshotLoadBenchmark
+{
+	// Attributes --------------------------------------------------------
+	@Param({"1000", "10000", "100000"})
+	public int size;
+
+	private final FoodTruckAccessor accessor = FoodTruckAccessor.getInstance();
+	private Path directory;
+	private Path jsonPath;
+	private FoodTruckSnapshotFile snapshotFile;
+	// -------------------------------------------------------------------
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException
+	{
+		List<FoodTruck> foodTrucks = new FoodTruckGenerator(42).generate(size);
+
+		directory = Files.createTempDirectory("food-trucks-benchmark");
+		jsonPath = directory.resolve("food_trucks.json");
+		Files.write(jsonPath, FoodTruckSerializer.getInstance().toBytes(foodTrucks));
+		snapshotFile = new FoodTruckSnapshotFile(directory.resolve("food_trucks.snapshot"));
+		snapshotFile.write(foodTrucks);
+	}
+
+	@Setup(Level.Invocation)
+	public void clearStorage()
+	{
+		List<Long> removedIds = new ArrayList<Long>();
+		for (FoodTruck foodTruck : accessor.getAllFoodTrucks())
+		{
+			removedIds.add(foodTruck.getObjectid());
+		}
+		accessor.applyChanges(Collections.<FoodTruck>emptyList(), removedIds);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException
+	{
+		Files.deleteIfExists(jsonPath);
+		Files.deleteIfExists(snapshotFile.getPath());
+		Files.deleteIfExists(directory);
+	}
+
+	@Benchmark
+	public int loadSnapshotFile() throws IOException
+	{
+		accessor.addFoodTrucks(snapshotFile.read());
+		return accessor.getAllFoodTrucks().size();
+	}
+
+	@Benchmark
+	public int ingestJson() throws IOException
+	{
+		InputStream inputStream = Files.newInputStream(jsonPath);
+		try
+		{
+			FoodTruckClient.getInstance().ingest(inputStream);
+		}
+		finally
+		{
+			inputStream.close();
+		}
+		return accessor.getAllFoodTrucks().size();
+	}
+}
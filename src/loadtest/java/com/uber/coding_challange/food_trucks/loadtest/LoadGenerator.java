@@ -0,0 +1,583 @@
+package com.uber.coding_challange.food_trucks.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.uber.coding_challange.food_trucks.Main;
+import com.uber.coding_challange.food_trucks.ctrl.LatencyHistogram;
+
+/**
+ * Open loop load generator of the web service (see the 'loadtest' profile in pom.xml).
+ * Requests (synthetic, see SyntheticRequestMix, or replayed from a request log, see ReplayRequestMix)
+ * are started at a fixed rate, whether or not the previous ones are answered, like independent clients;
+ * a slow server does not slow down the load (a closed loop generator would wait, and hide the waiting clients).
+ * The latency of a request is measured from its scheduled start time, not from the time it is sent,
+ * so the time it waits for a connection behind the slow requests is included (corrected for the coordinated omission);
+ * the latency from the time it is sent is reported as the 'uncorrected' latency, for comparison.
+ * Requests of the warm-up period are sent but not measured.
+ * Reports the throughput and the p50/p99/p99.9/max latencies per endpoint and in total,
+ * prints them and writes them to a JSON report file.
+ * The total is compared with the thresholds given (latencies in milliseconds, the error ratio, the throughput
+ * as a ratio of the target rate); if any of them is exceeded, the exit code is 1 (e.g. to fail a CI build).
+ * Options are given as name=value arguments, see USAGE.
+ *
+ * @author alper.karacelik
+ *
+ */
+public class LoadGenerator
+{
+	// Constants ---------------------------------------------------------
+	private static final String USAGE = "Usage: LoadGenerator [name=value ...]\n"
+			+ "  url=<base URL>            web service (default: http://localhost:8080/webapi)\n"
+			+ "  start=true|false          start Main in this JVM on the port of the URL (default: false)\n"
+			+ "  rate=<requests/s>         fixed request rate (default: 100)\n"
+			+ "  duration=<s>              measured duration (default: 30)\n"
+			+ "  warmup=<s>                unmeasured duration before (default: 5)\n"
+			+ "  connections=<n>           maximum concurrent requests (default: 64)\n"
+			+ "  timeout=<ms>              request timeout (default: 10000)\n"
+			+ "  replay=<file>             replay a request log instead of the synthetic mix\n"
+			+ "  seed=<n>                  seed of the synthetic mix (default: 42)\n"
+			+ "  report=<file>             JSON report file\n"
+			+ "  max.p50|max.p99|max.p999=<ms>, max.errors=<ratio>, min.throughput=<ratio of the rate>   thresholds";
+	private static final List<String> OPTIONS = Arrays.asList("url", "start", "rate", "duration", "warmup", "connections",
+			"timeout", "replay", "seed", "report", "max.p50", "max.p99", "max.p999", "max.errors", "min.throughput");
+	private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+	private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+	private static final String[] QUANTILE_NAMES = {"p50", "p99", "p999"};
+	private static final String TOTAL = "total";
+	private static final long READY_TIMEOUT_MILLIS = 120000;
+	private static final long READY_POLL_MILLIS = 500;
+	// Time given to the requests in flight at the end, in addition to the request timeout
+	private static final long DRAIN_MILLIS = 5000;
+	private static final long NANOS_PER_MILLI = 1000000;
+	private static final long NANOS_PER_SECOND = 1000000000;
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	private final String baseUrl;
+	private final double rate;
+	private final long durationSeconds;
+	private final long warmupSeconds;
+	private final int connections;
+	private final int timeoutMillis;
+	private final RequestMix requestMix;
+	private final String mixName;
+	// Statistics by endpoint (written by the scheduling thread only, read after the run)
+	private final Map<String, EndpointStats> endpointStats = new TreeMap<String, EndpointStats>();
+	private final EndpointStats totalStats = new EndpointStats();
+	private final AtomicLong lastCompletion = new AtomicLong();
+	private long measurementStart;
+	// -------------------------------------------------------------------
+
+	// Constructor(s) ----------------------------------------------------
+	/**
+	 * @param options Options (name=value), see USAGE
+	 * @throws IllegalArgumentException If an option is unknown or invalid
+	 * @throws IOException If the request log can not be read
+	 */
+	public LoadGenerator(Map<String, String> options) throws IOException
+	{
+		for (Map.Entry<String, String> option : options.entrySet())
+		{
+			if (!OPTIONS.contains(option.getKey()))
+			{
+				throw new IllegalArgumentException("Unknown option: " + option.getKey());
+			}
+			if (isThreshold(option.getKey()) && !option.getValue().isEmpty())
+			{
+				Double.parseDouble(option.getValue());
+			}
+		}
+
+		baseUrl = option(options, "url", "http://localhost:8080/webapi").replaceAll("/+$", "");
+		rate = Double.parseDouble(option(options, "rate", "100"));
+		durationSeconds = Long.parseLong(option(options, "duration", "30"));
+		warmupSeconds = Long.parseLong(option(options, "warmup", "5"));
+		connections = Integer.parseInt(option(options, "connections", "64"));
+		timeoutMillis = Integer.parseInt(option(options, "timeout", "10000"));
+
+		if (!(rate > 0) || durationSeconds <= 0 || warmupSeconds < 0 || connections <= 0 || timeoutMillis <= 0)
+		{
+			throw new IllegalArgumentException("rate, duration, connections and timeout should be positive");
+		}
+
+		String replay = option(options, "replay", null);
+		if (replay != null)
+		{
+			requestMix = new ReplayRequestMix(replay);
+			mixName = "replay " + replay;
+		}
+		else
+		{
+			requestMix = new SyntheticRequestMix(Long.parseLong(option(options, "seed", "42")));
+			mixName = "synthetic";
+		}
+	}
+	// -------------------------------------------------------------------
+
+	/**
+	 * @param args Options (name=value), see USAGE
+	 * @throws Exception If the server can not be started or the report can not be written
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		Map<String, String> options = new LinkedHashMap<String, String>();
+		LoadGenerator generator;
+
+		try
+		{
+			for (String arg : args)
+			{
+				int separator = arg.indexOf('=');
+				if (separator <= 0)
+				{
+					throw new IllegalArgumentException("Invalid option: " + arg);
+				}
+				options.put(arg.substring(0, separator), arg.substring(separator + 1).trim());
+			}
+			generator = new LoadGenerator(options);
+		}
+		catch (IllegalArgumentException e)
+		{
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+			return;
+		}
+
+		if (Boolean.parseBoolean(option(options, "start", "false")))
+		{
+			startServer(generator.baseUrl);
+		}
+		waitUntilReady(generator.baseUrl);
+
+		generator.run();
+
+		List<String> violations = generator.checkThresholds(options);
+		generator.printReport(violations);
+
+		String report = option(options, "report", null);
+		if (report != null)
+		{
+			generator.writeReport(new File(report), options, violations);
+		}
+		System.exit(violations.isEmpty() ? 0 : 1);
+	}
+
+	/**
+	 * Sends the requests of the warm-up and the measured periods at the fixed rate,
+	 * then waits for the requests in flight.
+	 *
+	 * @throws InterruptedException If interrupted while waiting
+	 */
+	public void run() throws InterruptedException
+	{
+		final AtomicInteger threadNumber = new AtomicInteger();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(connections, connections, 0, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+				{
+					@Override
+					public Thread newThread(Runnable runnable)
+					{
+						Thread thread = new Thread(runnable, "load-generator-" + threadNumber.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		executor.prestartAllCoreThreads();
+
+		System.out.println(String.format(Locale.ROOT, "%s: %.1f requests/s for %d s (after %d s of warm-up), %s mix, %d connections",
+				baseUrl, rate, durationSeconds, warmupSeconds, mixName, connections));
+
+		long requestCount = (long) Math.ceil(rate * (warmupSeconds + durationSeconds));
+		long start = System.nanoTime() + 100 * NANOS_PER_MILLI;
+		measurementStart = start + warmupSeconds * NANOS_PER_SECOND;
+
+		for (long i = 0; i < requestCount; i++)
+		{
+			// The schedule does not depend on the responses (open loop)
+			final long scheduled = start + (long) (i * NANOS_PER_SECOND / rate);
+			long now;
+			while ((now = System.nanoTime()) < scheduled)
+			{
+				LockSupport.parkNanos(scheduled - now);
+			}
+
+			final RequestMix.Request request = requestMix.next();
+			final EndpointStats stats = (scheduled >= measurementStart) ? getEndpointStats(request.getEndpoint()) : null;
+			if (stats != null)
+			{
+				stats.sent.increment();
+				totalStats.sent.increment();
+			}
+
+			executor.execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					send(request, scheduled, stats);
+				}
+			});
+		}
+
+		executor.shutdown();
+		if (!executor.awaitTermination(timeoutMillis + DRAIN_MILLIS, TimeUnit.MILLISECONDS))
+		{
+			// The unfinished requests are counted as errors (sent but neither answered nor failed)
+			executor.shutdownNow();
+		}
+	}
+
+	private EndpointStats getEndpointStats(String endpoint)
+	{
+		EndpointStats stats = endpointStats.get(endpoint);
+		if (stats == null)
+		{
+			stats = new EndpointStats();
+			endpointStats.put(endpoint, stats);
+		}
+		return stats;
+	}
+
+	/**
+	 * Sends the given request and records its latencies if it is measured.
+	 * The response body is read fully, so that the connection is reused (keep-alive).
+	 *
+	 * @param request Request
+	 * @param scheduled Scheduled start time (System.nanoTime())
+	 * @param stats Statistics of the endpoint, or null if the request is not measured
+	 */
+	private void send(RequestMix.Request request, long scheduled, EndpointStats stats)
+	{
+		long sent = System.nanoTime();
+		boolean ok = false;
+
+		try
+		{
+			HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + request.getPath()).openConnection();
+			connection.setConnectTimeout(timeoutMillis);
+			connection.setReadTimeout(timeoutMillis);
+			connection.setRequestProperty("Accept-Encoding", "gzip");
+
+			int responseCode = connection.getResponseCode();
+			InputStream inputStream = (responseCode < 400) ? connection.getInputStream() : connection.getErrorStream();
+			if (inputStream != null)
+			{
+				try
+				{
+					byte[] buffer = new byte[8192];
+					while (inputStream.read(buffer) >= 0)
+					{
+						// Drained
+					}
+				}
+				finally
+				{
+					inputStream.close();
+				}
+			}
+			ok = responseCode >= 200 && responseCode < 400;
+			if (!ok && stats != null)
+			{
+				stats.lastError = "HTTP " + responseCode + " " + request.getPath();
+			}
+		}
+		catch (IOException e)
+		{
+			if (stats != null)
+			{
+				stats.lastError = e + " " + request.getPath();
+			}
+		}
+
+		long end = System.nanoTime();
+		if (stats == null)
+		{
+			return;
+		}
+
+		long previous = lastCompletion.get();
+		while (end > previous && !lastCompletion.compareAndSet(previous, end))
+		{
+			previous = lastCompletion.get();
+		}
+
+		if (ok)
+		{
+			stats.record(end - scheduled, end - sent);
+			totalStats.record(end - scheduled, end - sent);
+		}
+		else
+		{
+			totalStats.lastError = stats.lastError;
+		}
+	}
+
+	/**
+	 * Compares the total statistics with the given thresholds.
+	 *
+	 * @param options Options with the thresholds
+	 * @return The exceeded thresholds (empty if none)
+	 */
+	public List<String> checkThresholds(Map<String, String> options)
+	{
+		List<String> violations = new ArrayList<String>();
+		long[] latencies = totalStats.corrected.getQuantiles(QUANTILES);
+
+		for (int q = 0; q < QUANTILES.length; q++)
+		{
+			String maxLatency = option(options, "max." + QUANTILE_NAMES[q], null);
+			if (maxLatency != null && toMillis(latencies[q]) > Double.parseDouble(maxLatency))
+			{
+				violations.add(String.format(Locale.ROOT, "%s latency %.2f ms > %s ms", QUANTILE_NAMES[q], toMillis(latencies[q]), maxLatency));
+			}
+		}
+
+		String maxErrors = option(options, "max.errors", null);
+		if (maxErrors != null && totalStats.getErrorRatio() > Double.parseDouble(maxErrors))
+		{
+			violations.add(String.format(Locale.ROOT, "error ratio %.4f > %s", totalStats.getErrorRatio(), maxErrors));
+		}
+
+		String minThroughput = option(options, "min.throughput", null);
+		if (minThroughput != null && getThroughput(totalStats) < rate * Double.parseDouble(minThroughput))
+		{
+			violations.add(String.format(Locale.ROOT, "throughput %.1f requests/s < %s x %.1f requests/s",
+					getThroughput(totalStats), minThroughput, rate));
+		}
+		return violations;
+	}
+
+	/**
+	 * Returns the successful requests per second of the measured period (until the last response).
+	 */
+	private double getThroughput(EndpointStats stats)
+	{
+		long elapsed = Math.max(durationSeconds * NANOS_PER_SECOND, lastCompletion.get() - measurementStart);
+		return stats.corrected.getCount() * (double) NANOS_PER_SECOND / elapsed;
+	}
+
+	private void printReport(List<String> violations)
+	{
+		System.out.println(String.format("%-16s %8s %8s %8s %9s %9s %9s %9s %9s %17s",
+				"Endpoint", "Sent", "OK", "Errors", "Req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "uncorr. p99 ms"));
+
+		Map<String, EndpointStats> rows = new LinkedHashMap<String, EndpointStats>(endpointStats);
+		rows.put(TOTAL, totalStats);
+		for (Map.Entry<String, EndpointStats> row : rows.entrySet())
+		{
+			EndpointStats stats = row.getValue();
+			long[] latencies = stats.corrected.getQuantiles(QUANTILES);
+			long[] uncorrected = stats.uncorrected.getQuantiles(QUANTILES);
+
+			System.out.println(String.format(Locale.ROOT, "%-16s %8d %8d %8d %9.1f %9.2f %9.2f %9.2f %9.2f %17.2f",
+					row.getKey(), stats.sent.sum(), stats.corrected.getCount(), stats.getFailedCount(), getThroughput(stats),
+					toMillis(latencies[0]), toMillis(latencies[1]), toMillis(latencies[2]), toMillis(stats.corrected.getMax()),
+					toMillis(uncorrected[1])));
+		}
+
+		if (totalStats.lastError != null)
+		{
+			System.out.println("Last error: " + totalStats.lastError);
+		}
+		for (String violation : violations)
+		{
+			System.out.println("THRESHOLD EXCEEDED: " + violation);
+		}
+		System.out.println(violations.isEmpty() ? "PASSED" : "FAILED");
+	}
+
+	private void writeReport(File file, Map<String, String> options, List<String> violations) throws IOException
+	{
+		Map<String, Object> report = new LinkedHashMap<String, Object>();
+		Map<String, Object> target = new LinkedHashMap<String, Object>();
+		target.put("url", baseUrl);
+		target.put("mix", mixName);
+		target.put("rate", rate);
+		target.put("durationSeconds", durationSeconds);
+		target.put("warmupSeconds", warmupSeconds);
+		target.put("connections", connections);
+		report.put("target", target);
+
+		Map<String, Object> endpoints = new LinkedHashMap<String, Object>();
+		for (Map.Entry<String, EndpointStats> entry : endpointStats.entrySet())
+		{
+			endpoints.put(entry.getKey(), toReport(entry.getValue()));
+		}
+		report.put("endpoints", endpoints);
+		report.put(TOTAL, toReport(totalStats));
+
+		Map<String, String> thresholds = new LinkedHashMap<String, String>();
+		for (Map.Entry<String, String> option : options.entrySet())
+		{
+			if (isThreshold(option.getKey()) && !option.getValue().isEmpty())
+			{
+				thresholds.put(option.getKey(), option.getValue());
+			}
+		}
+		report.put("thresholds", thresholds);
+		report.put("violations", violations);
+		report.put("passed", violations.isEmpty());
+
+		if (file.getParentFile() != null)
+		{
+			file.getParentFile().mkdirs();
+		}
+		JSON_MAPPER.writerWithDefaultPrettyPrinter().writeValue(file, report);
+		System.out.println("Report written to " + file.getPath());
+	}
+
+	private Map<String, Object> toReport(EndpointStats stats)
+	{
+		Map<String, Object> result = new LinkedHashMap<String, Object>();
+		result.put("sent", stats.sent.sum());
+		result.put("ok", stats.corrected.getCount());
+		result.put("errors", stats.getFailedCount());
+		result.put("throughput", getThroughput(stats));
+		result.put("latencyMillis", toReport(stats.corrected));
+		result.put("uncorrectedLatencyMillis", toReport(stats.uncorrected));
+		return result;
+	}
+
+	private static Map<String, Object> toReport(LatencyHistogram histogram)
+	{
+		Map<String, Object> result = new LinkedHashMap<String, Object>();
+		long[] latencies = histogram.getQuantiles(QUANTILES);
+		for (int q = 0; q < QUANTILES.length; q++)
+		{
+			result.put(QUANTILE_NAMES[q], toMillis(latencies[q]));
+		}
+		result.put("max", toMillis(histogram.getMax()));
+		return result;
+	}
+
+	/**
+	 * Starts the web service (Main) on the port of the given URL, in this JVM.
+	 * The server shares the processors with the load generator, a remote server gives more accurate results.
+	 */
+	private static void startServer(String baseUrl) throws IOException
+	{
+		URL url = new URL(baseUrl);
+		final String port = String.valueOf((url.getPort() < 0) ? url.getDefaultPort() : url.getPort());
+
+		Thread thread = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					Main.main(new String[] {port});
+				}
+				catch (Exception e)
+				{
+					e.printStackTrace();
+				}
+			}
+		}, "food-truck-server");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Waits until the web service has loaded the food truck data (see HealthResource).
+	 *
+	 * @throws IOException If the web service is not ready in READY_TIMEOUT_MILLIS
+	 */
+	private static void waitUntilReady(String baseUrl) throws IOException, InterruptedException
+	{
+		long deadline = System.currentTimeMillis() + READY_TIMEOUT_MILLIS;
+		String lastState = null;
+
+		while (System.currentTimeMillis() < deadline)
+		{
+			try
+			{
+				HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + "/health/ready").openConnection();
+				connection.setConnectTimeout((int) READY_POLL_MILLIS);
+				connection.setReadTimeout((int) READY_TIMEOUT_MILLIS);
+				int responseCode = connection.getResponseCode();
+				connection.disconnect();
+				if (responseCode == HttpURLConnection.HTTP_OK)
+				{
+					return;
+				}
+				lastState = "HTTP " + responseCode;
+			}
+			catch (IOException e)
+			{
+				lastState = e.toString();
+			}
+			Thread.sleep(READY_POLL_MILLIS);
+		}
+		throw new IOException(baseUrl + " is not ready after " + READY_TIMEOUT_MILLIS + " ms: " + lastState);
+	}
+
+	private static boolean isThreshold(String name)
+	{
+		return name.startsWith("max.") || name.startsWith("min.");
+	}
+
+	private static String option(Map<String, String> options, String name, String defaultValue)
+	{
+		String value = options.get(name);
+		return (value == null || value.isEmpty()) ? defaultValue : value;
+	}
+
+	private static double toMillis(long nanos)
+	{
+		return nanos / (double) NANOS_PER_MILLI;
+	}
+
+	/**
+	 * Statistics of the measured requests of an endpoint:
+	 * the latencies of the successful ones (from the scheduled start and from the sending) and the last error.
+	 */
+	private static final class EndpointStats
+	{
+		private final LatencyHistogram corrected = new LatencyHistogram();
+		private final LatencyHistogram uncorrected = new LatencyHistogram();
+		private final LongAdder sent = new LongAdder();
+		private volatile String lastError;
+
+		void record(long correctedNanos, long uncorrectedNanos)
+		{
+			corrected.record(correctedNanos);
+			uncorrected.record(uncorrectedNanos);
+		}
+
+		/**
+		 * @return The number of the failed and the unfinished requests
+		 */
+		long getFailedCount()
+		{
+			return sent.sum() - corrected.getCount();
+		}
+
+		double getErrorRatio()
+		{
+			long sentCount = sent.sum();
+			return (sentCount == 0) ? 0 : getFailedCount() / (double) sentCount;
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package com.uber.coding_challange.food_trucks.loadtest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Replays the GET requests of a recorded request log, in their order, from the start again at the end of the log.
+ * A line of the log is either a path (e.g. "/foodtrucks/query?status=APPROVED")
+ * or an access log line in the common log format of Tomcat ('AccessLogValve'), e.g.
+ * 127.0.0.1 - - [10/Oct/2018:13:55:36 -0700] "GET /webapi/foodtrucks/query?status=APPROVED HTTP/1.1" 200 2326
+ * The base path of the web service ("/webapi") is removed from the paths; empty lines, comments ('#'),
+ * other methods and other resources are skipped.
+ * Only the paths are replayed, not the timing of the log: the LoadGenerator sends them at its fixed rate.
+ * Requests are reported by endpoint: 'foodtrucks', 'query_status', 'query_circle' or the last part of the path.
+ *
+ * @author alper.karacelik
+ *
+ */
+public class ReplayRequestMix implements RequestMix
+{
+	// Constants ---------------------------------------------------------
+	private static final Pattern ACCESS_LOG_REQUEST = Pattern.compile("\"([A-Z]+) (\\S+)[^\"]*\"");
+	private static final String RESOURCE_PATH = "/foodtrucks";
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	private final List<Request> requests = new ArrayList<Request>();
+	private int next = 0;
+	// -------------------------------------------------------------------
+
+	// Constructor(s) ----------------------------------------------------
+	/**
+	 * @param logPath Path of the request log
+	 * @throws IOException If the log can not be read or it has no requests to replay
+	 */
+	public ReplayRequestMix(String logPath) throws IOException
+	{
+		for (String line : Files.readAllLines(Paths.get(logPath), StandardCharsets.UTF_8))
+		{
+			String path = parsePath(line.trim());
+			if (path != null)
+			{
+				requests.add(new Request(endpointOf(path), path));
+			}
+		}
+
+		if (requests.isEmpty())
+		{
+			throw new IOException("No GET " + RESOURCE_PATH + " requests in " + logPath);
+		}
+	}
+	// -------------------------------------------------------------------
+
+	@Override
+	public Request next()
+	{
+		Request request = requests.get(next);
+		next = (next + 1) % requests.size();
+		return request;
+	}
+
+	/**
+	 * @return The number of the requests in the log
+	 */
+	public int size()
+	{
+		return requests.size();
+	}
+
+	/**
+	 * Returns the path of the given log line, relative to the base URL of the web service.
+	 *
+	 * @param line Log line
+	 * @return The path, or null if the line is not a GET request of the food trucks
+	 */
+	private static String parsePath(String line)
+	{
+		if (line.isEmpty() || line.startsWith("#"))
+		{
+			return null;
+		}
+
+		String path = line;
+		Matcher matcher = ACCESS_LOG_REQUEST.matcher(line);
+		if (matcher.find())
+		{
+			if (!matcher.group(1).equals("GET"))
+			{
+				return null;
+			}
+			path = matcher.group(2);
+		}
+
+		// Remove the base path (e.g. "/webapi") and the scheme and the host of an absolute URL
+		int resource = path.indexOf(RESOURCE_PATH);
+		if (resource < 0 || path.indexOf(' ') >= 0)
+		{
+			return null;
+		}
+		return path.substring(resource);
+	}
+
+	/**
+	 * Returns the endpoint of the given path, the same names as the SyntheticRequestMix for the queries.
+	 */
+	private static String endpointOf(String path)
+	{
+		int queryStart = path.indexOf('?');
+		String resource = (queryStart < 0) ? path : path.substring(0, queryStart);
+		String query = (queryStart < 0) ? "" : path.substring(queryStart);
+
+		if (resource.equals(RESOURCE_PATH) || resource.equals(RESOURCE_PATH + "/"))
+		{
+			return "foodtrucks";
+		}
+		if (resource.equals(RESOURCE_PATH + "/query"))
+		{
+			return query.contains("latitude=") ? "query_circle" : "query_status";
+		}
+		return resource.substring(resource.lastIndexOf('/') + 1);
+	}
+}
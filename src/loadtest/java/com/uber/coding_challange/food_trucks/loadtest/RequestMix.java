@@ -0,0 +1,44 @@
+package com.uber.coding_challange.food_trucks.loadtest;
+
+/**
+ * Source of the requests sent by the LoadGenerator.
+ * Called only by the scheduling thread, implementations do not need to be thread safe.
+ *
+ * @author alper.karacelik
+ *
+ */
+public interface RequestMix
+{
+	/**
+	 * Returns the next request to send.
+	 *
+	 * @return The next request
+	 */
+	Request next();
+
+	/**
+	 * A request: the endpoint it is reported under and its path (with the query string),
+	 * relative to the base URL of the web service (e.g. "/foodtrucks/query?status=APPROVED").
+	 */
+	final class Request
+	{
+		private final String endpoint;
+		private final String path;
+
+		public Request(String endpoint, String path)
+		{
+			this.endpoint = endpoint;
+			this.path = path;
+		}
+
+		public String getEndpoint()
+		{
+			return endpoint;
+		}
+
+		public String getPath()
+		{
+			return path;
+		}
+	}
+}
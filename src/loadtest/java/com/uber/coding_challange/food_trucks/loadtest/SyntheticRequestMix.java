@@ -0,0 +1,128 @@
+package com.uber.coding_challange.food_trucks.loadtest;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Synthetic mix of the requests of map clients in San Francisco:
+ * 1) 'foodtrucks': the full list (5%)
+ * 2) 'query_status': the query on 'status' only (15%)
+ * 3) 'query_circle': the query on 'status' and a circle (80%)
+ * The centers of the circles are weighted towards the hotspots of the food trucks (downtown, SoMa, the Mission, ...),
+ * spread around them by ~500 m, with some uniform traffic over the city; the positions have GPS like precision.
+ * Statuses: APPROVED 60%, none (ALL) 20%, REQUESTED 15%, EXPIRED 5%.
+ * Radiuses are log-normal (median 0.5 miles, 0.05 to 10 miles), 20% of them in kilometers.
+ * The mix is deterministic for a seed.
+ *
+ * @author alper.karacelik
+ *
+ */
+public class SyntheticRequestMix implements RequestMix
+{
+	// Constants ---------------------------------------------------------
+	// Latitude, longitude and weight of the hotspots
+	private static final double[][] HOTSPOTS = {
+			{37.7946, -122.3999, 0.30},	// Financial District
+			{37.7785, -122.4056, 0.25},	// SoMa
+			{37.7599, -122.4148, 0.15},	// Mission
+			{37.7793, -122.4193, 0.10},	// Civic Center
+			{37.7706, -122.3910, 0.10},	// Mission Bay
+			{37.7295, -122.3927, 0.05}};	// Bayview
+	// Bounds of the uniform traffic (the remaining weight)
+	private static final double MIN_LATITUDE = 37.70;
+	private static final double MAX_LATITUDE = 37.82;
+	private static final double MIN_LONGITUDE = -122.52;
+	private static final double MAX_LONGITUDE = -122.35;
+	private static final double HOTSPOT_SPREAD_DEGREES = 0.005;
+	private static final String[] STATUSES = {"APPROVED", null, "REQUESTED", "EXPIRED"};
+	private static final double[] STATUS_WEIGHTS = {0.60, 0.20, 0.15, 0.05};
+	private static final double MEDIAN_RADIUS_MILES = 0.5;
+	private static final double RADIUS_SIGMA = 0.8;
+	private static final double KILOMETERS_PER_MILE = 1.609344;
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	private final Random random;
+	// -------------------------------------------------------------------
+
+	// Constructor(s) ----------------------------------------------------
+	public SyntheticRequestMix(long seed)
+	{
+		this.random = new Random(seed);
+	}
+	// -------------------------------------------------------------------
+
+	@Override
+	public Request next()
+	{
+		double endpoint = random.nextDouble();
+		String status = STATUSES[pick(STATUS_WEIGHTS)];
+
+		if (endpoint < 0.05)
+		{
+			return new Request("foodtrucks", "/foodtrucks");
+		}
+		if (endpoint < 0.20)
+		{
+			return new Request("query_status", "/foodtrucks/query" + (status == null ? "" : "?status=" + status));
+		}
+
+		double latitude;
+		double longitude;
+		int hotspot = pickHotspot();
+		if (hotspot >= 0)
+		{
+			latitude = HOTSPOTS[hotspot][0] + random.nextGaussian() * HOTSPOT_SPREAD_DEGREES;
+			longitude = HOTSPOTS[hotspot][1] + random.nextGaussian() * HOTSPOT_SPREAD_DEGREES;
+		}
+		else
+		{
+			latitude = MIN_LATITUDE + random.nextDouble() * (MAX_LATITUDE - MIN_LATITUDE);
+			longitude = MIN_LONGITUDE + random.nextDouble() * (MAX_LONGITUDE - MIN_LONGITUDE);
+		}
+
+		double radius = Math.max(0.05, Math.min(10, MEDIAN_RADIUS_MILES * Math.exp(random.nextGaussian() * RADIUS_SIGMA)));
+		boolean kilometers = random.nextDouble() < 0.2;
+
+		return new Request("query_circle", String.format(Locale.ROOT,
+				"/foodtrucks/query?%slatitude=%.5f&longitude=%.5f&radius=%.2f&radius_unit=%s",
+				status == null ? "" : "status=" + status + "&", latitude, longitude,
+				kilometers ? radius * KILOMETERS_PER_MILE : radius, kilometers ? "km" : "mi"));
+	}
+
+	/**
+	 * Returns a random hotspot by weight, or -1 for the uniform traffic.
+	 */
+	private int pickHotspot()
+	{
+		double value = random.nextDouble();
+
+		for (int i = 0; i < HOTSPOTS.length; i++)
+		{
+			value -= HOTSPOTS[i][2];
+			if (value < 0)
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns a random index by the given weights (their sum is 1).
+	 */
+	private int pick(double[] weights)
+	{
+		double value = random.nextDouble();
+
+		for (int i = 0; i < weights.length - 1; i++)
+		{
+			value -= weights[i];
+			if (value < 0)
+			{
+				return i;
+			}
+		}
+		return weights.length - 1;
+	}
+}
@@ -0,0 +1,57 @@
+package com.uber.coding_challange.food_trucks;
+
+import javax.ws.rs.ext.Provider;
+
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+
+import com.uber.coding_challange.food_trucks.ctrl.FoodTruckChangeFeed;
+import com.uber.coding_challange.food_trucks.ctrl.FoodTruckClient;
+import com.uber.coding_challange.food_trucks.ctrl.FoodTruckRefresher;
+import com.uber.coding_challange.food_trucks.ctrl.FoodTruckShards;
+import com.uber.coding_challange.food_trucks.ctrl.RequestExecutor;
+
+@Provider
+/**
+ * Lifecycle hook of the Jersey application (registered by the package scanning of web.xml).
+ * When the application is initialized, the food truck data starts loading in the background,
+ * so the first request does not wait for the download (see HealthResource for the readiness);
+ * a coordinator of the shards (see FoodTruckShards) does not load any data.
+ * When the application is destroyed, the background threads are stopped (and the change feed subscriptions closed).
+ *
+ * @author alper.karacelik
+ *
+ */
+public class FoodTrucksApplicationListener implements ApplicationEventListener
+{
+	@Override
+	public void onEvent(ApplicationEvent event)
+	{
+		switch (event.getType())
+		{
+			case INITIALIZATION_FINISHED:
+				if (!FoodTruckShards.getInstance().isCoordinator())
+				{
+					FoodTruckClient.getInstance().startInitialization();
+				}
+				break;
+			case DESTROY_FINISHED:
+				FoodTruckRefresher.getInstance().stop();
+				RequestExecutor.getInstance().shutdown();
+				FoodTruckChangeFeed.getInstance().shutdown();
+				FoodTruckShards.getInstance().shutdown();
+				break;
+			default:
+				break;
+		}
+	}
+
+	@Override
+	public RequestEventListener onRequest(RequestEvent requestEvent)
+	{
+		// Requests are not monitored
+		return null;
+	}
+}
@@ -1,18 +1,65 @@
 package com.uber.coding_challange.food_trucks;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.core.Variant;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.uber.coding_challange.food_trucks.ctrl.FoodTruckChangeFeed;
 import com.uber.coding_challange.food_trucks.ctrl.FoodTruckClient;
+import com.uber.coding_challange.food_trucks.ctrl.FoodTruckCursor;
+import com.uber.coding_challange.food_trucks.ctrl.FoodTruckProjection;
+import com.uber.coding_challange.food_trucks.ctrl.FoodTruckQueryCache;
+import com.uber.coding_challange.food_trucks.ctrl.FoodTruckResponseCache;
+import com.uber.coding_challange.food_trucks.ctrl.FoodTruckResponseCache.CachedResponse;
+import com.uber.coding_challange.food_trucks.ctrl.FoodTruckSerializer;
+import com.uber.coding_challange.food_trucks.ctrl.FoodTruckShards;
+import com.uber.coding_challange.food_trucks.ctrl.GeoPolygon;
+import com.uber.coding_challange.food_trucks.ctrl.GeodesicDistanceCalculator;
+import com.uber.coding_challange.food_trucks.ctrl.LatencyHistogram;
+import com.uber.coding_challange.food_trucks.ctrl.MetricsRegistry;
+import com.uber.coding_challange.food_trucks.ctrl.RequestExecutor;
 import com.uber.coding_challange.food_trucks.dataaccess.FoodTruckAccessor;
+import com.uber.coding_challange.food_trucks.dataaccess.FoodTruckPage;
 import com.uber.coding_challange.food_trucks.model.FoodTruck;
+import com.uber.coding_challange.food_trucks.model.FoodTruckCluster;
+import com.uber.coding_challange.food_trucks.model.FoodTruckQuery;
 import com.uber.coding_challange.food_trucks.model.enums.DistanceUnitEnum;
 import com.uber.coding_challange.food_trucks.model.enums.FoodTruckStatusEnum;
+import com.uber.coding_challange.food_trucks.model.enums.ResponseFormatEnum;
 
 /**
  * Root resource (exposed at "foodtrucks" path)
@@ -22,17 +69,69 @@ import com.uber.coding_challange.food_trucks.model.enums.FoodTruckStatusEnum;
  * This class provides the entry point for the web service by providing two different GET methods.
  * 1) getFoodTrucks(): Returns all the food trucks.
  * 2) getFoodTrucksByQuery(): Returns the food trucks that provides the given query conditions.
+ * 3) getNearestFoodTrucks(): Returns the 'k' food trucks that are closest to the given position.
+ * 4) getFoodTrucksByQueries(): Answers a batch of circle queries (POST), keyed by query id.
+ * 5) getFoodTrucksInBox(): Returns the food trucks inside a latitude/longitude rectangle, e.g. the visible area of a map.
+ * 6) getFoodTrucksInPolygon(): Returns the food trucks inside a GeoJSON polygon (POST).
+ * 7) getFoodTruckClusters(): Returns the marker clusters (centroids with counts) of a rectangle for a map zoom level.
+ * 8) streamChanges(): Streams the changes on the food trucks as Server-Sent Events, instead of polling the queries.
+ * The full list and the lists queried only on 'status' are served pre-serialized from FoodTruckResponseCache,
+ * with an entity tag; a request with a matching 'If-None-Match' header is answered with 304 (Not Modified).
+ * If the client accepts gzip ('Accept-Encoding'), they are served from their pre-compressed variants.
+ * Both lists can be paginated with 'limit' and 'cursor' (the 'X-Next-Cursor' header and the 'next' link of a page),
+ * pages are ordered by object id and are not shifted by the changes on the storage.
+ * Both lists are also available as newline delimited JSON (Accept: application/x-ndjson),
+ * streamed to the client one food truck at a time.
+ * All the lists can be limited to some of the properties with 'fields', e.g. fields=objectid,latitude,longitude.
+ * All the responses are also available in the binary JSON formats Smile (Accept: application/x-jackson-smile)
+ * and CBOR (Accept: application/cbor), with the same structure; the cached lists are cached per format.
+ * The query can also search the applicant and the food items with 'q', e.g. q=taco (prefixes of words match).
+ * The queries are processed on the RequestExecutor, the Tomcat connector thread is released meanwhile;
+ * if the executor is overloaded, they are answered with 503 (Service Unavailable).
+ * The duration of every request is recorded per endpoint (see MetricsResource).
+ * On a coordinator of the shards (see FoodTruckShards), the full list and the query on 'status' and the circle
+ * are answered by the shards (502 (Bad Gateway) if a shard fails); the other requests (pages, 'q', NDJSON, nearest,
+ * bbox, polygon, clusters, batch and changes) are not sharded yet and are answered with 501 (Not Implemented),
+ * since a coordinator stores no food trucks. A shard answers the lists with 503 (Service Unavailable) until its data
+ * is loaded (see FoodTruckClient.isReady()), so that a coordinator never merges a partial list.
  * 
  * @author alper.karacelik
  *
  */
 public class FoodTrucksResource 
 {	
-	// Constructor
-	public FoodTrucksResource()
-	{
-		FoodTruckClient.getInstance().initialize();
-	}
+	// Constants ---------------------------------------------------------
+	private static final int DEFAULT_NEAREST_COUNT = 10;
+	private static final int MAX_NEAREST_COUNT = 1000;
+	private static final int DEFAULT_PAGE_LIMIT = 100;
+	private static final String APPLICATION_NDJSON = "application/x-ndjson";
+	private static final String APPLICATION_SMILE = "application/x-jackson-smile";
+	private static final String APPLICATION_CBOR = "application/cbor";
+	// Media types of the formats, in the order of preference (see negotiateFormat())
+	private static final List<Variant> FORMAT_VARIANTS = Variant.mediaTypes(
+			MediaType.APPLICATION_JSON_TYPE, MediaType.valueOf(APPLICATION_SMILE), MediaType.valueOf(APPLICATION_CBOR)).add().build();
+	private static final String CACHED_VARY = HttpHeaders.ACCEPT + ", " + HttpHeaders.ACCEPT_ENCODING;
+	private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+	private static final long RETRY_AFTER_SECONDS = 1;
+	private static final String GZIP = "gzip";
+	private static final int MAX_BATCH_QUERIES = 1000;
+	private static final int MAX_ZOOM = 30;
+	private static final String GEOJSON = "application/geo+json";
+	private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+	private static final ObjectReader QUERY_LIST_READER =
+			JSON_MAPPER.readerFor(new TypeReference<List<FoodTruckQuery>>() {});
+	private static final LatencyHistogram ALL_REQUESTS = MetricsRegistry.getInstance().requestHistogram("foodtrucks");
+	private static final LatencyHistogram QUERY_REQUESTS = MetricsRegistry.getInstance().requestHistogram("query");
+	private static final LatencyHistogram NEAREST_REQUESTS = MetricsRegistry.getInstance().requestHistogram("nearest");
+	private static final LatencyHistogram BATCH_REQUESTS = MetricsRegistry.getInstance().requestHistogram("query_batch");
+	private static final LatencyHistogram BBOX_REQUESTS = MetricsRegistry.getInstance().requestHistogram("bbox");
+	private static final LatencyHistogram POLYGON_REQUESTS = MetricsRegistry.getInstance().requestHistogram("polygon");
+	private static final LatencyHistogram CLUSTER_REQUESTS = MetricsRegistry.getInstance().requestHistogram("clusters");
+	private static final LatencyHistogram ALL_NDJSON_REQUESTS = MetricsRegistry.getInstance().requestHistogram("foodtrucks_ndjson");
+	private static final LatencyHistogram QUERY_NDJSON_REQUESTS = MetricsRegistry.getInstance().requestHistogram("query_ndjson");
+	private static final LatencyHistogram GEO_FILTER = MetricsRegistry.getInstance().stageHistogram("geo_filter");
+	private static final LatencyHistogram TEXT_SEARCH = MetricsRegistry.getInstance().stageHistogram("text_search");
+	// -------------------------------------------------------------------
 	
     /**
      * Method handling HTTP GET requests. The returned object will be sent
@@ -41,10 +140,42 @@ public class FoodTrucksResource
      * @return Food Trucks in JSON format
      */
     @GET	
-    @Produces(MediaType.APPLICATION_JSON)
-    public List<FoodTruck> getFoodTrucks() 
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE, APPLICATION_CBOR})
+    public Response getFoodTrucks(
+    		@Context Request request,
+    		@Context UriInfo uriInfo,
+    		@QueryParam("limit") String limitStr,
+    		@QueryParam("cursor") String cursorStr,
+    		@QueryParam("fields") String fieldsStr,
+    		@HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncodingStr) 
     {
-    	return FoodTruckAccessor.getInstance().getAllFoodTrucks();
+    	long start = System.nanoTime();
+    	try
+    	{
+    		rejectUntilReady();
+    		FoodTruckProjection projection = parseFields(fieldsStr);
+    		ResponseFormatEnum format = negotiateFormat(request);
+    		
+    		// A coordinator queries the shards
+    		if (FoodTruckShards.getInstance().isCoordinator() && limitStr == null && cursorStr == null)
+    		{
+    			return getShardedResponse(null, null, null, null, null, projection, format);
+    		}
+    		
+    		// A page is requested
+    		if (limitStr != null || cursorStr != null)
+    		{
+    			rejectOnCoordinator("Paging (limit, cursor)");
+    			FoodTruckPage page = FoodTruckAccessor.getInstance().getFoodTruckPage(
+    					FoodTruckStatusEnum.ALL, parseCursor(cursorStr), parseLimit(limitStr, DEFAULT_PAGE_LIMIT));
+    			return getPageResponse(uriInfo, page, FoodTruckSerializer.getInstance(format).toBytes(page, projection), format.getStrValue());
+    		}
+    		return getCachedResponse(request, FoodTruckStatusEnum.ALL, projection, format, acceptsGzip(acceptEncodingStr));
+    	}
+    	finally
+    	{
+    		ALL_REQUESTS.recordSince(start);
+    	}
     }
     
     /**
@@ -55,14 +186,69 @@ public class FoodTrucksResource
      */
     @GET
     @Path("/query")
-    @Produces(MediaType.APPLICATION_JSON)
-    public List<FoodTruck> getFoodTrucksByQuery(
-    		@QueryParam("status") String statusStr,
-            @QueryParam("latitude") String latitudeStr,
-            @QueryParam("longitude") String longitudeStr,
-            @QueryParam("radius") String radiusStr,
-            @QueryParam("radius_unit") String radiusUnitStr)
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE, APPLICATION_CBOR})
+    public void getFoodTrucksByQuery(
+    		@Suspended AsyncResponse asyncResponse,
+    		@Context final Request request,
+    		@Context final UriInfo uriInfo,
+    		@QueryParam("status") final String statusStr,
+            @QueryParam("latitude") final String latitudeStr,
+            @QueryParam("longitude") final String longitudeStr,
+            @QueryParam("radius") final String radiusStr,
+            @QueryParam("radius_unit") final String radiusUnitStr,
+            @QueryParam("q") final String textStr,
+            @QueryParam("limit") final String limitStr,
+            @QueryParam("cursor") final String cursorStr,
+            @QueryParam("fields") final String fieldsStr,
+            @HeaderParam(HttpHeaders.ACCEPT_ENCODING) final String acceptEncodingStr)
+    {
+    	final ResponseFormatEnum format = negotiateFormat(request);
+    	
+    	submit(asyncResponse, QUERY_REQUESTS, new Callable<Response>()
+    	{
+    		@Override
+    		public Response call()
+    		{
+    			rejectUntilReady();
+    			FoodTruckProjection projection = parseFields(fieldsStr);
+    			
+    			// A page or a text search is requested
+    			boolean paged = limitStr != null || cursorStr != null;
+    			if (paged || !isBlank(textStr))
+    			{
+    				rejectOnCoordinator("Paging (limit, cursor) and the text search (q)");
+    				FoodTruckPage page = queryPage(statusStr, latitudeStr, longitudeStr, radiusStr, radiusUnitStr, textStr,
+    						parseCursor(cursorStr), parseLimit(limitStr, paged ? DEFAULT_PAGE_LIMIT : Integer.MAX_VALUE));
+    				return getPageResponse(uriInfo, page, FoodTruckSerializer.getInstance(format).toBytes(page, projection), format.getStrValue());
+    			}
+    			return queryFoodTrucks(request, statusStr, latitudeStr, longitudeStr, radiusStr, radiusUnitStr, projection,
+    					format, acceptsGzip(acceptEncodingStr));
+    		}
+    	});
+    }
+    
+    /**
+     * Queries the food trucks on 'status', and on the circle if all of its parameters are given.
+     *
+     * @return Food Trucks in JSON format
+     */
+    private Response queryFoodTrucks(
+    		Request request,
+    		String statusStr,
+    		String latitudeStr,
+    		String longitudeStr,
+    		String radiusStr,
+    		String radiusUnitStr,
+    		FoodTruckProjection projection,
+    		ResponseFormatEnum format,
+    		boolean gzip)
     {
+    	// A coordinator queries the shards
+    	if (FoodTruckShards.getInstance().isCoordinator())
+    	{
+    		return getShardedResponse(statusStr, latitudeStr, longitudeStr, radiusStr, radiusUnitStr, projection, format);
+    	}
+    	
     	// Query Results
     	List<FoodTruck> queryResult = null;
     	
@@ -76,10 +262,645 @@ public class FoodTrucksResource
     		statusEnum = FoodTruckStatusEnum.getFromStringValue(statusStr);
     	}
     	
-    	// Update the query results by querying on 'status'
-		queryResult = FoodTruckAccessor.getInstance().getFoodTrucks(statusEnum);
+    	// If latitude and longitude is not specified
+    	if (latitudeStr == null || longitudeStr == null || radiusStr == null || radiusUnitStr == null)
+    	{
+    		// The query on 'status' is served from the cache
+    		return getCachedResponse(request, statusEnum, projection, format, gzip);
+    	}
+    	else
+    	{
+    		try 
+    		{
+    			// Obtain the latitude, longitude, radius and radius unit
+        		double latitude = Double.parseDouble(latitudeStr);
+        		double longitude = Double.parseDouble(longitudeStr);
+        		double radius = Double.parseDouble(radiusStr);
+        		DistanceUnitEnum radiusUnit = DistanceUnitEnum.getFromStringValue(radiusUnitStr); 
+        		
+        		// Update the query results by querying on 'status' inside the circle
+        		long filterStart = System.nanoTime();
+        		queryResult = FoodTruckQueryCache.getInstance().getFoodTrucks(statusEnum, latitude, longitude, radius, radiusUnit);
+        		GEO_FILTER.recordSince(filterStart);
+			} 
+    		catch (Exception e) 
+    		{
+				e.printStackTrace();
+				
+				// Fall back to the query on 'status'
+				return getCachedResponse(request, statusEnum, projection, format, gzip);
+			}
+    	}
+    	
+    	// Return the query result
+    	return getSerializedResponse(queryResult, projection, format);
+    }
+    
+    /**
+     * Sends the query on 'status' and the circle to the shards whose cells overlap the circle
+     * (all the shards if the circle is not given or invalid, they fall back to the query on 'status' like a single node)
+     * and returns the merged result.
+     *
+     * @return Food Trucks in the negotiated format
+     * @throws WebApplicationException 502 (Bad Gateway) if a shard fails, times out or is not ready yet
+     */
+    private Response getShardedResponse(
+    		String statusStr,
+    		String latitudeStr,
+    		String longitudeStr,
+    		String radiusStr,
+    		String radiusUnitStr,
+    		FoodTruckProjection projection,
+    		ResponseFormatEnum format)
+    {
+    	FoodTruckShards shards = FoodTruckShards.getInstance();
+    	List<Integer> shardIndexes = shards.getAllShards();
     	
-    	// If latitude and longitude is specified
+    	if (latitudeStr != null && longitudeStr != null && radiusStr != null && radiusUnitStr != null)
+    	{
+    		try
+    		{
+    			double latitude = Double.parseDouble(latitudeStr);
+    			double longitude = Double.parseDouble(longitudeStr);
+    			double radius = Double.parseDouble(radiusStr);
+    			DistanceUnitEnum radiusUnit = DistanceUnitEnum.getFromStringValue(radiusUnitStr);
+    			
+    			if (radius > 0 && !Double.isInfinite(radius) && latitude >= -90 && latitude <= 90
+    					&& longitude >= -180 && longitude <= 180)
+    			{
+    				shardIndexes = shards.getShards(latitude, longitude, radius, radiusUnit);
+    			}
+    		}
+    		catch (Exception e)
+    		{
+    			// Sent to all the shards
+    		}
+    	}
+    	
+    	try
+    	{
+    		List<FoodTruck> foodTrucks = shards.query(shardIndexes,
+    				"status", statusStr,
+    				"latitude", latitudeStr,
+    				"longitude", longitudeStr,
+    				"radius", radiusStr,
+    				"radius_unit", radiusUnitStr);
+    		return getSerializedResponse(foodTrucks, projection, format);
+    	}
+    	catch (IOException e)
+    	{
+    		throw new WebApplicationException(e.getMessage(), Response.Status.BAD_GATEWAY);
+    	}
+    }
+    
+    /**
+     * Rejects a request that is not sharded yet on a coordinator of the shards:
+     * it stores no food trucks, so it would be answered with an empty result.
+     *
+     * @param feature Not sharded feature, for the error message
+     * @throws WebApplicationException 501 (Not Implemented) on a coordinator
+     */
+    private static void rejectOnCoordinator(String feature)
+    {
+    	if (FoodTruckShards.getInstance().isCoordinator())
+    	{
+    		throw new WebApplicationException(Response.status(Response.Status.NOT_IMPLEMENTED)
+    				.entity(feature + " is not supported on a coordinator of the shards")
+    				.type(MediaType.TEXT_PLAIN_TYPE)
+    				.build());
+    	}
+    }
+    
+    /**
+     * Rejects a list request on a shard whose food truck data is not loaded yet:
+     * its list would be partial, and a coordinator would merge it as a complete one.
+     *
+     * @throws ServiceUnavailableException 503 (Service Unavailable) on a shard that is not ready
+     */
+    private static void rejectUntilReady()
+    {
+    	if (FoodTruckShards.getInstance().getShardIndex() >= 0 && !FoodTruckClient.getInstance().isReady())
+    	{
+    		throw new ServiceUnavailableException(RETRY_AFTER_SECONDS);
+    	}
+    }
+    
+    /**
+     * Method handling HTTP GET requests. The returned object will be streamed
+     * to the client as "application/x-ndjson" media type (one food truck per line).
+     * All the food trucks are returned, unless 'limit' is given.
+     *
+     * @return Food Trucks in newline delimited JSON format
+     */
+    @GET
+    @Produces(APPLICATION_NDJSON + ";qs=0.5")
+    public Response streamFoodTrucks(
+    		@Context UriInfo uriInfo,
+    		@QueryParam("limit") String limitStr,
+    		@QueryParam("cursor") String cursorStr,
+    		@QueryParam("fields") String fieldsStr)
+    {
+    	rejectOnCoordinator("Newline delimited JSON");
+    	rejectUntilReady();
+    	long start = System.nanoTime();
+    	FoodTruckProjection projection = parseFields(fieldsStr);
+    	FoodTruckPage page = FoodTruckAccessor.getInstance().getFoodTruckPage(
+    			FoodTruckStatusEnum.ALL, parseCursor(cursorStr), parseLimit(limitStr, Integer.MAX_VALUE));
+    	
+    	return getPageResponse(uriInfo, page, getNdjsonOutput(page, projection, ALL_NDJSON_REQUESTS, start), APPLICATION_NDJSON);
+    }
+    
+    /**
+     * Method handling HTTP POST requests. The returned object will be sent
+     * to the client as "application/json" media type.
+     * The request is a JSON array of circle queries (see FoodTruckQuery), e.g.
+     * [{"id": "zone-1", "latitude": 37.78, "longitude": -122.41, "radius": 1, "radius_unit": "km", "status": "APPROVED"}]
+     * The response is a JSON object with the food trucks of every query under its id, e.g. {"zone-1": [...]}.
+     * A query without an id gets its index in the array. All the queries are answered on the same version
+     * of the storage, in one pass over the spatial index (see FoodTruckAccessor).
+     *
+     * @return Food Trucks of every query in JSON format
+     */
+    @POST
+    @Path("/query/batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE, APPLICATION_CBOR})
+    public void getFoodTrucksByQueries(
+    		@Suspended AsyncResponse asyncResponse,
+    		@Context Request request,
+    		@QueryParam("fields") final String fieldsStr,
+    		final byte[] body)
+    {
+    	rejectOnCoordinator("The batch query");
+    	final ResponseFormatEnum format = negotiateFormat(request);
+    	
+    	submit(asyncResponse, BATCH_REQUESTS, new Callable<Response>()
+    	{
+    		@Override
+    		public Response call()
+    		{
+    			FoodTruckProjection projection = parseFields(fieldsStr);
+    			List<FoodTruckQuery> queries = parseQueries(body);
+    			
+    			long filterStart = System.nanoTime();
+    			List<List<FoodTruck>> results = FoodTruckAccessor.getInstance().getFoodTrucks(queries);
+    			GEO_FILTER.recordSince(filterStart);
+    			
+    			List<String> ids = new ArrayList<String>(queries.size());
+    			for (FoodTruckQuery query : queries)
+    			{
+    				ids.add(query.getId());
+    			}
+    			return getFormatResponse(FoodTruckSerializer.getInstance(format).toBytes(ids, results, projection), format);
+    		}
+    	});
+    }
+    
+    /**
+     * Method handling HTTP GET requests. The returned object will be sent
+     * to the client as "application/json" media type.
+     * Returns the food trucks with the given status inside the rectangle of the given bounds (included),
+     * e.g. the visible area of a map. If 'minLon' is greater than 'maxLon', the rectangle crosses the 180th meridian.
+     * The food trucks can also be searched with 'q' (see getFoodTrucksByQuery()).
+     *
+     * @return Food Trucks in JSON format
+     */
+    @GET
+    @Path("/bbox")
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE, APPLICATION_CBOR})
+    public void getFoodTrucksInBox(
+    		@Suspended AsyncResponse asyncResponse,
+    		@Context Request request,
+    		@QueryParam("status") final String statusStr,
+    		@QueryParam("minLat") final String minLatStr,
+    		@QueryParam("minLon") final String minLonStr,
+    		@QueryParam("maxLat") final String maxLatStr,
+    		@QueryParam("maxLon") final String maxLonStr,
+    		@QueryParam("q") final String textStr,
+    		@QueryParam("fields") final String fieldsStr)
+    {
+    	rejectOnCoordinator("The bbox query");
+    	final ResponseFormatEnum format = negotiateFormat(request);
+    	
+    	submit(asyncResponse, BBOX_REQUESTS, new Callable<Response>()
+    	{
+    		@Override
+    		public Response call()
+    		{
+    			FoodTruckProjection projection = parseFields(fieldsStr);
+    			double minLat = parseCoordinate("minLat", minLatStr, 90);
+    			double minLon = parseCoordinate("minLon", minLonStr, 180);
+    			double maxLat = parseCoordinate("maxLat", maxLatStr, 90);
+    			double maxLon = parseCoordinate("maxLon", maxLonStr, 180);
+    			if (minLat > maxLat)
+    			{
+    				throw new BadRequestException("minLat should not be greater than maxLat");
+    			}
+    			
+    			long filterStart = System.nanoTime();
+    			List<FoodTruck> foodTrucks = FoodTruckAccessor.getInstance().getFoodTrucksInBox(
+    					parseStatus(statusStr), isBlank(textStr) ? null : textStr, minLat, minLon, maxLat, maxLon);
+    			GEO_FILTER.recordSince(filterStart);
+    			
+    			return getSerializedResponse(foodTrucks, projection, format);
+    		}
+    	});
+    }
+    
+    /**
+     * Method handling HTTP GET requests. The returned object will be sent
+     * to the client as "application/json" media type.
+     * Returns the marker clusters of the food trucks with the given status inside the rectangle of the given bounds,
+     * for a map at the given zoom level: the centroid of the food trucks of every occupied grid cell,
+     * with their count and their counts per status (see FoodTruckCluster).
+     * The clusters are read from precomputed counts, the duration does not depend on the number of food trucks.
+     *
+     * @return Food Truck Clusters in JSON format
+     */
+    @GET
+    @Path("/clusters")
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE, APPLICATION_CBOR})
+    public void getFoodTruckClusters(
+    		@Suspended AsyncResponse asyncResponse,
+    		@Context Request request,
+    		@QueryParam("status") final String statusStr,
+    		@QueryParam("minLat") final String minLatStr,
+    		@QueryParam("minLon") final String minLonStr,
+    		@QueryParam("maxLat") final String maxLatStr,
+    		@QueryParam("maxLon") final String maxLonStr,
+    		@QueryParam("zoom") final String zoomStr)
+    {
+    	rejectOnCoordinator("The cluster query");
+    	final ResponseFormatEnum format = negotiateFormat(request);
+    	
+    	submit(asyncResponse, CLUSTER_REQUESTS, new Callable<Response>()
+    	{
+    		@Override
+    		public Response call()
+    		{
+    			double minLat = parseCoordinate("minLat", minLatStr, 90);
+    			double minLon = parseCoordinate("minLon", minLonStr, 180);
+    			double maxLat = parseCoordinate("maxLat", maxLatStr, 90);
+    			double maxLon = parseCoordinate("maxLon", maxLonStr, 180);
+    			if (minLat > maxLat)
+    			{
+    				throw new BadRequestException("minLat should not be greater than maxLat");
+    			}
+    			int zoom = parseZoom(zoomStr);
+    			
+    			List<FoodTruckCluster> clusters = FoodTruckAccessor.getInstance().getClusters(
+    					parseStatus(statusStr), zoom, minLat, minLon, maxLat, maxLon);
+    			return getFormatResponse(FoodTruckSerializer.getInstance(format).toClusterBytes(clusters), format);
+    		}
+    	});
+    }
+    
+    /**
+     * Method handling HTTP POST requests. The returned object will be sent
+     * to the client as "application/json" media type.
+     * The request is a GeoJSON Polygon or MultiPolygon, or a Feature of one of them (see GeoPolygon), e.g.
+     * {"type": "Polygon", "coordinates": [[[-122.42, 37.77], [-122.40, 37.77], [-122.40, 37.79], [-122.42, 37.77]]]}
+     * Returns the food trucks with the given status inside the polygon.
+     * The food trucks can also be searched with 'q' (see getFoodTrucksByQuery()).
+     *
+     * @return Food Trucks in JSON format
+     */
+    @POST
+    @Path("/polygon")
+    @Consumes({MediaType.APPLICATION_JSON, GEOJSON})
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE, APPLICATION_CBOR})
+    public void getFoodTrucksInPolygon(
+    		@Suspended AsyncResponse asyncResponse,
+    		@Context Request request,
+    		@QueryParam("status") final String statusStr,
+    		@QueryParam("q") final String textStr,
+    		@QueryParam("fields") final String fieldsStr,
+    		final byte[] body)
+    {
+    	rejectOnCoordinator("The polygon query");
+    	final ResponseFormatEnum format = negotiateFormat(request);
+    	
+    	submit(asyncResponse, POLYGON_REQUESTS, new Callable<Response>()
+    	{
+    		@Override
+    		public Response call()
+    		{
+    			FoodTruckProjection projection = parseFields(fieldsStr);
+    			GeoPolygon polygon = parsePolygon(body);
+    			
+    			long filterStart = System.nanoTime();
+    			List<FoodTruck> foodTrucks = FoodTruckAccessor.getInstance().getFoodTrucksInPolygon(
+    					parseStatus(statusStr), isBlank(textStr) ? null : textStr, polygon);
+    			GEO_FILTER.recordSince(filterStart);
+    			
+    			return getSerializedResponse(foodTrucks, projection, format);
+    		}
+    	});
+    }
+    
+    /**
+     * Method handling HTTP GET requests. The changes on the food trucks are streamed
+     * to the client as Server-Sent Events ("text/event-stream"), see FoodTruckChangeFeed:
+     * 'add', 'update' and 'remove' events with the food truck as JSON data,
+     * and 'resync' when the client should query the food trucks again.
+     * The changes can be limited to a status, and to a circle ('latitude', 'longitude', 'radius' and 'radius_unit',
+     * as in getFoodTrucksByQuery()) or to a rectangle ('minLat', 'minLon', 'maxLat' and 'maxLon', as in getFoodTrucksInBox()).
+     * If there are too many subscribers, the request is answered with 503 (Service Unavailable).
+     */
+    @GET
+    @Path("/changes")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void streamChanges(
+    		@Context SseEventSink eventSink,
+    		@Context Sse sse,
+    		@HeaderParam(HttpHeaders.LAST_EVENT_ID_HEADER) String lastEventId,
+    		@QueryParam("status") String statusStr,
+            @QueryParam("latitude") String latitudeStr,
+            @QueryParam("longitude") String longitudeStr,
+            @QueryParam("radius") String radiusStr,
+            @QueryParam("radius_unit") String radiusUnitStr,
+    		@QueryParam("minLat") String minLatStr,
+    		@QueryParam("minLon") String minLonStr,
+    		@QueryParam("maxLat") String maxLatStr,
+    		@QueryParam("maxLon") String maxLonStr)
+    {
+    	rejectOnCoordinator("The change feed");
+    	FoodTruckStatusEnum statusEnum = parseStatus(statusStr);
+    	FoodTruckChangeFeed.Filter filter;
+    	
+    	if (latitudeStr != null || longitudeStr != null || radiusStr != null || radiusUnitStr != null)
+    	{
+    		double latitude = parseCoordinate("latitude", latitudeStr, 90);
+    		double longitude = parseCoordinate("longitude", longitudeStr, 180);
+    		double radius = parseRadius(radiusStr);
+    		DistanceUnitEnum radiusUnit = DistanceUnitEnum.getFromStringValue(radiusUnitStr);
+    		if (radiusUnit == DistanceUnitEnum.NO_STATEMENT)
+    		{
+    			throw new BadRequestException("Invalid radius_unit: " + radiusUnitStr);
+    		}
+    		filter = FoodTruckChangeFeed.Filter.inCircle(statusEnum,
+    				GeodesicDistanceCalculator.getInstance().newRadiusFilter(latitude, longitude, radius, radiusUnit));
+    	}
+    	else if (minLatStr != null || minLonStr != null || maxLatStr != null || maxLonStr != null)
+    	{
+    		double minLat = parseCoordinate("minLat", minLatStr, 90);
+    		double minLon = parseCoordinate("minLon", minLonStr, 180);
+    		double maxLat = parseCoordinate("maxLat", maxLatStr, 90);
+    		double maxLon = parseCoordinate("maxLon", maxLonStr, 180);
+    		if (minLat > maxLat)
+    		{
+    			throw new BadRequestException("minLat should not be greater than maxLat");
+    		}
+    		filter = FoodTruckChangeFeed.Filter.inBox(statusEnum, minLat, minLon, maxLat, maxLon);
+    	}
+    	else
+    	{
+    		filter = FoodTruckChangeFeed.Filter.of(statusEnum);
+    	}
+    	
+    	if (!FoodTruckChangeFeed.getInstance().subscribe(eventSink, sse, filter, lastEventId))
+    	{
+    		throw new ServiceUnavailableException(RETRY_AFTER_SECONDS);
+    	}
+    }
+    
+    /**
+     * Method handling HTTP GET requests. The returned object will be streamed
+     * to the client as "application/x-ndjson" media type (one food truck per line).
+     * Same query conditions as getFoodTrucksByQuery(); all the matching food trucks are returned, unless 'limit' is given.
+     *
+     * @return Food Trucks in newline delimited JSON format
+     */
+    @GET
+    @Path("/query")
+    @Produces(APPLICATION_NDJSON + ";qs=0.5")
+    public void streamFoodTrucksByQuery(
+    		@Suspended AsyncResponse asyncResponse,
+    		@Context final UriInfo uriInfo,
+    		@QueryParam("status") final String statusStr,
+            @QueryParam("latitude") final String latitudeStr,
+            @QueryParam("longitude") final String longitudeStr,
+            @QueryParam("radius") final String radiusStr,
+            @QueryParam("radius_unit") final String radiusUnitStr,
+            @QueryParam("q") final String textStr,
+            @QueryParam("limit") final String limitStr,
+            @QueryParam("cursor") final String cursorStr,
+            @QueryParam("fields") final String fieldsStr)
+    {
+    	rejectOnCoordinator("Newline delimited JSON");
+    	final long start = System.nanoTime();
+    	
+    	// The duration is recorded when the output is written (on the executor)
+    	submit(asyncResponse, null, new Callable<Response>()
+    	{
+    		@Override
+    		public Response call()
+    		{
+    			rejectUntilReady();
+    			FoodTruckProjection projection = parseFields(fieldsStr);
+    			FoodTruckPage page = queryPage(statusStr, latitudeStr, longitudeStr, radiusStr, radiusUnitStr, textStr,
+    					parseCursor(cursorStr), parseLimit(limitStr, Integer.MAX_VALUE));
+    			
+    			return getPageResponse(uriInfo, page, getNdjsonOutput(page, projection, QUERY_NDJSON_REQUESTS, start), APPLICATION_NDJSON);
+    		}
+    	});
+    }
+    
+    /**
+     * Method handling HTTP GET requests. The returned object will be sent
+     * to the client as "application/json" media type.
+     * Returns the 'k' food trucks (10 if not specified, at most 1000) with the given status
+     * that are closest to the given position, closest first.
+     *
+     * @return Food Trucks in JSON format
+     */
+    @GET
+    @Path("/nearest")
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_SMILE, APPLICATION_CBOR})
+    public void getNearestFoodTrucks(
+    		@Suspended AsyncResponse asyncResponse,
+    		@Context Request request,
+    		@QueryParam("status") final String statusStr,
+            @QueryParam("latitude") final String latitudeStr,
+            @QueryParam("longitude") final String longitudeStr,
+            @QueryParam("k") final String kStr)
+    {
+    	rejectOnCoordinator("The nearest query");
+    	final ResponseFormatEnum format = negotiateFormat(request);
+    	
+    	submit(asyncResponse, NEAREST_REQUESTS, new Callable<Response>()
+    	{
+    		@Override
+    		public Response call()
+    		{
+    			return queryNearestFoodTrucks(statusStr, latitudeStr, longitudeStr, kStr, format);
+    		}
+    	});
+    }
+    
+    /**
+     * Processes the given query on the RequestExecutor and resumes the suspended request with its response
+     * (or its exception, e.g. BadRequestException). If the executor is overloaded, or the query does not finish
+     * within the request timeout, the request is answered with 503 (Service Unavailable).
+     *
+     * @param asyncResponse Suspended request
+     * @param requests Latency histogram of the endpoint, or null if the query records the duration itself
+     * @param query Query that returns the response
+     */
+    private static void submit(final AsyncResponse asyncResponse, final LatencyHistogram requests, final Callable<Response> query)
+    {
+    	final long start = System.nanoTime();
+    	RequestExecutor executor = RequestExecutor.getInstance();
+    	asyncResponse.setTimeout(executor.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+    	
+    	try
+    	{
+    		executor.execute(new Runnable()
+    		{
+    			@Override
+    			public void run()
+    			{
+    				try
+    				{
+    					asyncResponse.resume(query.call());
+    				}
+    				catch (Throwable e)
+    				{
+    					asyncResponse.resume(e);
+    				}
+    				finally
+    				{
+    					if (requests != null)
+    					{
+    						requests.recordSince(start);
+    					}
+    				}
+    			}
+    		});
+    	}
+    	catch (RejectedExecutionException e)
+    	{
+    		asyncResponse.resume(new ServiceUnavailableException(RETRY_AFTER_SECONDS));
+    	}
+    }
+    
+    /**
+     * Queries the 'k' food trucks with the given status that are closest to the given position.
+     *
+     * @return Food Trucks in JSON format
+     * @throws BadRequestException If the position is missing or invalid, or 'k' is not between 1 and MAX_NEAREST_COUNT
+     */
+    private Response queryNearestFoodTrucks(
+    		String statusStr,
+    		String latitudeStr,
+    		String longitudeStr,
+    		String kStr,
+    		ResponseFormatEnum format)
+    {
+    	FoodTruckStatusEnum statusEnum = parseStatus(statusStr);
+    	double latitude = parseCoordinate("latitude", latitudeStr, 90);
+    	double longitude = parseCoordinate("longitude", longitudeStr, 180);
+    	int k = parseNearestCount(kStr);
+    	
+    	long filterStart = System.nanoTime();
+    	List<FoodTruck> nearestFoodTrucks = FoodTruckAccessor.getInstance().getNearestFoodTrucks(statusEnum, latitude, longitude, k);
+    	GEO_FILTER.recordSince(filterStart);
+    	
+    	return getSerializedResponse(nearestFoodTrucks, null, format);
+    }
+    
+    /**
+     * Returns the pre-serialized list of the food trucks with the given status and its entity tag,
+     * gzip compressed if the client accepts it and the list is large enough.
+     * Returns 304 (Not Modified) if the entity tag matches the 'If-None-Match' header of the request.
+     * The compressed body has a 'Content-Encoding' header, so it is not compressed again by Tomcat.
+     *
+     * @param request Current request
+     * @param status Food Truck Status
+     * @param projection Properties to serialize, or null for all the properties
+     * @param format Format of the response
+     * @param gzip True if the client accepts gzip
+     * @return Response of the food trucks with the given status
+     */
+    private Response getCachedResponse(
+    		Request request,
+    		FoodTruckStatusEnum status,
+    		FoodTruckProjection projection,
+    		ResponseFormatEnum format,
+    		boolean gzip)
+    {
+    	CachedResponse cachedResponse = FoodTruckResponseCache.getInstance().get(status, projection, format);
+    	byte[] gzipBody = gzip ? cachedResponse.getGzipBody() : null;
+    	EntityTag entityTag = new EntityTag(
+    			(gzipBody != null) ? cachedResponse.getGzipEntityTag() : cachedResponse.getEntityTag());
+    	
+    	// Check the 'If-None-Match' header
+    	ResponseBuilder notModified = request.evaluatePreconditions(entityTag);
+    	if (notModified != null)
+    	{
+    		return notModified.header(HttpHeaders.VARY, CACHED_VARY).build();
+    	}
+    	
+    	ResponseBuilder response = Response.ok((gzipBody != null) ? gzipBody : cachedResponse.getBody(), format.getStrValue())
+    			.tag(entityTag)
+    			.header(HttpHeaders.VARY, CACHED_VARY);
+    	if (gzipBody != null)
+    	{
+    		response.header(HttpHeaders.CONTENT_ENCODING, GZIP);
+    	}
+    	return response.build();
+    }
+    
+    /**
+     * Returns the serialized list of the given food trucks with the given properties only.
+     *
+     * @param foodTrucks Food trucks
+     * @param projection Properties to serialize, or null for all the properties
+     * @param format Format of the response
+     * @return Response of the given food trucks
+     */
+    private Response getSerializedResponse(List<FoodTruck> foodTrucks, FoodTruckProjection projection, ResponseFormatEnum format)
+    {
+    	FoodTruckSerializer serializer = FoodTruckSerializer.getInstance(format);
+    	return getFormatResponse(
+    			(projection == null) ? serializer.toBytes(foodTrucks) : serializer.toBytes(foodTrucks, projection), format);
+    }
+    
+    /**
+     * Returns the response of the given serialized entity.
+     * The response depends on the 'Accept' header of the request (see negotiateFormat()).
+     *
+     * @param entity Serialized entity
+     * @param format Format of the serialized entity
+     * @return Response of the given entity
+     */
+    private Response getFormatResponse(byte[] entity, ResponseFormatEnum format)
+    {
+    	return Response.ok(entity, format.getStrValue()).header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
+    }
+    
+    /**
+     * Queries a page of the food trucks on 'status', on the circle if all of its parameters are given
+     * and on the text if it is given.
+     * Falls back to the query without the circle if the circle is invalid.
+     *
+     * @return The page of the matching food trucks
+     */
+    private FoodTruckPage queryPage(
+    		String statusStr,
+    		String latitudeStr,
+    		String longitudeStr,
+    		String radiusStr,
+    		String radiusUnitStr,
+    		String textStr,
+    		long afterObjectid,
+    		int limit)
+    {
+    	FoodTruckAccessor accessor = FoodTruckAccessor.getInstance();
+    	FoodTruckStatusEnum statusEnum = 
+    			(statusStr != null) ? FoodTruckStatusEnum.getFromStringValue(statusStr) : FoodTruckStatusEnum.ALL;
+    	
+    	// If the circle is specified
     	if (latitudeStr != null && longitudeStr != null && radiusStr != null && radiusUnitStr != null)
     	{
     		try 
@@ -90,8 +911,12 @@ public class FoodTrucksResource
         		double radius = Double.parseDouble(radiusStr);
         		DistanceUnitEnum radiusUnit = DistanceUnitEnum.getFromStringValue(radiusUnitStr); 
         		
-        		// Update the query results 
-        		queryResult = FoodTruckAccessor.getInstance().getFoodTrucks(queryResult, latitude, longitude, radius, radiusUnit);
+        		long filterStart = System.nanoTime();
+        		FoodTruckPage page = isBlank(textStr)
+        				? accessor.getFoodTruckPage(statusEnum, latitude, longitude, radius, radiusUnit, afterObjectid, limit)
+        				: accessor.searchFoodTruckPage(textStr, statusEnum, latitude, longitude, radius, radiusUnit, afterObjectid, limit);
+        		GEO_FILTER.recordSince(filterStart);
+        		return page;
 			} 
     		catch (Exception e) 
     		{
@@ -99,7 +924,422 @@ public class FoodTrucksResource
 			}
     	}
     	
-    	// Return the query result
-    	return queryResult;
+    	// Query without the circle
+    	if (!isBlank(textStr))
+    	{
+    		long searchStart = System.nanoTime();
+    		FoodTruckPage page = accessor.searchFoodTruckPage(textStr, statusEnum, afterObjectid, limit);
+    		TEXT_SEARCH.recordSince(searchStart);
+    		return page;
+    	}
+    	return accessor.getFoodTruckPage(statusEnum, afterObjectid, limit);
+    }
+    
+    /**
+     * Returns the response of the given page with the given entity.
+     * If there are more food trucks, the cursor of the next page is given 
+     * in the 'X-Next-Cursor' header and in the 'next' link.
+     * The response depends on the 'Accept' header of the request (see negotiateFormat()).
+     *
+     * @param uriInfo Information of the request URI
+     * @param page Page of food trucks
+     * @param entity Serialized page
+     * @param mediaType Media type of the serialized page
+     * @return Response of the page
+     */
+    private Response getPageResponse(UriInfo uriInfo, FoodTruckPage page, Object entity, String mediaType)
+    {
+    	ResponseBuilder response = Response.ok(entity, mediaType).header(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+    	
+    	if (page.hasMore())
+    	{
+    		String nextCursor = FoodTruckCursor.encode(page.getLastObjectid());
+    		response.header(NEXT_CURSOR_HEADER, nextCursor)
+    				.link(uriInfo.getRequestUriBuilder().replaceQueryParam("cursor", nextCursor).build(), "next");
+    	}
+    	return response.build();
+    }
+    
+    /**
+     * Returns the output that writes the given page as newline delimited JSON.
+     * The duration of the request is recorded when the page is written.
+     *
+     * @param page Page of food trucks
+     * @param projection Properties to write, or null for all the properties
+     * @param requests Latency histogram of the endpoint
+     * @param start Start time of the request
+     * @return The output of the page
+     */
+    private StreamingOutput getNdjsonOutput(
+    		final FoodTruckPage page, 
+    		final FoodTruckProjection projection, 
+    		final LatencyHistogram requests, 
+    		final long start)
+    {
+    	return new StreamingOutput()
+    	{
+    		@Override
+    		public void write(OutputStream outputStream) throws IOException
+    		{
+    			try
+    			{
+    				FoodTruckSerializer.getInstance().writeNdjson(page, projection, outputStream);
+    			}
+    			finally
+    			{
+    				requests.recordSince(start);
+    			}
+    		}
+    	};
+    }
+    
+    /**
+     * Parses the page size.
+     *
+     * @param limitStr Page size, or null
+     * @param defaultLimit Page size to use if not given
+     * @return The page size
+     * @throws BadRequestException If the page size is not a positive number
+     */
+    private static int parseLimit(String limitStr, int defaultLimit)
+    {
+    	if (limitStr == null)
+    	{
+    		return defaultLimit;
+    	}
+    	
+    	try
+    	{
+    		int limit = Integer.parseInt(limitStr.trim());
+    		if (limit > 0)
+    		{
+    			return limit;
+    		}
+    	}
+    	catch (NumberFormatException e)
+    	{
+    		// Reported below
+    	}
+    	throw new BadRequestException("Invalid limit: " + limitStr);
+    }
+    
+    /**
+     * Parses the number of the nearest food trucks.
+     *
+     * @param kStr Number of the food trucks, or null
+     * @return The number of the food trucks, DEFAULT_NEAREST_COUNT if not given
+     * @throws BadRequestException If the number is not between 1 and MAX_NEAREST_COUNT
+     */
+    private static int parseNearestCount(String kStr)
+    {
+    	if (kStr == null)
+    	{
+    		return DEFAULT_NEAREST_COUNT;
+    	}
+    	
+    	try
+    	{
+    		int k = Integer.parseInt(kStr.trim());
+    		if (k > 0 && k <= MAX_NEAREST_COUNT)
+    		{
+    			return k;
+    		}
+    	}
+    	catch (NumberFormatException e)
+    	{
+    		// Reported below
+    	}
+    	throw new BadRequestException("Invalid k: " + kStr + " (should be 1 to " + MAX_NEAREST_COUNT + ")");
+    }
+    
+    /**
+     * Parses the cursor of a page.
+     *
+     * @param cursorStr Cursor, or null for the first page
+     * @return The object id of the last food truck of the previous page (FoodTruckPage.FIRST_PAGE for the first page)
+     * @throws BadRequestException If the cursor is invalid
+     */
+    private static long parseCursor(String cursorStr)
+    {
+    	try
+    	{
+    		return FoodTruckCursor.decode(cursorStr);
+    	}
+    	catch (IllegalArgumentException e)
+    	{
+    		throw new BadRequestException("Invalid cursor: " + cursorStr, e);
+    	}
+    }
+    
+    /**
+     * Parses the properties to serialize.
+     *
+     * @param fieldsStr Comma separated property names, or null for all the properties
+     * @return The projection, or null for all the properties
+     * @throws BadRequestException If a property name is unknown
+     */
+    private static FoodTruckProjection parseFields(String fieldsStr)
+    {
+    	try
+    	{
+    		return FoodTruckProjection.parse(fieldsStr);
+    	}
+    	catch (IllegalArgumentException e)
+    	{
+    		throw new BadRequestException(e.getMessage(), e);
+    	}
+    }
+    
+    /**
+     * Parses and validates the circle queries of a batch request.
+     * Queries without an id get their index in the array as id.
+     *
+     * @param body JSON array of queries
+     * @return The queries
+     * @throws BadRequestException If the body is not a JSON array of valid queries with distinct ids
+     * (latitude in [-90, 90], longitude in [-180, 180], a finite positive radius and a radius unit),
+     * or it has more than MAX_BATCH_QUERIES queries
+     */
+    private static List<FoodTruckQuery> parseQueries(byte[] body)
+    {
+    	List<FoodTruckQuery> queries;
+    	try
+    	{
+    		queries = QUERY_LIST_READER.readValue(body);
+    	}
+    	catch (IOException e)
+    	{
+    		throw new BadRequestException("Invalid batch query: " + e.getMessage(), e);
+    	}
+    	
+    	if (queries == null || queries.isEmpty() || queries.size() > MAX_BATCH_QUERIES)
+    	{
+    		throw new BadRequestException("A batch query should have 1 to " + MAX_BATCH_QUERIES + " queries");
+    	}
+    	
+    	Set<String> ids = new HashSet<String>();
+    	for (int i = 0; i < queries.size(); i++)
+    	{
+    		FoodTruckQuery query = queries.get(i);
+    		if (query == null)
+    		{
+    			throw new BadRequestException("Query " + i + " is null");
+    		}
+    		if (query.getId() == null)
+    		{
+    			query.setId(Integer.toString(i));
+    		}
+    		if (!ids.add(query.getId()))
+    		{
+    			throw new BadRequestException("Duplicate query id: " + query.getId());
+    		}
+    		
+    		// The circle should be complete and valid, like the one of 'foodtrucks/query'
+    		if (Double.isNaN(query.getLatitude()) || Double.isNaN(query.getLongitude()) 
+    				|| Double.isNaN(query.getRadius()) || query.getRadiusUnitEnum() == DistanceUnitEnum.NO_STATEMENT)
+    		{
+    			throw new BadRequestException("Query " + query.getId() + " should have latitude, longitude, radius and radius_unit");
+    		}
+    		if (!(query.getLatitude() >= -90 && query.getLatitude() <= 90))
+    		{
+    			throw new BadRequestException("Query " + query.getId() + " has an invalid latitude: " + query.getLatitude());
+    		}
+    		if (!(query.getLongitude() >= -180 && query.getLongitude() <= 180))
+    		{
+    			throw new BadRequestException("Query " + query.getId() + " has an invalid longitude: " + query.getLongitude());
+    		}
+    		if (!(query.getRadius() > 0) || Double.isInfinite(query.getRadius()))
+    		{
+    			throw new BadRequestException("Query " + query.getId() + " has an invalid radius: " + query.getRadius());
+    		}
+    	}
+    	return queries;
+    }
+    
+    /**
+     * Returns the format of the response, the most acceptable one for the 'Accept' header of the request:
+     * JSON, Smile or CBOR (JSON if the client accepts any of them, e.g. with a wildcard).
+     *
+     * @param request Current request
+     * @return The format of the response
+     */
+    private static ResponseFormatEnum negotiateFormat(Request request)
+    {
+    	Variant variant = request.selectVariant(FORMAT_VARIANTS);
+    	return (variant != null) ? ResponseFormatEnum.getFromStringValue(variant.getMediaType().toString()) : ResponseFormatEnum.JSON;
+    }
+    
+    /**
+     * Parses the status, ALL if it is not given.
+     *
+     * @param statusStr Status, or null
+     * @return The status
+     */
+    private static FoodTruckStatusEnum parseStatus(String statusStr)
+    {
+    	return (statusStr != null) ? FoodTruckStatusEnum.getFromStringValue(statusStr) : FoodTruckStatusEnum.ALL;
+    }
+    
+    /**
+     * Parses the radius of a circle.
+     *
+     * @param radiusStr Radius
+     * @return The radius
+     * @throws BadRequestException If the radius is missing, not a number or not positive
+     */
+    private static double parseRadius(String radiusStr)
+    {
+    	if (radiusStr == null)
+    	{
+    		throw new BadRequestException("radius is required");
+    	}
+    	
+    	try
+    	{
+    		double radius = Double.parseDouble(radiusStr.trim());
+    		if (radius > 0 && !Double.isInfinite(radius))
+    		{
+    			return radius;
+    		}
+    	}
+    	catch (NumberFormatException e)
+    	{
+    		// Reported below
+    	}
+    	throw new BadRequestException("Invalid radius: " + radiusStr);
+    }
+    
+    /**
+     * Parses a latitude or a longitude (of a rectangle or of the center of a circle).
+     *
+     * @param name Name of the query parameter
+     * @param coordinateStr Coordinate (in decimal degrees)
+     * @param limit Maximum absolute value of the coordinate (90 or 180)
+     * @return The coordinate
+     * @throws BadRequestException If the coordinate is missing, not a number or out of range
+     */
+    private static double parseCoordinate(String name, String coordinateStr, double limit)
+    {
+    	if (coordinateStr == null)
+    	{
+    		throw new BadRequestException(name + " is required");
+    	}
+    	
+    	try
+    	{
+    		double coordinate = Double.parseDouble(coordinateStr.trim());
+    		if (coordinate >= -limit && coordinate <= limit)
+    		{
+    			return coordinate;
+    		}
+    	}
+    	catch (NumberFormatException e)
+    	{
+    		// Reported below
+    	}
+    	throw new BadRequestException("Invalid " + name + ": " + coordinateStr);
+    }
+    
+    /**
+     * Parses the zoom level of a map.
+     *
+     * @param zoomStr Zoom level
+     * @return The zoom level
+     * @throws BadRequestException If the zoom level is missing or not a number between 0 and MAX_ZOOM
+     */
+    private static int parseZoom(String zoomStr)
+    {
+    	if (zoomStr == null)
+    	{
+    		throw new BadRequestException("zoom is required");
+    	}
+    	
+    	try
+    	{
+    		int zoom = Integer.parseInt(zoomStr.trim());
+    		if (zoom >= 0 && zoom <= MAX_ZOOM)
+    		{
+    			return zoom;
+    		}
+    	}
+    	catch (NumberFormatException e)
+    	{
+    		// Reported below
+    	}
+    	throw new BadRequestException("Invalid zoom: " + zoomStr);
+    }
+    
+    /**
+     * Parses the GeoJSON polygon of a polygon query.
+     *
+     * @param body GeoJSON object
+     * @return The polygon
+     * @throws BadRequestException If the body is not a valid GeoJSON (multi) polygon
+     */
+    private static GeoPolygon parsePolygon(byte[] body)
+    {
+    	try
+    	{
+    		return GeoPolygon.fromGeoJson(JSON_MAPPER.readTree(body));
+    	}
+    	catch (IOException e)
+    	{
+    		throw new BadRequestException("Invalid polygon query: " + e.getMessage(), e);
+    	}
+    	catch (IllegalArgumentException e)
+    	{
+    		throw new BadRequestException("Invalid polygon query: " + e.getMessage(), e);
+    	}
+    }
+    
+    /**
+     * Returns true if the given 'Accept-Encoding' header accepts gzip ("gzip" or "x-gzip" without "q=0").
+     *
+     * @param acceptEncodingStr 'Accept-Encoding' header, or null
+     * @return True if the client accepts gzip
+     */
+    private static boolean acceptsGzip(String acceptEncodingStr)
+    {
+    	if (acceptEncodingStr == null)
+    	{
+    		return false;
+    	}
+    	
+    	for (String coding : acceptEncodingStr.split(","))
+    	{
+    		String[] parts = coding.split(";");
+    		String name = parts[0].trim();
+    		if (!name.equalsIgnoreCase(GZIP) && !name.equalsIgnoreCase("x-" + GZIP))
+    		{
+    			continue;
+    		}
+    		
+    		// The coding is refused with a zero quality, e.g. "gzip;q=0"
+    		for (int i = 1; i < parts.length; i++)
+    		{
+    			String parameter = parts[i].trim();
+    			if (parameter.startsWith("q=") || parameter.startsWith("Q="))
+    			{
+    				try
+    				{
+    					return Double.parseDouble(parameter.substring(2).trim()) > 0;
+    				}
+    				catch (NumberFormatException e)
+    				{
+    					return false;
+    				}
+    			}
+    		}
+    		return true;
+    	}
+    	return false;
+    }
+    
+    /**
+     * Returns true if the given string is null or has only white spaces.
+     */
+    private static boolean isBlank(String str)
+    {
+    	return str == null || str.trim().isEmpty();
     }
 }
@@ -0,0 +1,79 @@
+package com.uber.coding_challange.food_trucks;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import com.uber.coding_challange.food_trucks.ctrl.FoodTruckClient;
+import com.uber.coding_challange.food_trucks.ctrl.FoodTruckShards;
+import com.uber.coding_challange.food_trucks.dataaccess.FoodTruckAccessor;
+
+/**
+ * Health resource (exposed at "health" path)
+ */
+@Path("health")
+/**
+ * This class exposes the liveness and the readiness of the web service, e.g. for a load balancer.
+ * 1) getLiveness(): 200 (OK) as long as the web service answers.
+ * 2) getReadiness(): 200 (OK) once the food truck data is loaded (from the snapshot file or the DataSF API),
+ *    503 (Service Unavailable) before. A coordinator of the shards (see FoodTruckShards) is ready once all its shards are,
+ *    it checks their readiness on every call.
+ *
+ * @author alper.karacelik
+ *
+ */
+public class HealthResource
+{
+    /**
+     * Method handling HTTP GET requests. The returned object will be sent
+     * to the client as "application/json" media type.
+     *
+     * @return The liveness of the web service
+     */
+    @GET
+    @Path("/live")
+    @Produces(MediaType.APPLICATION_JSON)
+    public String getLiveness()
+    {
+    	return "{\"status\":\"UP\"}";
+    }
+
+    /**
+     * Method handling HTTP GET requests. The returned object will be sent
+     * to the client as "application/json" media type.
+     *
+     * @return The readiness of the web service, with the number of stored food trucks
+     */
+    @GET
+    @Path("/ready")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getReadiness()
+    {
+    	FoodTruckAccessor accessor = FoodTruckAccessor.getInstance();
+    	FoodTruckShards shards = FoodTruckShards.getInstance();
+
+    	if (shards.isCoordinator())
+    	{
+    		int readyShardCount = shards.getReadyShards().size();
+    		String entity = "{\"status\":\"" + ((readyShardCount == shards.getShardCount()) ? "UP" : "UNAVAILABLE")
+    				+ "\",\"shards\":" + shards.getShardCount() + ",\"readyShards\":" + readyShardCount + "}";
+    		return Response.status((readyShardCount == shards.getShardCount()) ? Response.Status.OK : Response.Status.SERVICE_UNAVAILABLE)
+    				.entity(entity)
+    				.type(MediaType.APPLICATION_JSON_TYPE)
+    				.build();
+    	}
+
+    	if (!FoodTruckClient.getInstance().isReady())
+    	{
+    		return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+    				.entity("{\"status\":\"STARTING\"}")
+    				.type(MediaType.APPLICATION_JSON_TYPE)
+    				.build();
+    	}
+
+    	return Response.ok("{\"status\":\"UP\",\"foodTrucks\":" + accessor.getAllFoodTrucks().size()
+    			+ ",\"version\":" + accessor.getVersion() + "}", MediaType.APPLICATION_JSON_TYPE).build();
+    }
+}
@@ -16,6 +16,13 @@ import org.apache.tomcat.JarScanFilter;
 import org.apache.tomcat.JarScanType;
 import org.apache.tomcat.util.scan.StandardJarScanner;
 
+/**
+ * Starts the web service on an embedded Tomcat: Main [port].
+ * A geo-sharded cluster (see FoodTruckShards) is one JVM per node; e.g. two shards and their coordinator on one host:
+ *   FOODTRUCKS_SHARD_COUNT=2 FOODTRUCKS_SHARD_INDEX=0 target/bin/webapp 8081
+ *   FOODTRUCKS_SHARD_COUNT=2 FOODTRUCKS_SHARD_INDEX=1 target/bin/webapp 8082
+ *   FOODTRUCKS_SHARD_NODES=http://localhost:8081/webapi,http://localhost:8082/webapi target/bin/webapp 8080
+ */
 public class Main {
 
     private static File getRootFolder() {
@@ -43,9 +50,10 @@ public class Main {
         Path tempPath = Files.createTempDirectory("tomcat-base-dir");
         tomcat.setBaseDir(tempPath.toString());
 
-        //The port that we should run on can be set into an environment variable
-        //Look for that variable and default to 8080 if it isn't there.
-        String webPort = System.getenv("PORT");
+        //The port that we should run on can be given as the first argument or set into an environment variable
+        //(several nodes can run on one host, see FoodTruckShards)
+        //Look for them and default to 8080 if they aren't there.
+        String webPort = (args.length > 0) ? args[0] : System.getenv("PORT");
         if (webPort == null || webPort.isEmpty()) {
             webPort = "8080";
         }
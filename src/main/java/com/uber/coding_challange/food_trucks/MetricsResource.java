@@ -0,0 +1,35 @@
+package com.uber.coding_challange.food_trucks;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+
+import com.uber.coding_challange.food_trucks.ctrl.MetricsRegistry;
+
+/**
+ * Metrics resource (exposed at "metrics" path)
+ */
+@Path("metrics")
+/**
+ * This class exposes the metrics of the web service (see MetricsRegistry) in the Prometheus text format:
+ * latency summaries of the endpoints and of the internal stages (status lookup, geo filter, serialization,
+ * ingest, store lock wait) and the counters of the ingested records.
+ * 
+ * @author alper.karacelik
+ *
+ */
+public class MetricsResource 
+{
+    /**
+     * Method handling HTTP GET requests. The returned object will be sent
+     * to the client as "text/plain" media type.
+     *
+     * @return Metrics in the Prometheus text format
+     */
+    @GET
+    @Produces("text/plain; version=0.0.4; charset=utf-8")
+    public String getMetrics() 
+    {
+    	return MetricsRegistry.getInstance().toPrometheusText();
+    }
+}
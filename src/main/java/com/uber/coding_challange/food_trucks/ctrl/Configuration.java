@@ -0,0 +1,78 @@
+package com.uber.coding_challange.food_trucks.ctrl;
+
+/**
+ * Reads the configuration values of the web service.
+ * A value is looked up as a system property first (e.g. 'foodtrucks.refresh.interval'),
+ * then as an environment variable (e.g. 'FOODTRUCKS_REFRESH_INTERVAL');
+ * the default value is used if neither is set or the value can not be parsed.
+ *
+ * @author alper.karacelik
+ *
+ */
+public final class Configuration
+{
+	private Configuration() {}
+
+	/**
+	 * Returns the value of the given configuration key.
+	 *
+	 * @param key Configuration key (dot separated, lower case)
+	 * @param defaultValue Value to return if the key is not set
+	 * @return The value of the given configuration key
+	 */
+	public static String getString(String key, String defaultValue)
+	{
+		String value = System.getProperty(key);
+
+		if (value == null || value.isEmpty())
+		{
+			value = System.getenv(key.toUpperCase().replace('.', '_'));
+		}
+
+		return (value == null || value.isEmpty()) ? defaultValue : value.trim();
+	}
+
+	/**
+	 * Returns the value of the given configuration key as a long.
+	 *
+	 * @param key Configuration key (dot separated, lower case)
+	 * @param defaultValue Value to return if the key is not set or not a number
+	 * @return The value of the given configuration key
+	 */
+	public static long getLong(String key, long defaultValue)
+	{
+		String value = getString(key, null);
+
+		try
+		{
+			return (value == null) ? defaultValue : Long.parseLong(value);
+		}
+		catch (NumberFormatException e)
+		{
+			System.err.println("Invalid value for " + key + ": " + value);
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Returns the value of the given configuration key as a double.
+	 *
+	 * @param key Configuration key (dot separated, lower case)
+	 * @param defaultValue Value to return if the key is not set or not a number
+	 * @return The value of the given configuration key
+	 */
+	public static double getDouble(String key, double defaultValue)
+	{
+		String value = getString(key, null);
+
+		try
+		{
+			return (value == null) ? defaultValue : Double.parseDouble(value);
+		}
+		catch (NumberFormatException e)
+		{
+			System.err.println("Invalid value for " + key + ": " + value);
+			return defaultValue;
+		}
+	}
+}
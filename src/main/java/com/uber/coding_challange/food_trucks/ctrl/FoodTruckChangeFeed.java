@@ -0,0 +1,592 @@
+package com.uber.coding_challange.food_trucks.ctrl;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.sse.OutboundSseEvent;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
+
+import com.uber.coding_challange.food_trucks.dataaccess.FoodTruckAccessor;
+import com.uber.coding_challange.food_trucks.model.FoodTruck;
+import com.uber.coding_challange.food_trucks.model.enums.FoodTruckStatusEnum;
+
+/**
+ * Feed of the changes on the storage, streamed to the subscribers as Server-Sent Events (see GET foodtrucks/changes).
+ * Singleton pattern is used.
+ * Every write on the storage publishes its changes (see FoodTruckAccessor), each subscriber receives the ones
+ * that match its filter (a status and optionally a region), as events named after the change of its view:
+ * 'add' (the food truck enters the view), 'update' (it changes inside the view) or 'remove' (it leaves the view),
+ * with the food truck as JSON data ('remove' has the previous version) and the version of the storage as the event id.
+ *
+ * Publishing never blocks the writer: the events are offered to a bounded buffer per subscriber
+ * ('foodtrucks.changes.buffer' events, default 256) and sent by 'foodtrucks.changes.threads' sender threads (default 4).
+ * If the buffer of a subscriber is full (a slow client), its buffered events are dropped
+ * and it receives a 'resync' event instead ({"version": ...}): the client should query the food trucks again.
+ * A subscriber also receives 'resync' first, unless it reconnects with the 'Last-Event-ID' of the current version.
+ * Subscribers receive a comment every HEARTBEAT_SECONDS, so the closed connections are detected.
+ * Sends are asynchronous: a sender thread does not wait for a send that is not complete, the subscription continues
+ * when it completes. A subscriber whose send does not complete in 'foodtrucks.changes.timeout' seconds (default 60)
+ * is closed (checked with the heartbeats).
+ * At most 'foodtrucks.changes.subscribers' subscribers (default 1000) are accepted.
+ * Events are counted as 'foodtrucks_change_events_total' by result (sent, dropped), resyncs as 'foodtrucks_change_resyncs_total'.
+ *
+ * @author alper.karacelik
+ *
+ */
+public class FoodTruckChangeFeed
+{
+	// Constants ---------------------------------------------------------
+	private static final String BUFFER_KEY = "foodtrucks.changes.buffer";
+	private static final String THREADS_KEY = "foodtrucks.changes.threads";
+	private static final String SUBSCRIBERS_KEY = "foodtrucks.changes.subscribers";
+	private static final String TIMEOUT_KEY = "foodtrucks.changes.timeout";
+	private static final long HEARTBEAT_SECONDS = 20;
+	private static final String ADD = "add";
+	private static final String UPDATE = "update";
+	private static final String REMOVE = "remove";
+	private static final String RESYNC = "resync";
+	private static final String EVENTS = "foodtrucks_change_events_total";
+	private static final String EVENTS_HELP = "Number of the change events by result";
+	private static final LongAdder SENT_EVENTS = MetricsRegistry.getInstance().counter(EVENTS, EVENTS_HELP, "result", "sent");
+	private static final LongAdder DROPPED_EVENTS = MetricsRegistry.getInstance().counter(EVENTS, EVENTS_HELP, "result", "dropped");
+	private static final LongAdder RESYNCS = MetricsRegistry.getInstance().counter(
+			"foodtrucks_change_resyncs_total", "Number of the resync events sent instead of the dropped change events");
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	private final int bufferSize;
+	private final int maxSubscribers;
+	private final long sendTimeoutNanos;
+	private final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<Subscription>();
+	private final ThreadPoolExecutor senders;
+	private final ScheduledExecutorService heartbeat;
+	// -------------------------------------------------------------------
+
+	// SINGLETON Implementation ------------------------------------------
+	private static FoodTruckChangeFeed INSTANCE = new FoodTruckChangeFeed();
+	public static FoodTruckChangeFeed getInstance() {return INSTANCE;}
+
+	private FoodTruckChangeFeed()
+	{
+		bufferSize = (int) Math.max(1, Configuration.getLong(BUFFER_KEY, 256));
+		maxSubscribers = (int) Math.max(0, Configuration.getLong(SUBSCRIBERS_KEY, 1000));
+		sendTimeoutNanos = TimeUnit.SECONDS.toNanos(Math.max(1, Configuration.getLong(TIMEOUT_KEY, 60)));
+		int threadCount = (int) Math.max(1, Configuration.getLong(THREADS_KEY, 4));
+
+		// A subscription is queued at most once (see Subscription.schedule()), the queue is bounded by the subscribers
+		senders = new ThreadPoolExecutor(threadCount, threadCount, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), newThreadFactory("food-truck-changes-"));
+		senders.allowCoreThreadTimeOut(true);
+
+		heartbeat = Executors.newSingleThreadScheduledExecutor(newThreadFactory("food-truck-changes-heartbeat-"));
+		heartbeat.scheduleAtFixedRate(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				long now = System.nanoTime();
+				for (Subscription subscription : subscriptions)
+				{
+					// A client that does not read anymore
+					long sendStart = subscription.sendStart;
+					if (sendStart != 0 && now - sendStart > sendTimeoutNanos)
+					{
+						subscription.close();
+						continue;
+					}
+					subscription.heartbeat = true;
+					subscription.schedule();
+				}
+			}
+		}, HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+	}
+	// -------------------------------------------------------------------
+
+	private static ThreadFactory newThreadFactory(final String namePrefix)
+	{
+		final AtomicInteger threadNumber = new AtomicInteger();
+		return new ThreadFactory()
+		{
+			@Override
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, namePrefix + threadNumber.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+	}
+
+	/**
+	 * Subscribes the given event sink to the changes that match the given filter.
+	 *
+	 * @param eventSink Event sink of the client
+	 * @param sse Builder of the events
+	 * @param filter Changes to send
+	 * @param lastEventId The 'Last-Event-ID' of a reconnecting client, or null
+	 * @return False if there are too many subscribers (the sink is not used)
+	 */
+	public boolean subscribe(SseEventSink eventSink, Sse sse, Filter filter, String lastEventId)
+	{
+		if (subscriptions.size() >= maxSubscribers)
+		{
+			return false;
+		}
+
+		Subscription subscription = new Subscription(eventSink, sse, filter);
+		subscriptions.add(subscription);
+
+		// The events of the writes before the subscription are not known, unless the client has seen all of them
+		if (!String.valueOf(FoodTruckAccessor.getInstance().getVersion()).equals(lastEventId))
+		{
+			subscription.resync = true;
+			subscription.schedule();
+		}
+		return true;
+	}
+
+	/**
+	 * @return The number of the subscribers
+	 */
+	public int getSubscriberCount()
+	{
+		return subscriptions.size();
+	}
+
+	/**
+	 * Publishes the changes of a write on the storage to the subscribers. Does not block.
+	 * Called by the writer, in the order of the versions.
+	 *
+	 * @param version Version of the storage after the write
+	 * @param previousMap Object id -> food truck map before the write
+	 * @param currentMap Object id -> food truck map after the write
+	 * @param removed Removed food trucks, and the previous versions of the updated ones
+	 * @param added Added food trucks, and the new versions of the updated ones
+	 */
+	public void publish(
+			long version,
+			Map<Long, FoodTruck> previousMap,
+			Map<Long, FoodTruck> currentMap,
+			Collection<FoodTruck> removed,
+			Collection<FoodTruck> added)
+	{
+		if (subscriptions.isEmpty())
+		{
+			return;
+		}
+
+		// The changed object ids, in the order of the write
+		Set<Long> ids = new LinkedHashSet<Long>();
+		for (FoodTruck foodTruck : added)
+		{
+			ids.add(foodTruck.getObjectid());
+		}
+		for (FoodTruck foodTruck : removed)
+		{
+			ids.add(foodTruck.getObjectid());
+		}
+
+		Change[] changes = new Change[ids.size()];
+		int changeCount = 0;
+		for (Long id : ids)
+		{
+			FoodTruck previous = previousMap.get(id);
+			FoodTruck current = currentMap.get(id);
+			if (previous != current)
+			{
+				changes[changeCount++] = new Change(version, previous, current);
+			}
+		}
+
+		for (Subscription subscription : subscriptions)
+		{
+			subscription.offer(changes, changeCount);
+		}
+	}
+
+	/**
+	 * Closes all the subscriptions and stops the threads.
+	 */
+	public void shutdown()
+	{
+		heartbeat.shutdownNow();
+		senders.shutdownNow();
+		for (Subscription subscription : subscriptions)
+		{
+			subscription.close();
+		}
+	}
+
+	/**
+	 * Changes a subscriber is interested in: the food trucks with a status (ALL for any status),
+	 * optionally inside a circle or a latitude/longitude rectangle.
+	 * Immutable.
+	 */
+	public static class Filter
+	{
+		private final FoodTruckStatusEnum status;
+		private final GeodesicRadiusFilter circle;
+		// Rectangle: {minLat, minLon, maxLat, maxLon}, minLon > maxLon if it crosses the 180th meridian
+		private final double[] box;
+
+		private Filter(FoodTruckStatusEnum status, GeodesicRadiusFilter circle, double[] box)
+		{
+			this.status = status;
+			this.circle = circle;
+			this.box = box;
+		}
+
+		/**
+		 * @param status Food Truck Status (ALL for any status)
+		 * @return Filter of the food trucks with the given status
+		 */
+		public static Filter of(FoodTruckStatusEnum status)
+		{
+			return new Filter(status, null, null);
+		}
+
+		/**
+		 * @param status Food Truck Status (ALL for any status)
+		 * @param circle Circle the food trucks should reside in
+		 * @return Filter of the food trucks with the given status inside the given circle
+		 */
+		public static Filter inCircle(FoodTruckStatusEnum status, GeodesicRadiusFilter circle)
+		{
+			return new Filter(status, circle, null);
+		}
+
+		/**
+		 * @param status Food Truck Status (ALL for any status)
+		 * @return Filter of the food trucks with the given status inside the rectangle of the given bounds (included)
+		 */
+		public static Filter inBox(FoodTruckStatusEnum status, double minLat, double minLon, double maxLat, double maxLon)
+		{
+			return new Filter(status, null, new double[] {minLat, minLon, maxLat, maxLon});
+		}
+
+		/**
+		 * Returns true if the given food truck passes the filter.
+		 *
+		 * @param foodTruck Food truck, or null
+		 * @return True if the food truck is not null and passes the filter
+		 */
+		boolean matches(FoodTruck foodTruck)
+		{
+			if (foodTruck == null)
+			{
+				return false;
+			}
+			if (status != FoodTruckStatusEnum.ALL && foodTruck.getStatusEnum() != status)
+			{
+				return false;
+			}
+			if (circle != null)
+			{
+				return circle.contains(foodTruck.getLatitude(), foodTruck.getLongitude());
+			}
+			if (box != null)
+			{
+				double latitude = foodTruck.getLatitude();
+				double longitude = foodTruck.getLongitude();
+				boolean insideLongitudes = (box[1] <= box[3])
+						? (longitude >= box[1] && longitude <= box[3])
+						: (longitude >= box[1] || longitude <= box[3]);
+				return latitude >= box[0] && latitude <= box[2] && insideLongitudes;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Change of a food truck by a write: the previous and the current versions (null if it is added / removed).
+	 * The JSON of the versions is serialized once, on the first send.
+	 */
+	private static class Change
+	{
+		private final long version;
+		private final FoodTruck previous;
+		private final FoodTruck current;
+		private volatile String previousJson;
+		private volatile String currentJson;
+
+		Change(long version, FoodTruck previous, FoodTruck current)
+		{
+			this.version = version;
+			this.previous = previous;
+			this.current = current;
+		}
+
+		String getPreviousJson()
+		{
+			if (previousJson == null)
+			{
+				previousJson = FoodTruckSerializer.getInstance().toJson(previous);
+			}
+			return previousJson;
+		}
+
+		String getCurrentJson()
+		{
+			if (currentJson == null)
+			{
+				currentJson = FoodTruckSerializer.getInstance().toJson(current);
+			}
+			return currentJson;
+		}
+	}
+
+	/**
+	 * A change as seen by a subscriber.
+	 */
+	private static class Event
+	{
+		private final Change change;
+		private final String name;
+
+		Event(Change change, String name)
+		{
+			this.change = change;
+			this.name = name;
+		}
+	}
+
+	/**
+	 * Subscriber with its bounded buffer of events.
+	 * The buffer is drained by one sender thread at a time, one send at a time.
+	 */
+	private class Subscription implements Runnable
+	{
+		private final SseEventSink eventSink;
+		private final Sse sse;
+		private final Filter filter;
+		private final ArrayBlockingQueue<Event> events = new ArrayBlockingQueue<Event>(bufferSize);
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+		private volatile boolean resync;
+		private volatile boolean heartbeat;
+		// Start of the incomplete send (System.nanoTime()), 0 if there is none
+		private volatile long sendStart;
+
+		Subscription(SseEventSink eventSink, Sse sse, Filter filter)
+		{
+			this.eventSink = eventSink;
+			this.sse = sse;
+			this.filter = filter;
+		}
+
+		/**
+		 * Offers the events of the given changes that match the filter, drops the buffered events if they do not fit.
+		 */
+		void offer(Change[] changes, int changeCount)
+		{
+			boolean offered = false;
+
+			for (int i = 0; i < changeCount && !resync; i++)
+			{
+				Change change = changes[i];
+				boolean previousMatches = filter.matches(change.previous);
+				boolean currentMatches = filter.matches(change.current);
+				String name = previousMatches ? (currentMatches ? UPDATE : REMOVE) : (currentMatches ? ADD : null);
+
+				if (name != null)
+				{
+					offered = true;
+					if (!events.offer(new Event(change, name)))
+					{
+						DROPPED_EVENTS.add(events.size() + 1);
+						events.clear();
+						resync = true;
+					}
+				}
+			}
+
+			if (offered)
+			{
+				schedule();
+			}
+		}
+
+		/**
+		 * Queues this subscription on a sender thread, if it is not queued yet.
+		 */
+		void schedule()
+		{
+			if (scheduled.compareAndSet(false, true))
+			{
+				try
+				{
+					senders.execute(this);
+				}
+				catch (RuntimeException e)
+				{
+					// Shut down
+					scheduled.set(false);
+				}
+			}
+		}
+
+		/**
+		 * Sends the buffered events.
+		 * Stops at a send that is not complete yet, completeSend() continues when it completes.
+		 */
+		@Override
+		public void run()
+		{
+			try
+			{
+				while (!eventSink.isClosed())
+				{
+					OutboundSseEvent outboundEvent = nextEvent();
+					if (outboundEvent == null)
+					{
+						break;
+					}
+
+					sendStart = System.nanoTime();
+					CompletableFuture<?> sent = eventSink.send(outboundEvent).toCompletableFuture();
+					if (!sent.isDone())
+					{
+						// Still scheduled until the send completes
+						sent.whenComplete(new BiConsumer<Object, Throwable>()
+						{
+							@Override
+							public void accept(Object result, Throwable failure)
+							{
+								completeSend(failure);
+							}
+						});
+						return;
+					}
+					sendStart = 0;
+					sent.join();
+				}
+			}
+			catch (CompletionException | IllegalStateException e)
+			{
+				// The client is gone
+				close();
+			}
+			finish();
+		}
+
+		/**
+		 * Continues on a sender thread after an asynchronous send (the completion may run on a thread of the container).
+		 */
+		private void completeSend(Throwable failure)
+		{
+			sendStart = 0;
+			if (failure != null)
+			{
+				// The client is gone
+				close();
+				finish();
+				return;
+			}
+
+			try
+			{
+				senders.execute(this);
+			}
+			catch (RejectedExecutionException e)
+			{
+				// Shut down
+				finish();
+			}
+		}
+
+		/**
+		 * Ends the run of the sender, schedules it again if events are offered meanwhile.
+		 */
+		private void finish()
+		{
+			scheduled.set(false);
+
+			if (eventSink.isClosed())
+			{
+				close();
+			}
+			// Events offered while the buffer was being drained
+			else if (resync || heartbeat || !events.isEmpty())
+			{
+				schedule();
+			}
+		}
+
+		/**
+		 * Returns the next event to send, or null if there is none.
+		 */
+		private OutboundSseEvent nextEvent()
+		{
+			if (resync)
+			{
+				// The buffered events are not needed anymore, the client will query the current version
+				resync = false;
+				events.clear();
+				RESYNCS.increment();
+				SENT_EVENTS.increment();
+
+				long version = FoodTruckAccessor.getInstance().getVersion();
+				return sse.newEventBuilder()
+						.name(RESYNC)
+						.id(String.valueOf(version))
+						.mediaType(MediaType.APPLICATION_JSON_TYPE)
+						.data(String.class, "{\"version\":" + version + "}")
+						.build();
+			}
+
+			Event event = events.poll();
+			if (event != null)
+			{
+				SENT_EVENTS.increment();
+				return sse.newEventBuilder()
+						.name(event.name)
+						.id(String.valueOf(event.change.version))
+						.mediaType(MediaType.APPLICATION_JSON_TYPE)
+						.data(String.class, REMOVE.equals(event.name) ? event.change.getPreviousJson() : event.change.getCurrentJson())
+						.build();
+			}
+
+			if (heartbeat)
+			{
+				heartbeat = false;
+				return sse.newEventBuilder().comment("heartbeat").build();
+			}
+			return null;
+		}
+
+		/**
+		 * Unsubscribes and closes the event sink.
+		 */
+		void close()
+		{
+			subscriptions.remove(this);
+			events.clear();
+			try
+			{
+				eventSink.close();
+			}
+			catch (RuntimeException e)
+			{
+				// Already closed
+			}
+		}
+	}
+}
@@ -1,83 +1,416 @@
 package com.uber.coding_challange.food_trucks.ctrl;
 
+import java.io.File;
 import java.io.IOException;
-import java.net.MalformedURLException;
+import java.io.InputStream;
 import java.net.URL;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.uber.coding_challange.food_trucks.dataaccess.FoodTruckAccessor;
+import com.uber.coding_challange.food_trucks.dataaccess.FoodTruckSnapshotFile;
+import com.uber.coding_challange.food_trucks.dataaccess.FoodTruckStringPool;
 import com.uber.coding_challange.food_trucks.model.FoodTruck;
 
 /**
- * The client class. Singleton pattern is used. 
- * Responsible for establishing a connection with DataSF API and obtaining the food truck data. 
- * It is initialized only once (with lazy initialization); 
- * therefore, the connection is established only once.
- * 
+ * The client class. Singleton pattern is used.
+ * Responsible for establishing a connection with DataSF API and obtaining the food truck data.
+ * The data is parsed as a stream, one food truck at a time.
+ * The data is loaded once on startup, in the background (see FoodTrucksApplicationListener);
+ * afterwards it is kept up to date by the FoodTruckRefresher in the background.
+ * The source URL can be configured with the 'foodtrucks.datasf.url' key (see Configuration),
+ * e.g. a 'file:' URL of a local copy of the data.
+ * After every ingestion that changes the storage, the food trucks are written to a binary snapshot file
+ * ('foodtrucks.snapshot.file', default: 'food_trucks.snapshot' in the temporary directory, 'none' disables it);
+ * on startup the snapshot file is loaded first, so requests are served before the data is downloaded.
+ * A shard keeps only the food trucks of its cells (see FoodTruckShards), in its own snapshot file
+ * ('food_trucks.shard-<index>.snapshot' by default).
+ *
  * @author alper.karacelik
  *
  */
-public class FoodTruckClient 
+public class FoodTruckClient
 {
 	// Constants ---------------------------------------------------------
 	private static final String DATASF_URL = "https://data.sfgov.org/resource/6a9r-agq8.json";
+	private static final String DATASF_URL_KEY = "foodtrucks.datasf.url";
+	private static final int BATCH_SIZE = 1000;
+	private static final String SNAPSHOT_FILE_KEY = "foodtrucks.snapshot.file";
+	private static final String SNAPSHOT_FILE_NAME = "food_trucks.snapshot";
+	private static final String SNAPSHOT_FILE_DISABLED = "none";
+	private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+	private static final LatencyHistogram INGEST = MetricsRegistry.getInstance().stageHistogram("ingest");
+	private static final LatencyHistogram SNAPSHOT_LOAD = MetricsRegistry.getInstance().stageHistogram("snapshot_load");
+	private static final LatencyHistogram SNAPSHOT_WRITE = MetricsRegistry.getInstance().stageHistogram("snapshot_write");
+	private static final String INGESTED_RECORDS = "foodtrucks_ingested_records_total";
+	private static final String INGESTED_RECORDS_HELP = "Number of the ingested food truck records by result";
+	private static final LongAdder RECEIVED_RECORDS =
+			MetricsRegistry.getInstance().counter(INGESTED_RECORDS, INGESTED_RECORDS_HELP, "result", "received");
+	private static final LongAdder INVALID_RECORDS =
+			MetricsRegistry.getInstance().counter(INGESTED_RECORDS, INGESTED_RECORDS_HELP, "result", "invalid");
+	private static final LongAdder CHANGED_RECORDS =
+			MetricsRegistry.getInstance().counter(INGESTED_RECORDS, INGESTED_RECORDS_HELP, "result", "changed");
+	private static final LongAdder REMOVED_RECORDS =
+			MetricsRegistry.getInstance().counter(INGESTED_RECORDS, INGESTED_RECORDS_HELP, "result", "removed");
+	private static final LongAdder OTHER_SHARD_RECORDS =
+			MetricsRegistry.getInstance().counter(INGESTED_RECORDS, INGESTED_RECORDS_HELP, "result", "other_shard");
 	// -------------------------------------------------------------------
-	
+
 	// Attributes --------------------------------------------------------
-	private static boolean initialized = false;
+	private static volatile boolean initialized = false;
+	private static volatile boolean ready = false;
+	private static final Object refreshLock = new Object();
 	// -------------------------------------------------------------------
-	
+
 	// SINGLETON Implementation ------------------------------------------
 	private static FoodTruckClient INSTANCE = new FoodTruckClient();
 	private FoodTruckClient() {}
 	public static FoodTruckClient getInstance() {return INSTANCE;}
 	// -------------------------------------------------------------------
-	
+
 	/**
-	 * Uses the public API provided by DataSF, 
+	 * Uses the public API provided by DataSF,
 	 * Obtains all the food truck data
 	 * Pushes the obtained data to the Food Truck Accessor (the storage handler)
-	 * Uses lazy initialization. 
-	 * This method is called after the first request to the web service.
+	 * This method is called on startup (see startInitialization()).
 	 * Other calls will simply be ignored.
-	 * No two different threads can access this method at the same time.
+	 * No two different threads can initialize at the same time (synchronized on this class);
+	 * the storage is not locked during the download.
+	 * If the snapshot file can be loaded, the download is left to the background refresher and starts right away.
+	 * Starts the background refresher; if the first download fails, the refresher retries it.
 	 */
 	public void initialize()
 	{
-		synchronized (FoodTruckAccessor.class) 
+		// Skip the lock once initialized
+		if (initialized)
+		{
+			return;
+		}
+
+		synchronized (FoodTruckClient.class)
 		{
 			// Continue if not already initialized.
 			if (! initialized)
 			{
-				try 
+				// The snapshot file is loaded in milliseconds, the download may take seconds
+				if (loadSnapshotFile())
 				{
-					URL url = new URL(DATASF_URL);
-					ObjectMapper jsonMapper = new ObjectMapper();
-					
-					// Obtain the food trucks
-					List<FoodTruck> foodTruckList = 
-							jsonMapper.readValue(url, new TypeReference<List<FoodTruck>>(){});
-					
-					// Add the received food trucks to our storage
-					for (FoodTruck foodTruck : foodTruckList)
-					{
-						FoodTruckAccessor.getInstance().addFoodTruck(foodTruck);
-					}
-					
-					// set initialized flag true
 					initialized = true;
-				} 
-				catch (MalformedURLException e) 
+					FoodTruckRefresher.getInstance().startNow();
+					return;
+				}
+
+				boolean loaded = false;
+				try
 				{
-					e.printStackTrace();
-				} 
-				catch (IOException e) 
+					refresh();
+					loaded = true;
+				}
+				catch (IOException e)
 				{
 					e.printStackTrace();
 				}
+
+				// set initialized flag true, the refresher takes over from now on.
+				initialized = true;
+				FoodTruckRefresher.getInstance().start(loaded);
+			}
+		}
+	}
+
+	/**
+	 * Runs initialize() on a new daemon thread, so that the web service starts without waiting for the data.
+	 * Requests are served from the (empty) storage until the data is loaded (a shard answers its lists with 503), see isReady().
+	 */
+	public void startInitialization()
+	{
+		Thread thread = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				initialize();
+			}
+		}, "food-truck-initializer");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Returns true once the food truck data is loaded, from the snapshot file or from the DataSF API.
+	 *
+	 * @return True if the food truck data is loaded
+	 */
+	public boolean isReady()
+	{
+		return ready;
+	}
+
+	/**
+	 * Returns the URL of the food truck data.
+	 *
+	 * @return The URL of the food truck data
+	 */
+	public String getSourceUrl()
+	{
+		return Configuration.getString(DATASF_URL_KEY, DATASF_URL);
+	}
+
+	/**
+	 * Returns the snapshot file of the food truck data.
+	 *
+	 * @return The snapshot file, or null if it is disabled
+	 */
+	public FoodTruckSnapshotFile getSnapshotFile()
+	{
+		// The shards of a cluster may run on the same host
+		int shardIndex = FoodTruckShards.getInstance().getShardIndex();
+		String fileName = (shardIndex < 0) ? SNAPSHOT_FILE_NAME : SNAPSHOT_FILE_NAME.replace(".", ".shard-" + shardIndex + ".");
+		String path = Configuration.getString(SNAPSHOT_FILE_KEY, new File(System.getProperty("java.io.tmpdir"), fileName).getPath());
+
+		return path.equalsIgnoreCase(SNAPSHOT_FILE_DISABLED) ? null : new FoodTruckSnapshotFile(Paths.get(path));
+	}
+
+	/**
+	 * Downloads the food truck data and compares it with the storage by object id.
+	 * Only the added, updated and removed food trucks are applied to the storage.
+	 * Readers of the storage are not blocked during the download.
+	 * Two refreshes never run at the same time.
+	 *
+	 * @return The number of changed food trucks
+	 * @throws IOException If the data can not be downloaded or parsed
+	 */
+	public int refresh() throws IOException
+	{
+		URL url = new URL(getSourceUrl());
+		InputStream inputStream = url.openStream();
+
+		try
+		{
+			return ingest(inputStream);
+		}
+		finally
+		{
+			inputStream.close();
+		}
+	}
+
+	/**
+	 * Reads the food truck data (a JSON array of food trucks) from the given stream
+	 * and compares it with the storage by object id.
+	 * Food trucks are parsed one at a time and validated, the unchanged ones (and the ones of the other shards,
+	 * see FoodTruckShards) are dropped immediately;
+	 * so the whole payload is never held in memory. The repetitive strings of the kept ones are deduplicated
+	 * (see FoodTruckStringPool).
+	 * Added and updated food trucks are pushed to the storage in batches,
+	 * the removed ones are applied after the whole stream is read successfully.
+	 * The batch size grows with the storage (a quarter of it), so that the storage is copied a limited number of times.
+	 * Two ingestions never run at the same time.
+	 * The duration is recorded as the 'ingest' stage, the record counts as 'foodtrucks_ingested_records_total'.
+	 * If the storage is changed, the snapshot file is rewritten (the 'snapshot_write' stage).
+	 *
+	 * @param inputStream Stream of the food truck data
+	 * @return The number of changed food trucks
+	 * @throws IOException If the data can not be read or parsed
+	 */
+	public int ingest(InputStream inputStream) throws IOException
+	{
+		synchronized (refreshLock)
+		{
+			long start = System.nanoTime();
+			FoodTruckAccessor accessor = FoodTruckAccessor.getInstance();
+			JsonParser parser = JSON_MAPPER.getFactory().createParser(inputStream);
+
+			try
+			{
+				if (parser.nextToken() != JsonToken.START_ARRAY)
+				{
+					throw new IOException("Food truck data is not a JSON array");
+				}
+				ObjectReader reader = JSON_MAPPER.readerFor(FoodTruck.class);
+				FoodTruckStringPool stringPool = FoodTruckStringPool.getInstance();
+				List<FoodTruck> batch = new ArrayList<FoodTruck>();
+				long[] receivedIds = new long[1024];
+				int receivedCount = 0;
+				int changedCount = 0;
+				int invalidCount = 0;
+				int otherShardCount = 0;
+				FoodTruckShards shards = FoodTruckShards.getInstance();
+
+				// Read, validate and compare the food trucks one at a time
+				while (parser.nextToken() == JsonToken.START_OBJECT)
+				{
+					FoodTruck foodTruck = reader.readValue(parser);
+
+					if (!isValid(foodTruck))
+					{
+						invalidCount++;
+						continue;
+					}
+
+					// Not stored, so it is removed if it was stored before (e.g. with another number of shards)
+					if (!shards.owns(foodTruck))
+					{
+						otherShardCount++;
+						continue;
+					}
+
+					if (receivedCount == receivedIds.length)
+					{
+						receivedIds = Arrays.copyOf(receivedIds, receivedCount * 2);
+					}
+					receivedIds[receivedCount++] = foodTruck.getObjectid();
+
+					// Keep only the new and the changed food trucks (with their repetitive strings deduplicated)
+					if (!foodTruck.equals(accessor.getFoodTruck(foodTruck.getObjectid())))
+					{
+						batch.add(stringPool.intern(foodTruck));
+					}
+
+					// Push the batch to our storage
+					if (batch.size() >= Math.max(BATCH_SIZE, accessor.getAllFoodTrucks().size() / 4))
+					{
+						changedCount += batch.size();
+						accessor.applyChanges(batch, Collections.<Long>emptyList());
+						batch.clear();
+					}
+				}
+
+				if (parser.getCurrentToken() != JsonToken.END_ARRAY)
+				{
+					throw new IOException("Unexpected token in food truck data: " + parser.getCurrentToken());
+				}
+
+				changedCount += batch.size();
+
+				// Find the food trucks that do not exist anymore
+				// (an empty feed is treated as a broken one, it does not remove anything)
+				Arrays.sort(receivedIds, 0, receivedCount);
+				List<Long> removedIds = new ArrayList<Long>();
+				for (FoodTruck foodTruck : accessor.getAllFoodTrucks())
+				{
+					if (receivedCount > 0 && Arrays.binarySearch(receivedIds, 0, receivedCount, foodTruck.getObjectid()) < 0)
+					{
+						removedIds.add(foodTruck.getObjectid());
+					}
+				}
+
+				// Apply the remaining changes to our storage
+				accessor.applyChanges(batch, removedIds);
+
+				RECEIVED_RECORDS.add(receivedCount);
+				INVALID_RECORDS.add(invalidCount);
+				CHANGED_RECORDS.add(changedCount);
+				REMOVED_RECORDS.add(removedIds.size());
+				OTHER_SHARD_RECORDS.add(otherShardCount);
+
+				int totalChangedCount = changedCount + removedIds.size();
+				ready = true;
+				saveSnapshotFile(totalChangedCount > 0);
+				return totalChangedCount;
+			}
+			finally
+			{
+				parser.close();
+				INGEST.recordSince(start);
 			}
 		}
 	}
+
+	/**
+	 * Loads the food trucks in the snapshot file to the storage.
+	 * The duration is recorded as the 'snapshot_load' stage.
+	 *
+	 * @return True if at least one food truck is loaded
+	 */
+	private boolean loadSnapshotFile()
+	{
+		FoodTruckSnapshotFile snapshotFile = getSnapshotFile();
+		if (snapshotFile == null || !snapshotFile.exists())
+		{
+			return false;
+		}
+
+		synchronized (refreshLock)
+		{
+			long start = System.nanoTime();
+			try
+			{
+				List<FoodTruck> foodTrucks = new ArrayList<FoodTruck>();
+				// The file may be written with another number of shards
+				for (FoodTruck foodTruck : snapshotFile.read())
+				{
+					if (FoodTruckShards.getInstance().owns(foodTruck))
+					{
+						foodTrucks.add(foodTruck);
+					}
+				}
+				FoodTruckAccessor.getInstance().addFoodTrucks(foodTrucks);
+				SNAPSHOT_LOAD.recordSince(start);
+
+				if (foodTrucks.isEmpty())
+				{
+					return false;
+				}
+				ready = true;
+				return true;
+			}
+			catch (IOException e)
+			{
+				// A missing or corrupt snapshot file is replaced after the next download
+				e.printStackTrace();
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Writes the stored food trucks to the snapshot file if the storage is changed or the file does not exist.
+	 * Failures are only logged, the ingestion is not affected.
+	 *
+	 * @param changed True if the storage is changed
+	 */
+	private void saveSnapshotFile(boolean changed)
+	{
+		FoodTruckSnapshotFile snapshotFile = getSnapshotFile();
+		List<FoodTruck> foodTrucks = FoodTruckAccessor.getInstance().getAllFoodTrucks();
+		if (snapshotFile == null || foodTrucks.isEmpty() || (!changed && snapshotFile.exists()))
+		{
+			return;
+		}
+
+		long start = System.nanoTime();
+		try
+		{
+			snapshotFile.write(foodTrucks);
+			SNAPSHOT_WRITE.recordSince(start);
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Returns true if the given food truck can be stored:
+	 * it should have an object id and a position in the valid latitude/longitude ranges.
+	 *
+	 * @param foodTruck Received food truck
+	 * @return True if the given food truck is valid
+	 */
+	private static boolean isValid(FoodTruck foodTruck)
+	{
+		return foodTruck != null
+				&& foodTruck.getObjectid() > 0
+				&& foodTruck.getLatitude() >= -90 && foodTruck.getLatitude() <= 90
+				&& foodTruck.getLongitude() >= -180 && foodTruck.getLongitude() <= 180;
+	}
 }
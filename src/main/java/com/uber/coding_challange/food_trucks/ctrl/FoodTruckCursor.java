@@ -0,0 +1,66 @@
+package com.uber.coding_challange.food_trucks.ctrl;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import com.uber.coding_challange.food_trucks.dataaccess.FoodTruckPage;
+
+/**
+ * Encodes and decodes the pagination cursors.
+ * A cursor is the object id of the last food truck of the previous page, encoded as an opaque string
+ * (URL safe Base64 of a versioned text); it stays valid when the storage changes (see FoodTruckPage).
+ *
+ * @author alper.karacelik
+ *
+ */
+public final class FoodTruckCursor
+{
+	// Constants ---------------------------------------------------------
+	private static final String PREFIX = "ft1:";
+	// -------------------------------------------------------------------
+
+	private FoodTruckCursor() {}
+
+	/**
+	 * Returns the cursor of the page that follows the food truck with the given object id.
+	 *
+	 * @param lastObjectid Object id of the last food truck of a page
+	 * @return The cursor of the next page
+	 */
+	public static String encode(long lastObjectid)
+	{
+		byte[] text = (PREFIX + lastObjectid).getBytes(StandardCharsets.US_ASCII);
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(text);
+	}
+
+	/**
+	 * Returns the object id of the last food truck of the previous page.
+	 * A missing cursor points to the first page.
+	 *
+	 * @param cursor Cursor returned with the previous page, or null
+	 * @return The object id of the last food truck of the previous page (FoodTruckPage.FIRST_PAGE for the first page)
+	 * @throws IllegalArgumentException If the cursor is invalid
+	 */
+	public static long decode(String cursor)
+	{
+		if (cursor == null || cursor.isEmpty())
+		{
+			return FoodTruckPage.FIRST_PAGE;
+		}
+
+		String text = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+		if (!text.startsWith(PREFIX))
+		{
+			throw new IllegalArgumentException("Invalid cursor: " + cursor);
+		}
+
+		try
+		{
+			return Long.parseLong(text.substring(PREFIX.length()));
+		}
+		catch (NumberFormatException e)
+		{
+			throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+		}
+	}
+}
@@ -0,0 +1,199 @@
+package com.uber.coding_challange.food_trucks.ctrl;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.uber.coding_challange.food_trucks.model.FoodTruck;
+
+/**
+ * A subset of the food truck properties to serialize (the 'fields' query parameter),
+ * e.g. "objectid,applicant,latitude,longitude,status".
+ * The selected properties are kept in a bit mask and written straight to a JSON generator,
+ * always in the order of the FoodTruck class; the food trucks are not copied.
+ * Instances are immutable; equal projections have equal masks.
+ *
+ * @author alper.karacelik
+ *
+ */
+public class FoodTruckProjection
+{
+	// Constants ---------------------------------------------------------
+	// Property names in the order of the FoodTruck class, the index of a name is its bit in the mask
+	private static final String[] FIELDS = {
+			"objectid", "address", "locationdescription", "applicant", "cnn", "dayshours", "facilitytype",
+			"fooditems", "latitude", "longitude", "permit", "schedule", "status"};
+	private static final int OBJECTID = 0;
+	private static final int ADDRESS = 1;
+	private static final int LOCATIONDESCRIPTION = 2;
+	private static final int APPLICANT = 3;
+	private static final int CNN = 4;
+	private static final int DAYSHOURS = 5;
+	private static final int FACILITYTYPE = 6;
+	private static final int FOODITEMS = 7;
+	private static final int LATITUDE = 8;
+	private static final int LONGITUDE = 9;
+	private static final int PERMIT = 10;
+	private static final int SCHEDULE = 11;
+	private static final int STATUS = 12;
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	private final int mask;
+	// -------------------------------------------------------------------
+
+	// Constructor(s) ----------------------------------------------------
+	private FoodTruckProjection(int mask)
+	{
+		this.mask = mask;
+	}
+	// -------------------------------------------------------------------
+
+	/**
+	 * Parses the given comma separated property names (case insensitive).
+	 *
+	 * @param fields Comma separated property names
+	 * @return The projection, or null if no property is given (all the properties are serialized)
+	 * @throws IllegalArgumentException If a property name is unknown
+	 */
+	public static FoodTruckProjection parse(String fields)
+	{
+		if (fields == null)
+		{
+			return null;
+		}
+
+		int mask = 0;
+		for (String field : fields.split(","))
+		{
+			String name = field.trim();
+			if (name.isEmpty())
+			{
+				continue;
+			}
+
+			int index = indexOf(name);
+			if (index < 0)
+			{
+				throw new IllegalArgumentException("Unknown food truck field: " + name);
+			}
+			mask |= 1 << index;
+		}
+		return (mask == 0) ? null : new FoodTruckProjection(mask);
+	}
+
+	/**
+	 * @return The bit mask of the selected properties
+	 */
+	public int getMask()
+	{
+		return mask;
+	}
+
+	/**
+	 * Writes the selected properties of the given food truck as a JSON object.
+	 *
+	 * @param generator Target generator
+	 * @param foodTruck Food truck
+	 * @throws IOException If the generator can not write
+	 */
+	public void write(JsonGenerator generator, FoodTruck foodTruck) throws IOException
+	{
+		generator.writeStartObject();
+		if (has(OBJECTID))
+		{
+			generator.writeNumberField(FIELDS[OBJECTID], foodTruck.getObjectid());
+		}
+		if (has(ADDRESS))
+		{
+			writeString(generator, ADDRESS, foodTruck.getAddress());
+		}
+		if (has(LOCATIONDESCRIPTION))
+		{
+			writeString(generator, LOCATIONDESCRIPTION, foodTruck.getLocationdescription());
+		}
+		if (has(APPLICANT))
+		{
+			writeString(generator, APPLICANT, foodTruck.getApplicant());
+		}
+		if (has(CNN))
+		{
+			generator.writeNumberField(FIELDS[CNN], foodTruck.getCnn());
+		}
+		if (has(DAYSHOURS))
+		{
+			writeString(generator, DAYSHOURS, foodTruck.getDayshours());
+		}
+		if (has(FACILITYTYPE))
+		{
+			writeString(generator, FACILITYTYPE, foodTruck.getFacilitytype());
+		}
+		if (has(FOODITEMS))
+		{
+			writeString(generator, FOODITEMS, foodTruck.getFooditems());
+		}
+		if (has(LATITUDE))
+		{
+			generator.writeNumberField(FIELDS[LATITUDE], foodTruck.getLatitude());
+		}
+		if (has(LONGITUDE))
+		{
+			generator.writeNumberField(FIELDS[LONGITUDE], foodTruck.getLongitude());
+		}
+		if (has(PERMIT))
+		{
+			writeString(generator, PERMIT, foodTruck.getPermit());
+		}
+		if (has(SCHEDULE))
+		{
+			writeString(generator, SCHEDULE, foodTruck.getSchedule());
+		}
+		if (has(STATUS))
+		{
+			writeString(generator, STATUS, foodTruck.getStatus());
+		}
+		generator.writeEndObject();
+	}
+
+	@Override
+	public boolean equals(Object other)
+	{
+		return other instanceof FoodTruckProjection && ((FoodTruckProjection) other).mask == mask;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return mask;
+	}
+
+	private boolean has(int field)
+	{
+		return (mask & (1 << field)) != 0;
+	}
+
+	// Null values are written as null, like the full serialization
+	private static void writeString(JsonGenerator generator, int field, String value) throws IOException
+	{
+		generator.writeFieldName(FIELDS[field]);
+		if (value == null)
+		{
+			generator.writeNull();
+		}
+		else
+		{
+			generator.writeString(value);
+		}
+	}
+
+	private static int indexOf(String name)
+	{
+		for (int i = 0; i < FIELDS.length; i++)
+		{
+			if (FIELDS[i].equalsIgnoreCase(name))
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+}
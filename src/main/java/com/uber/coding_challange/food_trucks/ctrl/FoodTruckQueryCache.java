@@ -0,0 +1,338 @@
+package com.uber.coding_challange.food_trucks.ctrl;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.uber.coding_challange.food_trucks.dataaccess.FoodTruckAccessor;
+import com.uber.coding_challange.food_trucks.model.FoodTruck;
+import com.uber.coding_challange.food_trucks.model.enums.DistanceUnitEnum;
+import com.uber.coding_challange.food_trucks.model.enums.FoodTruckStatusEnum;
+
+/**
+ * Cache of the circle query results (see FoodTruckAccessor.getFoodTrucks(status, latitude, longitude, radius, radiusUnit)).
+ * Singleton pattern is used.
+ * The centers of the queries are snapped to a grid ('foodtrucks.query.cache.grid' decimal degrees, default 0.001;
+ * 0 disables the cache), so the queries around the same point share an entry:
+ * the key is (status, grid cell of the center, radius, radius unit).
+ * An entry keeps the candidates of the cell: the food trucks inside the circle around the center of the cell,
+ * enlarged by the size of the cell. A position inside the query circle is inside the enlarged circle
+ * (triangle inequality), so the candidates are re-checked against the real center with the same filter as the storage,
+ * and the result is exactly the result of the storage (the order may differ).
+ * An entry belongs to a version of the storage (see FoodTruckAccessor.getVersion()), it is a miss after the storage is changed.
+ * The queries that would not gain from the cache go to the storage directly (bypass):
+ * the ones with a radius larger than MAX_RADIUS_CELLS grid cells (~7 miles with the default grid),
+ * and the keys whose last load had more than
+ * MAX_CANDIDATES candidates (remembered by an empty marker entry).
+ * The cache is bounded by the total number of the cached candidates ('foodtrucks.query.cache.candidates', default 262144,
+ * ~32 bytes each), an entry counts as one more; the least recently used entries are evicted.
+ * It is split into segments by the key (each with an equal part of the bound),
+ * so that the lookups of different keys do not wait for each other.
+ * Lookups are counted as 'foodtrucks_query_cache_requests_total' by result (hit, miss, stale: a miss on an old version, bypass),
+ * and evictions as 'foodtrucks_query_cache_evictions_total'.
+ *
+ * @author alper.karacelik
+ *
+ */
+public class FoodTruckQueryCache
+{
+	// Constants ---------------------------------------------------------
+	private static final String GRID_KEY = "foodtrucks.query.cache.grid";
+	private static final String CANDIDATES_KEY = "foodtrucks.query.cache.candidates";
+	private static final int SEGMENT_COUNT = 16;
+	// Entries with more candidates are not cached (they would retain too much memory)
+	private static final int MAX_CANDIDATES = 10000;
+	// Larger circles are not cached: the cell is small compared to them, so their candidates are (almost) their results
+	private static final double MAX_RADIUS_CELLS = 100;
+	private static final String REQUESTS = "foodtrucks_query_cache_requests_total";
+	private static final String REQUESTS_HELP = "Number of the query cache lookups by result";
+	private static final LongAdder HITS = MetricsRegistry.getInstance().counter(REQUESTS, REQUESTS_HELP, "result", "hit");
+	private static final LongAdder MISSES = MetricsRegistry.getInstance().counter(REQUESTS, REQUESTS_HELP, "result", "miss");
+	private static final LongAdder STALE_MISSES = MetricsRegistry.getInstance().counter(REQUESTS, REQUESTS_HELP, "result", "stale");
+	private static final LongAdder BYPASSES = MetricsRegistry.getInstance().counter(REQUESTS, REQUESTS_HELP, "result", "bypass");
+	private static final LongAdder EVICTIONS = MetricsRegistry.getInstance().counter(
+			"foodtrucks_query_cache_evictions_total", "Number of the query cache entries evicted to bound its size");
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	// Size of a grid cell (in decimal degrees), 0 if the cache is disabled
+	private final double gridSize;
+	// Maximum number of the candidates of an entry
+	private final int maxCandidates;
+	private final Segment[] segments = new Segment[SEGMENT_COUNT];
+	// -------------------------------------------------------------------
+
+	// SINGLETON Implementation ------------------------------------------
+	private static FoodTruckQueryCache INSTANCE = new FoodTruckQueryCache();
+	private FoodTruckQueryCache()
+	{
+		double grid = Configuration.getDouble(GRID_KEY, 0.001);
+		long candidates = Configuration.getLong(CANDIDATES_KEY, 256 * 1024);
+		long segmentWeight = Math.max(1, Math.min(candidates, Integer.MAX_VALUE) / SEGMENT_COUNT);
+
+		this.gridSize = (grid > 0 && grid <= 1 && candidates > 0) ? grid : 0;
+		// An entry should fit in its segment
+		this.maxCandidates = (int) Math.min(MAX_CANDIDATES, segmentWeight - 1);
+		for (int i = 0; i < SEGMENT_COUNT; i++)
+		{
+			segments[i] = new Segment(segmentWeight);
+		}
+	}
+	public static FoodTruckQueryCache getInstance() {return INSTANCE;}
+	// -------------------------------------------------------------------
+
+	/**
+	 * Returns the food trucks that have the specified status and reside in the specified circle,
+	 * the same food trucks as FoodTruckAccessor.getFoodTrucks(status, latitude, longitude, radius, radiusUnit).
+	 *
+	 * @param status Food Truck Status for querying
+	 * @param latitude Latitude of the center of the circle
+	 * @param longitude Longitude of the center of the circle
+	 * @param radius Radius of the circle
+	 * @param radiusUnit Unit of the radius
+	 * @return The food trucks which have the specified status and reside in the specified circle.
+	 */
+	public List<FoodTruck> getFoodTrucks(
+			FoodTruckStatusEnum status,
+			double latitude,
+			double longitude,
+			double radius,
+			DistanceUnitEnum radiusUnit)
+	{
+		FoodTruckAccessor accessor = FoodTruckAccessor.getInstance();
+
+		// Invalid circles are answered by the storage (it matches nothing)
+		if (gridSize == 0 || status == FoodTruckStatusEnum.NO_STATEMENT || !(radius > 0) || Double.isInfinite(radius)
+				|| !(latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180))
+		{
+			return accessor.getFoodTrucks(status, latitude, longitude, radius, radiusUnit);
+		}
+
+		if (GeodesicDistanceCalculator.getInstance().toArcDegrees(radius, radiusUnit) > MAX_RADIUS_CELLS * gridSize)
+		{
+			BYPASSES.increment();
+			return accessor.getFoodTrucks(status, latitude, longitude, radius, radiusUnit);
+		}
+
+		Key key = new Key(status, (long) Math.floor(latitude / gridSize), (long) Math.floor(longitude / gridSize),
+				radius, radiusUnit);
+		Segment segment = segments[(key.hashCode() & 0x7fffffff) % SEGMENT_COUNT];
+		long version = accessor.getVersion();
+
+		CachedResult entry = segment.get(key);
+		if (entry != null && entry.foodTrucks == null)
+		{
+			// Too many candidates last time (in any version, the food trucks rarely move)
+			BYPASSES.increment();
+			return accessor.getFoodTrucks(status, latitude, longitude, radius, radiusUnit);
+		}
+		if (entry != null && entry.version == version)
+		{
+			HITS.increment();
+		}
+		else
+		{
+			if (entry == null)
+			{
+				MISSES.increment();
+			}
+			else
+			{
+				STALE_MISSES.increment();
+			}
+
+			entry = load(accessor, key, version);
+			if (entry.foodTrucks.length > maxCandidates)
+			{
+				// Bypassed from now on
+				segment.put(key, CachedResult.TOO_MANY_CANDIDATES);
+			}
+			// Cache only the entries of one version of the storage
+			else if (entry.version == accessor.getVersion())
+			{
+				segment.put(key, entry);
+			}
+		}
+
+		return entry.filter(GeodesicDistanceCalculator.getInstance().newRadiusFilter(latitude, longitude, radius, radiusUnit));
+	}
+
+	/**
+	 * Obtains the candidates of the given key from the storage.
+	 *
+	 * @param accessor The storage
+	 * @param key Key of the entry
+	 * @param version Version of the storage before the query
+	 * @return The entry, tagged with the given version if the storage is not changed during the query (with -1 otherwise)
+	 */
+	private CachedResult load(FoodTruckAccessor accessor, Key key, long version)
+	{
+		// Center of the cell, the real center is at most half a diagonal away from it
+		double cellLatitude = Math.max(-90, Math.min(90, (key.latitudeCell + 0.5) * gridSize));
+		double cellLongitude = Math.max(-180, Math.min(180, (key.longitudeCell + 0.5) * gridSize));
+		double distancePerDegree = 1 / GeodesicDistanceCalculator.getInstance().toArcDegrees(1, key.radiusUnit);
+		double enlargedRadius = key.radius + gridSize * distancePerDegree;
+
+		List<FoodTruck> candidates =
+				accessor.getFoodTrucks(key.status, cellLatitude, cellLongitude, enlargedRadius, key.radiusUnit);
+		return new CachedResult((accessor.getVersion() == version) ? version : -1, candidates);
+	}
+
+	/**
+	 * (status, grid cell of the center, radius, radius unit)
+	 */
+	private static final class Key
+	{
+		private final FoodTruckStatusEnum status;
+		private final long latitudeCell;
+		private final long longitudeCell;
+		private final double radius;
+		private final DistanceUnitEnum radiusUnit;
+
+		Key(FoodTruckStatusEnum status, long latitudeCell, long longitudeCell, double radius, DistanceUnitEnum radiusUnit)
+		{
+			this.status = status;
+			this.latitudeCell = latitudeCell;
+			this.longitudeCell = longitudeCell;
+			this.radius = radius;
+			this.radiusUnit = radiusUnit;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof Key))
+			{
+				return false;
+			}
+
+			Key other = (Key) obj;
+			return status == other.status
+					&& latitudeCell == other.latitudeCell
+					&& longitudeCell == other.longitudeCell
+					&& Double.compare(radius, other.radius) == 0
+					&& radiusUnit == other.radiusUnit;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			int hash = status.ordinal();
+			hash = 31 * hash + Long.hashCode(latitudeCell);
+			hash = 31 * hash + Long.hashCode(longitudeCell);
+			hash = 31 * hash + Double.hashCode(radius);
+			hash = 31 * hash + radiusUnit.ordinal();
+			// Spread the bits, the segment is chosen by the low bits
+			return hash ^ (hash >>> 16);
+		}
+	}
+
+	/**
+	 * Candidates of a key, with their positions in radians (like the columns of the storage).
+	 * Immutable.
+	 */
+	private static final class CachedResult
+	{
+		// Marker of the keys with too many candidates
+		private static final CachedResult TOO_MANY_CANDIDATES = new CachedResult();
+
+		private final long version;
+		private final FoodTruck[] foodTrucks;
+		private final double[] latitudes;
+		private final double[] longitudes;
+		private final double[] cosLatitudes;
+
+		CachedResult(long version, List<FoodTruck> candidates)
+		{
+			this.version = version;
+			this.foodTrucks = candidates.toArray(new FoodTruck[candidates.size()]);
+			this.latitudes = new double[foodTrucks.length];
+			this.longitudes = new double[foodTrucks.length];
+			this.cosLatitudes = new double[foodTrucks.length];
+
+			for (int i = 0; i < foodTrucks.length; i++)
+			{
+				latitudes[i] = Math.toRadians(foodTrucks[i].getLatitude());
+				longitudes[i] = Math.toRadians(foodTrucks[i].getLongitude());
+				cosLatitudes[i] = Math.cos(latitudes[i]);
+			}
+		}
+
+		private CachedResult()
+		{
+			this.version = -1;
+			this.foodTrucks = null;
+			this.latitudes = null;
+			this.longitudes = null;
+			this.cosLatitudes = null;
+		}
+
+		/**
+		 * Returns the weight of the entry in its segment: its candidates and one for the entry itself.
+		 */
+		int getWeight()
+		{
+			return 1 + ((foodTrucks == null) ? 0 : foodTrucks.length);
+		}
+
+		/**
+		 * Returns the candidates that pass the given filter.
+		 */
+		List<FoodTruck> filter(GeodesicRadiusFilter radiusFilter)
+		{
+			List<FoodTruck> result = new ArrayList<FoodTruck>();
+
+			for (int i = 0; i < foodTrucks.length; i++)
+			{
+				if (radiusFilter.containsRadians(latitudes[i], longitudes[i], cosLatitudes[i]))
+				{
+					result.add(foodTrucks[i]);
+				}
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * LRU map of a part of the keys (access ordered LinkedHashMap), bounded by the total weight of its entries, synchronized.
+	 */
+	private static final class Segment
+	{
+		private final LinkedHashMap<Key, CachedResult> entries = new LinkedHashMap<Key, CachedResult>(16, 0.75f, true);
+		private final long maxWeight;
+		private long weight = 0;
+
+		Segment(long maxWeight)
+		{
+			this.maxWeight = maxWeight;
+		}
+
+		synchronized CachedResult get(Key key)
+		{
+			return entries.get(key);
+		}
+
+		synchronized void put(Key key, CachedResult entry)
+		{
+			CachedResult previous = entries.put(key, entry);
+			weight += entry.getWeight() - ((previous == null) ? 0 : previous.getWeight());
+
+			// Evict the least recently used entries (never the new one, it fits in the segment)
+			Iterator<Map.Entry<Key, CachedResult>> iterator = entries.entrySet().iterator();
+			while (weight > maxWeight && iterator.hasNext())
+			{
+				Map.Entry<Key, CachedResult> eldest = iterator.next();
+				if (eldest.getKey().equals(key))
+				{
+					break;
+				}
+				weight -= eldest.getValue().getWeight();
+				iterator.remove();
+				EVICTIONS.increment();
+			}
+		}
+	}
+}
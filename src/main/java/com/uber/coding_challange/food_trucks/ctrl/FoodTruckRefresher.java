@@ -0,0 +1,197 @@
+package com.uber.coding_challange.food_trucks.ctrl;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Refreshes the food truck data in the background. Singleton pattern is used.
+ * A refresh is scheduled 'foodtrucks.refresh.interval' seconds (default: 1 hour) after the previous one.
+ * If a refresh fails, the next one is scheduled with an exponential backoff,
+ * starting from 'foodtrucks.refresh.backoff' seconds (default: 30) up to the refresh interval.
+ * A refresh interval of 0 (or less) disables the refresher.
+ * The refresher runs on a single daemon thread.
+ *
+ * @author alper.karacelik
+ *
+ */
+public class FoodTruckRefresher
+{
+	// Constants ---------------------------------------------------------
+	private static final long DEFAULT_INTERVAL_SECONDS = 3600;
+	private static final long DEFAULT_BACKOFF_SECONDS = 30;
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	private ScheduledExecutorService executor;
+	private long intervalSeconds;
+	private long backoffSeconds;
+	private int failureCount;
+	// -------------------------------------------------------------------
+
+	// SINGLETON Implementation ------------------------------------------
+	private static FoodTruckRefresher INSTANCE = new FoodTruckRefresher();
+	private FoodTruckRefresher() {}
+	public static FoodTruckRefresher getInstance() {return INSTANCE;}
+	// -------------------------------------------------------------------
+
+	/**
+	 * Starts the refresher. Does nothing if the refresher is already started or it is disabled.
+	 * The first refresh runs after one refresh interval if the data is already loaded,
+	 * otherwise after the backoff.
+	 *
+	 * @param loaded True if the data is already loaded
+	 */
+	public synchronized void start(boolean loaded)
+	{
+		start(loaded, false);
+	}
+
+	/**
+	 * Starts the refresher with a refresh right away, e.g. when the data is loaded from the snapshot file
+	 * and may be outdated. Does nothing if the refresher is already started or it is disabled.
+	 */
+	public synchronized void startNow()
+	{
+		start(true, true);
+	}
+
+	/**
+	 * Starts the refresher, the first refresh runs immediately if 'now' is true.
+	 */
+	private void start(boolean loaded, boolean now)
+	{
+		if (executor != null)
+		{
+			return;
+		}
+
+		intervalSeconds = Configuration.getLong("foodtrucks.refresh.interval", DEFAULT_INTERVAL_SECONDS);
+		backoffSeconds = Math.max(1, Configuration.getLong("foodtrucks.refresh.backoff", DEFAULT_BACKOFF_SECONDS));
+
+		if (intervalSeconds <= 0)
+		{
+			return;
+		}
+
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+		{
+			@Override
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, "food-truck-refresher");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		failureCount = loaded ? 0 : 1;
+		if (now)
+		{
+			schedule(0);
+		}
+		else
+		{
+			schedule(loaded ? intervalSeconds : Math.min(intervalSeconds, backoffSeconds));
+		}
+	}
+
+	/**
+	 * Stops the refresher. A running refresh is interrupted.
+	 */
+	public synchronized void stop()
+	{
+		if (executor != null)
+		{
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+	/**
+	 * Returns the number of consecutive failed refreshes.
+	 *
+	 * @return The number of consecutive failed refreshes
+	 */
+	public synchronized int getFailureCount()
+	{
+		return failureCount;
+	}
+
+	/**
+	 * Schedules the next refresh after the given delay.
+	 */
+	private synchronized void schedule(long delaySeconds)
+	{
+		if (executor == null)
+		{
+			return;
+		}
+
+		executor.schedule(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				refresh();
+			}
+		}, delaySeconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Runs a refresh and schedules the next one.
+	 * The next one is scheduled whatever happens, also after an Error (e.g. OutOfMemoryError during the download),
+	 * otherwise the refresher would stop for good.
+	 */
+	private void refresh()
+	{
+		boolean refreshed = false;
+
+		try
+		{
+			FoodTruckClient.getInstance().refresh();
+			refreshed = true;
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+		}
+		catch (Error e)
+		{
+			// Still propagated (to the executor), after the next refresh is scheduled
+			e.printStackTrace();
+			throw e;
+		}
+		finally
+		{
+			schedule(refreshed ? succeeded() : failed());
+		}
+	}
+
+	/**
+	 * Resets the failure count, returns the delay of the next refresh.
+	 */
+	private synchronized long succeeded()
+	{
+		failureCount = 0;
+		return intervalSeconds;
+	}
+
+	/**
+	 * Counts a failed refresh, returns the delay of the next refresh:
+	 * an exponential backoff, capped by the refresh interval.
+	 */
+	private synchronized long failed()
+	{
+		failureCount++;
+
+		int exponent = Math.min(failureCount - 1, 30);
+		long nextDelaySeconds = Math.min(intervalSeconds, backoffSeconds << exponent);
+		if (nextDelaySeconds <= 0)
+		{
+			nextDelaySeconds = intervalSeconds;
+		}
+		return nextDelaySeconds;
+	}
+}
@@ -0,0 +1,310 @@
+package com.uber.coding_challange.food_trucks.ctrl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import com.uber.coding_challange.food_trucks.dataaccess.FoodTruckAccessor;
+import com.uber.coding_challange.food_trucks.model.FoodTruck;
+import com.uber.coding_challange.food_trucks.model.enums.FoodTruckStatusEnum;
+import com.uber.coding_challange.food_trucks.model.enums.ResponseFormatEnum;
+
+/**
+ * Cache of the serialized (JSON, UTF-8) food truck lists, one per status
+ * (and one per status and projection for the common projections, see FoodTruckProjection). Singleton pattern is used.
+ * The binary formats (see ResponseFormatEnum) are cached the same way, separately from JSON.
+ * An entry belongs to a version of the storage;
+ * it is dropped and rebuilt on the first request after the storage is changed.
+ * Every entry has a strong entity tag computed from its content.
+ * The gzip variant of an entry is compressed once, on its first request (the 'compression' stage),
+ * so a response is never compressed twice; responses smaller than MIN_COMPRESSED_SIZE are not compressed.
+ * The lookup of an entry (or of the list of a rebuilt entry) is recorded as the 'status_lookup' stage.
+ *
+ * @author alper.karacelik
+ *
+ */
+public class FoodTruckResponseCache
+{
+	// Constants ---------------------------------------------------------
+	private static final LatencyHistogram STATUS_LOOKUP = MetricsRegistry.getInstance().stageHistogram("status_lookup");
+	private static final int STATUS_COUNT = FoodTruckStatusEnum.values().length;
+	private static final int FORMAT_COUNT = ResponseFormatEnum.values().length;
+	// Maximum number of the cached (status, projection, format) entries
+	private static final int MAX_PROJECTED_ENTRIES = 64;
+	private static final LatencyHistogram COMPRESSION = MetricsRegistry.getInstance().stageHistogram("compression");
+	// Smaller responses are sent uncompressed (the gzip overhead is not worth it)
+	private static final int MIN_COMPRESSED_SIZE = 1024;
+	// Marks an entry whose compressed variant is not smaller than the response
+	private static final byte[] NOT_COMPRESSED = new byte[0];
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	// (format ordinal * STATUS_COUNT + status ordinal) -> entry
+	private final AtomicReferenceArray<CachedResponse> entries =
+			new AtomicReferenceArray<CachedResponse>(FORMAT_COUNT * STATUS_COUNT);
+	// ((projection mask * FORMAT_COUNT + format ordinal) * STATUS_COUNT + status ordinal) -> entry
+	private final ConcurrentHashMap<Integer, CachedResponse> projectedEntries =
+			new ConcurrentHashMap<Integer, CachedResponse>();
+	// -------------------------------------------------------------------
+
+	// SINGLETON Implementation ------------------------------------------
+	private static FoodTruckResponseCache INSTANCE = new FoodTruckResponseCache();
+	private FoodTruckResponseCache() {}
+	public static FoodTruckResponseCache getInstance() {return INSTANCE;}
+	// -------------------------------------------------------------------
+
+	/**
+	 * Returns the serialized (JSON) list of the food trucks that have the specified status
+	 * (see FoodTruckAccessor.getFoodTrucks(status)) for the current version of the storage.
+	 *
+	 * @param status Food Truck Status
+	 * @return The serialized list of the food trucks which have the specified status
+	 */
+	public CachedResponse get(FoodTruckStatusEnum status)
+	{
+		return get(status, null, ResponseFormatEnum.JSON);
+	}
+
+	/**
+	 * Returns the serialized (JSON) list of the food trucks that have the specified status
+	 * with the given properties only, for the current version of the storage.
+	 *
+	 * @param status Food Truck Status
+	 * @param projection Properties to serialize, or null for all the properties
+	 * @return The serialized list of the food trucks which have the specified status
+	 */
+	public CachedResponse get(FoodTruckStatusEnum status, FoodTruckProjection projection)
+	{
+		return get(status, projection, ResponseFormatEnum.JSON);
+	}
+
+	/**
+	 * Returns the serialized list of the food trucks that have the specified status
+	 * with the given properties only, for the current version of the storage.
+	 * Up to MAX_PROJECTED_ENTRIES (status, projection, format) entries are cached; the others are serialized on every call.
+	 *
+	 * @param status Food Truck Status
+	 * @param projection Properties to serialize, or null for all the properties
+	 * @param format Format of the serialized list
+	 * @return The serialized list of the food trucks which have the specified status
+	 */
+	public CachedResponse get(FoodTruckStatusEnum status, FoodTruckProjection projection, ResponseFormatEnum format)
+	{
+		if (projection == null)
+		{
+			return get(status, format);
+		}
+
+		long start = System.nanoTime();
+		Integer key = (projection.getMask() * FORMAT_COUNT + format.ordinal()) * STATUS_COUNT + status.ordinal();
+		CachedResponse entry = projectedEntries.get(key);
+
+		if (entry != null && entry.getVersion() == FoodTruckAccessor.getInstance().getVersion())
+		{
+			STATUS_LOOKUP.recordSince(start);
+			return entry;
+		}
+
+		CachedResponse newEntry = build(status, projection, format, start);
+
+		// Outdated entries are replaced, new pairs are cached only while there is room
+		if (entry != null || projectedEntries.size() < MAX_PROJECTED_ENTRIES)
+		{
+			projectedEntries.put(key, newEntry);
+		}
+		return newEntry;
+	}
+
+	/**
+	 * Returns the serialized list of all the properties of the food trucks that have the specified status.
+	 *
+	 * @param status Food Truck Status
+	 * @param format Format of the serialized list
+	 * @return The serialized list of the food trucks which have the specified status
+	 */
+	private CachedResponse get(FoodTruckStatusEnum status, ResponseFormatEnum format)
+	{
+		long start = System.nanoTime();
+		int index = format.ordinal() * STATUS_COUNT + status.ordinal();
+		CachedResponse entry = entries.get(index);
+
+		if (entry != null && entry.getVersion() == FoodTruckAccessor.getInstance().getVersion())
+		{
+			STATUS_LOOKUP.recordSince(start);
+			return entry;
+		}
+
+		CachedResponse newEntry = build(status, null, format, start);
+
+		// An outdated entry stored by a concurrent request is simply rebuilt by the next request
+		entries.set(index, newEntry);
+		return newEntry;
+	}
+
+	/**
+	 * Serializes the list of the food trucks that have the specified status.
+	 *
+	 * @param status Food Truck Status
+	 * @param projection Properties to serialize, or null for all the properties
+	 * @param format Format of the serialized list
+	 * @param start Start time of the lookup
+	 * @return The new entry
+	 */
+	private CachedResponse build(FoodTruckStatusEnum status, FoodTruckProjection projection, ResponseFormatEnum format, long start)
+	{
+		FoodTruckAccessor accessor = FoodTruckAccessor.getInstance();
+
+		// Read the version before and after the list, retry if the storage is changed in between
+		long version;
+		List<FoodTruck> foodTrucks;
+		do
+		{
+			version = accessor.getVersion();
+			foodTrucks = accessor.getFoodTrucks(status);
+		}
+		while (version != accessor.getVersion());
+		STATUS_LOOKUP.recordSince(start);
+
+		FoodTruckSerializer serializer = FoodTruckSerializer.getInstance(format);
+		byte[] body = (projection == null) ? serializer.toBytes(foodTrucks) : serializer.toBytes(foodTrucks, projection);
+		return new CachedResponse(version, body);
+	}
+
+	/**
+	 * Serialized response of a version of the storage.
+	 */
+	public static class CachedResponse
+	{
+		private final long version;
+		private final byte[] body;
+		private final String entityTag;
+		private volatile byte[] gzipBody;
+
+		private CachedResponse(long version, byte[] body)
+		{
+			this.version = version;
+			this.body = body;
+			this.entityTag = digest(body);
+		}
+
+		public long getVersion()
+		{
+			return version;
+		}
+
+		/**
+		 * Returns the serialized response. The returned array should not be modified.
+		 *
+		 * @return The serialized response
+		 */
+		public byte[] getBody()
+		{
+			return body;
+		}
+
+		/**
+		 * Returns the (strong) entity tag value of the response, without quotes.
+		 *
+		 * @return The entity tag value of the response
+		 */
+		public String getEntityTag()
+		{
+			return entityTag;
+		}
+
+		/**
+		 * Returns the gzip compressed response. The response is compressed on the first call,
+		 * concurrent calls wait for it. The returned array should not be modified.
+		 *
+		 * @return The gzip compressed response, or null if it should be sent uncompressed
+		 */
+		public byte[] getGzipBody()
+		{
+			byte[] result = gzipBody;
+
+			if (result == null)
+			{
+				synchronized (this)
+				{
+					result = gzipBody;
+					if (result == null)
+					{
+						result = compress(body);
+						gzipBody = result;
+					}
+				}
+			}
+			return (result == NOT_COMPRESSED) ? null : result;
+		}
+
+		/**
+		 * Returns the (strong) entity tag value of the gzip compressed response, without quotes.
+		 * It differs from the entity tag of the uncompressed response, as the content differs.
+		 *
+		 * @return The entity tag value of the gzip compressed response
+		 */
+		public String getGzipEntityTag()
+		{
+			return entityTag + "-gzip";
+		}
+
+		private static byte[] compress(byte[] body)
+		{
+			if (body.length < MIN_COMPRESSED_SIZE)
+			{
+				return NOT_COMPRESSED;
+			}
+
+			long start = System.nanoTime();
+			try
+			{
+				// Compressed once per version of the storage, so the best compression is affordable
+				ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4);
+				GZIPOutputStream gzip = new GZIPOutputStream(compressed)
+				{
+					{
+						def.setLevel(Deflater.BEST_COMPRESSION);
+					}
+				};
+				gzip.write(body);
+				gzip.close();
+
+				return (compressed.size() < body.length) ? compressed.toByteArray() : NOT_COMPRESSED;
+			}
+			catch (IOException e)
+			{
+				// Not possible with an in-memory stream
+				throw new IllegalStateException(e);
+			}
+			finally
+			{
+				COMPRESSION.recordSince(start);
+			}
+		}
+
+		private static String digest(byte[] body)
+		{
+			try
+			{
+				byte[] hash = MessageDigest.getInstance("SHA-1").digest(body);
+				StringBuilder hex = new StringBuilder(hash.length * 2);
+				for (byte b : hash)
+				{
+					hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+				}
+				return hex.toString();
+			}
+			catch (NoSuchAlgorithmException e)
+			{
+				// Every Java platform supports SHA-1
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,341 @@
+package com.uber.coding_challange.food_trucks.ctrl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.EnumMap;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.uber.coding_challange.food_trucks.model.FoodTruck;
+import com.uber.coding_challange.food_trucks.model.FoodTruckCluster;
+import com.uber.coding_challange.food_trucks.model.enums.ResponseFormatEnum;
+
+/**
+ * Serializes food trucks (and their clusters) to JSON (UTF-8) or to a binary format. Singleton pattern is used, one instance per format:
+ * the binary formats (Smile and CBOR, see ResponseFormatEnum) have the same structure as JSON,
+ * they are written by the same code with the Jackson factory of the format.
+ * A single, thread safe Jackson writer per format is shared by all the requests.
+ * A projection (see FoodTruckProjection) writes only the selected properties, straight to the generator.
+ *
+ * @author alper.karacelik
+ *
+ */
+public class FoodTruckSerializer
+{
+	// Constants ---------------------------------------------------------
+	private static final LatencyHistogram SERIALIZATION = MetricsRegistry.getInstance().stageHistogram("serialization");
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	private final ObjectWriter listWriter;
+	private final ObjectWriter foodTruckWriter;
+	private final ObjectWriter clusterListWriter;
+	private final JsonFactory jsonFactory;
+	// -------------------------------------------------------------------
+
+	// SINGLETON Implementation ------------------------------------------
+	private static final EnumMap<ResponseFormatEnum, FoodTruckSerializer> INSTANCES = createInstances();
+	private static FoodTruckSerializer INSTANCE = INSTANCES.get(ResponseFormatEnum.JSON);
+	private FoodTruckSerializer(ResponseFormatEnum format)
+	{
+		ObjectMapper jsonMapper = new ObjectMapper(createFactory(format));
+		listWriter = jsonMapper.writerFor(jsonMapper.getTypeFactory().constructCollectionType(List.class, FoodTruck.class))
+				.without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		foodTruckWriter = jsonMapper.writerFor(FoodTruck.class);
+		clusterListWriter = jsonMapper.writerFor(jsonMapper.getTypeFactory().constructCollectionType(List.class, FoodTruckCluster.class));
+		jsonFactory = jsonMapper.getFactory();
+	}
+	public static FoodTruckSerializer getInstance() {return INSTANCE;}
+	public static FoodTruckSerializer getInstance(ResponseFormatEnum format) {return INSTANCES.get(format);}
+	// -------------------------------------------------------------------
+
+	private static EnumMap<ResponseFormatEnum, FoodTruckSerializer> createInstances()
+	{
+		EnumMap<ResponseFormatEnum, FoodTruckSerializer> instances =
+				new EnumMap<ResponseFormatEnum, FoodTruckSerializer>(ResponseFormatEnum.class);
+		for (ResponseFormatEnum format : ResponseFormatEnum.values())
+		{
+			instances.put(format, new FoodTruckSerializer(format));
+		}
+		return instances;
+	}
+
+	private static JsonFactory createFactory(ResponseFormatEnum format)
+	{
+		switch (format)
+		{
+			case SMILE:
+				return new SmileFactory();
+			case CBOR:
+				return new CBORFactory();
+			default:
+				return new JsonFactory();
+		}
+	}
+
+	/**
+	 * Writes the given food trucks as a JSON array to the given stream.
+	 *
+	 * @param foodTrucks Food trucks
+	 * @param outputStream Target stream, it is not closed
+	 * @throws IOException If the stream can not be written
+	 */
+	public void write(List<FoodTruck> foodTrucks, OutputStream outputStream) throws IOException
+	{
+		long start = System.nanoTime();
+		try
+		{
+			listWriter.writeValue(outputStream, foodTrucks);
+		}
+		finally
+		{
+			SERIALIZATION.recordSince(start);
+		}
+	}
+
+	/**
+	 * Writes the given food trucks as a JSON array to the given stream, one food truck at a time.
+	 *
+	 * @param foodTrucks Food trucks
+	 * @param projection Properties to write, or null for all the properties
+	 * @param outputStream Target stream, it is not closed
+	 * @throws IOException If the stream can not be written
+	 */
+	public void writeArray(Iterable<FoodTruck> foodTrucks, FoodTruckProjection projection, OutputStream outputStream)
+			throws IOException
+	{
+		long start = System.nanoTime();
+		JsonGenerator generator = createGenerator(outputStream);
+		try
+		{
+			generator.writeStartArray();
+			for (FoodTruck foodTruck : foodTrucks)
+			{
+				writeFoodTruck(generator, foodTruck, projection);
+			}
+			generator.writeEndArray();
+		}
+		finally
+		{
+			generator.close();
+			SERIALIZATION.recordSince(start);
+		}
+	}
+
+	/**
+	 * Writes the given lists of food trucks as a JSON object to the given stream:
+	 * the list of every key is a JSON array, e.g. {"zone-1": [...], "zone-2": [...]}.
+	 *
+	 * @param keys Keys of the lists (distinct)
+	 * @param foodTruckLists Lists of food trucks, in the order of the keys
+	 * @param projection Properties to write, or null for all the properties
+	 * @param outputStream Target stream, it is not closed
+	 * @throws IOException If the stream can not be written
+	 */
+	public void writeObject(
+			List<String> keys,
+			List<List<FoodTruck>> foodTruckLists,
+			FoodTruckProjection projection,
+			OutputStream outputStream) throws IOException
+	{
+		long start = System.nanoTime();
+		JsonGenerator generator = createGenerator(outputStream);
+		try
+		{
+			generator.writeStartObject();
+			for (int i = 0; i < keys.size(); i++)
+			{
+				generator.writeArrayFieldStart(keys.get(i));
+				for (FoodTruck foodTruck : foodTruckLists.get(i))
+				{
+					writeFoodTruck(generator, foodTruck, projection);
+				}
+				generator.writeEndArray();
+			}
+			generator.writeEndObject();
+		}
+		finally
+		{
+			generator.close();
+			SERIALIZATION.recordSince(start);
+		}
+	}
+
+	/**
+	 * Writes the given food trucks as newline delimited JSON (one JSON object per line) to the given stream.
+	 * Food trucks are written one at a time, they reach the stream whenever the buffer of the generator is full.
+	 * Only supported by the JSON serializer.
+	 *
+	 * @param foodTrucks Food trucks
+	 * @param projection Properties to write, or null for all the properties
+	 * @param outputStream Target stream, it is not closed
+	 * @throws IOException If the stream can not be written
+	 */
+	public void writeNdjson(Iterable<FoodTruck> foodTrucks, FoodTruckProjection projection, OutputStream outputStream)
+			throws IOException
+	{
+		long start = System.nanoTime();
+		JsonGenerator generator = createGenerator(outputStream);
+		try
+		{
+			// Root values are separated by new lines
+			generator.setRootValueSeparator(new SerializedString("\n"));
+			boolean empty = true;
+			for (FoodTruck foodTruck : foodTrucks)
+			{
+				writeFoodTruck(generator, foodTruck, projection);
+				empty = false;
+			}
+			if (!empty)
+			{
+				generator.writeRaw('\n');
+			}
+		}
+		finally
+		{
+			generator.close();
+			SERIALIZATION.recordSince(start);
+		}
+	}
+
+	/**
+	 * Returns the given food trucks as a JSON array (UTF-8).
+	 *
+	 * @param foodTrucks Food trucks
+	 * @return JSON array of the given food trucks
+	 */
+	public byte[] toBytes(List<FoodTruck> foodTrucks)
+	{
+		try
+		{
+			ByteArrayOutputStream outputStream = new ByteArrayOutputStream(Math.max(64, foodTrucks.size() * 512));
+			write(foodTrucks, outputStream);
+			return outputStream.toByteArray();
+		}
+		catch (IOException e)
+		{
+			// Not expected for an in-memory stream
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Returns the given food trucks as a JSON array (UTF-8), see writeArray().
+	 *
+	 * @param foodTrucks Food trucks
+	 * @param projection Properties to write, or null for all the properties
+	 * @return JSON array of the given food trucks
+	 */
+	public byte[] toBytes(Iterable<FoodTruck> foodTrucks, FoodTruckProjection projection)
+	{
+		try
+		{
+			ByteArrayOutputStream outputStream = new ByteArrayOutputStream(4096);
+			writeArray(foodTrucks, projection, outputStream);
+			return outputStream.toByteArray();
+		}
+		catch (IOException e)
+		{
+			// Not expected for an in-memory stream
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Returns the given lists of food trucks as a JSON object (UTF-8), see writeObject().
+	 *
+	 * @param keys Keys of the lists (distinct)
+	 * @param foodTruckLists Lists of food trucks, in the order of the keys
+	 * @param projection Properties to write, or null for all the properties
+	 * @return JSON object of the given lists
+	 */
+	public byte[] toBytes(List<String> keys, List<List<FoodTruck>> foodTruckLists, FoodTruckProjection projection)
+	{
+		try
+		{
+			ByteArrayOutputStream outputStream = new ByteArrayOutputStream(4096);
+			writeObject(keys, foodTruckLists, projection, outputStream);
+			return outputStream.toByteArray();
+		}
+		catch (IOException e)
+		{
+			// Not expected for an in-memory stream
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Returns the given food truck clusters as a JSON array (UTF-8).
+	 *
+	 * @param clusters Food truck clusters
+	 * @return JSON array of the given clusters
+	 */
+	public byte[] toClusterBytes(List<FoodTruckCluster> clusters)
+	{
+		long start = System.nanoTime();
+		try
+		{
+			return clusterListWriter.writeValueAsBytes(clusters);
+		}
+		catch (IOException e)
+		{
+			// Not expected for an in-memory stream
+			throw new IllegalStateException(e);
+		}
+		finally
+		{
+			SERIALIZATION.recordSince(start);
+		}
+	}
+
+	/**
+	 * Returns the given food truck as a JSON string (see FoodTruckChangeFeed).
+	 *
+	 * @param foodTruck Food truck
+	 * @return JSON object of the given food truck
+	 */
+	public String toJson(FoodTruck foodTruck)
+	{
+		long start = System.nanoTime();
+		try
+		{
+			return foodTruckWriter.writeValueAsString(foodTruck);
+		}
+		catch (IOException e)
+		{
+			// Not expected for an in-memory writer
+			throw new IllegalStateException(e);
+		}
+		finally
+		{
+			SERIALIZATION.recordSince(start);
+		}
+	}
+
+	private void writeFoodTruck(JsonGenerator generator, FoodTruck foodTruck, FoodTruckProjection projection)
+			throws IOException
+	{
+		if (projection == null)
+		{
+			foodTruckWriter.writeValue(generator, foodTruck);
+		}
+		else
+		{
+			projection.write(generator, foodTruck);
+		}
+	}
+
+	private JsonGenerator createGenerator(OutputStream outputStream) throws IOException
+	{
+		JsonGenerator generator = jsonFactory.createGenerator(outputStream);
+		generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		return generator;
+	}
+}
@@ -0,0 +1,544 @@
+package com.uber.coding_challange.food_trucks.ctrl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.uber.coding_challange.food_trucks.model.FoodTruck;
+import com.uber.coding_challange.food_trucks.model.enums.DistanceUnitEnum;
+import com.uber.coding_challange.food_trucks.model.enums.ResponseFormatEnum;
+
+/**
+ * Geo-sharded mode: the food trucks are partitioned across several nodes by the geohash of their position.
+ * Singleton pattern is used.
+ * The geohash prefix of 'foodtrucks.shard.precision' characters (default 5, cells of about 5 x 5 km) of a position
+ * is mapped to one of the 'foodtrucks.shard.count' shards (by the hash code of the prefix), so a shard owns whole cells.
+ * Finer cells spread the food trucks of a city more evenly, coarser cells let a query touch fewer shards.
+ * A node runs in one of the three modes:
+ * 1) Shard ('foodtrucks.shard.index' of 'foodtrucks.shard.count'): stores only the food trucks of its cells
+ *    (see FoodTruckClient.ingest()) and answers the queries as usual.
+ * 2) Coordinator ('foodtrucks.shard.nodes': the comma separated base URLs of the shards, in the order of their indexes,
+ *    e.g. http://localhost:8081/webapi,http://localhost:8082/webapi): stores nothing, sends a circle query only to
+ *    the shards whose cells overlap the circle (all the shards for a query on 'status'), in parallel, and merges the results.
+ * 3) Single node (neither): stores all the food trucks.
+ * All the nodes of a cluster should have the same precision and number of shards.
+ * A shard call fails after 'foodtrucks.shard.timeout' milliseconds (default 5000), or if the shard does not answer 200 (OK),
+ * e.g. 503 (Service Unavailable) while its data is loading; the query fails if any call fails,
+ * a partial result is never returned. A coordinator is ready once all the shards are (see getReadyShards()).
+ * Shard calls are recorded as the 'shard_call' stage and counted as 'foodtrucks_shard_calls_total' by result (ok, failed).
+ *
+ * @author alper.karacelik
+ *
+ */
+public class FoodTruckShards
+{
+	// Constants ---------------------------------------------------------
+	private static final String NODES_KEY = "foodtrucks.shard.nodes";
+	private static final String COUNT_KEY = "foodtrucks.shard.count";
+	private static final String INDEX_KEY = "foodtrucks.shard.index";
+	private static final String PRECISION_KEY = "foodtrucks.shard.precision";
+	private static final String TIMEOUT_KEY = "foodtrucks.shard.timeout";
+	private static final long DEFAULT_PRECISION = 5;
+	private static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+	// Queries overlapping more cells are sent to all the shards
+	private static final int MAX_CELLS = 1024;
+	private static final String QUERY_PATH = "/foodtrucks/query";
+	private static final String READY_PATH = "/health/ready";
+	private static final ObjectReader SMILE_LIST_READER =
+			new ObjectMapper(new SmileFactory()).readerFor(new TypeReference<List<FoodTruck>>() {});
+	private static final LatencyHistogram SHARD_CALL = MetricsRegistry.getInstance().stageHistogram("shard_call");
+	private static final String CALLS = "foodtrucks_shard_calls_total";
+	private static final String CALLS_HELP = "Number of the calls to the shards by result";
+	private static final LongAdder OK_CALLS = MetricsRegistry.getInstance().counter(CALLS, CALLS_HELP, "result", "ok");
+	private static final LongAdder FAILED_CALLS = MetricsRegistry.getInstance().counter(CALLS, CALLS_HELP, "result", "failed");
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	// Base URLs of the shards (coordinator mode), empty otherwise
+	private final List<String> nodes = new ArrayList<String>();
+	private final int shardCount;
+	// Index of this node (shard mode), -1 otherwise
+	private final int shardIndex;
+	private final int precision;
+	private final int timeoutMillis;
+	// Calls to the shards (coordinator mode), null otherwise
+	private final ThreadPoolExecutor executor;
+	// -------------------------------------------------------------------
+
+	// SINGLETON Implementation ------------------------------------------
+	private static FoodTruckShards INSTANCE = new FoodTruckShards();
+	private FoodTruckShards()
+	{
+		this(Configuration.getString(NODES_KEY, ""), Configuration.getLong(COUNT_KEY, 1), Configuration.getLong(INDEX_KEY, -1),
+				Configuration.getLong(PRECISION_KEY, DEFAULT_PRECISION), Configuration.getLong(TIMEOUT_KEY, DEFAULT_TIMEOUT_MILLIS));
+	}
+	public static FoodTruckShards getInstance() {return INSTANCE;}
+	// -------------------------------------------------------------------
+
+	// Constructor(s) ----------------------------------------------------
+	/**
+	 * Creates the shards of the given configuration values (see the keys in the class comment), e.g. for the tests.
+	 */
+	FoodTruckShards(String nodesStr, long count, long index, long precision, long timeoutMillis)
+	{
+		for (String node : nodesStr.split(","))
+		{
+			if (!node.trim().isEmpty())
+			{
+				nodes.add(node.trim().replaceAll("/+$", ""));
+			}
+		}
+
+		this.precision = (int) Math.max(1, Math.min(GeoHash.MAX_PRECISION, precision));
+		this.timeoutMillis = (int) Math.max(1, Math.min(Integer.MAX_VALUE, timeoutMillis));
+
+		if (!nodes.isEmpty())
+		{
+			shardCount = nodes.size();
+			shardIndex = -1;
+
+			final AtomicInteger threadNumber = new AtomicInteger();
+			int threadCount = Math.max(4, 2 * shardCount);
+			executor = new ThreadPoolExecutor(threadCount, threadCount, 60, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+					{
+						@Override
+						public Thread newThread(Runnable runnable)
+						{
+							Thread thread = new Thread(runnable, "food-truck-shard-" + threadNumber.incrementAndGet());
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			executor.allowCoreThreadTimeOut(true);
+		}
+		else
+		{
+			shardCount = (int) Math.max(1, Math.min(Integer.MAX_VALUE, count));
+			shardIndex = (count > 1 && index >= 0 && index < count) ? (int) index : -1;
+			executor = null;
+		}
+	}
+	// -------------------------------------------------------------------
+
+	/**
+	 * Returns true if this node is a coordinator: it stores nothing and queries the shards.
+	 *
+	 * @return True if this node is a coordinator
+	 */
+	public boolean isCoordinator()
+	{
+		return !nodes.isEmpty();
+	}
+
+	/**
+	 * Returns the index of this node if it is a shard.
+	 *
+	 * @return The index of this shard, or -1 if this node is not a shard
+	 */
+	public int getShardIndex()
+	{
+		return shardIndex;
+	}
+
+	/**
+	 * Returns the number of the shards.
+	 *
+	 * @return The number of the shards
+	 */
+	public int getShardCount()
+	{
+		return shardCount;
+	}
+
+	/**
+	 * Returns true if the given food truck belongs to this node (always true unless this node is a shard).
+	 *
+	 * @param foodTruck Food truck with a valid position
+	 * @return True if the given food truck belongs to this node
+	 */
+	public boolean owns(FoodTruck foodTruck)
+	{
+		return shardIndex < 0 || getShard(foodTruck.getLatitude(), foodTruck.getLongitude()) == shardIndex;
+	}
+
+	/**
+	 * Returns the shard that owns the given position.
+	 *
+	 * @param latitude Latitude (in decimal degrees)
+	 * @param longitude Longitude (in decimal degrees)
+	 * @return The index of the shard
+	 */
+	public int getShard(double latitude, double longitude)
+	{
+		return getShard(GeoHash.encode(latitude, longitude, precision));
+	}
+
+	private int getShard(String cell)
+	{
+		// String.hashCode() is specified, so all the nodes map a cell to the same shard
+		return Math.floorMod(cell.hashCode(), shardCount);
+	}
+
+	/**
+	 * Returns all the shards.
+	 *
+	 * @return The indexes of all the shards
+	 */
+	public List<Integer> getAllShards()
+	{
+		List<Integer> shards = new ArrayList<Integer>(shardCount);
+		for (int i = 0; i < shardCount; i++)
+		{
+			shards.add(i);
+		}
+		return shards;
+	}
+
+	/**
+	 * Returns the shards that may have food trucks inside the given circle:
+	 * the owners of the cells that overlap the bounding box of the circle.
+	 *
+	 * @param latitude Latitude of the center of the circle (in decimal degrees)
+	 * @param longitude Longitude of the center of the circle (in decimal degrees)
+	 * @param radius Radius of the circle
+	 * @param radiusUnit Unit of the radius
+	 * @return The indexes of the shards, in ascending order
+	 */
+	public List<Integer> getShards(double latitude, double longitude, double radius, DistanceUnitEnum radiusUnit)
+	{
+		// Slightly enlarged, so that a rounding error never drops a shard
+		double arc = GeodesicDistanceCalculator.getInstance().toArcDegrees(radius, radiusUnit) * 1.0001 + 1e-9;
+		double minLat = latitude - arc;
+		double maxLat = latitude + arc;
+		if (!(arc < 90) || minLat <= -90 || maxLat >= 90)
+		{
+			// The circle contains a pole (or is invalid), it spans all the longitudes
+			return getShards(Math.max(-90, minLat), Math.min(90, maxLat), -180, 180);
+		}
+
+		double sinLongitudeDelta = Math.sin(Math.toRadians(arc)) / Math.cos(Math.toRadians(latitude));
+		if (sinLongitudeDelta >= 1)
+		{
+			return getShards(minLat, maxLat, -180, 180);
+		}
+
+		double longitudeDelta = Math.toDegrees(Math.asin(sinLongitudeDelta));
+		double minLon = longitude - longitudeDelta;
+		double maxLon = longitude + longitudeDelta;
+		// Crossing the 180th meridian
+		if (minLon < -180)
+		{
+			minLon += 360;
+		}
+		if (maxLon > 180)
+		{
+			maxLon -= 360;
+		}
+		return getShards(minLat, maxLat, minLon, maxLon);
+	}
+
+	private List<Integer> getShards(double minLat, double maxLat, double minLon, double maxLon)
+	{
+		List<String> cells = GeoHash.cover(minLat, maxLat, minLon, maxLon, precision, MAX_CELLS);
+		if (cells == null)
+		{
+			return getAllShards();
+		}
+
+		TreeSet<Integer> shards = new TreeSet<Integer>();
+		for (String cell : cells)
+		{
+			shards.add(getShard(cell));
+			if (shards.size() == shardCount)
+			{
+				break;
+			}
+		}
+		return new ArrayList<Integer>(shards);
+	}
+
+	/**
+	 * Sends the given query (GET foodtrucks/query) to the given shards in parallel
+	 * and merges their results, ordered by object id.
+	 * Only for a coordinator.
+	 *
+	 * @param shards Indexes of the shards
+	 * @param parameters Names and values of the query parameters (null values are skipped)
+	 * @return The food trucks returned by the shards
+	 * @throws IOException If a shard call fails or times out
+	 */
+	public List<FoodTruck> query(List<Integer> shards, String... parameters) throws IOException
+	{
+		if (executor == null)
+		{
+			throw new IllegalStateException("Not a coordinator");
+		}
+
+		final String queryString = toQueryString(parameters);
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		List<Future<List<FoodTruck>>> futures = new ArrayList<Future<List<FoodTruck>>>(shards.size());
+		List<FoodTruck> result = new ArrayList<FoodTruck>();
+
+		for (final int shard : shards)
+		{
+			futures.add(executor.submit(new Callable<List<FoodTruck>>()
+			{
+				@Override
+				public List<FoodTruck> call() throws IOException
+				{
+					return callShard(shard, queryString);
+				}
+			}));
+		}
+
+		try
+		{
+			for (int i = 0; i < futures.size(); i++)
+			{
+				try
+				{
+					result.addAll(futures.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+				}
+				catch (ExecutionException e)
+				{
+					throw (e.getCause() instanceof IOException)
+							? (IOException) e.getCause()
+							: new IOException("Shard " + shards.get(i) + " failed", e.getCause());
+				}
+				catch (TimeoutException e)
+				{
+					throw new IOException("Shard " + shards.get(i) + " timed out after " + timeoutMillis + " ms");
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while waiting for shard " + shards.get(i));
+				}
+			}
+		}
+		finally
+		{
+			// No-op for the completed calls
+			for (Future<List<FoodTruck>> future : futures)
+			{
+				future.cancel(true);
+			}
+		}
+
+		return merge(result);
+	}
+
+	/**
+	 * Calls the readiness endpoint (GET health/ready) of all the shards in parallel.
+	 * Only for a coordinator.
+	 *
+	 * @return The indexes of the shards that answered 200 (OK) in time, in ascending order
+	 */
+	public List<Integer> getReadyShards()
+	{
+		if (executor == null)
+		{
+			throw new IllegalStateException("Not a coordinator");
+		}
+
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>(shardCount);
+		List<Integer> readyShards = new ArrayList<Integer>(shardCount);
+
+		for (final int shard : getAllShards())
+		{
+			futures.add(executor.submit(new Callable<Boolean>()
+			{
+				@Override
+				public Boolean call()
+				{
+					return isShardReady(shard);
+				}
+			}));
+		}
+
+		try
+		{
+			for (int i = 0; i < futures.size(); i++)
+			{
+				try
+				{
+					if (futures.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS))
+					{
+						readyShards.add(i);
+					}
+				}
+				catch (ExecutionException | TimeoutException e)
+				{
+					// Not ready
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+		}
+		finally
+		{
+			for (Future<Boolean> future : futures)
+			{
+				future.cancel(true);
+			}
+		}
+
+		return readyShards;
+	}
+
+	private boolean isShardReady(int shard)
+	{
+		HttpURLConnection connection = null;
+
+		try
+		{
+			connection = (HttpURLConnection) new URL(nodes.get(shard) + READY_PATH).openConnection();
+			connection.setConnectTimeout(timeoutMillis);
+			connection.setReadTimeout(timeoutMillis);
+			return connection.getResponseCode() == HttpURLConnection.HTTP_OK;
+		}
+		catch (IOException e)
+		{
+			return false;
+		}
+		finally
+		{
+			if (connection != null)
+			{
+				connection.disconnect();
+			}
+		}
+	}
+
+	/**
+	 * Calls the given shard, in Smile (its most compact format).
+	 *
+	 * @param shard Index of the shard
+	 * @param queryString Encoded query parameters
+	 * @return The food trucks returned by the shard
+	 * @throws IOException If the call fails
+	 */
+	private List<FoodTruck> callShard(int shard, String queryString) throws IOException
+	{
+		long start = System.nanoTime();
+		URL url = new URL(nodes.get(shard) + QUERY_PATH + (queryString.isEmpty() ? "" : "?" + queryString));
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		boolean ok = false;
+
+		try
+		{
+			connection.setConnectTimeout(timeoutMillis);
+			connection.setReadTimeout(timeoutMillis);
+			connection.setRequestProperty("Accept", ResponseFormatEnum.SMILE.getStrValue());
+
+			int responseCode = connection.getResponseCode();
+			if (responseCode != HttpURLConnection.HTTP_OK)
+			{
+				throw new IOException("Shard " + shard + " (" + url + ") answered " + responseCode);
+			}
+
+			InputStream inputStream = connection.getInputStream();
+			try
+			{
+				List<FoodTruck> foodTrucks = SMILE_LIST_READER.readValue(inputStream);
+				ok = true;
+				return foodTrucks;
+			}
+			finally
+			{
+				inputStream.close();
+			}
+		}
+		catch (IOException e)
+		{
+			throw (e.getMessage() != null && e.getMessage().startsWith("Shard "))
+					? e
+					: new IOException("Shard " + shard + " (" + url + ") failed: " + e, e);
+		}
+		finally
+		{
+			(ok ? OK_CALLS : FAILED_CALLS).increment();
+			SHARD_CALL.recordSince(start);
+		}
+	}
+
+	/**
+	 * Orders the given food trucks by object id and drops the duplicates
+	 * (a food truck that moved to another shard between the refreshes of the shards).
+	 */
+	private static List<FoodTruck> merge(List<FoodTruck> foodTrucks)
+	{
+		Collections.sort(foodTrucks, new Comparator<FoodTruck>()
+		{
+			@Override
+			public int compare(FoodTruck foodTruck1, FoodTruck foodTruck2)
+			{
+				return Long.compare(foodTruck1.getObjectid(), foodTruck2.getObjectid());
+			}
+		});
+
+		List<FoodTruck> result = new ArrayList<FoodTruck>(foodTrucks.size());
+		for (FoodTruck foodTruck : foodTrucks)
+		{
+			if (result.isEmpty() || result.get(result.size() - 1).getObjectid() != foodTruck.getObjectid())
+			{
+				result.add(foodTruck);
+			}
+		}
+		return result;
+	}
+
+	private static String toQueryString(String... parameters) throws IOException
+	{
+		StringBuilder builder = new StringBuilder();
+
+		for (int i = 0; i + 1 < parameters.length; i += 2)
+		{
+			if (parameters[i + 1] != null)
+			{
+				builder.append(builder.length() == 0 ? "" : "&")
+						.append(URLEncoder.encode(parameters[i], "UTF-8"))
+						.append('=')
+						.append(URLEncoder.encode(parameters[i + 1], "UTF-8"));
+			}
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Stops the threads of the shard calls.
+	 */
+	public void shutdown()
+	{
+		if (executor != null)
+		{
+			executor.shutdownNow();
+		}
+	}
+}
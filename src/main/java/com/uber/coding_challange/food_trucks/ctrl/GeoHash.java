@@ -0,0 +1,127 @@
+package com.uber.coding_challange.food_trucks.ctrl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Geohash cells: the earth is split into 32^precision latitude/longitude cells,
+ * named by base 32 strings (the bits of the longitude and the latitude interleaved, the longitude first),
+ * so the cells with a common prefix form a larger cell, e.g. "9q8" (San Francisco) is inside of "9q".
+ * The cells are computed from integer cell indexes, so a position and the cells covering it always agree.
+ *
+ * @author alper.karacelik
+ *
+ */
+public final class GeoHash
+{
+	// Constants ---------------------------------------------------------
+	private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+	public static final int MAX_PRECISION = 12;
+	// -------------------------------------------------------------------
+
+	private GeoHash() {}
+
+	/**
+	 * Returns the cell of the given position.
+	 *
+	 * @param latitude Latitude (in decimal degrees)
+	 * @param longitude Longitude (in decimal degrees)
+	 * @param precision Length of the geohash (1 to MAX_PRECISION)
+	 * @return The geohash of the cell
+	 */
+	public static String encode(double latitude, double longitude, int precision)
+	{
+		int latitudeBits = latitudeBits(precision);
+		int longitudeBits = 5 * precision - latitudeBits;
+
+		return toGeoHash(index(latitude + 90, 180, latitudeBits), index(longitude + 180, 360, longitudeBits), precision);
+	}
+
+	/**
+	 * Returns the cells that overlap the rectangle of the given bounds.
+	 *
+	 * @param minLat Minimum latitude (in decimal degrees)
+	 * @param maxLat Maximum latitude (in decimal degrees)
+	 * @param minLon Minimum longitude (in decimal degrees)
+	 * @param maxLon Maximum longitude (in decimal degrees), less than minLon if the rectangle crosses the 180th meridian
+	 * @param precision Length of the geohashes (1 to MAX_PRECISION)
+	 * @param maxCells Maximum number of the cells
+	 * @return The geohashes of the cells, or null if there are more than 'maxCells' cells
+	 */
+	public static List<String> cover(double minLat, double maxLat, double minLon, double maxLon, int precision, int maxCells)
+	{
+		int latitudeBits = latitudeBits(precision);
+		int longitudeBits = 5 * precision - latitudeBits;
+		long minLatIndex = index(minLat + 90, 180, latitudeBits);
+		long maxLatIndex = index(maxLat + 90, 180, latitudeBits);
+		long minLonIndex = index(minLon + 180, 360, longitudeBits);
+		long maxLonIndex = index(maxLon + 180, 360, longitudeBits);
+
+		// Crossing the 180th meridian: from minLon to the last column, then from the first column to maxLon
+		long longitudeCount = (minLon <= maxLon)
+				? maxLonIndex - minLonIndex + 1
+				: (1L << longitudeBits) - minLonIndex + maxLonIndex + 1;
+		if ((maxLatIndex - minLatIndex + 1) * longitudeCount > maxCells)
+		{
+			return null;
+		}
+
+		List<String> cells = new ArrayList<String>();
+		for (long latIndex = minLatIndex; latIndex <= maxLatIndex; latIndex++)
+		{
+			for (long i = 0; i < longitudeCount; i++)
+			{
+				long lonIndex = (minLonIndex + i) & ((1L << longitudeBits) - 1);
+				cells.add(toGeoHash(latIndex, lonIndex, precision));
+			}
+		}
+		return cells;
+	}
+
+	private static int latitudeBits(int precision)
+	{
+		if (precision < 1 || precision > MAX_PRECISION)
+		{
+			throw new IllegalArgumentException("Invalid geohash precision: " + precision);
+		}
+		return 5 * precision / 2;
+	}
+
+	/**
+	 * Returns the index of the cell of the given offset (clamped to the valid indexes).
+	 *
+	 * @param offset Offset from the start of the range (in decimal degrees)
+	 * @param range Size of the range (180 for the latitudes, 360 for the longitudes)
+	 * @param bits Number of the bits of the index
+	 * @return The index of the cell
+	 */
+	private static long index(double offset, double range, int bits)
+	{
+		long cellCount = 1L << bits;
+		long index = (long) Math.floor(offset / range * cellCount);
+		return Math.max(0, Math.min(cellCount - 1, index));
+	}
+
+	private static String toGeoHash(long latIndex, long lonIndex, int precision)
+	{
+		int latitudeBits = latitudeBits(precision);
+		int longitudeBits = 5 * precision - latitudeBits;
+		char[] chars = new char[precision];
+
+		int latBit = latitudeBits - 1;
+		int lonBit = longitudeBits - 1;
+		for (int c = 0; c < precision; c++)
+		{
+			int value = 0;
+			for (int b = 0; b < 5; b++)
+			{
+				// Even bits (counting from 0) are the longitude bits
+				boolean longitude = (5 * c + b) % 2 == 0;
+				long bit = longitude ? (lonIndex >>> lonBit--) & 1 : (latIndex >>> latBit--) & 1;
+				value = (value << 1) | (int) bit;
+			}
+			chars[c] = BASE32[value];
+		}
+		return new String(chars);
+	}
+}
@@ -0,0 +1,304 @@
+package com.uber.coding_challange.food_trucks.ctrl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Checks whether positions reside in a polygon (or in one of the polygons of a multi polygon).
+ * Created from a GeoJSON geometry (see fromGeoJson()), e.g.
+ * {"type": "Polygon", "coordinates": [[[-122.42, 37.77], [-122.40, 37.77], [-122.40, 37.79], [-122.42, 37.77]]]}
+ * The first ring of a polygon is its exterior, the other rings are its holes.
+ * Edges are straight lines in the longitude/latitude plane (as in GeoJSON, RFC 7946),
+ * a position is checked with the even-odd rule (ray casting), after the bounding box of the polygon.
+ * Polygons crossing the 180th meridian should be split into a multi polygon (as advised by RFC 7946).
+ * Instances are immutable and thread safe.
+ *
+ * @author alper.karacelik
+ *
+ */
+public class GeoPolygon
+{
+	// Constants ---------------------------------------------------------
+	// Maximum number of positions of a geometry, bounds the cost of a query
+	public static final int MAX_POSITIONS = 10000;
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	// Polygons -> rings -> {lon0, lat0, lon1, lat1, ...} (in radians, the closing position is not repeated)
+	private final double[][][] polygons;
+	// Bounding box of each polygon (in radians): {minLat, maxLat, minLon, maxLon}
+	private final double[][] polygonBoxes;
+	// Bounding box of all the polygons (in decimal degrees)
+	private final double minLatitude;
+	private final double maxLatitude;
+	private final double minLongitude;
+	private final double maxLongitude;
+	// -------------------------------------------------------------------
+
+	// Constructor(s) ----------------------------------------------------
+	/**
+	 * @param polygons Polygons -> rings -> positions as {longitude, latitude} (in decimal degrees)
+	 */
+	private GeoPolygon(List<List<List<double[]>>> polygons)
+	{
+		this.polygons = new double[polygons.size()][][];
+		this.polygonBoxes = new double[polygons.size()][];
+
+		double minLat = Double.POSITIVE_INFINITY;
+		double maxLat = Double.NEGATIVE_INFINITY;
+		double minLon = Double.POSITIVE_INFINITY;
+		double maxLon = Double.NEGATIVE_INFINITY;
+
+		for (int p = 0; p < polygons.size(); p++)
+		{
+			List<List<double[]>> rings = polygons.get(p);
+			this.polygons[p] = new double[rings.size()][];
+
+			for (int r = 0; r < rings.size(); r++)
+			{
+				List<double[]> ring = rings.get(r);
+				double[] coordinates = new double[2 * ring.size()];
+
+				for (int i = 0; i < ring.size(); i++)
+				{
+					coordinates[2 * i] = Math.toRadians(ring.get(i)[0]);
+					coordinates[2 * i + 1] = Math.toRadians(ring.get(i)[1]);
+				}
+				this.polygons[p][r] = coordinates;
+			}
+
+			// The holes are inside of the exterior, the exterior bounds the polygon
+			double[] box = new double[] {Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+					Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+			for (double[] position : rings.get(0))
+			{
+				box[0] = Math.min(box[0], position[1]);
+				box[1] = Math.max(box[1], position[1]);
+				box[2] = Math.min(box[2], position[0]);
+				box[3] = Math.max(box[3], position[0]);
+			}
+			minLat = Math.min(minLat, box[0]);
+			maxLat = Math.max(maxLat, box[1]);
+			minLon = Math.min(minLon, box[2]);
+			maxLon = Math.max(maxLon, box[3]);
+
+			// toRadians() is monotonic, a position inside of the box in degrees is inside of the box in radians
+			this.polygonBoxes[p] = new double[] {Math.toRadians(box[0]), Math.toRadians(box[1]),
+					Math.toRadians(box[2]), Math.toRadians(box[3])};
+		}
+
+		this.minLatitude = minLat;
+		this.maxLatitude = maxLat;
+		this.minLongitude = minLon;
+		this.maxLongitude = maxLon;
+	}
+	// -------------------------------------------------------------------
+
+	/**
+	 * Creates a polygon from the given GeoJSON object:
+	 * a Polygon or a MultiPolygon geometry, or a Feature of one of them.
+	 *
+	 * @param node GeoJSON object
+	 * @return The polygon
+	 * @throws IllegalArgumentException If the object is not a valid (multi) polygon
+	 */
+	public static GeoPolygon fromGeoJson(JsonNode node)
+	{
+		if (node == null || !node.isObject())
+		{
+			throw new IllegalArgumentException("A GeoJSON object is expected");
+		}
+
+		String type = node.path("type").asText();
+		if ("Feature".equals(type))
+		{
+			return fromGeoJson(node.get("geometry"));
+		}
+
+		int[] positionCount = new int[1];
+		List<List<List<double[]>>> polygons = new ArrayList<List<List<double[]>>>();
+		JsonNode coordinates = node.get("coordinates");
+
+		if ("Polygon".equals(type))
+		{
+			polygons.add(parsePolygon(coordinates, positionCount));
+		}
+		else if ("MultiPolygon".equals(type))
+		{
+			if (coordinates == null || !coordinates.isArray() || coordinates.size() == 0)
+			{
+				throw new IllegalArgumentException("The coordinates of a MultiPolygon should be a non-empty array of polygons");
+			}
+			for (JsonNode polygon : coordinates)
+			{
+				polygons.add(parsePolygon(polygon, positionCount));
+			}
+		}
+		else
+		{
+			throw new IllegalArgumentException("Unsupported GeoJSON type: '" + type + "' (Polygon, MultiPolygon or Feature is expected)");
+		}
+
+		return new GeoPolygon(polygons);
+	}
+
+	/**
+	 * Parses the rings of a polygon: arrays of [longitude, latitude] positions, closed (the first position is repeated at the end).
+	 *
+	 * @param node Coordinates of the polygon
+	 * @param positionCount Number of the positions parsed so far (updated)
+	 * @return The rings of the polygon, without the closing positions
+	 */
+	private static List<List<double[]>> parsePolygon(JsonNode node, int[] positionCount)
+	{
+		if (node == null || !node.isArray() || node.size() == 0)
+		{
+			throw new IllegalArgumentException("The coordinates of a Polygon should be a non-empty array of rings");
+		}
+
+		List<List<double[]>> rings = new ArrayList<List<double[]>>();
+		for (JsonNode ringNode : node)
+		{
+			if (!ringNode.isArray() || ringNode.size() < 4)
+			{
+				throw new IllegalArgumentException("A ring should be an array of at least 4 positions");
+			}
+
+			positionCount[0] += ringNode.size();
+			if (positionCount[0] > MAX_POSITIONS)
+			{
+				throw new IllegalArgumentException("A geometry can have at most " + MAX_POSITIONS + " positions");
+			}
+
+			List<double[]> ring = new ArrayList<double[]>(ringNode.size());
+			for (JsonNode positionNode : ringNode)
+			{
+				ring.add(parsePosition(positionNode));
+			}
+
+			// The last position closes the ring
+			double[] first = ring.get(0);
+			double[] last = ring.remove(ring.size() - 1);
+			if (first[0] != last[0] || first[1] != last[1])
+			{
+				throw new IllegalArgumentException("A ring should end with its first position");
+			}
+			rings.add(ring);
+		}
+		return rings;
+	}
+
+	/**
+	 * Parses a [longitude, latitude] position (an altitude is ignored).
+	 *
+	 * @param node Position
+	 * @return The position as {longitude, latitude}
+	 */
+	private static double[] parsePosition(JsonNode node)
+	{
+		if (!node.isArray() || node.size() < 2 || !node.get(0).isNumber() || !node.get(1).isNumber())
+		{
+			throw new IllegalArgumentException("A position should be an array of [longitude, latitude] numbers");
+		}
+
+		double longitude = node.get(0).asDouble();
+		double latitude = node.get(1).asDouble();
+		if (!(longitude >= -180 && longitude <= 180 && latitude >= -90 && latitude <= 90))
+		{
+			throw new IllegalArgumentException("Invalid position: [" + longitude + ", " + latitude + "]");
+		}
+		return new double[] {longitude, latitude};
+	}
+
+	public double getMinLatitude() {
+		return minLatitude;
+	}
+	public double getMaxLatitude() {
+		return maxLatitude;
+	}
+	public double getMinLongitude() {
+		return minLongitude;
+	}
+	public double getMaxLongitude() {
+		return maxLongitude;
+	}
+
+	/**
+	 * Returns true if the given position resides in the polygon.
+	 *
+	 * @param latitude Latitude of the position (in decimal degrees)
+	 * @param longitude Longitude of the position (in decimal degrees)
+	 * @return True if the position resides in the polygon
+	 */
+	public boolean contains(double latitude, double longitude)
+	{
+		return containsRadians(Math.toRadians(latitude), Math.toRadians(longitude));
+	}
+
+	/**
+	 * Returns true if the given position (in radians) resides in the polygon.
+	 */
+	private boolean containsRadians(double latitude, double longitude)
+	{
+		for (int p = 0; p < polygons.length; p++)
+		{
+			double[] box = polygonBoxes[p];
+			if (latitude < box[0] || latitude > box[1] || longitude < box[2] || longitude > box[3])
+			{
+				continue;
+			}
+
+			// Even-odd rule: count the edges crossed by a ray from the position to the east
+			boolean inside = false;
+			for (double[] ring : polygons[p])
+			{
+				int n = ring.length;
+				for (int i = 0, j = n - 2; i < n; j = i, i += 2)
+				{
+					double lonI = ring[i];
+					double latI = ring[i + 1];
+					double lonJ = ring[j];
+					double latJ = ring[j + 1];
+
+					if ((latI > latitude) != (latJ > latitude)
+							&& longitude < lonI + (latitude - latI) * (lonJ - lonI) / (latJ - latI))
+					{
+						inside = !inside;
+					}
+				}
+			}
+
+			if (inside)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Keeps the given rows that reside in the polygon at the beginning of the rows array (the order is kept).
+	 *
+	 * @param latitudes Latitudes of the rows (in radians)
+	 * @param longitudes Longitudes of the rows (in radians)
+	 * @param rows Rows to check
+	 * @param count Number of the rows to check
+	 * @return The number of the rows that reside in the polygon
+	 */
+	public int filterRows(double[] latitudes, double[] longitudes, int[] rows, int count)
+	{
+		int matchCount = 0;
+
+		for (int i = 0; i < count; i++)
+		{
+			int row = rows[i];
+			if (containsRadians(latitudes[row], longitudes[row]))
+			{
+				rows[matchCount++] = row;
+			}
+		}
+		return matchCount;
+	}
+}
@@ -52,7 +52,47 @@ public class GeodesicDistanceCalculator
 
 		return (dist);
 	}
-	
+
+	/**
+	 * Creates a filter that checks whether positions reside in the given circle.
+	 * The filter precomputes everything that depends only on the circle,
+	 * use it when many positions are checked against the same circle.
+	 * 
+	 * @param latitude Latitude of the center of the circle (in decimal degrees)
+	 * @param longitude Longitude of the center of the circle (in decimal degrees)
+	 * @param radius Radius of the circle
+	 * @param radiusUnit Unit of the radius
+	 * @return Filter of the given circle
+	 */
+	public GeodesicRadiusFilter newRadiusFilter(double latitude, double longitude, double radius, DistanceUnitEnum radiusUnit)
+	{
+		return new GeodesicRadiusFilter(latitude, longitude, radius, radiusUnit);
+	}
+
+	/**
+	 * Converts the given distance to the arc (in decimal degrees) it covers on the earth surface.
+	 * This is the inverse of the unit conversion done by 'distance()'.
+	 *
+	 * @param distance Distance in the given unit format
+	 * @param unit Distance unit
+	 * @return Arc length of the given distance (in decimal degrees)
+	 */
+	public double toArcDegrees(double distance, DistanceUnitEnum unit)
+	{
+		double dist = distance;
+
+		if (unit == DistanceUnitEnum.KILOMETERS)
+		{
+			dist = dist / 1.609344;
+		}
+		else if (unit == DistanceUnitEnum.NAUTICAL_MILES)
+		{
+			dist = dist / 0.8684;
+		}
+
+		return (dist / (60 * 1.1515));
+	}
+
 	/**
 	 * Converts decimal degree to radian
 	 * 
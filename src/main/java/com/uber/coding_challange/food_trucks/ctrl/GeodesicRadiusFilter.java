@@ -0,0 +1,231 @@
+package com.uber.coding_challange.food_trucks.ctrl;
+
+import com.uber.coding_challange.food_trucks.model.enums.DistanceUnitEnum;
+
+/**
+ * Checks whether positions reside in a circle (the distance to the center is smaller than the radius).
+ * Created once per query (see GeodesicDistanceCalculator.newRadiusFilter());
+ * the trigonometry of the center and the radius (converted to an angle) is computed only once.
+ * A position is checked in three steps:
+ * 1) Rejected if it is outside of the latitude/longitude bounding box of the circle (no trigonometry).
+ * 2) Accepted if it is inside of a diamond that is inscribed in the circle (no trigonometry).
+ * 3) Otherwise checked with the haversine formula, which is numerically stable for short distances.
+ * Longitudes are expected in the [-180, 180] range for the first two steps,
+ * other positions are checked with the haversine formula only.
+ * The result is the same as GeodesicDistanceCalculator.distance(...) < radius, except on the boundary of the circle:
+ * distance() uses the arc cosine formula, which loses precision for short (and almost antipodal) distances.
+ * Positions may be classified differently only if their distance is within
+ * BOUNDARY_TOLERANCE * radius + ARC_COSINE_ERROR / sin(radius) (as angles) of the radius,
+ * e.g. within ~25 micrometers of a 1 mile radius and within ~4 mm of a 10 m radius;
+ * there the haversine formula of the filter is the precise one.
+ * The filter also accepts the positions where distance() is NaN (the arc cosine of a rounded value above 1, e.g. the center).
+ * Instances are immutable and thread safe.
+ *
+ * @author alper.karacelik
+ *
+ */
+public class GeodesicRadiusFilter
+{
+	// Constants ---------------------------------------------------------
+	// Relative margin of the bounding box and the inscribed diamond, covers the rounding errors
+	private static final double MARGIN = 1e-9;
+	// Accepted difference to distance() on the boundary (see the class comment):
+	// relative to the radius, and the absolute error of the arc cosine (divided by the sine of the radius),
+	// the rounding errors measured by GeodesicRadiusFilterTest are below 4e-16
+	static final double BOUNDARY_TOLERANCE = 1e-12;
+	static final double ARC_COSINE_ERROR = 1e-15;
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	private final boolean matchesNothing;
+	private final boolean matchesEverything;
+	private final double centerLatitude;
+	private final double centerLongitude;
+	private final double cosCenterLatitude;
+	// Haversine of the radius: sin^2(radius / 2)
+	private final double haversineRadius;
+	// Bounding box: maximum latitude and longitude differences to the center
+	private final double maxLatitudeDelta;
+	private final double maxLongitudeDelta;
+	// Inscribed diamond: |dLat| + |dLon| * lonScale <= innerRadius
+	private final double innerRadius;
+	private final double lonScale;
+	// -------------------------------------------------------------------
+
+	// Constructor(s) ----------------------------------------------------
+	/**
+	 * @param latitude Latitude of the center of the circle (in decimal degrees)
+	 * @param longitude Longitude of the center of the circle (in decimal degrees)
+	 * @param radius Radius of the circle
+	 * @param radiusUnit Unit of the radius
+	 */
+	GeodesicRadiusFilter(double latitude, double longitude, double radius, DistanceUnitEnum radiusUnit)
+	{
+		double angularRadius = Math.toRadians(GeodesicDistanceCalculator.getInstance().toArcDegrees(radius, radiusUnit));
+		boolean validCenter = latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180;
+
+		this.matchesNothing = !(angularRadius > 0) || Double.isNaN(latitude) || Double.isNaN(longitude)
+				|| Double.isInfinite(latitude) || Double.isInfinite(longitude);
+		this.matchesEverything = !matchesNothing && angularRadius > Math.PI;
+		this.centerLatitude = Math.toRadians(latitude);
+		this.centerLongitude = Math.toRadians(longitude);
+		this.cosCenterLatitude = Math.cos(centerLatitude);
+
+		double sinHalfRadius = Math.sin(Math.min(angularRadius, Math.PI) / 2);
+		this.haversineRadius = sinHalfRadius * sinHalfRadius;
+
+		if (!validCenter || matchesNothing)
+		{
+			// Use the haversine formula only
+			this.maxLatitudeDelta = Double.POSITIVE_INFINITY;
+			this.maxLongitudeDelta = Double.POSITIVE_INFINITY;
+			this.innerRadius = -1;
+			this.lonScale = 1;
+			return;
+		}
+
+		this.maxLatitudeDelta = angularRadius * (1 + MARGIN);
+
+		// Longitude extent of the circle; all the longitudes if the circle covers a pole
+		double sinLonDelta = Math.sin(angularRadius) / cosCenterLatitude;
+		if (centerLatitude + angularRadius >= Math.PI / 2 || centerLatitude - angularRadius <= -Math.PI / 2
+				|| angularRadius >= Math.PI / 2 || !(sinLonDelta < 1))
+		{
+			this.maxLongitudeDelta = Double.POSITIVE_INFINITY;
+		}
+		else
+		{
+			this.maxLongitudeDelta = Math.asin(sinLonDelta) * (1 + MARGIN);
+		}
+
+		// The length of a longitude difference is scaled by the cosine of the latitude,
+		// take the largest cosine in the latitude band of the circle
+		double minAbsLatitude = Math.max(0, Math.abs(centerLatitude) - angularRadius);
+		this.lonScale = Math.cos(minAbsLatitude);
+		this.innerRadius = angularRadius * (1 - MARGIN);
+	}
+	// -------------------------------------------------------------------
+
+	/**
+	 * Returns true if the given position resides in the circle.
+	 *
+	 * @param latitude Latitude of the position (in decimal degrees)
+	 * @param longitude Longitude of the position (in decimal degrees)
+	 * @return True if the given position resides in the circle
+	 */
+	public boolean contains(double latitude, double longitude)
+	{
+		double latitudeRad = Math.toRadians(latitude);
+		return containsRadians(latitudeRad, Math.toRadians(longitude), Double.NaN);
+	}
+
+	/**
+	 * Returns true if the given position resides in the circle.
+	 *
+	 * @param latitude Latitude of the position (in radians)
+	 * @param longitude Longitude of the position (in radians)
+	 * @param cosLatitude Cosine of the latitude, or NaN if it is not known
+	 * @return True if the given position resides in the circle
+	 */
+	public boolean containsRadians(double latitude, double longitude, double cosLatitude)
+	{
+		if (matchesNothing || Double.isNaN(latitude) || Double.isNaN(longitude))
+		{
+			return false;
+		}
+		if (matchesEverything)
+		{
+			return !Double.isInfinite(latitude) && !Double.isInfinite(longitude);
+		}
+
+		double latitudeDelta = latitude - centerLatitude;
+		double longitudeDelta = Math.abs(longitude - centerLongitude);
+		if (longitudeDelta > Math.PI)
+		{
+			longitudeDelta = 2 * Math.PI - longitudeDelta;
+		}
+
+		// Positions out of the valid ranges are checked with the haversine formula only
+		if (longitudeDelta >= 0 && latitude >= -Math.PI / 2 && latitude <= Math.PI / 2)
+		{
+			// 1) Bounding box
+			if (latitudeDelta > maxLatitudeDelta || latitudeDelta < -maxLatitudeDelta)
+			{
+				return false;
+			}
+
+			if (longitudeDelta > maxLongitudeDelta)
+			{
+				return false;
+			}
+
+			// 2) Inscribed diamond
+			if (Math.abs(latitudeDelta) + longitudeDelta * lonScale <= innerRadius)
+			{
+				return true;
+			}
+		}
+
+		// 3) Haversine
+		if (Double.isNaN(cosLatitude))
+		{
+			cosLatitude = Math.cos(latitude);
+		}
+		double sinHalfLatitudeDelta = Math.sin(latitudeDelta / 2);
+		double sinHalfLongitudeDelta = Math.sin((longitude - centerLongitude) / 2);
+		double haversine = sinHalfLatitudeDelta * sinHalfLatitudeDelta
+				+ cosLatitude * cosCenterLatitude * sinHalfLongitudeDelta * sinHalfLongitudeDelta;
+
+		return haversine < haversineRadius;
+	}
+
+	/**
+	 * Batch version of contains(): checks the first 'count' positions of the given arrays.
+	 * The indexes of the positions that reside in the circle are written to 'matches' in order.
+	 *
+	 * @param latitudes Latitudes (in decimal degrees)
+	 * @param longitudes Longitudes (in decimal degrees)
+	 * @param count Number of positions to check
+	 * @param matches Array that receives the indexes of the matching positions (at least 'count' long)
+	 * @return The number of matching positions
+	 */
+	public int filter(double[] latitudes, double[] longitudes, int count, int[] matches)
+	{
+		int matchCount = 0;
+
+		for (int i = 0; i < count; i++)
+		{
+			if (contains(latitudes[i], longitudes[i]))
+			{
+				matches[matchCount++] = i;
+			}
+		}
+		return matchCount;
+	}
+
+	/**
+	 * Batch version of containsRadians() over columnar data: checks the positions of the given rows.
+	 * The matching rows are moved to the beginning of 'rows' (keeping their order).
+	 *
+	 * @param latitudes Latitudes of all the rows (in radians)
+	 * @param longitudes Longitudes of all the rows (in radians)
+	 * @param cosLatitudes Cosines of the latitudes of all the rows
+	 * @param rows Rows to check
+	 * @param count Number of rows to check
+	 * @return The number of matching rows
+	 */
+	public int filterRows(double[] latitudes, double[] longitudes, double[] cosLatitudes, int[] rows, int count)
+	{
+		int matchCount = 0;
+
+		for (int i = 0; i < count; i++)
+		{
+			int row = rows[i];
+			if (containsRadians(latitudes[row], longitudes[row], cosLatitudes[row]))
+			{
+				rows[matchCount++] = row;
+			}
+		}
+		return matchCount;
+	}
+}
@@ -0,0 +1,162 @@
+package com.uber.coding_challange.food_trucks.ctrl;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram (in nanoseconds) with log-linear buckets, in the style of HdrHistogram:
+ * every power of 2 is split into 64 linear sub-buckets, so a recorded value is kept with ~1.6% precision.
+ * Values up to 2^40 ns (~18 minutes) are kept, larger values are counted in the last bucket.
+ * Recording is lock free and does not allocate; the histogram is cumulative (never reset).
+ *
+ * @author alper.karacelik
+ *
+ */
+public class LatencyHistogram
+{
+	// Constants ---------------------------------------------------------
+	private static final int SUB_BUCKET_BITS = 6;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private static final int MAX_VALUE_BITS = 40;
+	private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+	private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (MAX_VALUE_BITS - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+	// -------------------------------------------------------------------
+
+	/**
+	 * Records the given value. Negative values are recorded as 0.
+	 *
+	 * @param nanos Latency in nanoseconds
+	 */
+	public void record(long nanos)
+	{
+		long value = Math.max(0, nanos);
+
+		counts.incrementAndGet(bucketOf(value));
+		count.incrementAndGet();
+		sum.addAndGet(value);
+
+		// Update the maximum if the value is larger
+		long currentMax = max.get();
+		while (value > currentMax && !max.compareAndSet(currentMax, value))
+		{
+			currentMax = max.get();
+		}
+	}
+
+	/**
+	 * Records the time elapsed since the given start time.
+	 *
+	 * @param startNanos Start time obtained from System.nanoTime()
+	 */
+	public void recordSince(long startNanos)
+	{
+		record(System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * @return The number of the recorded values
+	 */
+	public long getCount()
+	{
+		return count.get();
+	}
+
+	/**
+	 * @return The sum of the recorded values (in nanoseconds)
+	 */
+	public long getSum()
+	{
+		return sum.get();
+	}
+
+	/**
+	 * @return The largest recorded value (in nanoseconds)
+	 */
+	public long getMax()
+	{
+		return max.get();
+	}
+
+	/**
+	 * Returns the values at the given quantiles (the upper bounds of their buckets, at most the largest value).
+	 * Computed on a copy of the bucket counts, concurrent recordings are not blocked.
+	 *
+	 * @param quantiles Quantiles in ascending order, in [0, 1]
+	 * @return The values at the given quantiles (in nanoseconds), 0 if nothing is recorded
+	 */
+	public long[] getQuantiles(double[] quantiles)
+	{
+		long[] bucketCounts = new long[BUCKET_COUNT];
+		long total = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++)
+		{
+			bucketCounts[i] = counts.get(i);
+			total += bucketCounts[i];
+		}
+
+		long[] values = new long[quantiles.length];
+		long maxValue = max.get();
+		long seen = 0;
+		int bucket = -1;
+		for (int q = 0; q < quantiles.length && total > 0; q++)
+		{
+			// Rank of the quantile, at least 1
+			long rank = Math.max(1, (long) Math.ceil(quantiles[q] * total));
+			while (seen < rank && bucket < BUCKET_COUNT - 1)
+			{
+				seen += bucketCounts[++bucket];
+			}
+			values[q] = Math.min(upperBoundOf(bucket), maxValue);
+		}
+		return values;
+	}
+
+	/**
+	 * Returns the index of the bucket of the given value.
+	 *
+	 * @param value Non-negative value
+	 * @return Bucket index
+	 */
+	private static int bucketOf(long value)
+	{
+		if (value < SUB_BUCKET_COUNT)
+		{
+			return (int) value;
+		}
+		if (value > MAX_VALUE)
+		{
+			return BUCKET_COUNT - 1;
+		}
+
+		// The highest bit selects the power of 2, the following SUB_BUCKET_BITS bits select the sub-bucket
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int shift = exponent - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+		return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + subBucket;
+	}
+
+	/**
+	 * Returns the largest value of the given bucket.
+	 *
+	 * @param bucket Bucket index
+	 * @return The largest value of the bucket
+	 */
+	private static long upperBoundOf(int bucket)
+	{
+		if (bucket < SUB_BUCKET_COUNT)
+		{
+			return bucket;
+		}
+
+		int shift = (bucket - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+		long subBucket = (bucket - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+		return ((SUB_BUCKET_COUNT + subBucket + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,209 @@
+package com.uber.coding_challange.food_trucks.ctrl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registry of the metrics of the web service. Singleton pattern is used.
+ * Metrics are created once (e.g. in static fields) and recorded without locks or allocations;
+ * the registry only renders them in the Prometheus text format (see MetricsResource).
+ * Latency histograms are rendered as summaries (in seconds), counters as counters.
+ *
+ * @author alper.karacelik
+ *
+ */
+public class MetricsRegistry
+{
+	// Constants ---------------------------------------------------------
+	private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999, 1.0};
+	private static final double NANOS_PER_SECOND = 1e9;
+	private static final String REQUEST_DURATION = "foodtrucks_request_duration_seconds";
+	private static final String STAGE_DURATION = "foodtrucks_stage_duration_seconds";
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	// Metric name -> family of the metrics with that name (in registration order)
+	private final Map<String, Family> families = new LinkedHashMap<String, Family>();
+	// -------------------------------------------------------------------
+
+	// SINGLETON Implementation ------------------------------------------
+	private static MetricsRegistry INSTANCE = new MetricsRegistry();
+	private MetricsRegistry() {}
+	public static MetricsRegistry getInstance() {return INSTANCE;}
+	// -------------------------------------------------------------------
+
+	/**
+	 * Returns the latency histogram with the given name and labels, creates it if it does not exist.
+	 *
+	 * @param name Metric name, e.g. "foodtrucks_request_duration_seconds"
+	 * @param help Description of the metric
+	 * @param labels Label names and values, e.g. "endpoint", "query"
+	 * @return The latency histogram
+	 */
+	public synchronized LatencyHistogram histogram(String name, String help, String... labels)
+	{
+		return (LatencyHistogram) getOrCreate(name, help, "summary", labels);
+	}
+
+	/**
+	 * Returns the counter with the given name and labels, creates it if it does not exist.
+	 *
+	 * @param name Metric name, e.g. "foodtrucks_ingested_records_total"
+	 * @param help Description of the metric
+	 * @param labels Label names and values, e.g. "result", "invalid"
+	 * @return The counter
+	 */
+	public synchronized LongAdder counter(String name, String help, String... labels)
+	{
+		return (LongAdder) getOrCreate(name, help, "counter", labels);
+	}
+
+	/**
+	 * Returns the latency histogram of the given endpoint.
+	 *
+	 * @param endpoint Endpoint name, e.g. "query"
+	 * @return The latency histogram of the endpoint
+	 */
+	public LatencyHistogram requestHistogram(String endpoint)
+	{
+		return histogram(REQUEST_DURATION, "Duration of the requests by endpoint", "endpoint", endpoint);
+	}
+
+	/**
+	 * Returns the latency histogram of the given internal stage.
+	 *
+	 * @param stage Stage name, e.g. "serialization"
+	 * @return The latency histogram of the stage
+	 */
+	public LatencyHistogram stageHistogram(String stage)
+	{
+		return histogram(STAGE_DURATION, "Duration of the internal stages of the requests and the ingestion", "stage", stage);
+	}
+
+	/**
+	 * Renders all the metrics in the Prometheus text format (version 0.0.4).
+	 *
+	 * @return The metrics in the Prometheus text format
+	 */
+	public synchronized String toPrometheusText()
+	{
+		StringBuilder text = new StringBuilder(4096);
+
+		for (Map.Entry<String, Family> entry : families.entrySet())
+		{
+			String name = entry.getKey();
+			Family family = entry.getValue();
+
+			text.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+			text.append("# TYPE ").append(name).append(' ').append(family.type).append('\n');
+
+			for (int i = 0; i < family.metrics.size(); i++)
+			{
+				String labels = family.labels.get(i);
+				Object metric = family.metrics.get(i);
+
+				if (metric instanceof LatencyHistogram)
+				{
+					LatencyHistogram histogram = (LatencyHistogram) metric;
+					long[] values = histogram.getQuantiles(QUANTILES);
+					for (int q = 0; q < QUANTILES.length; q++)
+					{
+						String quantile = "quantile=\"" + QUANTILES[q] + "\"";
+						appendSample(text, name, labels.isEmpty() ? quantile : labels + "," + quantile,
+								toSeconds(values[q]));
+					}
+					appendSample(text, name + "_sum", labels, toSeconds(histogram.getSum()));
+					appendSample(text, name + "_count", labels, Long.toString(histogram.getCount()));
+				}
+				else
+				{
+					appendSample(text, name, labels, Long.toString(((LongAdder) metric).sum()));
+				}
+			}
+		}
+		return text.toString();
+	}
+
+	private Object getOrCreate(String name, String help, String type, String[] labels)
+	{
+		Family family = families.get(name);
+		if (family == null)
+		{
+			family = new Family(help, type);
+			families.put(name, family);
+		}
+		else if (!family.type.equals(type))
+		{
+			throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type);
+		}
+
+		String labelText = toLabelText(labels);
+		int index = family.labels.indexOf(labelText);
+		if (index >= 0)
+		{
+			return family.metrics.get(index);
+		}
+
+		Object metric = type.equals("summary") ? new LatencyHistogram() : new LongAdder();
+		family.labels.add(labelText);
+		family.metrics.add(metric);
+		return metric;
+	}
+
+	private static String toLabelText(String[] labels)
+	{
+		if (labels.length % 2 != 0)
+		{
+			throw new IllegalArgumentException("Labels should be given as name/value pairs");
+		}
+
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < labels.length; i += 2)
+		{
+			if (text.length() > 0)
+			{
+				text.append(',');
+			}
+			text.append(labels[i]).append("=\"")
+				.append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+				.append('"');
+		}
+		return text.toString();
+	}
+
+	private static String toSeconds(long nanos)
+	{
+		return String.format(Locale.ROOT, "%.9f", nanos / NANOS_PER_SECOND);
+	}
+
+	private static void appendSample(StringBuilder text, String name, String labels, String value)
+	{
+		text.append(name);
+		if (!labels.isEmpty())
+		{
+			text.append('{').append(labels).append('}');
+		}
+		text.append(' ').append(value).append('\n');
+	}
+
+	/**
+	 * Metrics with the same name (and different labels).
+	 */
+	private static class Family
+	{
+		private final String help;
+		private final String type;
+		private final List<String> labels = new ArrayList<String>();
+		private final List<Object> metrics = new ArrayList<Object>();
+
+		private Family(String help, String type)
+		{
+			this.help = help;
+			this.type = type;
+		}
+	}
+}
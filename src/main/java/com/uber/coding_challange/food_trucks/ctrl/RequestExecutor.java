@@ -0,0 +1,105 @@
+package com.uber.coding_challange.food_trucks.ctrl;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded executor of the query requests. Singleton pattern is used.
+ * Query requests are suspended on the Tomcat connector thread and processed on this executor,
+ * so the connector threads are released while a query runs or a large response is streamed.
+ * 'foodtrucks.executor.threads' threads (default: twice the number of processors, at least 4)
+ * process the requests; at most 'foodtrucks.executor.queue' requests (default: 1000) wait for a thread,
+ * further requests are rejected and counted in 'foodtrucks_rejected_requests_total'.
+ * The threads are daemon threads and stop after a minute without requests.
+ *
+ * @author alper.karacelik
+ *
+ */
+public class RequestExecutor
+{
+	// Constants ---------------------------------------------------------
+	private static final String THREADS_KEY = "foodtrucks.executor.threads";
+	private static final String QUEUE_KEY = "foodtrucks.executor.queue";
+	private static final String TIMEOUT_KEY = "foodtrucks.request.timeout";
+	private static final long DEFAULT_QUEUE_SIZE = 1000;
+	private static final long DEFAULT_TIMEOUT_MILLIS = 30000;
+	private static final long KEEP_ALIVE_SECONDS = 60;
+	private static final LongAdder REJECTED_REQUESTS = MetricsRegistry.getInstance().counter(
+			"foodtrucks_rejected_requests_total", "Number of the requests rejected because the executor queue is full");
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	private final ThreadPoolExecutor executor;
+	private final long timeoutMillis;
+	// -------------------------------------------------------------------
+
+	// SINGLETON Implementation ------------------------------------------
+	private static RequestExecutor INSTANCE = new RequestExecutor();
+	public static RequestExecutor getInstance() {return INSTANCE;}
+
+	private RequestExecutor()
+	{
+		int defaultThreadCount = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+		int threadCount = (int) Math.max(1, Configuration.getLong(THREADS_KEY, defaultThreadCount));
+		int queueSize = (int) Math.max(1, Configuration.getLong(QUEUE_KEY, DEFAULT_QUEUE_SIZE));
+		timeoutMillis = Math.max(1, Configuration.getLong(TIMEOUT_KEY, DEFAULT_TIMEOUT_MILLIS));
+
+		final AtomicInteger threadNumber = new AtomicInteger();
+		executor = new ThreadPoolExecutor(threadCount, threadCount, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory()
+				{
+					@Override
+					public Thread newThread(Runnable runnable)
+					{
+						Thread thread = new Thread(runnable, "food-truck-request-" + threadNumber.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+	}
+	// -------------------------------------------------------------------
+
+	/**
+	 * Runs the given task on the executor.
+	 *
+	 * @param task Task to run
+	 * @throws RejectedExecutionException If the queue is full or the executor is shut down
+	 */
+	public void execute(Runnable task)
+	{
+		try
+		{
+			executor.execute(task);
+		}
+		catch (RejectedExecutionException e)
+		{
+			REJECTED_REQUESTS.increment();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the time after which a suspended request is answered with 503 (Service Unavailable),
+	 * 'foodtrucks.request.timeout' milliseconds (default: 30 seconds).
+	 *
+	 * @return The timeout of a suspended request in milliseconds
+	 */
+	public long getTimeoutMillis()
+	{
+		return timeoutMillis;
+	}
+
+	/**
+	 * Stops the executor. Running requests are interrupted, waiting requests are dropped.
+	 */
+	public void shutdown()
+	{
+		executor.shutdownNow();
+	}
+}
@@ -1,11 +1,21 @@
 package com.uber.coding_challange.food_trucks.dataaccess;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 
+import com.uber.coding_challange.food_trucks.ctrl.FoodTruckChangeFeed;
+import com.uber.coding_challange.food_trucks.ctrl.GeoPolygon;
 import com.uber.coding_challange.food_trucks.ctrl.GeodesicDistanceCalculator;
+import com.uber.coding_challange.food_trucks.ctrl.GeodesicRadiusFilter;
+import com.uber.coding_challange.food_trucks.ctrl.LatencyHistogram;
+import com.uber.coding_challange.food_trucks.ctrl.MetricsRegistry;
 import com.uber.coding_challange.food_trucks.model.FoodTruck;
+import com.uber.coding_challange.food_trucks.model.FoodTruckCluster;
+import com.uber.coding_challange.food_trucks.model.FoodTruckQuery;
 import com.uber.coding_challange.food_trucks.model.enums.DistanceUnitEnum;
 import com.uber.coding_challange.food_trucks.model.enums.FoodTruckStatusEnum;
 
@@ -13,283 +23,899 @@ import com.uber.coding_challange.food_trucks.model.enums.FoodTruckStatusEnum;
  * Storage accessor class. Singleton pattern is used.
  * Allows to add/update/delete food trucks.
  * Maintains a food truck status -> food truck list map for faster query results.
- * 
+ * Maintains a spatial grid index for faster radius, rectangle and polygon query results.
+ * Maintains hierarchical grid counts (updated with the changes of every write) for the marker clusters of a map.
+ * Maintains KD-trees (built lazily, per status) for nearest food truck queries.
+ * Maintains an inverted index (built lazily) of the applicant and food item words for text searches.
+ *
+ * The storage is kept in an immutable snapshot (see FoodTruckSnapshot) published through a volatile reference.
+ * Readers use the current snapshot and are never blocked.
+ * Writers are synchronized on this class; each write creates and publishes a new snapshot.
+ * The changes of every write are streamed to the subscribers of FoodTruckChangeFeed.
+ * The time writers wait for the lock is recorded as the 'store_lock_wait' stage (see MetricsRegistry).
+ * A write costs O(n log n) for n stored food trucks, whatever the number of the changed ones: the new snapshot
+ * copies the map and rebuilds the columns (sorted by object id), the status lists and the spatial grid index
+ * under the lock of the writers (tens of milliseconds for 100k food trucks); only the cluster grid is updated
+ * incrementally, the KD-trees and the text index are rebuilt lazily by the next query.
+ * So the changes of many food trucks should be written together with applyChanges() (or addFoodTrucks()),
+ * not one by one with addFoodTruck(), updateFoodTruck() and removeFoodTruck().
+ * The lists returned by this class are unmodifiable.
+ *
  * @author alper.karacelik
  *
  */
-public class FoodTruckAccessor 
+public class FoodTruckAccessor
 {
+	// Constants ---------------------------------------------------------
+	private static final LatencyHistogram LOCK_WAIT = MetricsRegistry.getInstance().stageHistogram("store_lock_wait");
+	// -------------------------------------------------------------------
+
 	// Attributes --------------------------------------------------------
-	private static HashMap<Long, FoodTruck> foodTruckMap;
-	private static HashMap<FoodTruckStatusEnum, List<FoodTruck>> statusMap;
+	private static volatile FoodTruckSnapshot snapshot;
 	// -------------------------------------------------------------------
-	
+
 	// SINGLETON Implementation ------------------------------------------
 	private static FoodTruckAccessor INSTANCE = new FoodTruckAccessor();
 	private FoodTruckAccessor() {initialize();}
 	public static FoodTruckAccessor getInstance() {return INSTANCE;}
 	// -------------------------------------------------------------------
-	
+
 	/**
-	 * Initializes the mappings
+	 * Initializes the storage with an empty snapshot
 	 */
 	private static void initialize()
 	{
-		foodTruckMap = new HashMap<Long, FoodTruck>();
-		statusMap = new HashMap<FoodTruckStatusEnum, List<FoodTruck>>();
+		snapshot = FoodTruckSnapshot.EMPTY;
+	}
+
+	/**
+	 * Returns the version of the storage.
+	 * The version is increased by every write on the storage.
+	 *
+	 * @return The version of the storage
+	 */
+	public long getVersion()
+	{
+		return snapshot.getVersion();
 	}
-	
+
+	/**
+	 * Returns the current snapshot of the storage.
+	 * All the views of a snapshot (the version, the food trucks, the indexes) are of the same write.
+	 *
+	 * @return The current snapshot
+	 */
+	FoodTruckSnapshot getSnapshot()
+	{
+		return snapshot;
+	}
+
 	/**
 	 * Returns all the food trucks in the storage
-	 * This method is synchronized on this class (Manipulation on storage elements is prevented.)
-	 * 
+	 *
 	 * @return All the food trucks in the storage
 	 */
 	public List<FoodTruck> getAllFoodTrucks()
 	{
-		synchronized (FoodTruckAccessor.class) 
-		{
-			return new ArrayList<FoodTruck>(foodTruckMap.values());
-		}
+		return snapshot.getFoodTrucks();
 	}
-	
+
 	/**
 	 * Returns the food trucks that have the specified status.
 	 * If the specified status is ALL, then all food trucks are returned.
 	 * If the specified status is NO_STATEMENT, then an empty list is returned.
-	 * This method is synchronized on this class (Manipulation on storage elements is prevented.)
-	 * 
+	 *
 	 * @param status Food Truck Status for querying
 	 * @return The food trucks which have the specified status
 	 */
 	public List<FoodTruck>getFoodTrucks(FoodTruckStatusEnum status)
 	{
-		synchronized (FoodTruckAccessor.class) 
+		return snapshot.getFoodTrucks(status);
+	}
+
+	/**
+	 * Returns the food trucks that reside in the specified circle.
+	 * Center of the circle: ['latitude', 'longitude'],
+	 * Radius of the circle: 'radius', Unit of the radius: 'radiusUnit'
+	 *
+	 * @param foodTrucks List that contains trucks that will be checked
+	 * @param latitude Latitude of the center of the circle
+	 * @param longitude Longitude of the center of the circle
+	 * @param radius Radius of the circle
+	 * @param radiusUnit Unit of the radius
+	 * @return The food trucks that reside in the specified circle.
+	 */
+	public List<FoodTruck>getFoodTrucks(
+			List<FoodTruck> foodTrucks,
+			double latitude,
+			double longitude,
+			double radius,
+			DistanceUnitEnum radiusUnit)
+	{
+		// Initialize the result list
+		List<FoodTruck> foodTrucksInsideCircle = new ArrayList<FoodTruck>();
+		// Same distance check as the other circle queries
+		GeodesicRadiusFilter radiusFilter =
+				GeodesicDistanceCalculator.getInstance().newRadiusFilter(latitude, longitude, radius, radiusUnit);
+
+		// Traverse through the food trucks
+		for (FoodTruck foodTruck:foodTrucks)
 		{
-			if (status == FoodTruckStatusEnum.ALL)
+			// If the distance to the center of the circle is smaller than the radius,
+			if (radiusFilter.contains(foodTruck.getLatitude(), foodTruck.getLongitude()))
 			{
-				return getAllFoodTrucks();
-			}
-			else if (status == FoodTruckStatusEnum.NO_STATEMENT)
-			{
-				return new ArrayList<FoodTruck>();
-			}
-			else
-			{
-				return statusMap.get(status);
+				// Then it is in the circle, add it to the result list.
+				foodTrucksInsideCircle.add(foodTruck);
 			}
 		}
+
+		// Return the resulting list.
+		return foodTrucksInsideCircle;
 	}
-	
+
 	/**
-	 * Returns the food trucks that reside in the specified circle.
-	 * Center of the circle: ['latitude', 'longitude'], 
+	 * Returns the food trucks that have the specified status and reside in the specified circle.
+	 * Center of the circle: ['latitude', 'longitude'],
 	 * Radius of the circle: 'radius', Unit of the radius: 'radiusUnit'
-	 * This method is synchronized on this class (Manipulation on storage elements is prevented.)
-	 * 
-	 * @param foodTrucks List that contains trucks that will be checked
+	 * Only the rows in the grid cells overlapped by the circle are checked.
+	 * Status and distance are checked on the columnar view of the storage (see GeodesicRadiusFilter),
+	 * the food truck objects are obtained only for the matching rows.
+	 *
+	 * @param status Food Truck Status for querying
 	 * @param latitude Latitude of the center of the circle
 	 * @param longitude Longitude of the center of the circle
 	 * @param radius Radius of the circle
 	 * @param radiusUnit Unit of the radius
-	 * @return The food trucks that reside in the specified circle.
+	 * @return The food trucks which have the specified status and reside in the specified circle.
 	 */
 	public List<FoodTruck>getFoodTrucks(
-			List<FoodTruck> foodTrucks, 
-			double latitude, 
-			double longitude, 
+			FoodTruckStatusEnum status,
+			double latitude,
+			double longitude,
 			double radius,
 			DistanceUnitEnum radiusUnit)
 	{
-		synchronized (FoodTruckAccessor.class) 
+		if (status == FoodTruckStatusEnum.NO_STATEMENT)
+		{
+			return new ArrayList<FoodTruck>();
+		}
+
+		FoodTruckSnapshot currentSnapshot = snapshot;
+		FoodTruckColumns columns = currentSnapshot.getColumns();
+		int[] rows = getRowsInsideCircle(currentSnapshot, status, latitude, longitude, radius, radiusUnit);
+
+		// Obtain the food trucks of the matching rows
+		List<FoodTruck> foodTrucksInsideCircle = new ArrayList<FoodTruck>(rows.length);
+		for (int row : rows)
+		{
+			foodTrucksInsideCircle.add(columns.foodTrucks[row]);
+		}
+
+		// Return the resulting list.
+		return foodTrucksInsideCircle;
+	}
+
+	/**
+	 * Answers the given circle queries (see getFoodTrucks(status, latitude, longitude, radius, radiusUnit))
+	 * on a single snapshot, in one pass over the spatial grid index:
+	 * the (cell, query) pairs of all the queries are sorted by cell, so every overlapped cell is visited once
+	 * and its rows are checked against all the queries that overlap it, while they are in the cache.
+	 *
+	 * @param queries Circle queries (the center, the radius and its unit should be valid)
+	 * @return The food trucks of each query, in the order of the queries
+	 */
+	public List<List<FoodTruck>> getFoodTrucks(List<FoodTruckQuery> queries)
+	{
+		FoodTruckSnapshot currentSnapshot = snapshot;
+		FoodTruckColumns columns = currentSnapshot.getColumns();
+		SpatialGridIndex spatialIndex = currentSnapshot.getSpatialIndex();
+		GeodesicDistanceCalculator calculator = GeodesicDistanceCalculator.getInstance();
+
+		int queryCount = queries.size();
+		FoodTruckStatusEnum[] statuses = new FoodTruckStatusEnum[queryCount];
+		GeodesicRadiusFilter[] radiusFilters = new GeodesicRadiusFilter[queryCount];
+		int[][] cellRanges = new int[queryCount][];
+		IntList[] matches = new IntList[queryCount];
+		int pairCount = 0;
+
+		for (int q = 0; q < queryCount; q++)
+		{
+			FoodTruckQuery query = queries.get(q);
+			statuses[q] = query.getStatusEnum();
+			matches[q] = new IntList();
+
+			if (statuses[q] == FoodTruckStatusEnum.NO_STATEMENT)
+			{
+				cellRanges[q] = new int[0];
+				continue;
+			}
+
+			double arcDegrees = calculator.toArcDegrees(query.getRadius(), query.getRadiusUnitEnum());
+			radiusFilters[q] = calculator.newRadiusFilter(
+					query.getLatitude(), query.getLongitude(), query.getRadius(), query.getRadiusUnitEnum());
+			cellRanges[q] = spatialIndex.getCellRanges(query.getLatitude(), query.getLongitude(), arcDegrees);
+			for (int r = 0; r < cellRanges[q].length; r += 2)
+			{
+				pairCount += cellRanges[q][r + 1] - cellRanges[q][r];
+			}
+		}
+
+		// (cell << 32 | query) pairs, sorting them groups the queries by cell
+		long[] pairs = new long[pairCount];
+		int pairIndex = 0;
+		for (int q = 0; q < queryCount; q++)
 		{
-			// Initialize the result list
-			List<FoodTruck> foodTrucksInsideCircle = new ArrayList<FoodTruck>();
-			
-			// Traverse through the food trucks
-			for (FoodTruck foodTruck:foodTrucks)
+			for (int r = 0; r < cellRanges[q].length; r += 2)
 			{
-				// Calculate the distance between current food truck and the center of the circle
-				double distance = 
-						GeodesicDistanceCalculator.getInstance().distance(
-								foodTruck.getLatitude(), foodTruck.getLongitude(),
-								latitude, longitude, radiusUnit);
-				
-				// If distance is smaller than the radius,
-				if (distance < radius)
+				for (int cell = cellRanges[q][r]; cell < cellRanges[q][r + 1]; cell++)
 				{
-					// Then it is in the circle, add it to the result list.
-					foodTrucksInsideCircle.add(foodTruck);
+					pairs[pairIndex++] = ((long) cell << 32) | q;
 				}
 			}
-			
-			// Return the resulting list.
-			return foodTrucksInsideCircle;
 		}
+		Arrays.sort(pairs);
+
+		int[] rows = new int[16];
+		for (long pair : pairs)
+		{
+			int cell = (int) (pair >>> 32);
+			int q = (int) pair;
+			int rowCount = spatialIndex.getCellRowCount(cell);
+
+			if (rows.length < rowCount)
+			{
+				rows = new int[Math.max(rowCount, rows.length * 2)];
+			}
+			spatialIndex.copyCellRows(cell, rows);
+			addRowsInsideCircle(columns, statuses[q], radiusFilters[q], rows, rowCount, matches[q]);
+		}
+
+		// The rows out of the valid ranges are candidates of every query
+		int[] outOfRangeRows = spatialIndex.getOutOfRangeRows();
+		for (int q = 0; q < queryCount && outOfRangeRows.length > 0; q++)
+		{
+			if (radiusFilters[q] != null)
+			{
+				int[] candidates = outOfRangeRows.clone();
+				addRowsInsideCircle(columns, statuses[q], radiusFilters[q], candidates, candidates.length, matches[q]);
+			}
+		}
+
+		// Obtain the food trucks of the matching rows
+		List<List<FoodTruck>> results = new ArrayList<List<FoodTruck>>(queryCount);
+		for (int q = 0; q < queryCount; q++)
+		{
+			List<FoodTruck> foodTrucks = new ArrayList<FoodTruck>(matches[q].size);
+			for (int i = 0; i < matches[q].size; i++)
+			{
+				foodTrucks.add(columns.foodTrucks[matches[q].values[i]]);
+			}
+			results.add(foodTrucks);
+		}
+		return results;
 	}
-	
+
+	/**
+	 * Returns the food trucks that match the given text (if any), have the specified status
+	 * and reside in the specified rectangle (the bounds are included), e.g. the visible area of a map.
+	 * If 'minLon' is greater than 'maxLon', the rectangle crosses the 180th meridian.
+	 * Only the rows in the grid cells overlapped by the rectangle are checked.
+	 *
+	 * @param status Food Truck Status for querying
+	 * @param text Text to search (see searchFoodTruckPage()), null for no text search
+	 * @param minLat Minimum latitude of the rectangle (in decimal degrees)
+	 * @param minLon Minimum (western) longitude of the rectangle (in decimal degrees)
+	 * @param maxLat Maximum latitude of the rectangle (in decimal degrees)
+	 * @param maxLon Maximum (eastern) longitude of the rectangle (in decimal degrees)
+	 * @return The matching food trucks
+	 */
+	public List<FoodTruck> getFoodTrucksInBox(
+			FoodTruckStatusEnum status,
+			String text,
+			double minLat,
+			double minLon,
+			double maxLat,
+			double maxLon)
+	{
+		FoodTruckSnapshot currentSnapshot = snapshot;
+		FoodTruckColumns columns = currentSnapshot.getColumns();
+		boolean crossesMeridian = minLon > maxLon;
+		int[] rows = getRowsInRectangle(currentSnapshot, status, text,
+				minLat, maxLat, minLon, crossesMeridian ? maxLon + 360 : maxLon);
+
+		// toRadians() is monotonic, the bounds are compared exactly on the columns (in radians)
+		double minLatRadians = Math.toRadians(minLat);
+		double maxLatRadians = Math.toRadians(maxLat);
+		double minLonRadians = Math.toRadians(minLon);
+		double maxLonRadians = Math.toRadians(maxLon);
+
+		// Keep the rows inside the rectangle at the beginning of the rows array
+		int matchCount = 0;
+		for (int i = 0; i < rows.length; i++)
+		{
+			double latitude = columns.latitudes[rows[i]];
+			double longitude = columns.longitudes[rows[i]];
+			boolean insideLongitudes = crossesMeridian
+					? (longitude >= minLonRadians && longitude <= Math.PI) || (longitude >= -Math.PI && longitude <= maxLonRadians)
+					: longitude >= minLonRadians && longitude <= maxLonRadians;
+
+			if (insideLongitudes && latitude >= minLatRadians && latitude <= maxLatRadians)
+			{
+				rows[matchCount++] = rows[i];
+			}
+		}
+
+		return getFoodTrucks(columns, rows, matchCount);
+	}
+
+	/**
+	 * Returns the food trucks that match the given text (if any), have the specified status
+	 * and reside in the given polygon (see GeoPolygon).
+	 * Only the rows in the grid cells overlapped by the bounding box of the polygon are checked.
+	 *
+	 * @param status Food Truck Status for querying
+	 * @param text Text to search (see searchFoodTruckPage()), null for no text search
+	 * @param polygon Polygon for querying
+	 * @return The matching food trucks
+	 */
+	public List<FoodTruck> getFoodTrucksInPolygon(FoodTruckStatusEnum status, String text, GeoPolygon polygon)
+	{
+		FoodTruckSnapshot currentSnapshot = snapshot;
+		FoodTruckColumns columns = currentSnapshot.getColumns();
+		int[] rows = getRowsInRectangle(currentSnapshot, status, text,
+				polygon.getMinLatitude(), polygon.getMaxLatitude(), polygon.getMinLongitude(), polygon.getMaxLongitude());
+
+		int matchCount = polygon.filterRows(columns.latitudes, columns.longitudes, rows, rows.length);
+
+		return getFoodTrucks(columns, rows, matchCount);
+	}
+
+	/**
+	 * Returns the marker clusters of the food trucks with the specified status in the specified rectangle,
+	 * for a map at the given zoom level (see FoodTruckClusterGrid.getClusters()).
+	 * If 'minLon' is greater than 'maxLon', the rectangle crosses the 180th meridian.
+	 * If the specified status is NO_STATEMENT, then an empty list is returned.
+	 *
+	 * @param status Food Truck Status for querying
+	 * @param zoom Zoom level of the map
+	 * @param minLat Minimum latitude of the rectangle (in decimal degrees)
+	 * @param minLon Minimum (western) longitude of the rectangle (in decimal degrees)
+	 * @param maxLat Maximum latitude of the rectangle (in decimal degrees)
+	 * @param maxLon Maximum (eastern) longitude of the rectangle (in decimal degrees)
+	 * @return The clusters in the rectangle
+	 */
+	public List<FoodTruckCluster> getClusters(
+			FoodTruckStatusEnum status,
+			int zoom,
+			double minLat,
+			double minLon,
+			double maxLat,
+			double maxLon)
+	{
+		if (status == FoodTruckStatusEnum.NO_STATEMENT)
+		{
+			return new ArrayList<FoodTruckCluster>();
+		}
+
+		return snapshot.getClusterGrid().getClusters(
+				status, zoom, minLat, maxLat, minLon, (minLon > maxLon) ? maxLon + 360 : maxLon);
+	}
+
+	/**
+	 * Returns the 'k' food trucks with the specified status that are closest to the given position,
+	 * ordered by their distance to the given position (closest first).
+	 * If the specified status is ALL, then all food trucks are considered.
+	 * If the specified status is NO_STATEMENT, then an empty list is returned.
+	 * The KD-tree of the status is built on the first query after the storage is changed.
+	 *
+	 * @param status Food Truck Status for querying
+	 * @param latitude Latitude of the position
+	 * @param longitude Longitude of the position
+	 * @param k Number of food trucks to return
+	 * @return The closest 'k' food trucks which have the specified status
+	 */
+	public List<FoodTruck> getNearestFoodTrucks(
+			FoodTruckStatusEnum status,
+			double latitude,
+			double longitude,
+			int k)
+	{
+		if (status == FoodTruckStatusEnum.NO_STATEMENT)
+		{
+			return new ArrayList<FoodTruck>();
+		}
+
+		return snapshot.getKdTree(status).nearest(latitude, longitude, k);
+	}
+
 	/**
 	 * Returns true if a food truck with given id exist, false otherwise
-	 * This method is synchronized on this class (Manipulation on storage elements is prevented.)
-	 * 
+	 *
 	 * @param id Object id of a food truck
 	 * @return True if a food truck with given id exist, false otherwise
 	 */
 	public boolean foodTruckExist(long id)
 	{
-		synchronized (FoodTruckAccessor.class) 
-		{
-			return foodTruckMap.containsKey(id);
-		}
+		return snapshot.getFoodTruckMap().containsKey(id);
 	}
-	
+
 	/**
 	 * Returns the food truck with the given id
-	 * This method is synchronized on this class (Manipulation on storage elements is prevented.)
-	 * 
+	 *
 	 * @param id Object id of a food truck
 	 * @return The food truck with the given id
 	 */
 	public FoodTruck getFoodTruck(long id)
 	{
-		synchronized (FoodTruckAccessor.class) 
-		{
-			return foodTruckMap.get(id);
-		}
+		return snapshot.getFoodTruckMap().get(id);
 	}
-	
+
 	/**
 	 * Adds the given food truck to the storage
-	 * Also populates the status map
-	 * This method is synchronized on this class (Manipulation on storage elements is prevented.)
-	 * 
+	 * A food truck with the same object id is replaced.
+	 * This method is synchronized on this class (Writers are serialized, readers are not blocked.)
+	 * The whole snapshot is rebuilt for this single food truck (see the class comment), use applyChanges() for many.
+	 *
 	 * @param foodTruck new food truck
 	 */
 	public void addFoodTruck(FoodTruck foodTruck)
 	{
-		synchronized (FoodTruckAccessor.class) 
+		long lockStart = System.nanoTime();
+		synchronized (FoodTruckAccessor.class)
 		{
-			foodTruckMap.put(foodTruck.getObjectid(), foodTruck);
-			addToStatusMap(foodTruck);
+			LOCK_WAIT.recordSince(lockStart);
+			HashMap<Long, FoodTruck> foodTruckMap = new HashMap<Long, FoodTruck>(snapshot.getFoodTruckMap());
+			FoodTruck previous = foodTruckMap.put(foodTruck.getObjectid(), foodTruck);
+			publish(foodTruckMap, toList(previous), Collections.singletonList(foodTruck));
 		}
 	}
 
 	/**
-	 * Updates the given food truck. 
+	 * Adds the given food trucks to the storage with a single new snapshot.
+	 * Food trucks with the same object ids are replaced.
+	 * This method is synchronized on this class (Writers are serialized, readers are not blocked.)
+	 *
+	 * @param foodTrucks new food trucks
+	 */
+	public void addFoodTrucks(Collection<FoodTruck> foodTrucks)
+	{
+		long lockStart = System.nanoTime();
+		synchronized (FoodTruckAccessor.class)
+		{
+			LOCK_WAIT.recordSince(lockStart);
+			HashMap<Long, FoodTruck> foodTruckMap = new HashMap<Long, FoodTruck>(snapshot.getFoodTruckMap());
+			List<FoodTruck> removed = new ArrayList<FoodTruck>();
+			for (FoodTruck foodTruck : foodTrucks)
+			{
+				addTo(removed, foodTruckMap.put(foodTruck.getObjectid(), foodTruck));
+			}
+			publish(foodTruckMap, removed, foodTrucks);
+		}
+	}
+
+	/**
+	 * Applies the given changes to the storage with a single new snapshot.
+	 * Added or updated food trucks replace the food trucks with the same object ids,
+	 * then the food trucks with the removed ids are removed.
+	 * No new snapshot is created if there is no change.
+	 * This method is synchronized on this class (Writers are serialized, readers are not blocked.)
+	 *
+	 * @param addedOrUpdated New or updated food trucks
+	 * @param removedIds Object ids of the removed food trucks
+	 */
+	public void applyChanges(Collection<FoodTruck> addedOrUpdated, Collection<Long> removedIds)
+	{
+		if (addedOrUpdated.isEmpty() && removedIds.isEmpty())
+		{
+			return;
+		}
+
+		long lockStart = System.nanoTime();
+		synchronized (FoodTruckAccessor.class)
+		{
+			LOCK_WAIT.recordSince(lockStart);
+			HashMap<Long, FoodTruck> foodTruckMap = new HashMap<Long, FoodTruck>(snapshot.getFoodTruckMap());
+			List<FoodTruck> removed = new ArrayList<FoodTruck>();
+			for (FoodTruck foodTruck : addedOrUpdated)
+			{
+				addTo(removed, foodTruckMap.put(foodTruck.getObjectid(), foodTruck));
+			}
+			for (Long id : removedIds)
+			{
+				addTo(removed, foodTruckMap.remove(id));
+			}
+			publish(foodTruckMap, removed, addedOrUpdated);
+		}
+	}
+
+	/**
+	 * Updates the given food truck.
 	 * If there no food truck with the object id of the given food truck, then does nothing.
-	 * Also update the status map if the status is changed.
-	 * This method is synchronized on this class (Manipulation on storage elements is prevented.)
-	 * 
+	 * This method is synchronized on this class (Writers are serialized, readers are not blocked.)
+	 * The whole snapshot is rebuilt for this single food truck (see the class comment), use applyChanges() for many.
+	 *
 	 * @param foodTruck updated food truck
 	 */
 	public void updateFoodTruck(FoodTruck foodTruck)
 	{
-		synchronized (FoodTruckAccessor.class) 
+		long lockStart = System.nanoTime();
+		synchronized (FoodTruckAccessor.class)
 		{
-			if (foodTruckMap.containsKey(foodTruck.getObjectid()))
+			LOCK_WAIT.recordSince(lockStart);
+			if (snapshot.getFoodTruckMap().containsKey(foodTruck.getObjectid()))
 			{
-				// Update the status map first.
-				updateStatusChange(foodTruck);
-				foodTruckMap.put(foodTruck.getObjectid(), foodTruck);
+				HashMap<Long, FoodTruck> foodTruckMap = new HashMap<Long, FoodTruck>(snapshot.getFoodTruckMap());
+				FoodTruck previous = foodTruckMap.put(foodTruck.getObjectid(), foodTruck);
+				publish(foodTruckMap, toList(previous), Collections.singletonList(foodTruck));
 			}
 		}
 	}
-	
+
 	/**
 	 * Removes and returns the food truck with the given id.
-	 * Also updates the status map
-	 * This method is synchronized on this class (Manipulation on storage elements is prevented.)
-	 * 
+	 * This method is synchronized on this class (Writers are serialized, readers are not blocked.)
+	 * The whole snapshot is rebuilt for this single food truck (see the class comment), use applyChanges() for many.
+	 *
 	 * @param id
 	 * @return The removed food truck
 	 */
 	public FoodTruck removeFoodTruck(long id)
 	{
-		synchronized (FoodTruckAccessor.class) 
+		long lockStart = System.nanoTime();
+		synchronized (FoodTruckAccessor.class)
 		{
-			removeFromStatusMap(foodTruckMap.get(id));
-			return foodTruckMap.remove(id);
+			LOCK_WAIT.recordSince(lockStart);
+			// Continue only if the food truck exist
+			if (!snapshot.getFoodTruckMap().containsKey(id))
+			{
+				return null;
+			}
+
+			HashMap<Long, FoodTruck> foodTruckMap = new HashMap<Long, FoodTruck>(snapshot.getFoodTruckMap());
+			FoodTruck foodTruck = foodTruckMap.remove(id);
+			publish(foodTruckMap, toList(foodTruck), Collections.<FoodTruck>emptyList());
+			return foodTruck;
 		}
 	}
-	
+
 	/**
-	 * Adds the given food truck to the related list in the status map.
-	 * Example: If the status of the given food truck is 'REQUESTED';
-	 * then, the given truck is added to the list of the 'REQUESTED' map item.
-	 * This method is synchronized on this class (Manipulation on storage elements is prevented.)
-	 * 
-	 * @param foodTruck new food truck
+	 * Returns a page of the food trucks that have the specified status, ordered by object id.
+	 * The page starts after the given object id, so a page is not shifted by the changes on the storage
+	 * (see FoodTruckPage). If the specified status is NO_STATEMENT, then an empty page is returned.
+	 * The food trucks are not copied, they are read from the current snapshot while the page is iterated.
+	 *
+	 * @param status Food Truck Status for querying
+	 * @param afterObjectid Object id of the last food truck of the previous page (FoodTruckPage.FIRST_PAGE for the first page)
+	 * @param limit Maximum number of food trucks in the page
+	 * @return The page of the food trucks which have the specified status
+	 */
+	public FoodTruckPage getFoodTruckPage(FoodTruckStatusEnum status, long afterObjectid, int limit)
+	{
+		FoodTruckColumns columns = snapshot.getColumns();
+
+		if (status == FoodTruckStatusEnum.NO_STATEMENT)
+		{
+			return FoodTruckPage.ofRows(columns, new int[0], afterObjectid, limit);
+		}
+		return FoodTruckPage.ofStatus(columns, status, afterObjectid, limit);
+	}
+
+	/**
+	 * Returns a page of the food trucks that have the specified status and reside in the specified circle,
+	 * ordered by object id (see getFoodTruckPage(status, afterObjectid, limit)).
+	 *
+	 * @param status Food Truck Status for querying
+	 * @param latitude Latitude of the center of the circle
+	 * @param longitude Longitude of the center of the circle
+	 * @param radius Radius of the circle
+	 * @param radiusUnit Unit of the radius
+	 * @param afterObjectid Object id of the last food truck of the previous page (FoodTruckPage.FIRST_PAGE for the first page)
+	 * @param limit Maximum number of food trucks in the page
+	 * @return The page of the food trucks which have the specified status and reside in the specified circle
+	 */
+	public FoodTruckPage getFoodTruckPage(
+			FoodTruckStatusEnum status,
+			double latitude,
+			double longitude,
+			double radius,
+			DistanceUnitEnum radiusUnit,
+			long afterObjectid,
+			int limit)
+	{
+		FoodTruckSnapshot currentSnapshot = snapshot;
+		int[] rows = getRowsInsideCircle(currentSnapshot, status, latitude, longitude, radius, radiusUnit);
+
+		// Rows are ordered by object id
+		Arrays.sort(rows);
+		return FoodTruckPage.ofRows(currentSnapshot.getColumns(), rows, afterObjectid, limit);
+	}
+
+	/**
+	 * Returns a page of the food trucks that match the given text and have the specified status,
+	 * ordered by object id (see getFoodTruckPage(status, afterObjectid, limit)).
+	 * For each word of the text, a matching food truck has a word starting with it
+	 * in its 'applicant' or 'fooditems' field (case insensitive), e.g. "taco" matches "Tacos".
+	 * The text index is built on the first search after the storage is changed;
+	 * the status is checked on the matching rows before the food trucks are obtained.
+	 *
+	 * @param text Text to search
+	 * @param status Food Truck Status for querying
+	 * @param afterObjectid Object id of the last food truck of the previous page (FoodTruckPage.FIRST_PAGE for the first page)
+	 * @param limit Maximum number of food trucks in the page
+	 * @return The page of the matching food trucks
+	 */
+	public FoodTruckPage searchFoodTruckPage(String text, FoodTruckStatusEnum status, long afterObjectid, int limit)
+	{
+		FoodTruckSnapshot currentSnapshot = snapshot;
+		FoodTruckColumns columns = currentSnapshot.getColumns();
+		int[] rows = getRowsMatchingText(currentSnapshot, text, status);
+
+		return FoodTruckPage.ofRows(columns, rows, afterObjectid, limit);
+	}
+
+	/**
+	 * Returns a page of the food trucks that match the given text, have the specified status
+	 * and reside in the specified circle, ordered by object id (see searchFoodTruckPage(text, status, afterObjectid, limit)).
+	 * The rows matching the text are intersected with the grid cells overlapped by the circle,
+	 * only the rows in both are checked against the circle.
+	 *
+	 * @param text Text to search
+	 * @param status Food Truck Status for querying
+	 * @param latitude Latitude of the center of the circle
+	 * @param longitude Longitude of the center of the circle
+	 * @param radius Radius of the circle
+	 * @param radiusUnit Unit of the radius
+	 * @param afterObjectid Object id of the last food truck of the previous page (FoodTruckPage.FIRST_PAGE for the first page)
+	 * @param limit Maximum number of food trucks in the page
+	 * @return The page of the matching food trucks
+	 */
+	public FoodTruckPage searchFoodTruckPage(
+			String text,
+			FoodTruckStatusEnum status,
+			double latitude,
+			double longitude,
+			double radius,
+			DistanceUnitEnum radiusUnit,
+			long afterObjectid,
+			int limit)
+	{
+		FoodTruckSnapshot currentSnapshot = snapshot;
+		FoodTruckColumns columns = currentSnapshot.getColumns();
+		int[] rows = getRowsMatchingText(currentSnapshot, text, status);
+
+		// Intersect with the rows in the cells overlapped by the circle
+		double arcDegrees = GeodesicDistanceCalculator.getInstance().toArcDegrees(radius, radiusUnit);
+		int[] candidates = currentSnapshot.getSpatialIndex().getCandidates(latitude, longitude, arcDegrees);
+		Arrays.sort(candidates);
+		rows = FoodTruckTextIndex.intersect(rows, candidates);
+
+		// Keep the rows inside the circle (the order is kept)
+		GeodesicRadiusFilter radiusFilter =
+				GeodesicDistanceCalculator.getInstance().newRadiusFilter(latitude, longitude, radius, radiusUnit);
+		int matchCount = radiusFilter.filterRows(
+				columns.latitudes, columns.longitudes, columns.cosLatitudes, rows, rows.length);
+
+		return FoodTruckPage.ofRows(columns, Arrays.copyOf(rows, matchCount), afterObjectid, limit);
+	}
+
+	/**
+	 * Returns the rows of the given snapshot that match the given text and have the specified status.
+	 *
+	 * @param currentSnapshot Snapshot to query
+	 * @param text Text to search
+	 * @param status Food Truck Status for querying
+	 * @return The matching rows in ascending order
 	 */
-	private void addToStatusMap(FoodTruck foodTruck)
+	private int[] getRowsMatchingText(FoodTruckSnapshot currentSnapshot, String text, FoodTruckStatusEnum status)
 	{
-		synchronized (FoodTruckAccessor.class) 
+		if (status == FoodTruckStatusEnum.NO_STATEMENT)
 		{
-			FoodTruckStatusEnum status = foodTruck.getStatusEnum();
-			List<FoodTruck> foodTrucks;
-			
-			// If an existing entry will be updated.
-			if (statusMap.containsKey(status))
+			return new int[0];
+		}
+
+		FoodTruckColumns columns = currentSnapshot.getColumns();
+		int[] rows = currentSnapshot.getTextIndex().search(text);
+
+		// Keep the rows with the given status at the beginning of the rows array
+		int statusCount = 0;
+		for (int i = 0; i < rows.length; i++)
+		{
+			if (columns.hasStatus(rows[i], status))
 			{
-				foodTrucks = statusMap.get(status);
+				rows[statusCount++] = rows[i];
 			}
-			// If a new entry is created.
-			else
+		}
+		return Arrays.copyOf(rows, statusCount);
+	}
+
+	/**
+	 * Returns the rows of the given snapshot that have the specified status and reside in the specified circle.
+	 * Only the rows in the grid cells overlapped by the circle are checked.
+	 *
+	 * @param currentSnapshot Snapshot to query
+	 * @param status Food Truck Status for querying
+	 * @param latitude Latitude of the center of the circle
+	 * @param longitude Longitude of the center of the circle
+	 * @param radius Radius of the circle
+	 * @param radiusUnit Unit of the radius
+	 * @return The matching rows (in no particular order)
+	 */
+	private int[] getRowsInsideCircle(
+			FoodTruckSnapshot currentSnapshot,
+			FoodTruckStatusEnum status,
+			double latitude,
+			double longitude,
+			double radius,
+			DistanceUnitEnum radiusUnit)
+	{
+		if (status == FoodTruckStatusEnum.NO_STATEMENT)
+		{
+			return new int[0];
+		}
+
+		FoodTruckColumns columns = currentSnapshot.getColumns();
+
+		// Obtain the rows in the cells overlapped by the circle
+		double arcDegrees = GeodesicDistanceCalculator.getInstance().toArcDegrees(radius, radiusUnit);
+		int[] candidates = currentSnapshot.getSpatialIndex().getCandidates(latitude, longitude, arcDegrees);
+
+		// Keep the rows with the given status at the beginning of the candidates array
+		int statusCount = 0;
+		for (int i = 0; i < candidates.length; i++)
+		{
+			if (columns.hasStatus(candidates[i], status))
 			{
-				foodTrucks = new ArrayList<FoodTruck>();
-				statusMap.put(status, foodTrucks);
+				candidates[statusCount++] = candidates[i];
 			}
-			
-			foodTrucks.add(foodTruck);
 		}
+
+		// Keep the rows inside the circle at the beginning of the candidates array
+		GeodesicRadiusFilter radiusFilter =
+				GeodesicDistanceCalculator.getInstance().newRadiusFilter(latitude, longitude, radius, radiusUnit);
+		int matchCount = radiusFilter.filterRows(
+				columns.latitudes, columns.longitudes, columns.cosLatitudes, candidates, statusCount);
+
+		return Arrays.copyOf(candidates, matchCount);
 	}
-	
+
 	/**
-	 * Updates the status map if the status of the given food truck is changed.
-	 * This method is synchronized on this class (Manipulation on storage elements is prevented.)
-	 * 
-	 * @param updatedFoodTruck Updated food truck
+	 * Returns the rows of the given snapshot in the grid cells overlapped by the specified rectangle,
+	 * that match the given text (if any) and have the specified status.
+	 *
+	 * @param currentSnapshot Snapshot to query
+	 * @param status Food Truck Status for querying
+	 * @param text Text to search, null for no text search
+	 * @param minLat Minimum latitude (in decimal degrees)
+	 * @param maxLat Maximum latitude (in decimal degrees)
+	 * @param minLon Minimum longitude (in decimal degrees)
+	 * @param maxLon Maximum longitude (in decimal degrees), greater than 180 if the rectangle crosses the 180th meridian
+	 * @return The candidate rows (ascending if there is a text, in no particular order otherwise)
 	 */
-	private void updateStatusChange(FoodTruck updatedFoodTruck)
+	private int[] getRowsInRectangle(
+			FoodTruckSnapshot currentSnapshot,
+			FoodTruckStatusEnum status,
+			String text,
+			double minLat,
+			double maxLat,
+			double minLon,
+			double maxLon)
 	{
-		synchronized (FoodTruckAccessor.class) 
+		if (status == FoodTruckStatusEnum.NO_STATEMENT)
+		{
+			return new int[0];
+		}
+
+		FoodTruckColumns columns = currentSnapshot.getColumns();
+		int[] candidates = currentSnapshot.getSpatialIndex().getCandidates(minLat, maxLat, minLon, maxLon);
+
+		// Intersect with the rows matching the text (their status is already checked)
+		if (text != null)
+		{
+			Arrays.sort(candidates);
+			return FoodTruckTextIndex.intersect(getRowsMatchingText(currentSnapshot, text, status), candidates);
+		}
+
+		// Keep the rows with the given status at the beginning of the candidates array
+		int statusCount = 0;
+		for (int i = 0; i < candidates.length; i++)
 		{
-			// Continue only if the given food truck already exist
-			if (foodTruckMap.containsKey(updatedFoodTruck.getObjectid()))
+			if (columns.hasStatus(candidates[i], status))
 			{
-				FoodTruck existingFoodTruck = foodTruckMap.get(updatedFoodTruck.getObjectid());
-				
-				// Check if the status is changed.
-				if (existingFoodTruck.getStatusEnum() != updatedFoodTruck.getStatusEnum())
-				{
-					// Remove the food truck from the map of previous status
-					removeFromStatusMap(existingFoodTruck);
-					// Add the food truck to the map of current status
-					addToStatusMap(updatedFoodTruck);
-				}
+				candidates[statusCount++] = candidates[i];
 			}
 		}
+		return Arrays.copyOf(candidates, statusCount);
 	}
-	
+
 	/**
-	 * Updates the status map by removing the given food truack from the related status map item.
-	 * Example: If the status of the given food truck is 'REQUESTED';
-	 * then, the given truck is from the list of the 'REQUESTED' map item.
-	 * This method is synchronized on this class (Manipulation on storage elements is prevented.)
-	 * 
-	 * @param foodTruck Removed food truck
+	 * Returns the food trucks of the first 'count' given rows.
+	 *
+	 * @param columns Columns of the rows
+	 * @param rows Rows
+	 * @param count Number of the rows
+	 * @return The food trucks of the rows
 	 */
-	private void removeFromStatusMap(FoodTruck foodTruck)
+	private static List<FoodTruck> getFoodTrucks(FoodTruckColumns columns, int[] rows, int count)
 	{
-		synchronized (FoodTruckAccessor.class) 
+		List<FoodTruck> foodTrucks = new ArrayList<FoodTruck>(count);
+		for (int i = 0; i < count; i++)
 		{
-			// Continue only if the given food truck already exist
-			if (foodTruckMap.containsKey(foodTruck.getObjectid()))
+			foodTrucks.add(columns.foodTrucks[rows[i]]);
+		}
+		return foodTrucks;
+	}
+
+	/**
+	 * Adds the given rows that have the specified status and pass the given radius filter to the given list.
+	 * The rows array is used as a work area.
+	 *
+	 * @param columns Columns of the rows
+	 * @param status Food Truck Status for querying
+	 * @param radiusFilter Filter of the circle
+	 * @param rows Candidate rows
+	 * @param count Number of the candidate rows
+	 * @param matches List of the matching rows
+	 */
+	private static void addRowsInsideCircle(
+			FoodTruckColumns columns,
+			FoodTruckStatusEnum status,
+			GeodesicRadiusFilter radiusFilter,
+			int[] rows,
+			int count,
+			IntList matches)
+	{
+		// Keep the rows with the given status at the beginning of the rows array
+		int statusCount = 0;
+		for (int i = 0; i < count; i++)
+		{
+			if (columns.hasStatus(rows[i], status))
 			{
-				if (statusMap.containsKey(foodTruck.getStatusEnum()))
-				{
-					statusMap.get(foodTruck.getStatusEnum()).remove(foodTruck);
-				}
+				rows[statusCount++] = rows[i];
 			}
 		}
+
+		int matchCount = radiusFilter.filterRows(
+				columns.latitudes, columns.longitudes, columns.cosLatitudes, rows, statusCount);
+		matches.addAll(rows, matchCount);
+	}
+
+	/**
+	 * Creates a new snapshot from the given map and makes it visible to the readers.
+	 * The cluster grid of the new snapshot is derived from the current one with the given changes,
+	 * and the changes are published to the subscribers of the change feed (see FoodTruckChangeFeed).
+	 * Should be called while holding the lock of this class.
+	 *
+	 * @param foodTruckMap Object id -> food truck map of the new snapshot
+	 * @param removed Removed food trucks, and the previous versions of the updated ones
+	 * @param added Added food trucks, and the new versions of the updated ones
+	 */
+	private void publish(HashMap<Long, FoodTruck> foodTruckMap, Collection<FoodTruck> removed, Collection<FoodTruck> added)
+	{
+		FoodTruckSnapshot previous = snapshot;
+		FoodTruckClusterGrid clusterGrid = previous.getClusterGrid().withChanges(removed, added);
+		snapshot = new FoodTruckSnapshot(previous.getVersion() + 1, foodTruckMap, clusterGrid);
+
+		// Under the lock, so the changes are published in the order of the versions
+		FoodTruckChangeFeed.getInstance().publish(
+				snapshot.getVersion(), previous.getFoodTruckMap(), foodTruckMap, removed, added);
+	}
+
+	/**
+	 * Adds the given food truck to the given list, if it is not null.
+	 */
+	private static void addTo(List<FoodTruck> foodTrucks, FoodTruck foodTruck)
+	{
+		if (foodTruck != null)
+		{
+			foodTrucks.add(foodTruck);
+		}
+	}
+
+	/**
+	 * Returns a list of the given food truck, or an empty list if it is null.
+	 */
+	private static List<FoodTruck> toList(FoodTruck foodTruck)
+	{
+		return (foodTruck != null) ? Collections.singletonList(foodTruck) : Collections.<FoodTruck>emptyList();
 	}
 }
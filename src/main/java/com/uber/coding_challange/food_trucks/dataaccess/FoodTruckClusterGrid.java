@@ -0,0 +1,377 @@
+package com.uber.coding_challange.food_trucks.dataaccess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.uber.coding_challange.food_trucks.model.FoodTruck;
+import com.uber.coding_challange.food_trucks.model.FoodTruckCluster;
+import com.uber.coding_challange.food_trucks.model.enums.FoodTruckStatusEnum;
+
+/**
+ * Hierarchical latitude/longitude grid of the food truck counts, used for the marker clusters of a map.
+ * Level 0 has 90 degree cells, every next level halves the cell size (level 15: ~0.0027 degrees, ~300 m),
+ * so the cells of level 'z' are ~64 pixels wide on a map at zoom level 'z' (256 pixel tiles).
+ * Every occupied cell keeps the number of food trucks per status and the sums of their positions (for the centroid).
+ * Food trucks with a position outside of the valid latitude/longitude ranges are not counted.
+ * Food trucks with the status 'ALL' are counted as NO_STATEMENT.
+ *
+ * The grid is immutable; the grid of a new snapshot is derived from the grid of the previous one
+ * by applying the removed and the added food trucks of the write (see withChanges()),
+ * the food trucks that are not changed are not visited again.
+ * A query visits only the cells of one level in the rectangle, at most MAX_SPANNED_CELLS of them,
+ * so its cost does not depend on the number of food trucks.
+ *
+ * @author alper.karacelik
+ *
+ */
+final class FoodTruckClusterGrid
+{
+	// Constants ---------------------------------------------------------
+	static final int MAX_LEVEL = 15;
+	// Maximum number of cells spanned by a query, coarser levels are used for larger rectangles
+	static final int MAX_SPANNED_CELLS = 4096;
+
+	// Cell size of level 0 (in degrees)
+	private static final double ROOT_CELL_SIZE = 90;
+	// Counted statuses: NO_STATEMENT .. ONHOLD (ALL is their sum)
+	private static final int STATUS_COUNT = FoodTruckStatusEnum.ALL.ordinal();
+	private static final FoodTruckStatusEnum[] STATUS_VALUES = FoodTruckStatusEnum.values();
+	// Changes are sorted as (cell key << INDEX_BITS | change index) pairs
+	private static final int INDEX_BITS = 28;
+	private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+
+	static final FoodTruckClusterGrid EMPTY = new FoodTruckClusterGrid(createEmptyLevels());
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	private final Level[] levels;
+	// -------------------------------------------------------------------
+
+	// Constructor(s) ----------------------------------------------------
+	private FoodTruckClusterGrid(Level[] levels)
+	{
+		this.levels = levels;
+	}
+	// -------------------------------------------------------------------
+
+	private static Level[] createEmptyLevels()
+	{
+		Level[] levels = new Level[MAX_LEVEL + 1];
+		for (int level = 0; level <= MAX_LEVEL; level++)
+		{
+			levels[level] = new Level(ROOT_CELL_SIZE / (1 << level));
+		}
+		return levels;
+	}
+
+	/**
+	 * Returns the grid with the given changes applied; this grid is not modified.
+	 * An updated food truck is both removed (its previous version) and added.
+	 *
+	 * @param removed Removed food trucks (they should be counted in this grid)
+	 * @param added Added food trucks
+	 * @return The changed grid
+	 */
+	FoodTruckClusterGrid withChanges(Collection<FoodTruck> removed, Collection<FoodTruck> added)
+	{
+		int maxChangeCount = removed.size() + added.size();
+		if (maxChangeCount >= (1 << INDEX_BITS))
+		{
+			throw new IllegalArgumentException("Too many changes: " + maxChangeCount);
+		}
+
+		// Changes in columns, the sign is -1 for a removed food truck and +1 for an added one
+		Changes changes = new Changes(maxChangeCount);
+		changes.addAll(removed, -1);
+		changes.addAll(added, 1);
+
+		if (changes.size == 0)
+		{
+			return this;
+		}
+
+		Level[] changedLevels = new Level[levels.length];
+		for (int level = 0; level < levels.length; level++)
+		{
+			changedLevels[level] = levels[level].withChanges(changes);
+		}
+		return new FoodTruckClusterGrid(changedLevels);
+	}
+
+	/**
+	 * Returns the clusters of the food trucks with the specified status in the specified rectangle,
+	 * at the level of the given zoom (or a coarser level if the rectangle spans more than MAX_SPANNED_CELLS cells).
+	 * Cells that overlap the rectangle are returned as a whole, their centroid may be outside of the rectangle.
+	 * The centroid and the status counts of a cluster cover all the food trucks of its cell,
+	 * its 'count' only the ones with the specified status.
+	 *
+	 * @param status Food Truck Status for querying (ALL or a single status)
+	 * @param zoom Zoom level of the map
+	 * @param minLat Minimum latitude (in decimal degrees)
+	 * @param maxLat Maximum latitude (in decimal degrees)
+	 * @param minLon Minimum longitude (in decimal degrees)
+	 * @param maxLon Maximum longitude (in decimal degrees), greater than 180 if the rectangle crosses the 180th meridian
+	 * @return The clusters in the rectangle
+	 */
+	List<FoodTruckCluster> getClusters(
+			FoodTruckStatusEnum status,
+			int zoom,
+			double minLat,
+			double maxLat,
+			double minLon,
+			double maxLon)
+	{
+		int level = Math.max(0, Math.min(zoom, MAX_LEVEL));
+		while (level > 0 && levels[level].getSpannedCellCount(minLat, maxLat, minLon, maxLon) > MAX_SPANNED_CELLS)
+		{
+			level--;
+		}
+
+		List<FoodTruckCluster> clusters = new ArrayList<FoodTruckCluster>();
+		levels[level].addClusters(status, minLat, maxLat, minLon, maxLon, clusters);
+		return clusters;
+	}
+
+	/**
+	 * Changes of a write, in columns
+	 */
+	private static final class Changes
+	{
+		final double[] latitudes;
+		final double[] longitudes;
+		final byte[] statuses;
+		final int[] signs;
+		int size;
+
+		Changes(int capacity)
+		{
+			latitudes = new double[capacity];
+			longitudes = new double[capacity];
+			statuses = new byte[capacity];
+			signs = new int[capacity];
+		}
+
+		void addAll(Collection<FoodTruck> foodTrucks, int sign)
+		{
+			for (FoodTruck foodTruck : foodTrucks)
+			{
+				double latitude = foodTruck.getLatitude();
+				double longitude = foodTruck.getLongitude();
+
+				// Positions out of the valid ranges are not counted
+				if (latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180)
+				{
+					latitudes[size] = latitude;
+					longitudes[size] = longitude;
+					statuses[size] = (byte) getStatusIndex(foodTruck.getStatusEnum());
+					signs[size] = sign;
+					size++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the index of the counts of the given status; a food truck with the status 'ALL'
+	 * (it is not a status of its own, but the feed may still send it) is counted as NO_STATEMENT.
+	 */
+	private static int getStatusIndex(FoodTruckStatusEnum status)
+	{
+		int ordinal = status.ordinal();
+		return (ordinal < STATUS_COUNT) ? ordinal : FoodTruckStatusEnum.NO_STATEMENT.ordinal();
+	}
+
+	/**
+	 * Counts of one level: the occupied cells sorted by cell key (latitude index * longitude cell count + longitude index).
+	 */
+	private static final class Level
+	{
+		private final double cellSize;
+		private final int maxLatIndex;
+		private final int maxLonIndex;
+		private final int size;
+		private final long[] cellKeys;
+		// Counts of the i-th cell: counts[i * STATUS_COUNT + status ordinal]
+		private final int[] counts;
+		private final double[] latitudeSums;
+		private final double[] longitudeSums;
+
+		Level(double cellSize)
+		{
+			this(cellSize, 0, new long[0], new int[0], new double[0], new double[0]);
+		}
+
+		private Level(double cellSize, int size, long[] cellKeys, int[] counts, double[] latitudeSums, double[] longitudeSums)
+		{
+			this.cellSize = cellSize;
+			this.maxLatIndex = (int) Math.ceil(180 / cellSize) - 1;
+			this.maxLonIndex = (int) Math.ceil(360 / cellSize) - 1;
+			this.size = size;
+			this.cellKeys = cellKeys;
+			this.counts = counts;
+			this.latitudeSums = latitudeSums;
+			this.longitudeSums = longitudeSums;
+		}
+
+		/**
+		 * Returns the level with the given changes applied, by merging the sorted changes into the sorted cells.
+		 */
+		Level withChanges(Changes changes)
+		{
+			long[] pairs = new long[changes.size];
+			for (int i = 0; i < changes.size; i++)
+			{
+				pairs[i] = (cellKey(latIndex(changes.latitudes[i]), lonIndex(changes.longitudes[i])) << INDEX_BITS) | i;
+			}
+			Arrays.sort(pairs);
+
+			int capacity = size + changes.size;
+			long[] newKeys = new long[capacity];
+			int[] newCounts = new int[capacity * STATUS_COUNT];
+			double[] newLatitudeSums = new double[capacity];
+			double[] newLongitudeSums = new double[capacity];
+			int newSize = 0;
+			int cell = 0;
+			int p = 0;
+
+			while (cell < size || p < pairs.length)
+			{
+				long changeKey = (p < pairs.length) ? pairs[p] >>> INDEX_BITS : Long.MAX_VALUE;
+				long key = (cell < size) ? Math.min(cellKeys[cell], changeKey) : changeKey;
+
+				// Start with the counts of the existing cell
+				newKeys[newSize] = key;
+				if (cell < size && cellKeys[cell] == key)
+				{
+					System.arraycopy(counts, cell * STATUS_COUNT, newCounts, newSize * STATUS_COUNT, STATUS_COUNT);
+					newLatitudeSums[newSize] = latitudeSums[cell];
+					newLongitudeSums[newSize] = longitudeSums[cell];
+					cell++;
+				}
+				else
+				{
+					Arrays.fill(newCounts, newSize * STATUS_COUNT, (newSize + 1) * STATUS_COUNT, 0);
+					newLatitudeSums[newSize] = 0;
+					newLongitudeSums[newSize] = 0;
+				}
+
+				// Apply the changes of the cell
+				for (; p < pairs.length && (pairs[p] >>> INDEX_BITS) == key; p++)
+				{
+					int i = (int) (pairs[p] & INDEX_MASK);
+					newCounts[newSize * STATUS_COUNT + changes.statuses[i]] += changes.signs[i];
+					newLatitudeSums[newSize] += changes.signs[i] * changes.latitudes[i];
+					newLongitudeSums[newSize] += changes.signs[i] * changes.longitudes[i];
+				}
+
+				// Keep the cell if it still has a food truck
+				if (getTotal(newCounts, newSize) > 0)
+				{
+					newSize++;
+				}
+			}
+
+			return new Level(cellSize, newSize, Arrays.copyOf(newKeys, newSize), Arrays.copyOf(newCounts, newSize * STATUS_COUNT),
+					Arrays.copyOf(newLatitudeSums, newSize), Arrays.copyOf(newLongitudeSums, newSize));
+		}
+
+		/**
+		 * Returns the number of the cells (occupied or not) that are overlapped by the specified rectangle.
+		 */
+		long getSpannedCellCount(double minLat, double maxLat, double minLon, double maxLon)
+		{
+			long latCount = latIndex(maxLat) - latIndex(minLat) + 1;
+			long lonCount = (maxLon > 180)
+					? (maxLonIndex - lonIndex(minLon) + 1) + (lonIndex(maxLon - 360) + 1)
+					: lonIndex(maxLon) - lonIndex(minLon) + 1;
+			return latCount * lonCount;
+		}
+
+		/**
+		 * Adds the clusters of the occupied cells that are overlapped by the specified rectangle to the given list.
+		 */
+		void addClusters(
+				FoodTruckStatusEnum status,
+				double minLat,
+				double maxLat,
+				double minLon,
+				double maxLon,
+				List<FoodTruckCluster> clusters)
+		{
+			// Longitude index ranges, split if the rectangle crosses the 180th meridian
+			int[] lonRanges = (maxLon > 180)
+					? new int[] {lonIndex(minLon), maxLonIndex, 0, lonIndex(maxLon - 360)}
+					: new int[] {lonIndex(minLon), lonIndex(maxLon)};
+
+			for (int latIdx = latIndex(minLat); latIdx <= latIndex(maxLat); latIdx++)
+			{
+				for (int r = 0; r < lonRanges.length; r += 2)
+				{
+					// The cells of a latitude index and a longitude range are contiguous
+					long lastKey = cellKey(latIdx, lonRanges[r + 1]);
+					for (int cell = lowerBound(cellKey(latIdx, lonRanges[r])); cell < size && cellKeys[cell] <= lastKey; cell++)
+					{
+						addCluster(cell, status, clusters);
+					}
+				}
+			}
+		}
+
+		private void addCluster(int cell, FoodTruckStatusEnum status, List<FoodTruckCluster> clusters)
+		{
+			int total = getTotal(counts, cell);
+			int count = (status == FoodTruckStatusEnum.ALL) ? total : counts[cell * STATUS_COUNT + status.ordinal()];
+
+			if (count > 0)
+			{
+				Map<String, Integer> statusCounts = new LinkedHashMap<String, Integer>();
+				for (int s = 0; s < STATUS_COUNT; s++)
+				{
+					if (counts[cell * STATUS_COUNT + s] > 0)
+					{
+						statusCounts.put(STATUS_VALUES[s].getStrValue(), counts[cell * STATUS_COUNT + s]);
+					}
+				}
+				clusters.add(new FoodTruckCluster(latitudeSums[cell] / total, longitudeSums[cell] / total, count, statusCounts));
+			}
+		}
+
+		private static int getTotal(int[] counts, int cell)
+		{
+			int total = 0;
+			for (int s = 0; s < STATUS_COUNT; s++)
+			{
+				total += counts[cell * STATUS_COUNT + s];
+			}
+			return total;
+		}
+
+		private long cellKey(int latIdx, int lonIdx)
+		{
+			return (long) latIdx * (maxLonIndex + 1) + lonIdx;
+		}
+
+		private int latIndex(double latitude)
+		{
+			return (int) Math.max(0, Math.min(maxLatIndex, Math.floor((latitude + 90) / cellSize)));
+		}
+
+		private int lonIndex(double longitude)
+		{
+			return (int) Math.max(0, Math.min(maxLonIndex, Math.floor((longitude + 180) / cellSize)));
+		}
+
+		/**
+		 * Returns the position of the first cell key that is not smaller than the given key.
+		 */
+		private int lowerBound(long key)
+		{
+			int index = Arrays.binarySearch(cellKeys, 0, size, key);
+			return index >= 0 ? index : -index - 1;
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package com.uber.coding_challange.food_trucks.dataaccess;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+import com.uber.coding_challange.food_trucks.model.FoodTruck;
+import com.uber.coding_challange.food_trucks.model.enums.FoodTruckStatusEnum;
+
+/**
+ * Columnar (struct of arrays) view of the food trucks of a snapshot.
+ * Every food truck is a row; its fields that are used by the filters are kept in primitive arrays,
+ * so that the filters run over contiguous memory without touching the food truck objects.
+ * Rows are ordered by object id. Positions are stored in radians with the precomputed cosine of the latitude.
+ * The arrays are never modified after construction.
+ *
+ * @author alper.karacelik
+ *
+ */
+final class FoodTruckColumns
+{
+	// Constants ---------------------------------------------------------
+	private static final FoodTruckStatusEnum[] STATUS_VALUES = FoodTruckStatusEnum.values();
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	final int size;
+	final long[] objectids;
+	final double[] latitudes;
+	final double[] longitudes;
+	final double[] cosLatitudes;
+	final byte[] statuses;
+	final FoodTruck[] foodTrucks;
+	// -------------------------------------------------------------------
+
+	// Constructor(s) ----------------------------------------------------
+	FoodTruckColumns(Collection<FoodTruck> foodTruckCollection)
+	{
+		this.size = foodTruckCollection.size();
+		this.foodTrucks = foodTruckCollection.toArray(new FoodTruck[size]);
+
+		Arrays.sort(foodTrucks, new Comparator<FoodTruck>()
+		{
+			@Override
+			public int compare(FoodTruck first, FoodTruck second)
+			{
+				return Long.compare(first.getObjectid(), second.getObjectid());
+			}
+		});
+
+		this.objectids = new long[size];
+		this.latitudes = new double[size];
+		this.longitudes = new double[size];
+		this.cosLatitudes = new double[size];
+		this.statuses = new byte[size];
+
+		for (int row = 0; row < size; row++)
+		{
+			FoodTruck foodTruck = foodTrucks[row];
+			double latitude = Math.toRadians(foodTruck.getLatitude());
+
+			objectids[row] = foodTruck.getObjectid();
+			latitudes[row] = latitude;
+			longitudes[row] = Math.toRadians(foodTruck.getLongitude());
+			cosLatitudes[row] = Math.cos(latitude);
+			statuses[row] = (byte) foodTruck.getStatusEnum().ordinal();
+		}
+	}
+	// -------------------------------------------------------------------
+
+	/**
+	 * Returns true if the food truck of the given row has the given status.
+	 * Every food truck has the status ALL.
+	 *
+	 * @param row Row of a food truck
+	 * @param status Food Truck Status
+	 * @return True if the food truck of the given row has the given status
+	 */
+	boolean hasStatus(int row, FoodTruckStatusEnum status)
+	{
+		return status == FoodTruckStatusEnum.ALL || statuses[row] == status.ordinal();
+	}
+
+	/**
+	 * Returns the status of the food truck of the given row.
+	 *
+	 * @param row Row of a food truck
+	 * @return The status of the food truck of the given row
+	 */
+	FoodTruckStatusEnum getStatus(int row)
+	{
+		return STATUS_VALUES[statuses[row]];
+	}
+
+	/**
+	 * Returns the row of the food truck with the given object id,
+	 * or (-(insertion point) - 1) if there is no such food truck.
+	 *
+	 * @param objectid Object id of a food truck
+	 * @return The row of the food truck with the given object id
+	 */
+	int indexOf(long objectid)
+	{
+		return Arrays.binarySearch(objectids, 0, size, objectid);
+	}
+
+	/**
+	 * Returns the first row whose object id is larger than the given object id,
+	 * or 'size' if there is no such row.
+	 *
+	 * @param objectid Object id
+	 * @return The first row after the given object id
+	 */
+	int firstRowAfter(long objectid)
+	{
+		int row = indexOf(objectid);
+		return row >= 0 ? row + 1 : -row - 1;
+	}
+}
@@ -0,0 +1,193 @@
+package com.uber.coding_challange.food_trucks.dataaccess;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.uber.coding_challange.food_trucks.model.FoodTruck;
+import com.uber.coding_challange.food_trucks.model.enums.FoodTruckStatusEnum;
+
+/**
+ * A page of a query result, ordered by object id.
+ * A page starts after the object id of the last food truck of the previous page (the cursor),
+ * so adding or removing food trucks does not shift the following pages.
+ * The page refers to the rows of a snapshot; the food trucks are read while the page is iterated,
+ * no list of the food trucks is built. Instances are immutable and can be iterated more than once.
+ *
+ * @author alper.karacelik
+ *
+ */
+public class FoodTruckPage implements Iterable<FoodTruck>
+{
+	// Constants ---------------------------------------------------------
+	// Cursor of the first page: before every object id but Long.MIN_VALUE itself (0 and negative ones included)
+	public static final long FIRST_PAGE = Long.MIN_VALUE;
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	private final FoodTruckColumns columns;
+	// Rows of the page, or null if the rows [from, to) with the status are in the page
+	private final int[] rows;
+	private final FoodTruckStatusEnum status;
+	private final int from;
+	private final int to;
+	private final int size;
+	private final boolean hasMore;
+	// -------------------------------------------------------------------
+
+	// Constructor(s) ----------------------------------------------------
+	private FoodTruckPage(FoodTruckColumns columns, int[] rows, FoodTruckStatusEnum status,
+			int from, int to, int size, boolean hasMore)
+	{
+		this.columns = columns;
+		this.rows = rows;
+		this.status = status;
+		this.from = from;
+		this.to = to;
+		this.size = size;
+		this.hasMore = hasMore;
+	}
+	// -------------------------------------------------------------------
+
+	/**
+	 * Creates the page of the food trucks with the given status.
+	 * Only the status column is scanned to find the bounds of the page.
+	 *
+	 * @param columns Columns of a snapshot
+	 * @param status Food Truck Status
+	 * @param afterObjectid Object id of the last food truck of the previous page
+	 * @param limit Maximum number of food trucks in the page
+	 * @return The page
+	 */
+	static FoodTruckPage ofStatus(FoodTruckColumns columns, FoodTruckStatusEnum status, long afterObjectid, int limit)
+	{
+		int from = columns.firstRowAfter(afterObjectid);
+		int to = from;
+		int size = 0;
+
+		// Find the end of the page
+		while (to < columns.size && size < limit)
+		{
+			if (columns.hasStatus(to, status))
+			{
+				size++;
+			}
+			to++;
+		}
+
+		// Check if there are more rows after the page
+		int next = to;
+		while (next < columns.size && !columns.hasStatus(next, status))
+		{
+			next++;
+		}
+
+		return new FoodTruckPage(columns, null, status, from, to, size, next < columns.size);
+	}
+
+	/**
+	 * Creates the page of the given rows.
+	 *
+	 * @param columns Columns of a snapshot
+	 * @param sortedRows Matching rows in ascending order
+	 * @param afterObjectid Object id of the last food truck of the previous page
+	 * @param limit Maximum number of food trucks in the page
+	 * @return The page
+	 */
+	static FoodTruckPage ofRows(FoodTruckColumns columns, int[] sortedRows, long afterObjectid, int limit)
+	{
+		// Rows are ordered by object id, so the rows after the object id follow the first row after it
+		int position = Arrays.binarySearch(sortedRows, columns.firstRowAfter(afterObjectid));
+		int from = position >= 0 ? position : -position - 1;
+		int to = from + Math.min(limit, sortedRows.length - from);
+
+		return new FoodTruckPage(columns, sortedRows, null, from, to, to - from, to < sortedRows.length);
+	}
+
+	/**
+	 * @return The number of food trucks in the page
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @return True if there are more food trucks after this page
+	 */
+	public boolean hasMore()
+	{
+		return hasMore;
+	}
+
+	/**
+	 * Returns the object id of the last food truck of the page, which is the cursor of the next page.
+	 *
+	 * @return The object id of the last food truck, or -1 if the page is empty
+	 */
+	public long getLastObjectid()
+	{
+		if (size == 0)
+		{
+			return -1;
+		}
+		if (rows != null)
+		{
+			return columns.objectids[rows[to - 1]];
+		}
+
+		// The last row of the page has the status
+		int row = to - 1;
+		while (!columns.hasStatus(row, status))
+		{
+			row--;
+		}
+		return columns.objectids[row];
+	}
+
+	@Override
+	public Iterator<FoodTruck> iterator()
+	{
+		return new Iterator<FoodTruck>()
+		{
+			private int position = findNext(from);
+
+			@Override
+			public boolean hasNext()
+			{
+				return position < to;
+			}
+
+			@Override
+			public FoodTruck next()
+			{
+				if (position >= to)
+				{
+					throw new NoSuchElementException();
+				}
+
+				FoodTruck foodTruck = columns.foodTrucks[rows != null ? rows[position] : position];
+				position = findNext(position + 1);
+				return foodTruck;
+			}
+		};
+	}
+
+	/**
+	 * Returns the first position (starting at the given one) that belongs to the page.
+	 *
+	 * @param position Position in the rows array, or a row
+	 * @return The next position of the page, 'to' if there is none
+	 */
+	private int findNext(int position)
+	{
+		if (rows == null)
+		{
+			while (position < to && !columns.hasStatus(position, status))
+			{
+				position++;
+			}
+		}
+		return position;
+	}
+}
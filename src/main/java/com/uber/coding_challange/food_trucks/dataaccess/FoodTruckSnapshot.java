@@ -0,0 +1,177 @@
+package com.uber.coding_challange.food_trucks.dataaccess;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.uber.coding_challange.food_trucks.model.FoodTruck;
+import com.uber.coding_challange.food_trucks.model.enums.FoodTruckStatusEnum;
+
+/**
+ * Immutable version of the storage.
+ * Holds the food trucks together with the structures derived from them
+ * (columnar view, status map, spatial grid index, cluster grid, KD-trees, text index).
+ * A snapshot is never modified after it is created, therefore it can be read without any locking;
+ * the storage is changed by creating and publishing a new snapshot.
+ * KD-trees are built lazily on the first nearest food truck query of each status,
+ * the text index on the first text search.
+ *
+ * @author alper.karacelik
+ *
+ */
+class FoodTruckSnapshot
+{
+	// Constants ---------------------------------------------------------
+	static final FoodTruckSnapshot EMPTY = new FoodTruckSnapshot(0, Collections.<Long, FoodTruck>emptyMap(), FoodTruckClusterGrid.EMPTY);
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	private final long version;
+	private final Map<Long, FoodTruck> foodTruckMap;
+	private final List<FoodTruck> foodTrucks;
+	private final FoodTruckColumns columns;
+	private final EnumMap<FoodTruckStatusEnum, List<FoodTruck>> statusMap;
+	private final SpatialGridIndex spatialIndex;
+	private final FoodTruckClusterGrid clusterGrid;
+	private final AtomicReferenceArray<KdTree> kdTrees;
+	private final AtomicReference<FoodTruckTextIndex> textIndex = new AtomicReference<FoodTruckTextIndex>();
+	// -------------------------------------------------------------------
+
+	// Constructor(s) ----------------------------------------------------
+	/**
+	 * Creates a snapshot of the given food trucks.
+	 * The given map is owned by the snapshot and should not be modified afterwards.
+	 *
+	 * @param version Version of the storage
+	 * @param foodTruckMap Object id -> food truck map
+	 * @param clusterGrid Cluster grid of the given food trucks (see FoodTruckClusterGrid.withChanges())
+	 */
+	FoodTruckSnapshot(long version, Map<Long, FoodTruck> foodTruckMap, FoodTruckClusterGrid clusterGrid)
+	{
+		this.version = version;
+		this.foodTruckMap = Collections.unmodifiableMap(foodTruckMap);
+		this.foodTrucks = Collections.unmodifiableList(new ArrayList<FoodTruck>(foodTruckMap.values()));
+		this.columns = new FoodTruckColumns(foodTrucks);
+		this.statusMap = new EnumMap<FoodTruckStatusEnum, List<FoodTruck>>(FoodTruckStatusEnum.class);
+		this.spatialIndex = new SpatialGridIndex(columns);
+		this.clusterGrid = clusterGrid;
+		this.kdTrees = new AtomicReferenceArray<KdTree>(FoodTruckStatusEnum.values().length);
+
+		for (int row = 0; row < columns.size; row++)
+		{
+			FoodTruckStatusEnum status = columns.getStatus(row);
+			List<FoodTruck> statusFoodTrucks = statusMap.get(status);
+
+			// If a new entry is created.
+			if (statusFoodTrucks == null)
+			{
+				statusFoodTrucks = new ArrayList<FoodTruck>();
+				statusMap.put(status, statusFoodTrucks);
+			}
+
+			statusFoodTrucks.add(columns.foodTrucks[row]);
+		}
+
+		for (Map.Entry<FoodTruckStatusEnum, List<FoodTruck>> entry : statusMap.entrySet())
+		{
+			entry.setValue(Collections.unmodifiableList(entry.getValue()));
+		}
+	}
+	// -------------------------------------------------------------------
+
+	long getVersion()
+	{
+		return version;
+	}
+
+	Map<Long, FoodTruck> getFoodTruckMap()
+	{
+		return foodTruckMap;
+	}
+
+	List<FoodTruck> getFoodTrucks()
+	{
+		return foodTrucks;
+	}
+
+	FoodTruckColumns getColumns()
+	{
+		return columns;
+	}
+
+	SpatialGridIndex getSpatialIndex()
+	{
+		return spatialIndex;
+	}
+
+	FoodTruckClusterGrid getClusterGrid()
+	{
+		return clusterGrid;
+	}
+
+	/**
+	 * Returns the food trucks that have the specified status.
+	 * If the specified status is ALL, then all food trucks are returned.
+	 * If the specified status is NO_STATEMENT, then an empty list is returned.
+	 *
+	 * @param status Food Truck Status
+	 * @return The food trucks which have the specified status
+	 */
+	List<FoodTruck> getFoodTrucks(FoodTruckStatusEnum status)
+	{
+		if (status == FoodTruckStatusEnum.ALL)
+		{
+			return foodTrucks;
+		}
+
+		List<FoodTruck> statusFoodTrucks = statusMap.get(status);
+		if (status == FoodTruckStatusEnum.NO_STATEMENT || statusFoodTrucks == null)
+		{
+			return Collections.emptyList();
+		}
+		return statusFoodTrucks;
+	}
+
+	/**
+	 * Returns the KD-tree of the food trucks that have the specified status.
+	 * The tree is built on the first call; concurrent first calls may build it more than once,
+	 * which is harmless since the trees are identical.
+	 *
+	 * @param status Food Truck Status
+	 * @return The KD-tree of the food trucks which have the specified status
+	 */
+	KdTree getKdTree(FoodTruckStatusEnum status)
+	{
+		KdTree kdTree = kdTrees.get(status.ordinal());
+
+		if (kdTree == null)
+		{
+			kdTree = new KdTree(getFoodTrucks(status));
+			kdTrees.compareAndSet(status.ordinal(), null, kdTree);
+		}
+		return kdTree;
+	}
+
+	/**
+	 * Returns the text index of the food trucks.
+	 * The index is built on the first call; concurrent first calls may build it more than once,
+	 * which is harmless since the indexes are identical.
+	 *
+	 * @return The text index of the food trucks
+	 */
+	FoodTruckTextIndex getTextIndex()
+	{
+		FoodTruckTextIndex index = textIndex.get();
+
+		if (index == null)
+		{
+			index = new FoodTruckTextIndex(columns);
+			textIndex.compareAndSet(null, index);
+		}
+		return index;
+	}
+}
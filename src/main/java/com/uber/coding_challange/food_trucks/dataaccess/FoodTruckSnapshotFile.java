@@ -0,0 +1,276 @@
+package com.uber.coding_challange.food_trucks.dataaccess;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import com.uber.coding_challange.food_trucks.model.FoodTruck;
+
+/**
+ * Compact binary copy of the stored food trucks, used to serve requests right after a restart
+ * without waiting for the DataSF API.
+ * The file has a fixed size header (magic number, format version, creation time, record count,
+ * string count, payload length and the CRC32 of the payload) and a payload with:
+ * - the distinct strings of the food trucks (length prefixed UTF-8), each written once,
+ * - one fixed size record per food truck (objectid, cnn, latitude, longitude and the string indexes, -1 for null).
+ * The file is written to a temporary file and moved over the previous one atomically,
+ * so a reader never sees a partially written file. It is read through a memory mapped FileChannel.
+ *
+ * @author alper.karacelik
+ *
+ */
+public class FoodTruckSnapshotFile
+{
+	// Constants ---------------------------------------------------------
+	// "FTRK"
+	private static final int MAGIC = 0x4654524B;
+	private static final int FORMAT_VERSION = 1;
+	private static final int HEADER_SIZE = 40;
+	private static final int NULL_STRING = -1;
+	private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	private final Path path;
+	// -------------------------------------------------------------------
+
+	// Constructor(s) ----------------------------------------------------
+	public FoodTruckSnapshotFile(Path path)
+	{
+		this.path = path;
+	}
+	// -------------------------------------------------------------------
+
+	/**
+	 * @return The path of the snapshot file
+	 */
+	public Path getPath()
+	{
+		return path;
+	}
+
+	/**
+	 * @return True if the snapshot file exists
+	 */
+	public boolean exists()
+	{
+		return Files.isRegularFile(path);
+	}
+
+	/**
+	 * Writes the given food trucks to the snapshot file, replacing the previous one atomically.
+	 *
+	 * @param foodTrucks Food trucks to write
+	 * @throws IOException If the file can not be written (the previous file is kept)
+	 */
+	public void write(Collection<FoodTruck> foodTrucks) throws IOException
+	{
+		Path directory = path.toAbsolutePath().getParent();
+		Files.createDirectories(directory);
+		Path temporaryPath = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+
+		try
+		{
+			FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.WRITE);
+			try
+			{
+				// The payload follows the header, the header is written last (it has the checksum)
+				channel.position(HEADER_SIZE);
+				CRC32 crc = new CRC32();
+				DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+						new CheckedOutputStream(Channels.newOutputStream(channel), crc), WRITE_BUFFER_SIZE));
+
+				// Distinct strings, in the order of their first use
+				Map<String, Integer> stringIndexes = new HashMap<String, Integer>();
+				List<String> strings = new ArrayList<String>();
+				for (FoodTruck foodTruck : foodTrucks)
+				{
+					for (String value : getStrings(foodTruck))
+					{
+						if (value != null && !stringIndexes.containsKey(value))
+						{
+							stringIndexes.put(value, strings.size());
+							strings.add(value);
+						}
+					}
+				}
+
+				for (String value : strings)
+				{
+					byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+					output.writeInt(bytes.length);
+					output.write(bytes);
+				}
+
+				for (FoodTruck foodTruck : foodTrucks)
+				{
+					output.writeLong(foodTruck.getObjectid());
+					output.writeInt(foodTruck.getCnn());
+					output.writeDouble(foodTruck.getLatitude());
+					output.writeDouble(foodTruck.getLongitude());
+					for (String value : getStrings(foodTruck))
+					{
+						output.writeInt(value == null ? NULL_STRING : stringIndexes.get(value));
+					}
+				}
+				output.flush();
+
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				header.putInt(MAGIC);
+				header.putInt(FORMAT_VERSION);
+				header.putLong(System.currentTimeMillis());
+				header.putInt(foodTrucks.size());
+				header.putInt(strings.size());
+				header.putLong(channel.position() - HEADER_SIZE);
+				header.putLong(crc.getValue());
+				header.flip();
+				while (header.hasRemaining())
+				{
+					channel.write(header, header.position());
+				}
+
+				// The content should be on the disk before the file replaces the previous one
+				channel.force(true);
+			}
+			finally
+			{
+				channel.close();
+			}
+
+			try
+			{
+				Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (AtomicMoveNotSupportedException e)
+			{
+				Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		finally
+		{
+			Files.deleteIfExists(temporaryPath);
+		}
+	}
+
+	/**
+	 * Reads the food trucks from the snapshot file.
+	 * The header and the checksum are verified before any food truck is created.
+	 *
+	 * @return The food trucks in the snapshot file
+	 * @throws IOException If the file can not be read, has another format version or is corrupt
+	 */
+	public List<FoodTruck> read() throws IOException
+	{
+		MappedByteBuffer buffer;
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try
+		{
+			// The mapping stays valid after the channel is closed
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		finally
+		{
+			channel.close();
+		}
+
+		try
+		{
+			if (buffer.limit() < HEADER_SIZE || buffer.getInt() != MAGIC)
+			{
+				throw new IOException("Not a food truck snapshot file: " + path);
+			}
+			int formatVersion = buffer.getInt();
+			if (formatVersion != FORMAT_VERSION)
+			{
+				throw new IOException("Unsupported food truck snapshot format version " + formatVersion + ": " + path);
+			}
+			// Creation time (not needed for loading)
+			buffer.getLong();
+			int recordCount = buffer.getInt();
+			int stringCount = buffer.getInt();
+			long payloadLength = buffer.getLong();
+			long checksum = buffer.getLong();
+
+			if (recordCount < 0 || stringCount < 0 || payloadLength != buffer.remaining())
+			{
+				throw new IOException("Truncated food truck snapshot file: " + path);
+			}
+
+			CRC32 crc = new CRC32();
+			crc.update(buffer.duplicate());
+			if (crc.getValue() != checksum)
+			{
+				throw new IOException("Checksum mismatch in food truck snapshot file: " + path);
+			}
+
+			String[] strings = new String[stringCount];
+			for (int i = 0; i < stringCount; i++)
+			{
+				byte[] bytes = new byte[buffer.getInt()];
+				buffer.get(bytes);
+				strings[i] = new String(bytes, StandardCharsets.UTF_8);
+			}
+
+			List<FoodTruck> foodTrucks = new ArrayList<FoodTruck>(recordCount);
+			FoodTruckStringPool stringPool = FoodTruckStringPool.getInstance();
+			for (int i = 0; i < recordCount; i++)
+			{
+				FoodTruck foodTruck = new FoodTruck();
+				foodTruck.setObjectid(buffer.getLong());
+				foodTruck.setCnn(buffer.getInt());
+				foodTruck.setLatitude(buffer.getDouble());
+				foodTruck.setLongitude(buffer.getDouble());
+				foodTruck.setAddress(getString(strings, buffer.getInt()));
+				foodTruck.setLocationdescription(getString(strings, buffer.getInt()));
+				foodTruck.setApplicant(getString(strings, buffer.getInt()));
+				foodTruck.setDayshours(getString(strings, buffer.getInt()));
+				foodTruck.setFacilitytype(getString(strings, buffer.getInt()));
+				foodTruck.setFooditems(getString(strings, buffer.getInt()));
+				foodTruck.setPermit(getString(strings, buffer.getInt()));
+				foodTruck.setSchedule(getString(strings, buffer.getInt()));
+				foodTruck.setStatus(getString(strings, buffer.getInt()));
+				// Share the strings with the food trucks ingested later on
+				foodTrucks.add(stringPool.intern(foodTruck));
+			}
+			return foodTrucks;
+		}
+		catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e)
+		{
+			throw new IOException("Corrupt food truck snapshot file: " + path, e);
+		}
+	}
+
+	/**
+	 * Returns the string properties of the given food truck, in the order of the records.
+	 */
+	private static String[] getStrings(FoodTruck foodTruck)
+	{
+		return new String[] {
+				foodTruck.getAddress(), foodTruck.getLocationdescription(), foodTruck.getApplicant(),
+				foodTruck.getDayshours(), foodTruck.getFacilitytype(), foodTruck.getFooditems(),
+				foodTruck.getPermit(), foodTruck.getSchedule(), foodTruck.getStatus()};
+	}
+
+	private static String getString(String[] strings, int index)
+	{
+		return (index == NULL_STRING) ? null : strings[index];
+	}
+}
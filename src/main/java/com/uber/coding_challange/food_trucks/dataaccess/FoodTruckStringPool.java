@@ -0,0 +1,91 @@
+package com.uber.coding_challange.food_trucks.dataaccess;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.uber.coding_challange.food_trucks.model.FoodTruck;
+
+/**
+ * Deduplicating pool of the repetitive strings of the food trucks. Singleton pattern is used.
+ * The JSON parser creates a new string for every property of every food truck,
+ * although most of them repeat: the status, the facility type, the days/hours, the permit
+ * (and the schedule URL built from it), and the applicant with its food items (one per location of the applicant).
+ * Applied during the ingestion (see intern(FoodTruck)), so the stored food trucks share one instance of each value.
+ * The address and the location description are (almost) unique per food truck, they are not pooled.
+ * The pool is bounded: when it is full it is cleared, the already shared instances stay shared.
+ * Thread safe.
+ *
+ * @author alper.karacelik
+ *
+ */
+public class FoodTruckStringPool
+{
+	// Constants ---------------------------------------------------------
+	private static final int MAX_SIZE = 64 * 1024;
+	// Longer strings are unlikely to repeat, they are not pooled
+	private static final int MAX_LENGTH = 1024;
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	private final ConcurrentHashMap<String, String> strings = new ConcurrentHashMap<String, String>();
+	// -------------------------------------------------------------------
+
+	// SINGLETON Implementation ------------------------------------------
+	private static FoodTruckStringPool INSTANCE = new FoodTruckStringPool();
+	private FoodTruckStringPool() {}
+	public static FoodTruckStringPool getInstance() {return INSTANCE;}
+	// -------------------------------------------------------------------
+
+	/**
+	 * Returns the pooled instance of the given string, the given string itself if it is not pooled yet (it is added).
+	 *
+	 * @param str String (may be null)
+	 * @return The pooled instance that is equal to the given string
+	 */
+	public String intern(String str)
+	{
+		if (str == null || str.length() > MAX_LENGTH)
+		{
+			return str;
+		}
+
+		String pooled = strings.get(str);
+		if (pooled != null)
+		{
+			return pooled;
+		}
+
+		if (strings.size() >= MAX_SIZE)
+		{
+			strings.clear();
+		}
+		pooled = strings.putIfAbsent(str, str);
+		return (pooled == null) ? str : pooled;
+	}
+
+	/**
+	 * Replaces the repetitive strings of the given food truck with their pooled instances.
+	 *
+	 * @param foodTruck Food truck (modified)
+	 * @return The given food truck
+	 */
+	public FoodTruck intern(FoodTruck foodTruck)
+	{
+		foodTruck.setApplicant(intern(foodTruck.getApplicant()));
+		foodTruck.setDayshours(intern(foodTruck.getDayshours()));
+		foodTruck.setFacilitytype(intern(foodTruck.getFacilitytype()));
+		foodTruck.setFooditems(intern(foodTruck.getFooditems()));
+		foodTruck.setPermit(intern(foodTruck.getPermit()));
+		foodTruck.setSchedule(intern(foodTruck.getSchedule()));
+		foodTruck.setStatus(intern(foodTruck.getStatus()));
+
+		return foodTruck;
+	}
+
+	/**
+	 * @return The number of the pooled strings
+	 */
+	public int size()
+	{
+		return strings.size();
+	}
+}
@@ -0,0 +1,230 @@
+package com.uber.coding_challange.food_trucks.dataaccess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.uber.coding_challange.food_trucks.model.FoodTruck;
+
+/**
+ * Inverted index of the words in the 'applicant' and 'fooditems' fields of the rows of a snapshot.
+ * Words are the lower case runs of letters and digits. The distinct words are kept sorted,
+ * so the words that start with a prefix form a range; every word has a sorted posting list of rows.
+ * A query matches the rows that have a word starting with each of its words, e.g. "taco burr"
+ * matches the rows with both "tacos" and "burritos".
+ * The index is never modified after construction.
+ *
+ * @author alper.karacelik
+ *
+ */
+final class FoodTruckTextIndex
+{
+	// Attributes --------------------------------------------------------
+	// Sorted distinct words
+	private final String[] words;
+	// Postings of the word i: rows[postingStarts[i]] .. rows[postingStarts[i + 1] - 1], ascending
+	private final int[] postingStarts;
+	private final int[] rows;
+	// -------------------------------------------------------------------
+
+	// Constructor(s) ----------------------------------------------------
+	FoodTruckTextIndex(FoodTruckColumns columns)
+	{
+		// Word -> rows (rows are visited in ascending order, so every list is sorted)
+		Map<String, IntList> postings = new HashMap<String, IntList>();
+		int postingCount = 0;
+
+		for (int row = 0; row < columns.size; row++)
+		{
+			FoodTruck foodTruck = columns.foodTrucks[row];
+			List<String> rowWords = tokenize(foodTruck.getApplicant());
+			rowWords.addAll(tokenize(foodTruck.getFooditems()));
+
+			for (String word : rowWords)
+			{
+				IntList wordRows = postings.get(word);
+
+				// If a new entry is created.
+				if (wordRows == null)
+				{
+					wordRows = new IntList();
+					postings.put(word, wordRows);
+				}
+
+				// A word may occur more than once in a row
+				if (wordRows.size == 0 || wordRows.values[wordRows.size - 1] != row)
+				{
+					wordRows.add(row);
+					postingCount++;
+				}
+			}
+		}
+
+		this.words = postings.keySet().toArray(new String[postings.size()]);
+		Arrays.sort(words);
+		this.postingStarts = new int[words.length + 1];
+		this.rows = new int[postingCount];
+
+		int position = 0;
+		for (int i = 0; i < words.length; i++)
+		{
+			IntList wordRows = postings.get(words[i]);
+			postingStarts[i] = position;
+			System.arraycopy(wordRows.values, 0, rows, position, wordRows.size);
+			position += wordRows.size;
+		}
+		postingStarts[words.length] = position;
+	}
+	// -------------------------------------------------------------------
+
+	/**
+	 * Returns the rows that match the given query: for each word of the query,
+	 * the row has a word that starts with it.
+	 *
+	 * @param query Query text, e.g. "tacos"
+	 * @return The matching rows in ascending order (empty if the query has no words)
+	 */
+	int[] search(String query)
+	{
+		List<String> queryWords = tokenize(query);
+		if (queryWords.isEmpty())
+		{
+			return new int[0];
+		}
+
+		// Intersect the rows of the query words, the smallest result first
+		List<int[]> matches = new ArrayList<int[]>(queryWords.size());
+		for (String queryWord : queryWords)
+		{
+			matches.add(searchPrefix(queryWord));
+		}
+		Collections.sort(matches, new Comparator<int[]>()
+		{
+			@Override
+			public int compare(int[] first, int[] second)
+			{
+				return Integer.compare(first.length, second.length);
+			}
+		});
+
+		int[] result = matches.get(0);
+		for (int i = 1; i < matches.size() && result.length > 0; i++)
+		{
+			result = intersect(result, matches.get(i));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the rows that have a word starting with the given prefix.
+	 *
+	 * @param prefix Lower case prefix
+	 * @return The matching rows in ascending order
+	 */
+	private int[] searchPrefix(String prefix)
+	{
+		// The words that start with the prefix are in [first, last)
+		int first = lowerBound(prefix);
+		int last = first;
+		while (last < words.length && words[last].startsWith(prefix))
+		{
+			last++;
+		}
+
+		int from = postingStarts[first];
+		int to = postingStarts[last];
+		int[] result = Arrays.copyOfRange(rows, from, to);
+
+		// The postings of a single word are already sorted and distinct
+		if (last - first > 1)
+		{
+			Arrays.sort(result);
+			int distinctCount = 0;
+			for (int i = 0; i < result.length; i++)
+			{
+				if (distinctCount == 0 || result[distinctCount - 1] != result[i])
+				{
+					result[distinctCount++] = result[i];
+				}
+			}
+			result = Arrays.copyOf(result, distinctCount);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the index of the first word that is not smaller than the given word.
+	 */
+	private int lowerBound(String word)
+	{
+		int index = Arrays.binarySearch(words, word);
+		return index >= 0 ? index : -index - 1;
+	}
+
+	/**
+	 * Returns the rows that exist in both of the given sorted arrays.
+	 */
+	static int[] intersect(int[] first, int[] second)
+	{
+		int[] result = new int[Math.min(first.length, second.length)];
+		int count = 0;
+		int i = 0;
+		int j = 0;
+
+		while (i < first.length && j < second.length)
+		{
+			if (first[i] < second[j])
+			{
+				i++;
+			}
+			else if (first[i] > second[j])
+			{
+				j++;
+			}
+			else
+			{
+				result[count++] = first[i];
+				i++;
+				j++;
+			}
+		}
+		return Arrays.copyOf(result, count);
+	}
+
+	/**
+	 * Splits the given text into lower case words (runs of letters and digits).
+	 *
+	 * @param text Text, may be null
+	 * @return The words of the text
+	 */
+	static List<String> tokenize(String text)
+	{
+		List<String> tokens = new ArrayList<String>();
+		if (text == null)
+		{
+			return tokens;
+		}
+
+		int start = -1;
+		for (int i = 0; i <= text.length(); i++)
+		{
+			boolean wordCharacter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+
+			if (wordCharacter && start < 0)
+			{
+				start = i;
+			}
+			else if (!wordCharacter && start >= 0)
+			{
+				tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+				start = -1;
+			}
+		}
+		return tokens;
+	}
+}
@@ -0,0 +1,39 @@
+package com.uber.coding_challange.food_trucks.dataaccess;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints (e.g. rows), without boxing.
+ *
+ * @author alper.karacelik
+ *
+ */
+final class IntList
+{
+	// Attributes --------------------------------------------------------
+	int[] values = new int[4];
+	int size = 0;
+	// -------------------------------------------------------------------
+
+	void add(int value)
+	{
+		if (size == values.length)
+		{
+			values = Arrays.copyOf(values, size * 2);
+		}
+		values[size++] = value;
+	}
+
+	/**
+	 * Appends the first 'count' values of the given array.
+	 */
+	void addAll(int[] source, int count)
+	{
+		if (size + count > values.length)
+		{
+			values = Arrays.copyOf(values, Math.max(size + count, size * 2));
+		}
+		System.arraycopy(source, 0, values, size, count);
+		size += count;
+	}
+}
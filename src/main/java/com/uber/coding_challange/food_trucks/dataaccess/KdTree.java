@@ -0,0 +1,260 @@
+package com.uber.coding_challange.food_trucks.dataaccess;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import com.uber.coding_challange.food_trucks.model.FoodTruck;
+
+/**
+ * Static, balanced KD-tree over the positions of the food trucks.
+ * Positions are mapped to points on the unit sphere (x, y, z),
+ * so that the straight-line (chord) distance between two points grows with their great circle distance.
+ * Nearest neighbour queries run in logarithmic time on average.
+ * The tree is immutable once it is built; it is rebuilt when the storage changes.
+ *
+ * @author alper.karacelik
+ *
+ */
+public class KdTree
+{
+	// Attributes --------------------------------------------------------
+	// Nodes are stored in an implicit layout: the node of the range [lo, hi) is at (lo + hi) / 2
+	private final FoodTruck[] foodTrucks;
+	private final double[] coordinates;
+	private final int size;
+	// -------------------------------------------------------------------
+
+	// Constructor(s) ----------------------------------------------------
+	public KdTree(Collection<FoodTruck> foodTruckCollection)
+	{
+		List<FoodTruck> positioned = new ArrayList<FoodTruck>(foodTruckCollection.size());
+
+		// Food trucks without a position can not be a neighbour of any point
+		for (FoodTruck foodTruck : foodTruckCollection)
+		{
+			if (!Double.isNaN(foodTruck.getLatitude()) && !Double.isNaN(foodTruck.getLongitude())
+					&& !Double.isInfinite(foodTruck.getLatitude()) && !Double.isInfinite(foodTruck.getLongitude()))
+			{
+				positioned.add(foodTruck);
+			}
+		}
+
+		this.size = positioned.size();
+		this.foodTrucks = positioned.toArray(new FoodTruck[size]);
+		this.coordinates = new double[size * 3];
+
+		for (int i = 0; i < size; i++)
+		{
+			toUnitVector(foodTrucks[i].getLatitude(), foodTrucks[i].getLongitude(), coordinates, i * 3);
+		}
+
+		build(0, size, 0);
+	}
+	// -------------------------------------------------------------------
+
+	/**
+	 * Returns the number of food trucks in the tree.
+	 *
+	 * @return The number of food trucks in the tree
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Returns the 'k' food trucks that are closest to the given position,
+	 * ordered by their distance to the given position (closest first).
+	 *
+	 * @param latitude Latitude of the position (in decimal degrees)
+	 * @param longitude Longitude of the position (in decimal degrees)
+	 * @param k Number of food trucks to return
+	 * @return The closest 'k' food trucks (or all of them if there are less than 'k')
+	 */
+	public List<FoodTruck> nearest(double latitude, double longitude, int k)
+	{
+		if (k <= 0 || size == 0)
+		{
+			return new ArrayList<FoodTruck>();
+		}
+
+		double[] target = new double[3];
+		toUnitVector(latitude, longitude, target, 0);
+
+		// Max-heap of the best candidates found so far, the worst candidate is at the head
+		PriorityQueue<Neighbour> best = new PriorityQueue<Neighbour>(Math.min(k, size) + 1, Collections.reverseOrder());
+		search(0, size, 0, target, k, best);
+
+		List<Neighbour> neighbours = new ArrayList<Neighbour>(best);
+		Collections.sort(neighbours);
+
+		List<FoodTruck> result = new ArrayList<FoodTruck>(neighbours.size());
+		for (Neighbour neighbour : neighbours)
+		{
+			result.add(foodTrucks[neighbour.index]);
+		}
+		return result;
+	}
+
+	/**
+	 * Recursively visits the nodes in the range [lo, hi),
+	 * skips the subtrees that can not contain a closer food truck than the current worst candidate.
+	 */
+	private void search(int lo, int hi, int axis, double[] target, int k, PriorityQueue<Neighbour> best)
+	{
+		if (lo >= hi)
+		{
+			return;
+		}
+
+		int mid = (lo + hi) >>> 1;
+		double dx = coordinates[mid * 3] - target[0];
+		double dy = coordinates[mid * 3 + 1] - target[1];
+		double dz = coordinates[mid * 3 + 2] - target[2];
+		double distance = dx * dx + dy * dy + dz * dz;
+
+		if (best.size() < k)
+		{
+			best.add(new Neighbour(mid, distance));
+		}
+		else if (distance < best.peek().distance)
+		{
+			best.poll();
+			best.add(new Neighbour(mid, distance));
+		}
+
+		double axisDelta = target[axis] - coordinates[mid * 3 + axis];
+		int nextAxis = (axis + 1) % 3;
+
+		// Visit the side of the splitting plane that contains the target first
+		if (axisDelta < 0)
+		{
+			search(lo, mid, nextAxis, target, k, best);
+			if (best.size() < k || axisDelta * axisDelta < best.peek().distance)
+			{
+				search(mid + 1, hi, nextAxis, target, k, best);
+			}
+		}
+		else
+		{
+			search(mid + 1, hi, nextAxis, target, k, best);
+			if (best.size() < k || axisDelta * axisDelta < best.peek().distance)
+			{
+				search(lo, mid, nextAxis, target, k, best);
+			}
+		}
+	}
+
+	/**
+	 * Recursively places the median (on the given axis) of the range [lo, hi) at its middle.
+	 */
+	private void build(int lo, int hi, int axis)
+	{
+		if (hi - lo <= 1)
+		{
+			return;
+		}
+
+		int mid = (lo + hi) >>> 1;
+		select(lo, hi - 1, mid, axis);
+
+		build(lo, mid, (axis + 1) % 3);
+		build(mid + 1, hi, (axis + 1) % 3);
+	}
+
+	/**
+	 * Quickselect: partially orders the range [lo, hi] so that the k-th element is in its sorted position.
+	 */
+	private void select(int lo, int hi, int k, int axis)
+	{
+		while (lo < hi)
+		{
+			double pivot = coordinates[((lo + hi) >>> 1) * 3 + axis];
+			int i = lo;
+			int j = hi;
+
+			while (i <= j)
+			{
+				while (coordinates[i * 3 + axis] < pivot)
+				{
+					i++;
+				}
+				while (coordinates[j * 3 + axis] > pivot)
+				{
+					j--;
+				}
+				if (i <= j)
+				{
+					swap(i, j);
+					i++;
+					j--;
+				}
+			}
+
+			if (k <= j)
+			{
+				hi = j;
+			}
+			else if (k >= i)
+			{
+				lo = i;
+			}
+			else
+			{
+				return;
+			}
+		}
+	}
+
+	private void swap(int i, int j)
+	{
+		FoodTruck foodTruck = foodTrucks[i];
+		foodTrucks[i] = foodTrucks[j];
+		foodTrucks[j] = foodTruck;
+
+		for (int d = 0; d < 3; d++)
+		{
+			double coordinate = coordinates[i * 3 + d];
+			coordinates[i * 3 + d] = coordinates[j * 3 + d];
+			coordinates[j * 3 + d] = coordinate;
+		}
+	}
+
+	/**
+	 * Converts the given position to a point on the unit sphere.
+	 */
+	private static void toUnitVector(double latitude, double longitude, double[] target, int offset)
+	{
+		double lat = Math.toRadians(latitude);
+		double lon = Math.toRadians(longitude);
+		double cosLat = Math.cos(lat);
+
+		target[offset] = cosLat * Math.cos(lon);
+		target[offset + 1] = cosLat * Math.sin(lon);
+		target[offset + 2] = Math.sin(lat);
+	}
+
+	/**
+	 * A candidate of a nearest neighbour query; ordered by the (squared chord) distance.
+	 */
+	private static class Neighbour implements Comparable<Neighbour>
+	{
+		private final int index;
+		private final double distance;
+
+		private Neighbour(int index, double distance)
+		{
+			this.index = index;
+			this.distance = distance;
+		}
+
+		@Override
+		public int compareTo(Neighbour other)
+		{
+			return Double.compare(distance, other.distance);
+		}
+	}
+}
@@ -0,0 +1,369 @@
+package com.uber.coding_challange.food_trucks.dataaccess;
+
+import java.util.Arrays;
+
+/**
+ * Uniform latitude/longitude grid over the rows of a FoodTruckColumns.
+ * Every row is put into the cell that contains its position,
+ * so that a radius query only needs to look at the cells its circle overlaps.
+ * Rows are grouped by cell key (latitude index * longitude cell count + longitude index) in a single array,
+ * therefore the cells of one latitude index and a longitude range are contiguous.
+ * Rows with a position outside of the valid latitude/longitude ranges
+ * are kept in a separate array which is always returned as a candidate.
+ * The index is immutable; it is built together with its snapshot.
+ *
+ * @author alper.karacelik
+ *
+ */
+public class SpatialGridIndex
+{
+	// Constants ---------------------------------------------------------
+	public static final double DEFAULT_CELL_SIZE = 0.01;
+
+	// Safety margin (in degrees) added to the bounding box of a circle,
+	// covers the floating point error of the distance calculation.
+	private static final double MARGIN = 1e-4;
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	private final double cellSize;
+	private final int lonCellCount;
+	// Sorted keys of the occupied cells
+	private final long[] cellKeys;
+	// Rows of the i-th cell: cellRows[cellStarts[i] .. cellStarts[i + 1])
+	private final int[] cellStarts;
+	private final int[] cellRows;
+	private final int[] outOfRangeRows;
+	// -------------------------------------------------------------------
+
+	// Constructor(s) ----------------------------------------------------
+	SpatialGridIndex(FoodTruckColumns columns)
+	{
+		this(columns, DEFAULT_CELL_SIZE);
+	}
+
+	SpatialGridIndex(FoodTruckColumns columns, double cellSize)
+	{
+		if (!(cellSize > 0 && cellSize <= 180))
+		{
+			throw new IllegalArgumentException("Invalid cell size: " + cellSize);
+		}
+
+		this.cellSize = cellSize;
+		this.lonCellCount = (int) Math.ceil(360 / cellSize) + 1;
+
+		// (cell key << 32 | row) pairs, sorting them groups the rows by cell
+		long[] keyedRows = new long[columns.size];
+		int inRangeCount = 0;
+		int outOfRangeCount = 0;
+		int[] outOfRange = new int[columns.size];
+
+		for (int row = 0; row < columns.size; row++)
+		{
+			double latitude = columns.foodTrucks[row].getLatitude();
+			double longitude = columns.foodTrucks[row].getLongitude();
+
+			if (isInRange(latitude, longitude))
+			{
+				keyedRows[inRangeCount++] = (cellKey(latIndex(latitude), lonIndex(longitude)) << 32) | row;
+			}
+			else
+			{
+				outOfRange[outOfRangeCount++] = row;
+			}
+		}
+
+		Arrays.sort(keyedRows, 0, inRangeCount);
+
+		long[] keys = new long[inRangeCount];
+		int[] starts = new int[inRangeCount + 1];
+		int cellCount = 0;
+
+		this.cellRows = new int[inRangeCount];
+		for (int i = 0; i < inRangeCount; i++)
+		{
+			long key = keyedRows[i] >>> 32;
+			cellRows[i] = (int) keyedRows[i];
+
+			// If a new cell is started.
+			if (cellCount == 0 || keys[cellCount - 1] != key)
+			{
+				keys[cellCount] = key;
+				starts[cellCount] = i;
+				cellCount++;
+			}
+		}
+		starts[cellCount] = inRangeCount;
+
+		this.cellKeys = Arrays.copyOf(keys, cellCount);
+		this.cellStarts = Arrays.copyOf(starts, cellCount + 1);
+		this.outOfRangeRows = Arrays.copyOf(outOfRange, outOfRangeCount);
+	}
+	// -------------------------------------------------------------------
+
+	/**
+	 * Returns the rows in the cells that are overlapped by the specified circle.
+	 * The result is a superset of the rows that reside in the circle,
+	 * the caller should still check the distance of each returned row.
+	 *
+	 * @param latitude Latitude of the center of the circle (in decimal degrees)
+	 * @param longitude Longitude of the center of the circle (in decimal degrees)
+	 * @param arcDegrees Radius of the circle as an arc on the earth surface (in decimal degrees)
+	 * @return Candidate rows for the specified circle
+	 */
+	public int[] getCandidates(double latitude, double longitude, double arcDegrees)
+	{
+		double[] box = getBoundingBox(latitude, longitude, arcDegrees);
+
+		// A circle with an undefined center or radius can not match any row in a cell.
+		if (box == null)
+		{
+			return outOfRangeRows.clone();
+		}
+		return getCandidates(box[0], box[1], box[2], box[3]);
+	}
+
+	/**
+	 * Returns the occupied cells that are overlapped by the specified circle,
+	 * as [first, last) ranges of cell numbers (see getCellRowCount() and copyCellRows()).
+	 * The rows with a position outside of the valid ranges are not in any cell (see getOutOfRangeRows()).
+	 * Used to visit the cells of several circles in one pass.
+	 *
+	 * @param latitude Latitude of the center of the circle (in decimal degrees)
+	 * @param longitude Longitude of the center of the circle (in decimal degrees)
+	 * @param arcDegrees Radius of the circle as an arc on the earth surface (in decimal degrees)
+	 * @return The first and the last (exclusive) cell numbers of each range
+	 */
+	int[] getCellRanges(double latitude, double longitude, double arcDegrees)
+	{
+		double[] box = getBoundingBox(latitude, longitude, arcDegrees);
+		if (box == null)
+		{
+			return new int[0];
+		}
+
+		int minLatIdx = latIndex(Math.max(box[0], -90));
+		int maxLatIdx = latIndex(Math.min(box[1], 90));
+		int[] lonRanges = new int[4];
+		int lonRangeCount = getLonRanges(box[2], box[3], lonRanges);
+
+		int[] cellRanges = new int[(maxLatIdx - minLatIdx + 1) * lonRangeCount];
+		int count = 0;
+		for (int latIdx = minLatIdx; latIdx <= maxLatIdx; latIdx++)
+		{
+			for (int r = 0; r < lonRangeCount; r += 2)
+			{
+				int first = lowerBound(cellKey(latIdx, lonRanges[r]));
+				int last = lowerBound(cellKey(latIdx, lonRanges[r + 1]) + 1);
+
+				if (first < last)
+				{
+					cellRanges[count++] = first;
+					cellRanges[count++] = last;
+				}
+			}
+		}
+		return Arrays.copyOf(cellRanges, count);
+	}
+
+	/**
+	 * Returns the number of rows in the given cell.
+	 *
+	 * @param cell Cell number, see getCellRanges()
+	 * @return The number of rows in the cell
+	 */
+	int getCellRowCount(int cell)
+	{
+		return cellStarts[cell + 1] - cellStarts[cell];
+	}
+
+	/**
+	 * Copies the rows of the given cell to the beginning of the given array.
+	 *
+	 * @param cell Cell number, see getCellRanges()
+	 * @param target Array with room for getCellRowCount(cell) rows
+	 */
+	void copyCellRows(int cell, int[] target)
+	{
+		System.arraycopy(cellRows, cellStarts[cell], target, 0, getCellRowCount(cell));
+	}
+
+	/**
+	 * @return The rows with a position outside of the valid latitude/longitude ranges
+	 */
+	int[] getOutOfRangeRows()
+	{
+		return outOfRangeRows.clone();
+	}
+
+	/**
+	 * Returns the latitude/longitude rectangle that contains the specified circle (with the safety margin),
+	 * as {minLat, maxLat, minLon, maxLon}; the longitude range may cross the 180th meridian.
+	 *
+	 * @return The rectangle of the circle, or null if the center or the radius is undefined
+	 */
+	private double[] getBoundingBox(double latitude, double longitude, double arcDegrees)
+	{
+		if (Double.isNaN(latitude) || Double.isInfinite(longitude) || Double.isNaN(longitude) || !(arcDegrees >= 0))
+		{
+			return null;
+		}
+
+		// The distance formula accepts any latitude, visit all the cells for the invalid ones.
+		if (latitude < -90 || latitude > 90)
+		{
+			return new double[] {-90, 90, -180, 180};
+		}
+
+		// Bring the longitude into the [-180, 180) range
+		longitude = longitude - 360 * Math.floor((longitude + 180) / 360);
+
+		double radius = arcDegrees + MARGIN;
+		double minLat = latitude - radius;
+		double maxLat = latitude + radius;
+
+		// The circle covers a pole or the whole globe, all the longitudes are overlapped.
+		if (minLat <= -90 || maxLat >= 90 || radius >= 180)
+		{
+			return new double[] {Math.max(minLat, -90), Math.min(maxLat, 90), -180, 180};
+		}
+
+		// Longitude extent of a circle on a sphere
+		double sinLonDelta = Math.sin(Math.toRadians(radius)) / Math.cos(Math.toRadians(latitude));
+		if (sinLonDelta >= 1)
+		{
+			return new double[] {minLat, maxLat, -180, 180};
+		}
+
+		double lonDelta = Math.toDegrees(Math.asin(sinLonDelta)) + MARGIN;
+		return new double[] {minLat, maxLat, longitude - lonDelta, longitude + lonDelta};
+	}
+
+	/**
+	 * Returns the rows in the cells that are overlapped by the specified rectangle.
+	 * The longitude range may cross the 180th meridian (minLon < -180 or maxLon > 180),
+	 * it is split into two ranges in that case.
+	 *
+	 * @param minLat Minimum latitude (in decimal degrees)
+	 * @param maxLat Maximum latitude (in decimal degrees)
+	 * @param minLon Minimum longitude (in decimal degrees)
+	 * @param maxLon Maximum longitude (in decimal degrees)
+	 * @return Candidate rows for the specified rectangle
+	 */
+	public int[] getCandidates(double minLat, double maxLat, double minLon, double maxLon)
+	{
+		int minLatIdx = latIndex(Math.max(minLat, -90));
+		int maxLatIdx = latIndex(Math.min(maxLat, 90));
+
+		// Longitude index ranges, at most two of them
+		int[] lonRanges = new int[4];
+		int lonRangeCount = getLonRanges(minLon, maxLon, lonRanges);
+
+		// First pass counts the candidates, second pass copies them
+		int count = collect(minLatIdx, maxLatIdx, lonRanges, lonRangeCount, null);
+		int[] candidates = new int[count];
+		collect(minLatIdx, maxLatIdx, lonRanges, lonRangeCount, candidates);
+
+		return candidates;
+	}
+
+	/**
+	 * Fills the given array with the (first, last) longitude index pairs of the given longitude range,
+	 * split into two ranges if it crosses the 180th meridian.
+	 *
+	 * @return The number of the filled array elements (2 or 4)
+	 */
+	private int getLonRanges(double minLon, double maxLon, int[] lonRanges)
+	{
+		int lonRangeCount = 0;
+
+		if (maxLon - minLon >= 360)
+		{
+			lonRanges[lonRangeCount++] = lonIndex(-180);
+			lonRanges[lonRangeCount++] = lonIndex(180);
+		}
+		else
+		{
+			// Split the longitude range if the rectangle crosses the 180th meridian
+			if (minLon < -180)
+			{
+				lonRanges[lonRangeCount++] = lonIndex(minLon + 360);
+				lonRanges[lonRangeCount++] = lonIndex(180);
+				minLon = -180;
+			}
+			if (maxLon > 180)
+			{
+				lonRanges[lonRangeCount++] = lonIndex(-180);
+				lonRanges[lonRangeCount++] = lonIndex(maxLon - 360);
+				maxLon = 180;
+			}
+			lonRanges[lonRangeCount++] = lonIndex(minLon);
+			lonRanges[lonRangeCount++] = lonIndex(maxLon);
+		}
+		return lonRangeCount;
+	}
+
+	/**
+	 * Copies the rows of the out of range array and of the cells in the given index ranges to the given array.
+	 * Only counts the rows if the given array is null.
+	 *
+	 * @return The number of rows
+	 */
+	private int collect(int minLatIdx, int maxLatIdx, int[] lonRanges, int lonRangeCount, int[] target)
+	{
+		int count = outOfRangeRows.length;
+
+		if (target != null)
+		{
+			System.arraycopy(outOfRangeRows, 0, target, 0, count);
+		}
+
+		for (int latIdx = minLatIdx; latIdx <= maxLatIdx; latIdx++)
+		{
+			for (int r = 0; r < lonRangeCount; r += 2)
+			{
+				// The cells of a latitude index and a longitude range are contiguous
+				int first = lowerBound(cellKey(latIdx, lonRanges[r]));
+				int last = lowerBound(cellKey(latIdx, lonRanges[r + 1]) + 1);
+				int length = cellStarts[last] - cellStarts[first];
+
+				if (target != null && length > 0)
+				{
+					System.arraycopy(cellRows, cellStarts[first], target, count, length);
+				}
+				count += length;
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Returns the index of the first occupied cell with a key that is not smaller than the given key.
+	 */
+	private int lowerBound(long key)
+	{
+		int index = Arrays.binarySearch(cellKeys, key);
+		return (index >= 0) ? index : -index - 1;
+	}
+
+	private int latIndex(double latitude)
+	{
+		return (int) Math.floor((latitude + 90) / cellSize);
+	}
+
+	private int lonIndex(double longitude)
+	{
+		return (int) Math.floor((longitude + 180) / cellSize);
+	}
+
+	private long cellKey(int latIdx, int lonIdx)
+	{
+		return (long) latIdx * lonCellCount + lonIdx;
+	}
+
+	private static boolean isInRange(double latitude, double longitude)
+	{
+		return latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180;
+	}
+}
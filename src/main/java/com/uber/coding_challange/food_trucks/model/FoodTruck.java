@@ -1,6 +1,9 @@
 package com.uber.coding_challange.food_trucks.model;
 
+import java.util.Objects;
+
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.uber.coding_challange.food_trucks.model.enums.FoodTruckStatusEnum;
 
 /**
@@ -28,6 +31,8 @@ public class FoodTruck
 	private String permit;
 	private String schedule;
 	private String status;
+	// Resolved from the status when it is set (not a JSON property, see getStatusEnum())
+	private transient FoodTruckStatusEnum statusEnum = FoodTruckStatusEnum.NO_STATEMENT;
 	// -------------------------------------------------------------------
 	
 	// Constructor(s) ----------------------------------------------------
@@ -115,17 +120,58 @@ public class FoodTruck
 	}
 	public void setStatus(String status) {
 		this.status = status;
+		this.statusEnum = FoodTruckStatusEnum.getFromStringValue(status);
 	}
 	// -------------------------------------------------------------------
 	
 	// Miscellaneous -----------------------------------------------------
 	/**
-	 * Returns the related Status enumeration
+	 * Returns the related Status enumeration (resolved once, when the status is set)
+	 * Written to JSON, but never read from it (it always follows the status)
 	 * @return The related Status enumeration
 	 */
+	@JsonProperty(access = JsonProperty.Access.READ_ONLY)
 	public FoodTruckStatusEnum getStatusEnum()
 	{
-		return FoodTruckStatusEnum.getFromStringValue(status);
+		return statusEnum;
+	}
+	
+	/**
+	 * Two food trucks are equal if all of their attributes are equal.
+	 * Used to detect the food trucks that are changed between two downloads of the data.
+	 */
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+		{
+			return true;
+		}
+		if (!(obj instanceof FoodTruck))
+		{
+			return false;
+		}
+		
+		FoodTruck other = (FoodTruck) obj;
+		return objectid == other.objectid
+				&& cnn == other.cnn
+				&& Double.compare(latitude, other.latitude) == 0
+				&& Double.compare(longitude, other.longitude) == 0
+				&& Objects.equals(address, other.address)
+				&& Objects.equals(locationdescription, other.locationdescription)
+				&& Objects.equals(applicant, other.applicant)
+				&& Objects.equals(dayshours, other.dayshours)
+				&& Objects.equals(facilitytype, other.facilitytype)
+				&& Objects.equals(fooditems, other.fooditems)
+				&& Objects.equals(permit, other.permit)
+				&& Objects.equals(schedule, other.schedule)
+				&& Objects.equals(status, other.status);
+	}
+	
+	@Override
+	public int hashCode()
+	{
+		return Long.hashCode(objectid);
 	}
 	// -------------------------------------------------------------------
 }
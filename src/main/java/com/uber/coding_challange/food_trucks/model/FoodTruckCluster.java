@@ -0,0 +1,66 @@
+package com.uber.coding_challange.food_trucks.model;
+
+import java.util.Map;
+
+/**
+ * Food Truck Cluster class.
+ * Aggregate of the food trucks in one cell of the cluster grid (see GET foodtrucks/clusters), e.g.
+ * {"latitude": 37.7751, "longitude": -122.4185, "count": 12, "statuses": {"APPROVED": 9, "REQUESTED": 3}}
+ * The position is the centroid of the food trucks of the cell.
+ * Jackson framework is used for JSON convertions
+ *
+ * @author alper.karacelik
+ *
+ */
+public class FoodTruckCluster
+{
+	// Attributes --------------------------------------------------------
+	private double latitude;
+	private double longitude;
+	private int count;
+	private Map<String, Integer> statuses;
+	// -------------------------------------------------------------------
+
+	// Constructor(s) ----------------------------------------------------
+	public FoodTruckCluster()
+	{
+		super();
+	}
+
+	public FoodTruckCluster(double latitude, double longitude, int count, Map<String, Integer> statuses)
+	{
+		super();
+		this.latitude = latitude;
+		this.longitude = longitude;
+		this.count = count;
+		this.statuses = statuses;
+	}
+	// -------------------------------------------------------------------
+
+	// Getters & Setters -------------------------------------------------
+	public double getLatitude() {
+		return latitude;
+	}
+	public void setLatitude(double latitude) {
+		this.latitude = latitude;
+	}
+	public double getLongitude() {
+		return longitude;
+	}
+	public void setLongitude(double longitude) {
+		this.longitude = longitude;
+	}
+	public int getCount() {
+		return count;
+	}
+	public void setCount(int count) {
+		this.count = count;
+	}
+	public Map<String, Integer> getStatuses() {
+		return statuses;
+	}
+	public void setStatuses(Map<String, Integer> statuses) {
+		this.statuses = statuses;
+	}
+	// -------------------------------------------------------------------
+}
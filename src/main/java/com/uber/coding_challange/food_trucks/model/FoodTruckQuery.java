@@ -0,0 +1,96 @@
+package com.uber.coding_challange.food_trucks.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.uber.coding_challange.food_trucks.model.enums.DistanceUnitEnum;
+import com.uber.coding_challange.food_trucks.model.enums.FoodTruckStatusEnum;
+
+/**
+ * Food Truck Query class.
+ * One circle query of a batch request (POST foodtrucks/query/batch), e.g.
+ * {"id": "zone-1", "latitude": 37.78, "longitude": -122.41, "radius": 1, "radius_unit": "km", "status": "APPROVED"}
+ * The properties have the same meaning as the query parameters of 'foodtrucks/query'.
+ * Jackson framework is used for JSON convertions
+ *
+ * @author alper.karacelik
+ *
+ */
+@JsonIgnoreProperties(ignoreUnknown=true)
+public class FoodTruckQuery
+{
+	// Attributes --------------------------------------------------------
+	private String id;
+	private double latitude = Double.NaN;
+	private double longitude = Double.NaN;
+	private double radius = Double.NaN;
+	@JsonProperty("radius_unit")
+	private String radiusUnit;
+	private String status;
+	// -------------------------------------------------------------------
+
+	// Constructor(s) ----------------------------------------------------
+	public FoodTruckQuery()
+	{
+		super();
+	}
+	// -------------------------------------------------------------------
+
+	// Getters & Setters -------------------------------------------------
+	public String getId() {
+		return id;
+	}
+	public void setId(String id) {
+		this.id = id;
+	}
+	public double getLatitude() {
+		return latitude;
+	}
+	public void setLatitude(double latitude) {
+		this.latitude = latitude;
+	}
+	public double getLongitude() {
+		return longitude;
+	}
+	public void setLongitude(double longitude) {
+		this.longitude = longitude;
+	}
+	public double getRadius() {
+		return radius;
+	}
+	public void setRadius(double radius) {
+		this.radius = radius;
+	}
+	public String getRadiusUnit() {
+		return radiusUnit;
+	}
+	public void setRadiusUnit(String radiusUnit) {
+		this.radiusUnit = radiusUnit;
+	}
+	public String getStatus() {
+		return status;
+	}
+	public void setStatus(String status) {
+		this.status = status;
+	}
+	// -------------------------------------------------------------------
+
+	// Miscellaneous -----------------------------------------------------
+	/**
+	 * Returns the related Status enumeration, ALL if the status is not specified
+	 * @return The related Status enumeration
+	 */
+	public FoodTruckStatusEnum getStatusEnum()
+	{
+		return (status == null) ? FoodTruckStatusEnum.ALL : FoodTruckStatusEnum.getFromStringValue(status);
+	}
+
+	/**
+	 * Returns the related Distance Unit enumeration
+	 * @return The related Distance Unit enumeration
+	 */
+	public DistanceUnitEnum getRadiusUnitEnum()
+	{
+		return DistanceUnitEnum.getFromStringValue(radiusUnit);
+	}
+	// -------------------------------------------------------------------
+}
@@ -0,0 +1,65 @@
+package com.uber.coding_challange.food_trucks.model.enums;
+
+/**
+ * Response format enumeration, the 'strValue' is the media type of the format.
+ * JSON: Text JSON (UTF-8)
+ * SMILE: Binary JSON of Jackson (Smile)
+ * CBOR: Concise Binary Object Representation (RFC 7049)
+ *
+ * @author alper.karacelik
+ *
+ */
+public enum ResponseFormatEnum
+{
+	JSON(0, "application/json"),
+	SMILE(1, "application/x-jackson-smile"),
+	CBOR(2, "application/cbor");
+
+	private int value;
+	private String strValue;
+
+	ResponseFormatEnum(int value, String strValue)
+	{
+		this.value = value;
+		this.strValue = strValue;
+	}
+
+	public int getValue()
+	{
+		return value;
+	}
+
+	public String getStrValue()
+	{
+		return strValue;
+	}
+
+	/**
+	 * Returns the enumeration value whose media type is the given 'inpStrVal' (parameters are ignored),
+	 * JSON if it is not one of the binary formats
+	 *
+	 * @param inpStrVal Media type
+	 * @return The response format of the media type
+	 */
+	public static ResponseFormatEnum getFromStringValue(String inpStrVal)
+	{
+		if (inpStrVal == null)
+		{
+			return JSON;
+		}
+
+		String mediaType = inpStrVal.split(";")[0].trim();
+		if (mediaType.compareToIgnoreCase(SMILE.strValue) == 0)
+		{
+			return SMILE;
+		}
+		else if (mediaType.compareToIgnoreCase(CBOR.strValue) == 0)
+		{
+			return CBOR;
+		}
+		else
+		{
+			return JSON;
+		}
+	}
+}
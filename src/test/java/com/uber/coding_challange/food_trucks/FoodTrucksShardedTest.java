@@ -0,0 +1,332 @@
+package com.uber.coding_challange.food_trucks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.uber.coding_challange.food_trucks.dataaccess.FoodTruckAccessor;
+import com.uber.coding_challange.food_trucks.model.FoodTruck;
+import com.uber.coding_challange.food_trucks.model.enums.DistanceUnitEnum;
+import com.uber.coding_challange.food_trucks.model.enums.FoodTruckStatusEnum;
+
+/**
+ * Starts a geo-sharded cluster (see FoodTruckShards) on local ports: two shards and their coordinator,
+ * each one an embedded Tomcat started by Main in its own JVM, the shards loading a generated feed file.
+ * Checks that a shard answers 503 while its data is loading and the coordinator fails (502, readiness 503) meanwhile,
+ * then that the coordinator answers the full list and the queries like a single node storing all the food trucks
+ * (the storage of this JVM), and rejects the requests that are not sharded yet with 501.
+ *
+ * @author alper.karacelik
+ *
+ */
+public class FoodTrucksShardedTest
+{
+	// Constants ---------------------------------------------------------
+	private static final int FOOD_TRUCK_COUNT = 600;
+	private static final long STARTUP_TIMEOUT_MILLIS = 180000;
+	private static final String[] STATUSES = {"APPROVED", "REQUESTED", "EXPIRED"};
+	private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+	private static final TypeReference<List<FoodTruck>> FOOD_TRUCK_LIST = new TypeReference<List<FoodTruck>>() {};
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	private static final List<Process> processes = new ArrayList<Process>();
+	private static File directory;
+	private static File feedFile;
+	// The feed of the second shard, missing until the test makes it available
+	private static File lateFeedFile;
+	private static String[] shardUrls;
+	private static String coordinatorUrl;
+	private static List<FoodTruck> foodTrucks;
+	// -------------------------------------------------------------------
+
+	@BeforeClass
+	public static void startCluster() throws Exception
+	{
+		directory = Files.createTempDirectory("food-trucks-sharded").toFile();
+		feedFile = new File(directory, "feed.json");
+		lateFeedFile = new File(directory, "late-feed.json");
+		foodTrucks = writeFeed(feedFile);
+
+		shardUrls = new String[] {"http://localhost:" + freePort() + "/webapi", "http://localhost:" + freePort() + "/webapi"};
+		coordinatorUrl = "http://localhost:" + freePort() + "/webapi";
+
+		startNode(0, "-Dfoodtrucks.shard.count=2", "-Dfoodtrucks.shard.index=0",
+				"-Dfoodtrucks.datasf.url=" + feedFile.toURI());
+		startNode(1, "-Dfoodtrucks.shard.count=2", "-Dfoodtrucks.shard.index=1",
+				"-Dfoodtrucks.datasf.url=" + lateFeedFile.toURI(), "-Dfoodtrucks.refresh.interval=1", "-Dfoodtrucks.refresh.backoff=1");
+		startNode(2, "-Dfoodtrucks.shard.nodes=" + shardUrls[0] + "," + shardUrls[1]);
+
+		awaitStatus(shardUrls[0] + "/health/ready", 200);
+		awaitStatus(shardUrls[1] + "/health/live", 200);
+		awaitStatus(coordinatorUrl + "/health/live", 200);
+	}
+
+	@AfterClass
+	public static void stopCluster() throws InterruptedException
+	{
+		for (Process process : processes)
+		{
+			process.destroyForcibly().waitFor();
+		}
+		for (File file : directory.listFiles())
+		{
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	@Test
+	public void answersOnceAllShardsAreReady() throws Exception
+	{
+		// The second shard is loading: it rejects the lists, the coordinator fails instead of answering half of them
+		assertEquals(503, get(shardUrls[1] + "/health/ready").status);
+		assertEquals(503, get(shardUrls[1] + "/foodtrucks/query").status);
+		assertEquals(503, get(shardUrls[1] + "/foodtrucks").status);
+		assertEquals(503, get(coordinatorUrl + "/health/ready").status);
+		assertEquals(502, get(coordinatorUrl + "/foodtrucks").status);
+		assertEquals(502, get(coordinatorUrl + "/foodtrucks/query?status=APPROVED").status);
+
+		// The second shard loads its feed on its next refresh
+		Files.copy(feedFile.toPath(), new File(directory, "late-feed.tmp").toPath());
+		Files.move(new File(directory, "late-feed.tmp").toPath(), lateFeedFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		awaitStatus(shardUrls[1] + "/health/ready", 200);
+		awaitStatus(coordinatorUrl + "/health/ready", 200);
+
+		// The food trucks of this JVM, stored on a single node
+		FoodTruckAccessor accessor = FoodTruckAccessor.getInstance();
+		Set<Long> ids = new HashSet<Long>();
+		for (FoodTruck foodTruck : accessor.getAllFoodTrucks())
+		{
+			ids.add(foodTruck.getObjectid());
+		}
+		for (FoodTruck foodTruck : foodTrucks)
+		{
+			ids.remove(foodTruck.getObjectid());
+		}
+		accessor.applyChanges(foodTrucks, ids);
+
+		// Every food truck is stored on exactly one shard
+		List<FoodTruck> shard0 = getFoodTrucks(shardUrls[0] + "/foodtrucks");
+		List<FoodTruck> shard1 = getFoodTrucks(shardUrls[1] + "/foodtrucks");
+		assertTrue(!shard0.isEmpty() && !shard1.isEmpty());
+		assertEquals(FOOD_TRUCK_COUNT, shard0.size() + shard1.size());
+		assertEquals(objectids(accessor.getAllFoodTrucks()), objectids(getFoodTrucks(coordinatorUrl + "/foodtrucks")));
+
+		// Queries on 'status', in the city, at a pole, across the 180th meridian and around the world
+		for (String status : new String[] {null, "APPROVED", "REQUESTED", "unknown"})
+		{
+			FoodTruckStatusEnum statusEnum = (status == null) ? FoodTruckStatusEnum.ALL : FoodTruckStatusEnum.getFromStringValue(status);
+			String statusParameter = (status == null) ? "" : "status=" + status + "&";
+
+			assertEquals("status " + status, objectids(accessor.getFoodTrucks(statusEnum)),
+					objectids(getFoodTrucks(coordinatorUrl + "/foodtrucks/query?" + statusParameter)));
+
+			for (double[] circle : new double[][] {
+					{37.76, -122.44, 1}, {37.76, -122.44, 5}, {89.9, 0, 200}, {-89.9, 0, 200}, {0, 179.9, 800}, {20, -120, 6000}})
+			{
+				for (DistanceUnitEnum radiusUnit : new DistanceUnitEnum[] {DistanceUnitEnum.KILOMETERS, DistanceUnitEnum.MILES})
+				{
+					String description = "status " + status + ", circle " + circle[0] + "," + circle[1] + "," + circle[2] + radiusUnit;
+					List<FoodTruck> expected = accessor.getFoodTrucks(statusEnum, circle[0], circle[1], circle[2], radiusUnit);
+					List<FoodTruck> actual = getFoodTrucks(String.format(Locale.ROOT,
+							"%s/foodtrucks/query?%slatitude=%s&longitude=%s&radius=%s&radius_unit=%s",
+							coordinatorUrl, statusParameter, circle[0], circle[1], circle[2], radiusUnit.getStrValue()));
+					assertEquals(description, objectids(expected), objectids(actual));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void rejectsUnshardedRequests() throws Exception
+	{
+		assertEquals(501, get(coordinatorUrl + "/foodtrucks?limit=10").status);
+		assertEquals(501, get(coordinatorUrl + "/foodtrucks/query?status=APPROVED&cursor=0").status);
+		assertEquals(501, get(coordinatorUrl + "/foodtrucks/query?q=taco").status);
+		assertEquals(501, get(coordinatorUrl + "/foodtrucks/nearest?latitude=37.76&longitude=-122.44").status);
+		assertEquals(501, get(coordinatorUrl + "/foodtrucks/bbox?minLat=37&minLon=-123&maxLat=38&maxLon=-122").status);
+		assertEquals(501, get(coordinatorUrl + "/foodtrucks/clusters?minLat=37&minLon=-123&maxLat=38&maxLon=-122&zoom=10").status);
+	}
+
+	/**
+	 * Starts Main on the port of the given node (shard 0, shard 1 or the coordinator), with the given system properties.
+	 */
+	private static void startNode(int node, String... properties) throws IOException
+	{
+		String url = (node < shardUrls.length) ? shardUrls[node] : coordinatorUrl;
+		String port = url.replaceAll(".*:(\\d+)/.*", "$1");
+
+		List<String> command = new ArrayList<String>();
+		command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+		command.add("-Xmx128m");
+		command.add("-Dfoodtrucks.snapshot.file=none");
+		Collections.addAll(command, properties);
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(Main.class.getName());
+		command.add(port);
+
+		File log = new File(directory, "node-" + node + ".log");
+		processes.add(new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log).start());
+	}
+
+	/**
+	 * Writes a feed of food trucks, mostly in the city, some at the poles, across the 180th meridian and around the world.
+	 *
+	 * @return The food trucks of the feed
+	 */
+	private static List<FoodTruck> writeFeed(File file) throws IOException
+	{
+		Random random = new Random(24);
+		List<FoodTruck> foodTrucks = new ArrayList<FoodTruck>();
+		StringBuilder feed = new StringBuilder("[");
+
+		for (int i = 1; i <= FOOD_TRUCK_COUNT; i++)
+		{
+			double latitude;
+			double longitude;
+			switch (i % 5)
+			{
+				case 0:
+					latitude = (random.nextBoolean() ? 1 : -1) * (89 + random.nextDouble());
+					longitude = -180 + random.nextDouble() * 360;
+					break;
+				case 1:
+					latitude = -5 + random.nextDouble() * 10;
+					longitude = (random.nextBoolean() ? 1 : -1) * (175 + random.nextDouble() * 5);
+					break;
+				case 2:
+					latitude = -90 + random.nextDouble() * 180;
+					longitude = -180 + random.nextDouble() * 360;
+					break;
+				default:
+					latitude = 37.70 + random.nextDouble() * 0.1;
+					longitude = -122.50 + random.nextDouble() * 0.1;
+					break;
+			}
+
+			String record = String.format(Locale.ROOT,
+					"{\"objectid\":\"%d\",\"applicant\":\"Applicant %d\",\"facilitytype\":\"Truck\",\"status\":\"%s\","
+					+ "\"fooditems\":\"Tacos: Burritos\",\"latitude\":\"%.6f\",\"longitude\":\"%.6f\"}",
+					i, i % 50, STATUSES[random.nextInt(STATUSES.length)], latitude, longitude);
+			foodTrucks.add(JSON_MAPPER.readValue(record, FoodTruck.class));
+			feed.append((i > 1) ? "," : "").append(record);
+		}
+
+		Files.write(file.toPath(), feed.append("]").toString().getBytes(StandardCharsets.UTF_8));
+		return foodTrucks;
+	}
+
+	private static int freePort() throws IOException
+	{
+		ServerSocket socket = new ServerSocket(0);
+		try
+		{
+			return socket.getLocalPort();
+		}
+		finally
+		{
+			socket.close();
+		}
+	}
+
+	/**
+	 * Waits until the given URL answers the given status.
+	 */
+	private static void awaitStatus(String url, int status) throws Exception
+	{
+		long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+		while (get(url).status != status)
+		{
+			for (Process process : processes)
+			{
+				assertTrue("a node exited, see the logs in " + directory, process.isAlive());
+			}
+			assertTrue("no " + status + " from " + url + " in time, see the logs in " + directory,
+					System.currentTimeMillis() < deadline);
+			Thread.sleep(200);
+		}
+	}
+
+	private static List<FoodTruck> getFoodTrucks(String url) throws IOException
+	{
+		HttpResponse response = get(url);
+		assertEquals(url, 200, response.status);
+		return JSON_MAPPER.readValue(response.body, FOOD_TRUCK_LIST);
+	}
+
+	private static TreeSet<Long> objectids(List<FoodTruck> foodTrucks)
+	{
+		TreeSet<Long> objectids = new TreeSet<Long>();
+		for (FoodTruck foodTruck : foodTrucks)
+		{
+			objectids.add(foodTruck.getObjectid());
+		}
+		return objectids;
+	}
+
+	/**
+	 * Sends a GET request (Accept: application/json); the status is -1 if the node does not answer (yet).
+	 */
+	private static HttpResponse get(String url)
+	{
+		HttpResponse response = new HttpResponse();
+		try
+		{
+			HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+			connection.setConnectTimeout(5000);
+			connection.setReadTimeout(30000);
+			connection.setRequestProperty("Accept", "application/json");
+			response.status = connection.getResponseCode();
+
+			InputStream inputStream = (response.status < 400) ? connection.getInputStream() : connection.getErrorStream();
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			if (inputStream != null)
+			{
+				byte[] buffer = new byte[8192];
+				for (int read; (read = inputStream.read(buffer)) > 0; )
+				{
+					body.write(buffer, 0, read);
+				}
+				inputStream.close();
+			}
+			response.body = body.toByteArray();
+		}
+		catch (IOException e)
+		{
+			response.status = -1;
+		}
+		return response;
+	}
+
+	private static class HttpResponse
+	{
+		private int status;
+		private byte[] body;
+	}
+}
@@ -0,0 +1,269 @@
+package com.uber.coding_challange.food_trucks.ctrl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import javax.ws.rs.sse.OutboundSseEvent;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseBroadcaster;
+import javax.ws.rs.sse.SseEventSink;
+
+import org.glassfish.jersey.media.sse.OutboundEvent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.uber.coding_challange.food_trucks.dataaccess.FoodTruckAccessor;
+import com.uber.coding_challange.food_trucks.model.FoodTruck;
+import com.uber.coding_challange.food_trucks.model.enums.FoodTruckStatusEnum;
+
+/**
+ * Checks that FoodTruckChangeFeed does not block its sender threads on the sends of slow clients:
+ * more stalled subscribers than sender threads do not delay the others, and they continue once their sends complete.
+ *
+ * @author alper.karacelik
+ *
+ */
+public class FoodTruckChangeFeedTest
+{
+	// Constants ---------------------------------------------------------
+	// More than the sender threads (foodtrucks.changes.threads, default 4)
+	private static final int STALLED_COUNT = 8;
+	private static final long WAIT_MILLIS = 5000;
+	private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+	private static final Sse SSE = new Sse()
+	{
+		@Override
+		public OutboundSseEvent.Builder newEventBuilder()
+		{
+			return new OutboundEvent.Builder();
+		}
+
+		@Override
+		public SseBroadcaster newBroadcaster()
+		{
+			throw new UnsupportedOperationException();
+		}
+	};
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	private final FoodTruckAccessor accessor = FoodTruckAccessor.getInstance();
+	private final FoodTruckChangeFeed changeFeed = FoodTruckChangeFeed.getInstance();
+	private final List<RecordingSink> sinks = new ArrayList<RecordingSink>();
+	// -------------------------------------------------------------------
+
+	@Before
+	public void clearStorage()
+	{
+		List<Long> ids = new ArrayList<Long>();
+		for (FoodTruck foodTruck : accessor.getAllFoodTrucks())
+		{
+			ids.add(foodTruck.getObjectid());
+		}
+		accessor.applyChanges(Collections.<FoodTruck>emptyList(), ids);
+	}
+
+	@After
+	public void closeSinks()
+	{
+		for (RecordingSink sink : sinks)
+		{
+			sink.close();
+			sink.completeSends();
+		}
+	}
+
+	@Test
+	public void stalledSubscribersDoNotBlockOthers() throws InterruptedException
+	{
+		String lastEventId = String.valueOf(accessor.getVersion());
+		List<RecordingSink> stalledSinks = new ArrayList<RecordingSink>();
+		for (int i = 0; i < STALLED_COUNT; i++)
+		{
+			stalledSinks.add(subscribe(true, lastEventId));
+		}
+		RecordingSink sink = subscribe(false, lastEventId);
+
+		accessor.addFoodTruck(newFoodTruck(1));
+		accessor.addFoodTruck(newFoodTruck(2));
+
+		// Received while the sends of the stalled subscribers are pending
+		assertTrue(sink.awaitEvents(2));
+		assertEquals(Arrays.asList("add:1", "add:2"), sink.getEvents());
+		for (RecordingSink stalledSink : stalledSinks)
+		{
+			// Their sender threads may still be on the first send
+			assertTrue(stalledSink.awaitEvents(1));
+			assertEquals(1, stalledSink.getEvents().size());
+		}
+
+		// Continued when their sends complete
+		for (RecordingSink stalledSink : stalledSinks)
+		{
+			stalledSink.completeSends();
+			assertTrue(stalledSink.awaitEvents(2));
+			stalledSink.completeSends();
+			assertEquals(sink.getEvents(), stalledSink.getEvents());
+		}
+	}
+
+	@Test
+	public void closesSubscriberOnFailedSend() throws InterruptedException
+	{
+		RecordingSink sink = subscribe(true, String.valueOf(accessor.getVersion()));
+		int subscriberCount = changeFeed.getSubscriberCount();
+
+		accessor.addFoodTruck(newFoodTruck(1));
+		assertTrue(sink.awaitEvents(1));
+		sink.failSends();
+
+		long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+		while (!sink.isClosed() && System.currentTimeMillis() < deadline)
+		{
+			Thread.sleep(10);
+		}
+		assertTrue(sink.isClosed());
+		assertEquals(subscriberCount - 1, changeFeed.getSubscriberCount());
+	}
+
+	private RecordingSink subscribe(boolean stalled, String lastEventId)
+	{
+		RecordingSink sink = new RecordingSink(stalled);
+		sinks.add(sink);
+		assertTrue(changeFeed.subscribe(sink, SSE, FoodTruckChangeFeed.Filter.of(FoodTruckStatusEnum.ALL), lastEventId));
+		return sink;
+	}
+
+	private static FoodTruck newFoodTruck(long id)
+	{
+		FoodTruck foodTruck = new FoodTruck();
+		foodTruck.setObjectid(id);
+		foodTruck.setStatus("APPROVED");
+		foodTruck.setLatitude(37.78);
+		foodTruck.setLongitude(-122.41);
+		return foodTruck;
+	}
+
+	/**
+	 * Event sink that records the names and the data of the events.
+	 * The sends of a stalled sink complete only when completeSends() (or failSends()) is called.
+	 */
+	private static class RecordingSink implements SseEventSink
+	{
+		// Attributes --------------------------------------------------------
+		private final boolean stalled;
+		private final List<String> events = new ArrayList<String>();
+		private final List<CompletableFuture<Void>> pendingSends = new ArrayList<CompletableFuture<Void>>();
+		private volatile boolean closed;
+		// -------------------------------------------------------------------
+
+		// Constructor(s) ----------------------------------------------------
+		RecordingSink(boolean stalled)
+		{
+			this.stalled = stalled;
+		}
+		// -------------------------------------------------------------------
+
+		@Override
+		public boolean isClosed()
+		{
+			return closed;
+		}
+
+		@Override
+		public synchronized CompletionStage<?> send(OutboundSseEvent event)
+		{
+			if (closed)
+			{
+				throw new IllegalStateException("Closed");
+			}
+			if (event.getName() != null)
+			{
+				FoodTruck foodTruck = (event.getData() instanceof String && ((String) event.getData()).contains("objectid"))
+						? parse((String) event.getData()) : null;
+				events.add(event.getName() + ((foodTruck != null) ? ":" + foodTruck.getObjectid() : ""));
+				notifyAll();
+			}
+
+			CompletableFuture<Void> sent = new CompletableFuture<Void>();
+			if (stalled)
+			{
+				pendingSends.add(sent);
+			}
+			else
+			{
+				sent.complete(null);
+			}
+			return sent;
+		}
+
+		@Override
+		public void close()
+		{
+			closed = true;
+		}
+
+		synchronized List<String> getEvents()
+		{
+			return new ArrayList<String>(events);
+		}
+
+		/**
+		 * Waits until at least the given number of events are sent.
+		 */
+		synchronized boolean awaitEvents(int count) throws InterruptedException
+		{
+			long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+			while (events.size() < count && System.currentTimeMillis() < deadline)
+			{
+				wait(Math.max(1, deadline - System.currentTimeMillis()));
+			}
+			return events.size() >= count;
+		}
+
+		void completeSends()
+		{
+			for (CompletableFuture<Void> sent : takePendingSends())
+			{
+				sent.complete(null);
+			}
+		}
+
+		void failSends()
+		{
+			for (CompletableFuture<Void> sent : takePendingSends())
+			{
+				sent.completeExceptionally(new IllegalStateException("Connection reset"));
+			}
+		}
+
+		private synchronized List<CompletableFuture<Void>> takePendingSends()
+		{
+			List<CompletableFuture<Void>> sends = new ArrayList<CompletableFuture<Void>>(pendingSends);
+			pendingSends.clear();
+			return sends;
+		}
+
+		private static FoodTruck parse(String json)
+		{
+			try
+			{
+				return JSON_MAPPER.readValue(json, FoodTruck.class);
+			}
+			catch (IOException e)
+			{
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,290 @@
+package com.uber.coding_challange.food_trucks.ctrl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.uber.coding_challange.food_trucks.dataaccess.FoodTruckAccessor;
+import com.uber.coding_challange.food_trucks.model.FoodTruck;
+
+/**
+ * Checks FoodTruckClient.ingest() on generated feeds: the resulting storage, the rejected records and the removals.
+ * The large feed is generated while it is read and is several times larger than the heap of the tests
+ * (-Xmx64m, see the surefire configuration), so it fails if the feed is buffered in memory.
+ *
+ * @author alper.karacelik
+ *
+ */
+public class FoodTruckClientTest
+{
+	// Constants ---------------------------------------------------------
+	private static final int FOOD_TRUCK_COUNT = 30000;
+	// Every INVALID_INTERVAL-th record is invalid
+	private static final int INVALID_INTERVAL = 10;
+	// Ignored by FoodTruck (unknown property), makes a record ~10 KB
+	private static final int PADDING_LENGTH = 10000;
+	private static final long MIN_FEED_SIZE = 250L * 1024 * 1024;
+	private static final String[] STATUSES = {"APPROVED", "REQUESTED"};
+	private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	private final FoodTruckAccessor accessor = FoodTruckAccessor.getInstance();
+	private final FoodTruckClient client = FoodTruckClient.getInstance();
+	// -------------------------------------------------------------------
+
+	@BeforeClass
+	public static void disableSnapshotFile()
+	{
+		System.setProperty("foodtrucks.snapshot.file", "none");
+	}
+
+	@Before
+	public void clearStorage()
+	{
+		List<Long> ids = new ArrayList<Long>();
+		for (FoodTruck foodTruck : accessor.getAllFoodTrucks())
+		{
+			ids.add(foodTruck.getObjectid());
+		}
+		accessor.applyChanges(Collections.<FoodTruck>emptyList(), ids);
+	}
+
+	@Test
+	public void ingestsLargeFeedAsStream() throws IOException
+	{
+		// Stored before: one of them is received again unchanged, one updated, the others removed
+		FoodTruck unchanged = parse(record(2));
+		FoodTruck outdated = parse(record(3));
+		outdated.setStatus("EXPIRED");
+		outdated.setApplicant("Old Applicant");
+		List<FoodTruck> stored = new ArrayList<FoodTruck>(Arrays.asList(unchanged, outdated));
+		for (int i = 1; i <= 100; i++)
+		{
+			stored.add(parse(record(FOOD_TRUCK_COUNT + i * INVALID_INTERVAL + 1)));
+		}
+		accessor.addFoodTrucks(stored);
+		assertEquals(102, accessor.getAllFoodTrucks().size());
+
+		GeneratedFeed feed = new GeneratedFeed(FOOD_TRUCK_COUNT);
+		int changedCount = client.ingest(feed);
+
+		assertTrue("feed of " + feed.getSize() + " bytes", feed.getSize() >= MIN_FEED_SIZE);
+		assertTrue("heap of " + Runtime.getRuntime().maxMemory() + " bytes",
+				Runtime.getRuntime().maxMemory() < feed.getSize() / 2);
+
+		// Invalid records are rejected, the valid ones stored as received
+		int validCount = FOOD_TRUCK_COUNT - FOOD_TRUCK_COUNT / INVALID_INTERVAL;
+		assertEquals(validCount, accessor.getAllFoodTrucks().size());
+		for (int i = 1; i <= FOOD_TRUCK_COUNT; i++)
+		{
+			FoodTruck foodTruck = accessor.getFoodTruck(i);
+			if (i % INVALID_INTERVAL == 0)
+			{
+				assertNull("invalid record " + i, foodTruck);
+			}
+			else
+			{
+				assertEquals(parse(record(i)), foodTruck);
+			}
+		}
+		assertNull(accessor.getFoodTruck(0));
+
+		// The updated one is replaced, the unchanged one kept, the ones not in the feed removed
+		assertEquals("APPROVED", accessor.getFoodTruck(3).getStatus());
+		assertSame(unchanged, accessor.getFoodTruck(2));
+		for (int i = 1; i <= 100; i++)
+		{
+			assertNull(accessor.getFoodTruck(FOOD_TRUCK_COUNT + i * INVALID_INTERVAL + 1));
+		}
+
+		// Added (all but the unchanged one) + removed
+		assertEquals(validCount - 1 + 100, changedCount);
+		assertTrue(client.isReady());
+	}
+
+	@Test
+	public void keepsStorageOnEmptyOrBrokenFeed() throws IOException
+	{
+		accessor.addFoodTrucks(Arrays.asList(parse(record(1)), parse(record(2))));
+
+		// An empty feed is treated as a broken one, nothing is removed
+		assertEquals(0, client.ingest(feed("[]")));
+		assertEquals(2, accessor.getAllFoodTrucks().size());
+
+		// A feed of only invalid records neither
+		assertEquals(0, client.ingest(feed("[" + record(10) + "," + record(20) + "]")));
+		assertEquals(2, accessor.getAllFoodTrucks().size());
+
+		try
+		{
+			client.ingest(feed("{\"objectid\": 1}"));
+			fail("A feed that is not an array is rejected");
+		}
+		catch (IOException e)
+		{
+			// expected
+		}
+
+		// The removals of a broken feed are not applied
+		try
+		{
+			client.ingest(feed("[" + record(1) + ", 5]"));
+			fail("A feed with a non-object element is rejected");
+		}
+		catch (IOException e)
+		{
+			// expected
+		}
+		assertNotNull(accessor.getFoodTruck(2));
+
+		// A complete feed removes the missing ones
+		assertEquals(1, client.ingest(feed("[" + record(1) + "]")));
+		assertEquals(1, accessor.getAllFoodTrucks().size());
+		assertNull(accessor.getFoodTruck(2));
+	}
+
+	/**
+	 * Returns the JSON of the food truck with the given object id, as DataSF returns it (numbers as strings).
+	 * The records with an object id that is a multiple of INVALID_INTERVAL are invalid:
+	 * alternately no object id, a latitude or a longitude out of range.
+	 */
+	private static String record(long objectid)
+	{
+		double latitude = 37.70 + (objectid % 1000) * 0.0001;
+		double longitude = -122.50 + (objectid / 1000 % 1000) * 0.0001;
+		String id = Long.toString(objectid);
+
+		if (objectid % INVALID_INTERVAL == 0)
+		{
+			switch ((int) (objectid / INVALID_INTERVAL % 3))
+			{
+				case 0:
+					id = "0";
+					break;
+				case 1:
+					latitude = 91;
+					break;
+				default:
+					longitude = -181;
+					break;
+			}
+		}
+
+		return String.format(Locale.ROOT,
+				"{\"objectid\":\"%s\",\"applicant\":\"Applicant %d\",\"facilitytype\":\"Truck\",\"cnn\":\"%d\","
+				+ "\"locationdescription\":\"MARKET ST: %d\",\"address\":\"%d Market St\",\"permit\":\"18MFF-%d\","
+				+ "\"status\":\"%s\",\"fooditems\":\"Tacos: Burritos: Quesadillas\",\"latitude\":\"%.6f\","
+				+ "\"longitude\":\"%.6f\",\"schedule\":\"http://example.com/schedule?id=%d\",\"dayshours\":\"Mo-Fr:7AM-3PM\"}",
+				id, objectid % 50, objectid * 7, objectid % 100, objectid, objectid % 500,
+				STATUSES[(objectid % 7 == 0) ? 1 : 0], latitude, longitude, objectid % 500);
+	}
+
+	private static FoodTruck parse(String json) throws IOException
+	{
+		return JSON_MAPPER.readValue(json, FoodTruck.class);
+	}
+
+	private static InputStream feed(String json)
+	{
+		return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * JSON array of the food trucks 1..count (see record()), with a large unknown property in every record.
+	 * Generated one record at a time while it is read.
+	 */
+	private static class GeneratedFeed extends InputStream
+	{
+		// Attributes --------------------------------------------------------
+		private final int count;
+		private final String padding;
+		private int next = 0;
+		private byte[] chunk = "[".getBytes(StandardCharsets.UTF_8);
+		private int position = 0;
+		private long size = 0;
+		// -------------------------------------------------------------------
+
+		// Constructor(s) ----------------------------------------------------
+		GeneratedFeed(int count)
+		{
+			char[] chars = new char[PADDING_LENGTH];
+			Arrays.fill(chars, 'x');
+			this.count = count;
+			this.padding = new String(chars);
+		}
+		// -------------------------------------------------------------------
+
+		@Override
+		public int read()
+		{
+			byte[] single = new byte[1];
+			return (read(single, 0, 1) < 0) ? -1 : (single[0] & 0xff);
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length)
+		{
+			if (position == chunk.length && !nextChunk())
+			{
+				return -1;
+			}
+
+			int readCount = Math.min(length, chunk.length - position);
+			System.arraycopy(chunk, position, buffer, offset, readCount);
+			position += readCount;
+			size += readCount;
+			return readCount;
+		}
+
+		/**
+		 * @return The number of the bytes read so far
+		 */
+		long getSize()
+		{
+			return size;
+		}
+
+		private boolean nextChunk()
+		{
+			if (next > count)
+			{
+				return false;
+			}
+
+			String json;
+			if (next == count)
+			{
+				json = "]";
+			}
+			else
+			{
+				String record = record(next + 1);
+				json = ((next > 0) ? ",\n" : "") + record.substring(0, record.length() - 1)
+						+ ",\"padding\":\"" + padding + "\"}";
+			}
+			next++;
+			chunk = json.getBytes(StandardCharsets.UTF_8);
+			position = 0;
+			return true;
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package com.uber.coding_challange.food_trucks.ctrl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.uber.coding_challange.food_trucks.dataaccess.FoodTruckAccessor;
+import com.uber.coding_challange.food_trucks.model.FoodTruck;
+import com.uber.coding_challange.food_trucks.model.enums.DistanceUnitEnum;
+import com.uber.coding_challange.food_trucks.model.enums.FoodTruckStatusEnum;
+
+/**
+ * Checks that FoodTruckQueryCache answers exactly what the storage answers,
+ * and that the large circles and the keys with too many candidates go to the storage directly.
+ *
+ * @author alper.karacelik
+ *
+ */
+public class FoodTruckQueryCacheTest
+{
+	// Constants ---------------------------------------------------------
+	// More than the candidates that are cached for a key (FoodTruckQueryCache.MAX_CANDIDATES)
+	private static final int CLUSTER_SIZE = 12000;
+	private static final int SPREAD_SIZE = 3000;
+	private static final double CLUSTER_LATITUDE = 37.7900;
+	private static final double CLUSTER_LONGITUDE = -122.4000;
+	private static final String REQUESTS = "foodtrucks_query_cache_requests_total";
+	private static final String REQUESTS_HELP = "Number of the query cache lookups by result";
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	private final FoodTruckAccessor accessor = FoodTruckAccessor.getInstance();
+	private final FoodTruckQueryCache queryCache = FoodTruckQueryCache.getInstance();
+	private final LongAdder bypasses = MetricsRegistry.getInstance().counter(REQUESTS, REQUESTS_HELP, "result", "bypass");
+	private final Random random = new Random(22);
+	// -------------------------------------------------------------------
+
+	@Before
+	public void fillStorage()
+	{
+		Set<Long> ids = new HashSet<Long>();
+		for (FoodTruck foodTruck : accessor.getAllFoodTrucks())
+		{
+			ids.add(foodTruck.getObjectid());
+		}
+
+		// A dense cluster (within ~50 m) and food trucks spread over the city
+		List<FoodTruck> foodTrucks = new ArrayList<FoodTruck>();
+		for (int i = 0; i < CLUSTER_SIZE; i++)
+		{
+			foodTrucks.add(newFoodTruck(i + 1, CLUSTER_LATITUDE + random.nextDouble() * 0.0004,
+					CLUSTER_LONGITUDE + random.nextDouble() * 0.0004));
+		}
+		for (int i = 0; i < SPREAD_SIZE; i++)
+		{
+			foodTrucks.add(newFoodTruck(CLUSTER_SIZE + i + 1, 37.70 + random.nextDouble() * 0.1,
+					-122.50 + random.nextDouble() * 0.1));
+		}
+		for (FoodTruck foodTruck : foodTrucks)
+		{
+			ids.remove(foodTruck.getObjectid());
+		}
+		accessor.applyChanges(foodTrucks, ids);
+	}
+
+	@Test
+	public void answersWhatStorageAnswers()
+	{
+		for (int i = 0; i < 500; i++)
+		{
+			FoodTruckStatusEnum status = (i % 2 == 0) ? FoodTruckStatusEnum.ALL : FoodTruckStatusEnum.APPROVED;
+			double latitude = 37.70 + random.nextDouble() * 0.1;
+			double longitude = -122.50 + random.nextDouble() * 0.1;
+			double radius = 0.1 + random.nextInt(10) * 0.1;
+
+			// Twice: a miss, then a hit (or a bypass)
+			assertSameFoodTrucks(status, latitude, longitude, radius, DistanceUnitEnum.KILOMETERS);
+			assertSameFoodTrucks(status, latitude, longitude, radius, DistanceUnitEnum.KILOMETERS);
+		}
+
+		// Changes are seen
+		accessor.addFoodTruck(newFoodTruck(CLUSTER_SIZE + SPREAD_SIZE + 1, 37.75, -122.45));
+		assertSameFoodTrucks(FoodTruckStatusEnum.ALL, 37.75, -122.45, 0.5, DistanceUnitEnum.KILOMETERS);
+	}
+
+	@Test
+	public void bypassesLargeCircles()
+	{
+		// Over 100 grid cells (0.1 degrees by default)
+		long before = bypasses.sum();
+		assertSameFoodTrucks(FoodTruckStatusEnum.ALL, 37.75, -122.45, 20, DistanceUnitEnum.KILOMETERS);
+		assertSameFoodTrucks(FoodTruckStatusEnum.ALL, 37.75, -122.45, 20, DistanceUnitEnum.KILOMETERS);
+		assertEquals(before + 2, bypasses.sum());
+	}
+
+	@Test
+	public void bypassesKeysWithTooManyCandidates()
+	{
+		// The first load finds too many candidates, the next lookups go to the storage
+		double latitude = CLUSTER_LATITUDE + 0.0002;
+		double longitude = CLUSTER_LONGITUDE + 0.0002;
+		long before = bypasses.sum();
+		assertSameFoodTrucks(FoodTruckStatusEnum.ALL, latitude, longitude, 0.2, DistanceUnitEnum.KILOMETERS);
+		assertEquals(before, bypasses.sum());
+		assertSameFoodTrucks(FoodTruckStatusEnum.ALL, latitude, longitude, 0.2, DistanceUnitEnum.KILOMETERS);
+		assertSameFoodTrucks(FoodTruckStatusEnum.ALL, latitude, longitude, 0.2, DistanceUnitEnum.KILOMETERS);
+		assertEquals(before + 2, bypasses.sum());
+	}
+
+	private void assertSameFoodTrucks(
+			FoodTruckStatusEnum status,
+			double latitude,
+			double longitude,
+			double radius,
+			DistanceUnitEnum radiusUnit)
+	{
+		Set<FoodTruck> expected = new HashSet<FoodTruck>(
+				accessor.getFoodTrucks(status, latitude, longitude, radius, radiusUnit));
+		List<FoodTruck> foodTrucks = queryCache.getFoodTrucks(status, latitude, longitude, radius, radiusUnit);
+		assertEquals(expected.size(), foodTrucks.size());
+		assertEquals(expected, new HashSet<FoodTruck>(foodTrucks));
+	}
+
+	private FoodTruck newFoodTruck(long id, double latitude, double longitude)
+	{
+		FoodTruck foodTruck = new FoodTruck();
+		foodTruck.setObjectid(id);
+		foodTruck.setStatus(random.nextBoolean() ? "APPROVED" : "REQUESTED");
+		foodTruck.setLatitude(latitude);
+		foodTruck.setLongitude(longitude);
+		return foodTruck;
+	}
+}
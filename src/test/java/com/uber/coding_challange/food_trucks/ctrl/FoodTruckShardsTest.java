@@ -0,0 +1,128 @@
+package com.uber.coding_challange.food_trucks.ctrl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.uber.coding_challange.food_trucks.model.enums.DistanceUnitEnum;
+
+/**
+ * Checks that FoodTruckShards.getShards() of a circle includes the shard (getShard()) of every position inside the circle
+ * (as GeodesicDistanceCalculator.distance() measures it), for circles in the city, around the world,
+ * at the poles and across the 180th meridian, with several numbers of shards and precisions.
+ *
+ * @author alper.karacelik
+ *
+ */
+public class FoodTruckShardsTest
+{
+	// Constants ---------------------------------------------------------
+	private static final int[] SHARD_COUNTS = {2, 3, 7, 16};
+	private static final int[] PRECISIONS = {2, 3, 5};
+	private static final DistanceUnitEnum[] UNITS = {DistanceUnitEnum.KILOMETERS, DistanceUnitEnum.MILES};
+	private static final double[][] CENTERS = {
+			{37.78, -122.41}, {90, 0}, {-90, 45}, {89.99, -170}, {-89.5, 120}, {0, 180}, {0, -180}, {10, 179.999}, {-10, -179.999}};
+	private static final int CIRCLE_COUNT = 300;
+	private static final int POSITION_COUNT = 200;
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	private final GeodesicDistanceCalculator calculator = GeodesicDistanceCalculator.getInstance();
+	private final Random random = new Random(24);
+	// -------------------------------------------------------------------
+
+	@Test
+	public void circleShardsContainShardsOfPositions()
+	{
+		for (int shardCount : SHARD_COUNTS)
+		{
+			for (int precision : PRECISIONS)
+			{
+				FoodTruckShards shards = new FoodTruckShards("", shardCount, -1, precision, 1000);
+				for (double[] center : CENTERS)
+				{
+					for (double radius : new double[] {0.01, 1, 30, 300, 3000})
+					{
+						assertCircle(shards, center[0], center[1], radius, UNITS[random.nextInt(UNITS.length)]);
+					}
+				}
+				// Random circles, mostly small ones
+				for (int i = 0; i < CIRCLE_COUNT; i++)
+				{
+					double latitude = -90 + random.nextDouble() * 180;
+					double longitude = -180 + random.nextDouble() * 360;
+					assertCircle(shards, latitude, longitude, Math.pow(10, -2 + random.nextDouble() * 5),
+							UNITS[random.nextInt(UNITS.length)]);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void ownsOnlyItsPositions()
+	{
+		FoodTruckShards shard = new FoodTruckShards("", 3, 1, 5, 1000);
+		assertEquals(1, shard.getShardIndex());
+		assertEquals(3, shard.getShardCount());
+		assertTrue(!shard.isCoordinator());
+
+		FoodTruckShards node = new FoodTruckShards("", 3, -1, 5, 1000);
+		int[] counts = new int[3];
+		for (int i = 0; i < 3000; i++)
+		{
+			double latitude = -90 + random.nextDouble() * 180;
+			double longitude = -180 + random.nextDouble() * 360;
+			int owner = node.getShard(latitude, longitude);
+			assertEquals(owner, shard.getShard(latitude, longitude));
+			counts[owner]++;
+		}
+		// Every shard owns some of the cells
+		for (int count : counts)
+		{
+			assertTrue(count > 0);
+		}
+	}
+
+	/**
+	 * The shards of the circle are distinct and in ascending order, and include the owners of random positions inside it.
+	 */
+	private void assertCircle(FoodTruckShards shards, double latitude, double longitude, double radius, DistanceUnitEnum radiusUnit)
+	{
+		String description = shards.getShardCount() + " shards, center " + latitude + "," + longitude
+				+ ", radius " + radius + " " + radiusUnit;
+		List<Integer> circleShards = shards.getShards(latitude, longitude, radius, radiusUnit);
+
+		for (int i = 0; i < circleShards.size(); i++)
+		{
+			assertTrue(description, circleShards.get(i) >= 0 && circleShards.get(i) < shards.getShardCount());
+			assertTrue(description, i == 0 || circleShards.get(i) > circleShards.get(i - 1));
+		}
+		assertTrue(description, circleShards.contains(shards.getShard(latitude, longitude)));
+
+		// Positions at random bearings, up to the radius (the ones just outside of it are skipped)
+		double arc = Math.toRadians(calculator.toArcDegrees(radius, radiusUnit));
+		double lat1 = Math.toRadians(latitude);
+		for (int p = 0; p < POSITION_COUNT; p++)
+		{
+			double distance = arc * ((p % 10 == 0) ? 0.9999 : random.nextDouble());
+			double bearing = random.nextDouble() * 2 * Math.PI;
+			double lat2 = Math.asin(Math.sin(lat1) * Math.cos(distance) + Math.cos(lat1) * Math.sin(distance) * Math.cos(bearing));
+			double lon2 = Math.toRadians(longitude) + Math.atan2(Math.sin(bearing) * Math.sin(distance) * Math.cos(lat1),
+					Math.cos(distance) - Math.sin(lat1) * Math.sin(lat2));
+			double positionLatitude = Math.max(-90, Math.min(90, Math.toDegrees(lat2)));
+			double positionLongitude = Math.toDegrees(lon2);
+			positionLongitude = positionLongitude - 360 * Math.floor((positionLongitude + 180) / 360);
+
+			double positionDistance = calculator.distance(latitude, longitude, positionLatitude, positionLongitude, radiusUnit);
+			if (positionDistance < radius || Double.isNaN(positionDistance))
+			{
+				assertTrue(description + ", position " + positionLatitude + "," + positionLongitude,
+						circleShards.contains(shards.getShard(positionLatitude, positionLongitude)));
+			}
+		}
+	}
+}
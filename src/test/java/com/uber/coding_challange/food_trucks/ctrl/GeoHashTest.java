@@ -0,0 +1,152 @@
+package com.uber.coding_challange.food_trucks.ctrl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Checks that GeoHash.cover() returns the cell (GeoHash.encode()) of every position inside the rectangle,
+ * for rectangles in the city, around the world, at the poles and across the 180th meridian.
+ *
+ * @author alper.karacelik
+ *
+ */
+public class GeoHashTest
+{
+	// Constants ---------------------------------------------------------
+	private static final int MAX_CELLS = 1024;
+	private static final int RECTANGLE_COUNT = 2000;
+	private static final int POSITION_COUNT = 200;
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	private final Random random = new Random(24);
+	// -------------------------------------------------------------------
+
+	@Test
+	public void coverContainsCellsOfPositions()
+	{
+		int coveredCount = 0;
+		for (int r = 0; r < RECTANGLE_COUNT; r++)
+		{
+			int precision = 1 + random.nextInt(7);
+			double[] rectangle = randomRectangle();
+			List<String> cells = GeoHash.cover(rectangle[0], rectangle[1], rectangle[2], rectangle[3], precision, MAX_CELLS);
+			if (cells == null)
+			{
+				continue;
+			}
+			coveredCount++;
+
+			String description = "precision " + precision + ", rectangle " + rectangle[0] + ".." + rectangle[1]
+					+ ", " + rectangle[2] + ".." + rectangle[3];
+			Set<String> cellSet = new HashSet<String>(cells);
+			assertEquals(description, cells.size(), cellSet.size());
+			assertTrue(description, cells.size() <= MAX_CELLS);
+			for (String cell : cells)
+			{
+				assertEquals(description, precision, cell.length());
+			}
+
+			// The corners and random positions
+			double lonRange = lonRange(rectangle);
+			assertCovered(description, cellSet, rectangle[0], rectangle[2], precision);
+			assertCovered(description, cellSet, rectangle[1], rectangle[3], precision);
+			assertCovered(description, cellSet, rectangle[0], rectangle[3], precision);
+			assertCovered(description, cellSet, rectangle[1], rectangle[2], precision);
+			for (int p = 0; p < POSITION_COUNT; p++)
+			{
+				double latitude = rectangle[0] + random.nextDouble() * (rectangle[1] - rectangle[0]);
+				double longitude = rectangle[2] + random.nextDouble() * lonRange;
+				assertCovered(description, cellSet, latitude, (longitude > 180) ? longitude - 360 : longitude, precision);
+			}
+		}
+		assertTrue(coveredCount > RECTANGLE_COUNT / 2);
+	}
+
+	@Test
+	public void coverOfPointIsItsCell()
+	{
+		for (int i = 0; i < 1000; i++)
+		{
+			int precision = 1 + random.nextInt(GeoHash.MAX_PRECISION);
+			double latitude = -90 + random.nextDouble() * 180;
+			double longitude = -180 + random.nextDouble() * 360;
+			List<String> cells = GeoHash.cover(latitude, latitude, longitude, longitude, precision, MAX_CELLS);
+			assertNotNull(cells);
+			assertEquals(1, cells.size());
+			assertEquals(GeoHash.encode(latitude, longitude, precision), cells.get(0));
+		}
+		// The edges of the world
+		assertEquals(GeoHash.encode(90, 180, 3), GeoHash.cover(90, 90, 180, 180, 3, MAX_CELLS).get(0));
+		assertEquals(GeoHash.encode(-90, -180, 3), GeoHash.cover(-90, -90, -180, -180, 3, MAX_CELLS).get(0));
+	}
+
+	@Test
+	public void coverFailsWithTooManyCells()
+	{
+		assertNull(GeoHash.cover(-90, 90, -180, 180, 5, MAX_CELLS));
+		assertEquals(32, GeoHash.cover(-90, 90, -180, 180, 1, MAX_CELLS).size());
+	}
+
+	private static void assertCovered(String description, Set<String> cells, double latitude, double longitude, int precision)
+	{
+		String cell = GeoHash.encode(latitude, longitude, precision);
+		assertTrue(description + ", position " + latitude + "," + longitude + " in " + cell, cells.contains(cell));
+	}
+
+	/**
+	 * Returns the width of the rectangle in degrees of longitude (it crosses the 180th meridian if minLon > maxLon).
+	 */
+	private static double lonRange(double[] rectangle)
+	{
+		return (rectangle[2] > rectangle[3]) ? rectangle[3] + 360 - rectangle[2] : rectangle[3] - rectangle[2];
+	}
+
+	/**
+	 * Returns the minimum and maximum latitude and longitude of a rectangle: in the city, anywhere,
+	 * at a pole or across the 180th meridian.
+	 */
+	private double[] randomRectangle()
+	{
+		double size = Math.pow(10, -3 + random.nextDouble() * 4);
+		double minLat;
+		double minLon;
+		switch (random.nextInt(4))
+		{
+			case 0:
+				minLat = 37.70 + random.nextDouble() * 0.1;
+				minLon = -122.50 + random.nextDouble() * 0.1;
+				break;
+			case 1:
+				minLat = random.nextBoolean() ? 90 - size : -90;
+				minLon = -180 + random.nextDouble() * 360;
+				break;
+			case 2:
+				minLat = -60 + random.nextDouble() * 120;
+				minLon = 180 - random.nextDouble() * size;
+				break;
+			default:
+				minLat = -90 + random.nextDouble() * 180;
+				minLon = -180 + random.nextDouble() * 360;
+				break;
+		}
+
+		double maxLat = Math.min(90, minLat + size);
+		double maxLon = minLon + size;
+		// Crossing the 180th meridian
+		if (maxLon > 180)
+		{
+			maxLon -= 360;
+		}
+		return new double[] {minLat, maxLat, minLon, maxLon};
+	}
+}
@@ -0,0 +1,288 @@
+package com.uber.coding_challange.food_trucks.ctrl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.uber.coding_challange.food_trucks.model.enums.DistanceUnitEnum;
+
+/**
+ * Checks that GeodesicRadiusFilter (contains(), filter() and filterRows()) agrees with
+ * GeodesicDistanceCalculator.distance(...) < radius, on random circles and positions:
+ * around the poles and the 180th meridian, and on both sides of the boundary of the circle.
+ * The only accepted disagreements are the positions within the tolerance of the boundary (see GeodesicRadiusFilter).
+ *
+ * @author alper.karacelik
+ *
+ */
+public class GeodesicRadiusFilterTest
+{
+	// Constants ---------------------------------------------------------
+	private static final DistanceUnitEnum[] UNITS = DistanceUnitEnum.values();
+	private static final int CIRCLE_COUNT = 2000;
+	private static final int POSITION_COUNT = 200;
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	private final GeodesicDistanceCalculator calculator = GeodesicDistanceCalculator.getInstance();
+	private final Random random = new Random(8);
+	// -------------------------------------------------------------------
+
+	@Test
+	public void agreesWithDistanceOnRandomCircles()
+	{
+		long checked = 0;
+		long skipped = 0;
+
+		for (int c = 0; c < CIRCLE_COUNT; c++)
+		{
+			double latitude = randomLatitude();
+			double longitude = randomLongitude();
+			double radius = randomRadius();
+			DistanceUnitEnum unit = UNITS[random.nextInt(UNITS.length)];
+			GeodesicRadiusFilter filter = calculator.newRadiusFilter(latitude, longitude, radius, unit);
+
+			double[] latitudes = new double[POSITION_COUNT];
+			double[] longitudes = new double[POSITION_COUNT];
+			for (int i = 0; i < POSITION_COUNT; i++)
+			{
+				double[] position = randomPosition(latitude, longitude, radius, unit);
+				latitudes[i] = position[0];
+				longitudes[i] = position[1];
+			}
+
+			boolean[] expected = new boolean[POSITION_COUNT];
+			boolean[] ambiguous = new boolean[POSITION_COUNT];
+			for (int i = 0; i < POSITION_COUNT; i++)
+			{
+				expected[i] = calculator.distance(latitudes[i], longitudes[i], latitude, longitude, unit) < radius;
+				ambiguous[i] = isNearBoundary(latitudes[i], longitudes[i], latitude, longitude, radius, unit);
+
+				if (ambiguous[i])
+				{
+					skipped++;
+					continue;
+				}
+				assertEquals(describe(latitude, longitude, radius, unit, latitudes[i], longitudes[i]),
+						expected[i], filter.contains(latitudes[i], longitudes[i]));
+				checked++;
+			}
+
+			assertBatchesAgree(filter, latitudes, longitudes, expected, ambiguous);
+		}
+
+		// Most of the positions are out of the tolerance (it covers every position of the centimeter radiuses)
+		assertTrue("skipped " + skipped + " of " + (checked + skipped), skipped < checked);
+	}
+
+	@Test
+	public void matchesNothingForInvalidRadius()
+	{
+		double[] radiuses = {0, -0.0, -1, -1e9, Double.NaN, Double.NEGATIVE_INFINITY};
+
+		for (double radius : radiuses)
+		{
+			GeodesicRadiusFilter filter = calculator.newRadiusFilter(37.78, -122.41, radius, DistanceUnitEnum.MILES);
+			for (int i = 0; i < 1000; i++)
+			{
+				double latitude = randomLatitude();
+				double longitude = randomLongitude();
+				boolean expected = calculator.distance(latitude, longitude, 37.78, -122.41, DistanceUnitEnum.MILES) < radius;
+
+				assertFalse(expected);
+				assertFalse("radius " + radius, filter.contains(latitude, longitude));
+			}
+			// Not even the center
+			assertFalse(filter.contains(37.78, -122.41));
+		}
+	}
+
+	@Test
+	public void handlesPolesAndTheAntimeridian()
+	{
+		double[][] centers = {{90, 0}, {-90, 0}, {89.9999, 45}, {-89.9999, -135}, {0, 180}, {0, -180},
+				{10, 179.9999}, {-10, -179.9999}, {37.78, -122.41}};
+		double[] radiuses = {0.01, 1, 50, 700, 7000, 13000};
+
+		for (double[] center : centers)
+		{
+			for (double radius : radiuses)
+			{
+				GeodesicRadiusFilter filter = calculator.newRadiusFilter(center[0], center[1], radius, DistanceUnitEnum.KILOMETERS);
+				for (int i = 0; i < 2000; i++)
+				{
+					double[] position = randomPosition(center[0], center[1], radius, DistanceUnitEnum.KILOMETERS);
+					if (isNearBoundary(position[0], position[1], center[0], center[1], radius, DistanceUnitEnum.KILOMETERS))
+					{
+						continue;
+					}
+
+					boolean expected = calculator.distance(position[0], position[1], center[0], center[1],
+							DistanceUnitEnum.KILOMETERS) < radius;
+					assertEquals(describe(center[0], center[1], radius, DistanceUnitEnum.KILOMETERS, position[0], position[1]),
+							expected, filter.contains(position[0], position[1]));
+				}
+			}
+		}
+
+		// Across the antimeridian: 179.999 and -179.999 are ~222 m apart on the equator
+		GeodesicRadiusFilter filter = calculator.newRadiusFilter(0, 179.999, 0.3, DistanceUnitEnum.KILOMETERS);
+		assertTrue(filter.contains(0, -179.999));
+		assertFalse(filter.contains(0, -179.99));
+	}
+
+	/**
+	 * filter() and filterRows() (over columns in radians, as FoodTruckColumns keeps them)
+	 * return the positions that contains() accepts, in order.
+	 */
+	private void assertBatchesAgree(
+			GeodesicRadiusFilter filter, double[] latitudes, double[] longitudes, boolean[] expected, boolean[] ambiguous)
+	{
+		int count = latitudes.length;
+		int[] matches = new int[count];
+		int matchCount = filter.filter(latitudes, longitudes, count, matches);
+
+		double[] latitudesRad = new double[count];
+		double[] longitudesRad = new double[count];
+		double[] cosLatitudes = new double[count];
+		int[] rows = new int[count];
+		for (int i = 0; i < count; i++)
+		{
+			latitudesRad[i] = Math.toRadians(latitudes[i]);
+			longitudesRad[i] = Math.toRadians(longitudes[i]);
+			cosLatitudes[i] = Math.cos(latitudesRad[i]);
+			rows[i] = i;
+		}
+		int rowCount = filter.filterRows(latitudesRad, longitudesRad, cosLatitudes, rows, count);
+
+		int match = 0;
+		int row = 0;
+		for (int i = 0; i < count; i++)
+		{
+			boolean contained = filter.contains(latitudes[i], longitudes[i]);
+			boolean inFilter = match < matchCount && matches[match] == i;
+			boolean inRows = row < rowCount && rows[row] == i;
+
+			assertEquals(contained, inFilter);
+			assertEquals(contained, inRows);
+			if (!ambiguous[i])
+			{
+				assertEquals(expected[i], inRows);
+			}
+			match += inFilter ? 1 : 0;
+			row += inRows ? 1 : 0;
+		}
+		assertEquals(matchCount, match);
+		assertEquals(rowCount, row);
+	}
+
+	/**
+	 * Returns true if the haversine distance of the position is within the tolerance of GeodesicRadiusFilter of the radius,
+	 * or if the arc cosine of distance() is out of its domain (NaN) because of rounding, e.g. for the center.
+	 */
+	private boolean isNearBoundary(
+			double latitude, double longitude, double centerLatitude, double centerLongitude, double radius, DistanceUnitEnum unit)
+	{
+		double arc = haversineArc(latitude, longitude, centerLatitude, centerLongitude);
+		double radiusArc = Math.toRadians(calculator.toArcDegrees(radius, unit));
+
+		double tolerance = GeodesicRadiusFilter.BOUNDARY_TOLERANCE * radiusArc
+				+ GeodesicRadiusFilter.ARC_COSINE_ERROR / Math.sin(Math.min(radiusArc, Math.PI));
+
+		return Math.abs(arc - radiusArc) <= tolerance
+				|| Double.isNaN(calculator.distance(latitude, longitude, centerLatitude, centerLongitude, unit));
+	}
+
+	private static double haversineArc(double latitude1, double longitude1, double latitude2, double longitude2)
+	{
+		double sinHalfLatitude = Math.sin(Math.toRadians(latitude2 - latitude1) / 2);
+		double sinHalfLongitude = Math.sin(Math.toRadians(longitude2 - longitude1) / 2);
+		double haversine = sinHalfLatitude * sinHalfLatitude
+				+ Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2)) * sinHalfLongitude * sinHalfLongitude;
+		return 2 * Math.asin(Math.min(1, Math.sqrt(haversine)));
+	}
+
+	/**
+	 * Returns a position around the circle: anywhere, near the center, or just inside/outside of the boundary
+	 * (the destination at a distance of radius * (1 +/- 10^-k) on a random bearing).
+	 */
+	private double[] randomPosition(double latitude, double longitude, double radius, DistanceUnitEnum unit)
+	{
+		double radiusArc = Math.toRadians(calculator.toArcDegrees(radius, unit));
+
+		switch (random.nextInt(4))
+		{
+			case 0:
+				return new double[] {randomLatitude(), randomLongitude()};
+			case 1:
+				return destination(latitude, longitude, radiusArc * random.nextDouble());
+			default:
+				double offset = Math.pow(10, -1 - random.nextInt(12)) * (random.nextBoolean() ? 1 : -1);
+				return destination(latitude, longitude, radiusArc * (1 + offset));
+		}
+	}
+
+	private double[] destination(double latitude, double longitude, double arc)
+	{
+		double bearing = random.nextDouble() * 2 * Math.PI;
+		double latitudeRad = Math.toRadians(latitude);
+		double destinationLatitude = Math.asin(Math.sin(latitudeRad) * Math.cos(arc)
+				+ Math.cos(latitudeRad) * Math.sin(arc) * Math.cos(bearing));
+		double destinationLongitude = Math.toRadians(longitude) + Math.atan2(Math.sin(bearing) * Math.sin(arc) * Math.cos(latitudeRad),
+				Math.cos(arc) - Math.sin(latitudeRad) * Math.sin(destinationLatitude));
+
+		// Normalized to [-180, 180]
+		double longitudeDegrees = Math.toDegrees(destinationLongitude);
+		longitudeDegrees = ((longitudeDegrees + 540) % 360) - 180;
+		return new double[] {Math.toDegrees(destinationLatitude), longitudeDegrees};
+	}
+
+	/**
+	 * Latitudes concentrated around the poles and the equator, besides the uniform ones.
+	 */
+	private double randomLatitude()
+	{
+		switch (random.nextInt(4))
+		{
+			case 0:
+				return (random.nextBoolean() ? 90 : -90) * (1 - random.nextDouble() * 1e-3);
+			case 1:
+				return random.nextBoolean() ? 90 : -90;
+			default:
+				return random.nextDouble() * 180 - 90;
+		}
+	}
+
+	/**
+	 * Longitudes concentrated around the 180th meridian, besides the uniform ones.
+	 */
+	private double randomLongitude()
+	{
+		switch (random.nextInt(3))
+		{
+			case 0:
+				return (random.nextBoolean() ? 180 : -180) * (1 - random.nextDouble() * 1e-4);
+			default:
+				return random.nextDouble() * 360 - 180;
+		}
+	}
+
+	/**
+	 * Radiuses from centimeters to more than half of the circumference of the earth.
+	 */
+	private double randomRadius()
+	{
+		return Math.pow(10, random.nextDouble() * 9.5 - 5);
+	}
+
+	private static String describe(
+			double latitude, double longitude, double radius, DistanceUnitEnum unit, double positionLatitude, double positionLongitude)
+	{
+		return "circle (" + latitude + ", " + longitude + ", " + radius + " " + unit + "), position ("
+				+ positionLatitude + ", " + positionLongitude + ")";
+	}
+}
@@ -0,0 +1,424 @@
+package com.uber.coding_challange.food_trucks.dataaccess;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.uber.coding_challange.food_trucks.model.FoodTruck;
+import com.uber.coding_challange.food_trucks.model.enums.DistanceUnitEnum;
+import com.uber.coding_challange.food_trucks.model.enums.FoodTruckStatusEnum;
+
+/**
+ * Checks that readers of FoodTruckAccessor always see a self-consistent snapshot while writers change the storage.
+ * Every write stamps the food trucks it adds or updates with its own version (in 'cnn'),
+ * always updates a marker food truck and removes some others;
+ * so the version of a snapshot tells exactly what its contents should look like.
+ * Also checks that the pages start before the zero and negative object ids.
+ * Measures the read throughput at 1, 2, 4 and 8 reader threads while a writer runs.
+ *
+ * @author alper.karacelik
+ *
+ */
+public class FoodTruckAccessorTest
+{
+	// Constants ---------------------------------------------------------
+	private static final long MARKER_ID = 1;
+	private static final int ID_RANGE = 500;
+	private static final int WRITER_COUNT = 2;
+	private static final int WRITES_PER_WRITER = 1500;
+	private static final int READER_COUNT = 4;
+	private static final String[] STATUSES = {"APPROVED", "REQUESTED", "EXPIRED"};
+	private static final int SCALING_FOOD_TRUCK_COUNT = 5000;
+	private static final long WRITE_INTERVAL_MILLIS = 5;
+	private static final long WARM_UP_MILLIS = 300;
+	private static final long MEASURE_MILLIS = 700;
+	// Minimum throughput ratio of twice the reader threads (up to the processors)
+	private static final double MIN_SCALING = 1.2;
+	// Minimum throughput ratio to the best one, with more reader threads than processors
+	private static final double MAX_DROP = 0.7;
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	private final FoodTruckAccessor accessor = FoodTruckAccessor.getInstance();
+	// -------------------------------------------------------------------
+
+	@Before
+	public void clearStorage()
+	{
+		List<Long> ids = new ArrayList<Long>();
+		for (FoodTruck foodTruck : accessor.getAllFoodTrucks())
+		{
+			ids.add(foodTruck.getObjectid());
+		}
+		accessor.applyChanges(Collections.<FoodTruck>emptyList(), ids);
+	}
+
+	@Test
+	public void readersSeeConsistentSnapshots() throws InterruptedException
+	{
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final AtomicBoolean writing = new AtomicBoolean(true);
+		final AtomicLong checkedCount = new AtomicLong();
+		final long startVersion = accessor.getVersion();
+
+		List<Thread> writers = new ArrayList<Thread>();
+		for (int w = 0; w < WRITER_COUNT; w++)
+		{
+			final Random random = new Random(w);
+			writers.add(new Thread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					for (int i = 0; i < WRITES_PER_WRITER && failure.get() == null; i++)
+					{
+						write(random);
+					}
+				}
+			}, "writer-" + w));
+		}
+
+		List<Thread> readers = new ArrayList<Thread>();
+		for (int r = 0; r < READER_COUNT; r++)
+		{
+			readers.add(new Thread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						long lastVersion = startVersion;
+						while (writing.get())
+						{
+							FoodTruckSnapshot snapshot = accessor.getSnapshot();
+							assertTrue("versions never go back", snapshot.getVersion() >= lastVersion);
+							lastVersion = snapshot.getVersion();
+
+							assertConsistent(snapshot, startVersion);
+							checkedCount.incrementAndGet();
+						}
+					}
+					catch (Throwable e)
+					{
+						failure.compareAndSet(null, e);
+					}
+				}
+			}, "reader-" + r));
+		}
+
+		for (Thread thread : readers)
+		{
+			thread.start();
+		}
+		for (Thread thread : writers)
+		{
+			thread.start();
+		}
+		for (Thread thread : writers)
+		{
+			thread.join();
+		}
+		writing.set(false);
+		for (Thread thread : readers)
+		{
+			thread.join();
+		}
+
+		if (failure.get() != null)
+		{
+			throw new AssertionError("Inconsistent snapshot", failure.get());
+		}
+		assertEquals(startVersion + WRITER_COUNT * WRITES_PER_WRITER, accessor.getVersion());
+		assertConsistent(accessor.getSnapshot(), startVersion);
+		assertTrue(checkedCount.get() > 0);
+	}
+
+	@Test
+	public void readThroughputScalesWithReaderThreads() throws InterruptedException
+	{
+		Random random = new Random(3);
+		List<FoodTruck> foodTrucks = new ArrayList<FoodTruck>();
+		for (int id = 1; id <= SCALING_FOOD_TRUCK_COUNT; id++)
+		{
+			foodTrucks.add(newFoodTruck(id, 0, random));
+		}
+		accessor.applyChanges(foodTrucks, Collections.<Long>emptyList());
+
+		// A writer keeps changing the storage while the readers are measured
+		final AtomicBoolean writing = new AtomicBoolean(true);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		Thread writer = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				Random writerRandom = new Random(4);
+				try
+				{
+					while (writing.get())
+					{
+						long id = 1 + writerRandom.nextInt(SCALING_FOOD_TRUCK_COUNT);
+						accessor.applyChanges(Collections.singletonList(newFoodTruck(id, 0, writerRandom)),
+								Collections.<Long>emptyList());
+						Thread.sleep(WRITE_INTERVAL_MILLIS);
+					}
+				}
+				catch (Throwable e)
+				{
+					failure.compareAndSet(null, e);
+				}
+			}
+		}, "writer");
+		writer.start();
+
+		int[] threadCounts = {1, 2, 4, 8};
+		double[] readsPerSecond = new double[threadCounts.length];
+		try
+		{
+			for (int i = 0; i < threadCounts.length; i++)
+			{
+				readsPerSecond[i] = measureReadsPerSecond(threadCounts[i]);
+			}
+		}
+		finally
+		{
+			writing.set(false);
+			writer.join();
+		}
+		if (failure.get() != null)
+		{
+			throw new AssertionError("Writer failed", failure.get());
+		}
+
+		// Readers are never blocked: the throughput grows with the threads up to the processors,
+		// and does not drop with more threads than processors
+		int processorCount = Runtime.getRuntime().availableProcessors();
+		String measured = processorCount + " processor(s), reads per second at " + Arrays.toString(threadCounts)
+				+ " reader threads: " + Arrays.toString(readsPerSecond);
+		double best = readsPerSecond[0];
+		for (int i = 1; i < threadCounts.length; i++)
+		{
+			if (threadCounts[i] <= processorCount)
+			{
+				assertTrue(measured, readsPerSecond[i] >= MIN_SCALING * readsPerSecond[i - 1]);
+			}
+			else
+			{
+				assertTrue(measured, readsPerSecond[i] >= MAX_DROP * best);
+			}
+			best = Math.max(best, readsPerSecond[i]);
+		}
+	}
+
+	/**
+	 * Runs the given number of reader threads (circle queries around the city) and returns their total reads per second.
+	 */
+	private double measureReadsPerSecond(int threadCount) throws InterruptedException
+	{
+		final AtomicBoolean reading = new AtomicBoolean(true);
+		final AtomicBoolean measuring = new AtomicBoolean(false);
+		final AtomicLong readCount = new AtomicLong();
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+		List<Thread> readers = new ArrayList<Thread>();
+		for (int r = 0; r < threadCount; r++)
+		{
+			final Random random = new Random(r);
+			readers.add(new Thread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						long count = 0;
+						while (reading.get())
+						{
+							accessor.getFoodTrucks(FoodTruckStatusEnum.APPROVED, 37.70 + random.nextDouble() * 0.1,
+									-122.50 + random.nextDouble() * 0.1, 0.5, DistanceUnitEnum.KILOMETERS);
+							if (measuring.get())
+							{
+								count++;
+							}
+						}
+						readCount.addAndGet(count);
+					}
+					catch (Throwable e)
+					{
+						failure.compareAndSet(null, e);
+					}
+				}
+			}, "reader-" + r));
+		}
+
+		for (Thread thread : readers)
+		{
+			thread.start();
+		}
+		Thread.sleep(WARM_UP_MILLIS);
+		measuring.set(true);
+		long start = System.nanoTime();
+		Thread.sleep(MEASURE_MILLIS);
+		measuring.set(false);
+		long elapsed = System.nanoTime() - start;
+		reading.set(false);
+		for (Thread thread : readers)
+		{
+			thread.join();
+		}
+
+		if (failure.get() != null)
+		{
+			throw new AssertionError("Reader failed", failure.get());
+		}
+		return readCount.get() * 1e9 / elapsed;
+	}
+
+	@Test
+	public void pagesIncludeZeroAndNegativeObjectids()
+	{
+		Random random = new Random(11);
+		List<FoodTruck> foodTrucks = new ArrayList<FoodTruck>();
+		for (long id : new long[] {-7, -1, 0, 1, 2, Long.MAX_VALUE})
+		{
+			FoodTruck foodTruck = newFoodTruck(id, 0, random);
+			foodTruck.setStatus("APPROVED");
+			foodTrucks.add(foodTruck);
+		}
+		accessor.applyChanges(foodTrucks, Collections.<Long>emptyList());
+
+		// Paged through from the first page, two at a time
+		List<Long> ids = new ArrayList<Long>();
+		long afterObjectid = FoodTruckPage.FIRST_PAGE;
+		FoodTruckPage page;
+		do
+		{
+			page = accessor.getFoodTruckPage(FoodTruckStatusEnum.ALL, afterObjectid, 2);
+			for (FoodTruck foodTruck : page)
+			{
+				ids.add(foodTruck.getObjectid());
+			}
+			afterObjectid = page.getLastObjectid();
+		}
+		while (page.hasMore());
+		assertEquals(Arrays.asList(-7L, -1L, 0L, 1L, 2L, Long.MAX_VALUE), ids);
+
+		assertEquals(6, accessor.getFoodTruckPage(FoodTruckStatusEnum.APPROVED, FoodTruckPage.FIRST_PAGE, 10).size());
+		assertEquals(6, accessor.searchFoodTruckPage("Applicant", FoodTruckStatusEnum.ALL, FoodTruckPage.FIRST_PAGE, 10).size());
+	}
+
+	/**
+	 * One write: under the lock of the writers (see FoodTruckAccessor), so that the version of the write is known.
+	 * Updates the marker and some random food trucks, removes some others.
+	 */
+	private void write(Random random)
+	{
+		synchronized (FoodTruckAccessor.class)
+		{
+			long version = accessor.getVersion() + 1;
+			List<FoodTruck> addedOrUpdated = new ArrayList<FoodTruck>();
+			List<Long> removedIds = new ArrayList<Long>();
+
+			addedOrUpdated.add(newFoodTruck(MARKER_ID, version, random));
+			for (int i = 0; i < 20; i++)
+			{
+				long id = 2 + random.nextInt(ID_RANGE);
+				if (random.nextInt(4) == 0)
+				{
+					removedIds.add(id);
+				}
+				else
+				{
+					addedOrUpdated.add(newFoodTruck(id, version, random));
+				}
+			}
+			// A food truck is either added/updated or removed by a write
+			for (FoodTruck foodTruck : addedOrUpdated)
+			{
+				removedIds.remove(foodTruck.getObjectid());
+			}
+
+			accessor.applyChanges(addedOrUpdated, removedIds);
+		}
+	}
+
+	/**
+	 * The marker has the version of the snapshot, the other food trucks are not newer than it,
+	 * and every view of the snapshot has the same food trucks.
+	 */
+	private static void assertConsistent(FoodTruckSnapshot snapshot, long startVersion)
+	{
+		long version = snapshot.getVersion();
+		Map<Long, FoodTruck> foodTruckMap = snapshot.getFoodTruckMap();
+
+		if (version == startVersion)
+		{
+			assertTrue(foodTruckMap.isEmpty());
+			return;
+		}
+		assertEquals("marker of version " + version, version, foodTruckMap.get(MARKER_ID).getCnn());
+
+		// List, map and columns
+		List<FoodTruck> foodTrucks = snapshot.getFoodTrucks();
+		FoodTruckColumns columns = snapshot.getColumns();
+		assertEquals(foodTruckMap.size(), foodTrucks.size());
+		assertEquals(foodTruckMap.size(), columns.size);
+		for (FoodTruck foodTruck : foodTrucks)
+		{
+			assertTrue("version " + version + " has a newer food truck", foodTruck.getCnn() <= version);
+			assertSame(foodTruck, foodTruckMap.get(foodTruck.getObjectid()));
+		}
+		for (int row = 0; row < columns.size; row++)
+		{
+			FoodTruck foodTruck = columns.foodTrucks[row];
+			assertSame(foodTruck, foodTruckMap.get(columns.objectids[row]));
+			assertEquals(foodTruck.getStatusEnum(), columns.getStatus(row));
+			assertEquals(Math.toRadians(foodTruck.getLatitude()), columns.latitudes[row], 0);
+		}
+
+		// Status lists
+		int statusCount = 0;
+		for (FoodTruckStatusEnum status : FoodTruckStatusEnum.values())
+		{
+			if (status == FoodTruckStatusEnum.ALL)
+			{
+				continue;
+			}
+			for (FoodTruck foodTruck : snapshot.getFoodTrucks(status))
+			{
+				assertEquals(status, foodTruck.getStatusEnum());
+				assertSame(foodTruck, foodTruckMap.get(foodTruck.getObjectid()));
+				statusCount++;
+			}
+		}
+		assertEquals(foodTruckMap.size(), statusCount);
+		assertNull(foodTruckMap.get(0L));
+	}
+
+	private static FoodTruck newFoodTruck(long id, long version, Random random)
+	{
+		FoodTruck foodTruck = new FoodTruck();
+		foodTruck.setObjectid(id);
+		foodTruck.setCnn((int) version);
+		foodTruck.setApplicant("Applicant " + id);
+		foodTruck.setStatus(STATUSES[random.nextInt(STATUSES.length)]);
+		foodTruck.setLatitude(37.70 + random.nextDouble() * 0.1);
+		foodTruck.setLongitude(-122.50 + random.nextDouble() * 0.1);
+		return foodTruck;
+	}
+}
@@ -0,0 +1,124 @@
+package com.uber.coding_challange.food_trucks.dataaccess;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.uber.coding_challange.food_trucks.model.FoodTruck;
+import com.uber.coding_challange.food_trucks.model.FoodTruckQuery;
+import com.uber.coding_challange.food_trucks.model.enums.DistanceUnitEnum;
+import com.uber.coding_challange.food_trucks.model.enums.FoodTruckStatusEnum;
+
+/**
+ * Checks that FoodTruckAccessor.getFoodTrucks(queries) answers every query of a batch
+ * with the same food trucks as the query on its own (getFoodTrucks(status, latitude, longitude, radius, radiusUnit)).
+ *
+ * @author alper.karacelik
+ *
+ */
+public class FoodTruckBatchQueryTest
+{
+	// Constants ---------------------------------------------------------
+	private static final int FOOD_TRUCK_COUNT = 5000;
+	private static final int BATCH_COUNT = 20;
+	private static final int BATCH_SIZE = 100;
+	private static final String[] STATUSES = {"APPROVED", "REQUESTED", "EXPIRED", null};
+	private static final String[] QUERY_STATUSES = {"APPROVED", "REQUESTED", "ALL", "unknown", null};
+	private static final String[] UNITS = {"km", "mi", "nmi"};
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	private final FoodTruckAccessor accessor = FoodTruckAccessor.getInstance();
+	private final Random random = new Random(17);
+	// -------------------------------------------------------------------
+
+	@Before
+	public void fillStorage()
+	{
+		List<Long> ids = new ArrayList<Long>();
+		for (FoodTruck foodTruck : accessor.getAllFoodTrucks())
+		{
+			ids.add(foodTruck.getObjectid());
+		}
+		accessor.applyChanges(Collections.<FoodTruck>emptyList(), ids);
+
+		// Mostly in the city, some around the world, near the poles and the 180th meridian, some out of the ranges
+		List<FoodTruck> foodTrucks = new ArrayList<FoodTruck>();
+		for (int i = 1; i <= FOOD_TRUCK_COUNT; i++)
+		{
+			double[] position = randomPosition();
+			FoodTruck foodTruck = new FoodTruck();
+			foodTruck.setObjectid(i);
+			foodTruck.setStatus(STATUSES[random.nextInt(STATUSES.length)]);
+			foodTruck.setLatitude((i % 500 == 0) ? 95 : position[0]);
+			foodTruck.setLongitude(position[1]);
+			foodTrucks.add(foodTruck);
+		}
+		accessor.applyChanges(foodTrucks, Collections.<Long>emptyList());
+	}
+
+	@Test
+	public void batchAnswersLikeSingleQueries()
+	{
+		for (int b = 0; b < BATCH_COUNT; b++)
+		{
+			List<FoodTruckQuery> queries = new ArrayList<FoodTruckQuery>();
+			for (int q = 0; q < BATCH_SIZE; q++)
+			{
+				double[] center = randomPosition();
+				FoodTruckQuery query = new FoodTruckQuery();
+				query.setId(Integer.toString(q));
+				query.setLatitude(center[0]);
+				query.setLongitude(center[1]);
+				// From meters to a thousand kilometers
+				query.setRadius(Math.pow(10, -3 + random.nextDouble() * 6));
+				query.setRadiusUnit(UNITS[random.nextInt(UNITS.length)]);
+				query.setStatus(QUERY_STATUSES[random.nextInt(QUERY_STATUSES.length)]);
+				queries.add(query);
+			}
+
+			List<List<FoodTruck>> results = accessor.getFoodTrucks(queries);
+			assertEquals(queries.size(), results.size());
+			for (int q = 0; q < queries.size(); q++)
+			{
+				FoodTruckQuery query = queries.get(q);
+				List<FoodTruck> expected = accessor.getFoodTrucks(query.getStatusEnum(),
+						query.getLatitude(), query.getLongitude(), query.getRadius(), query.getRadiusUnitEnum());
+				String description = "query " + q + " of batch " + b;
+				assertEquals(description, expected.size(), results.get(q).size());
+				assertEquals(description, new HashSet<FoodTruck>(expected), new HashSet<FoodTruck>(results.get(q)));
+			}
+		}
+	}
+
+	@Test
+	public void emptyBatch()
+	{
+		assertEquals(0, accessor.getFoodTrucks(Collections.<FoodTruckQuery>emptyList()).size());
+	}
+
+	/**
+	 * Returns a position in the city (mostly), near a pole, near the 180th meridian or anywhere.
+	 */
+	private double[] randomPosition()
+	{
+		switch (random.nextInt(10))
+		{
+			case 0:
+				return new double[] {(random.nextBoolean() ? 1 : -1) * (89 + random.nextDouble()), -180 + random.nextDouble() * 360};
+			case 1:
+				return new double[] {-60 + random.nextDouble() * 120, (random.nextBoolean() ? 1 : -1) * (179 + random.nextDouble())};
+			case 2:
+				return new double[] {-90 + random.nextDouble() * 180, -180 + random.nextDouble() * 360};
+			default:
+				return new double[] {37.70 + random.nextDouble() * 0.1, -122.50 + random.nextDouble() * 0.1};
+		}
+	}
+}
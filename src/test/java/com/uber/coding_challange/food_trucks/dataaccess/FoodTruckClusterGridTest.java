@@ -0,0 +1,247 @@
+package com.uber.coding_challange.food_trucks.dataaccess;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.uber.coding_challange.food_trucks.model.FoodTruck;
+import com.uber.coding_challange.food_trucks.model.FoodTruckCluster;
+import com.uber.coding_challange.food_trucks.model.enums.FoodTruckStatusEnum;
+
+/**
+ * Checks FoodTruckClusterGrid.withChanges() against a brute-force aggregation of the current food trucks:
+ * after every write, the clusters of several levels and statuses are the ones of the food trucks grouped by cell.
+ *
+ * @author alper.karacelik
+ *
+ */
+public class FoodTruckClusterGridTest
+{
+	// Constants ---------------------------------------------------------
+	private static final String[] STATUSES = {"APPROVED", "REQUESTED", "EXPIRED", "SUSPEND", "ALL", "unknown", null};
+	private static final int WRITE_COUNT = 50;
+	// Food trucks of the city are inside this rectangle
+	private static final double MIN_LAT = 37.70;
+	private static final double MAX_LAT = 37.80;
+	private static final double MIN_LON = -122.50;
+	private static final double MAX_LON = -122.40;
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	private final Random random = new Random(19);
+	private long nextObjectid = 1;
+	// -------------------------------------------------------------------
+
+	@Test
+	public void matchesBruteForceAggregation()
+	{
+		FoodTruckClusterGrid grid = FoodTruckClusterGrid.EMPTY;
+		Map<Long, FoodTruck> foodTrucks = new HashMap<Long, FoodTruck>();
+
+		for (int w = 0; w < WRITE_COUNT; w++)
+		{
+			List<FoodTruck> removed = new ArrayList<FoodTruck>();
+			List<FoodTruck> added = new ArrayList<FoodTruck>();
+
+			// Removes, updates (a removal and an addition) and additions
+			List<Long> ids = new ArrayList<Long>(foodTrucks.keySet());
+			Collections.shuffle(ids, random);
+			for (int i = 0; i < Math.min(ids.size(), random.nextInt(100)); i++)
+			{
+				FoodTruck foodTruck = foodTrucks.remove(ids.get(i));
+				removed.add(foodTruck);
+				if (random.nextBoolean())
+				{
+					FoodTruck updated = newFoodTruck(foodTruck.getObjectid());
+					foodTrucks.put(updated.getObjectid(), updated);
+					added.add(updated);
+				}
+			}
+			for (int i = (w == 0) ? 2000 : random.nextInt(100); i > 0; i--)
+			{
+				FoodTruck foodTruck = newFoodTruck(nextObjectid++);
+				foodTrucks.put(foodTruck.getObjectid(), foodTruck);
+				added.add(foodTruck);
+			}
+
+			grid = grid.withChanges(removed, added);
+
+			for (FoodTruckStatusEnum status : new FoodTruckStatusEnum[] {
+					FoodTruckStatusEnum.ALL, FoodTruckStatusEnum.APPROVED, FoodTruckStatusEnum.NO_STATEMENT})
+			{
+				// The world at coarse levels, the city at fine levels
+				for (int level = 0; level <= 4; level++)
+				{
+					assertClusters(grid, foodTrucks.values(), status, level, -90, 90, -180, 180);
+				}
+				for (int level = 8; level <= FoodTruckClusterGrid.MAX_LEVEL; level++)
+				{
+					assertClusters(grid, foodTrucks.values(), status, level, MIN_LAT, MAX_LAT, MIN_LON, MAX_LON);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void countsStatusAllAsNoStatement()
+	{
+		// The only cell, so a count out of its slots would also be out of the array
+		FoodTruck foodTruck = newFoodTruck(1);
+		foodTruck.setStatus("ALL");
+		FoodTruckClusterGrid grid = FoodTruckClusterGrid.EMPTY.withChanges(
+				Collections.<FoodTruck>emptyList(), Collections.singletonList(foodTruck));
+
+		List<FoodTruckCluster> clusters = grid.getClusters(FoodTruckStatusEnum.NO_STATEMENT, 15, MIN_LAT, MAX_LAT, MIN_LON, MAX_LON);
+		assertEquals(1, clusters.size());
+		assertEquals(1, clusters.get(0).getCount());
+		assertEquals(Collections.singletonMap(FoodTruckStatusEnum.NO_STATEMENT.getStrValue(), 1), clusters.get(0).getStatuses());
+
+		grid = grid.withChanges(Collections.singletonList(foodTruck), Collections.<FoodTruck>emptyList());
+		assertTrue(grid.getClusters(FoodTruckStatusEnum.ALL, 15, MIN_LAT, MAX_LAT, MIN_LON, MAX_LON).isEmpty());
+	}
+
+	/**
+	 * The clusters of the grid are the food trucks of the cells that overlap the rectangle, grouped by cell.
+	 */
+	private static void assertClusters(
+			FoodTruckClusterGrid grid,
+			Iterable<FoodTruck> foodTrucks,
+			FoodTruckStatusEnum status,
+			int level,
+			double minLat,
+			double maxLat,
+			double minLon,
+			double maxLon)
+	{
+		double cellSize = 90.0 / (1 << level);
+		long minLatIdx = latIndex(minLat, cellSize);
+		long maxLatIdx = latIndex(maxLat, cellSize);
+		long minLonIdx = lonIndex(minLon, cellSize);
+		long maxLonIdx = lonIndex(maxLon, cellSize);
+
+		// Brute force: the food trucks of every cell in the rectangle
+		Map<Long, List<FoodTruck>> cells = new HashMap<Long, List<FoodTruck>>();
+		for (FoodTruck foodTruck : foodTrucks)
+		{
+			double latitude = foodTruck.getLatitude();
+			double longitude = foodTruck.getLongitude();
+			if (!(latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180))
+			{
+				continue;
+			}
+			long latIdx = latIndex(latitude, cellSize);
+			long lonIdx = lonIndex(longitude, cellSize);
+			if (latIdx >= minLatIdx && latIdx <= maxLatIdx && lonIdx >= minLonIdx && lonIdx <= maxLonIdx)
+			{
+				Long key = latIdx * 1000000 + lonIdx;
+				if (!cells.containsKey(key))
+				{
+					cells.put(key, new ArrayList<FoodTruck>());
+				}
+				cells.get(key).add(foodTruck);
+			}
+		}
+
+		Map<Long, FoodTruckCluster> expected = new HashMap<Long, FoodTruckCluster>();
+		for (Map.Entry<Long, List<FoodTruck>> cell : cells.entrySet())
+		{
+			FoodTruckCluster cluster = aggregate(cell.getValue(), status);
+			if (cluster.getCount() > 0)
+			{
+				expected.put(cell.getKey(), cluster);
+			}
+		}
+
+		String description = "level " + level + ", status " + status;
+		List<FoodTruckCluster> clusters = grid.getClusters(status, level, minLat, maxLat, minLon, maxLon);
+		assertEquals(description, expected.size(), clusters.size());
+		for (FoodTruckCluster cluster : clusters)
+		{
+			// The centroid is inside its cell
+			Long key = latIndex(cluster.getLatitude(), cellSize) * 1000000 + lonIndex(cluster.getLongitude(), cellSize);
+			FoodTruckCluster expectedCluster = expected.get(key);
+			assertTrue(description + ", cell " + key, expectedCluster != null);
+			assertEquals(description, expectedCluster.getCount(), cluster.getCount());
+			assertEquals(description, expectedCluster.getStatuses(), cluster.getStatuses());
+			assertEquals(description, expectedCluster.getLatitude(), cluster.getLatitude(), 1e-9);
+			assertEquals(description, expectedCluster.getLongitude(), cluster.getLongitude(), 1e-9);
+		}
+	}
+
+	/**
+	 * Returns the cluster of the food trucks of a cell; a food truck with the status 'ALL' counts as NO_STATEMENT.
+	 */
+	private static FoodTruckCluster aggregate(List<FoodTruck> foodTrucks, FoodTruckStatusEnum status)
+	{
+		Map<FoodTruckStatusEnum, Integer> counts = new HashMap<FoodTruckStatusEnum, Integer>();
+		double latitudeSum = 0;
+		double longitudeSum = 0;
+		for (FoodTruck foodTruck : foodTrucks)
+		{
+			FoodTruckStatusEnum foodTruckStatus = (foodTruck.getStatusEnum() == FoodTruckStatusEnum.ALL)
+					? FoodTruckStatusEnum.NO_STATEMENT : foodTruck.getStatusEnum();
+			counts.put(foodTruckStatus, counts.containsKey(foodTruckStatus) ? counts.get(foodTruckStatus) + 1 : 1);
+			latitudeSum += foodTruck.getLatitude();
+			longitudeSum += foodTruck.getLongitude();
+		}
+
+		Map<String, Integer> statusCounts = new LinkedHashMap<String, Integer>();
+		for (FoodTruckStatusEnum s : FoodTruckStatusEnum.values())
+		{
+			if (counts.containsKey(s))
+			{
+				statusCounts.put(s.getStrValue(), counts.get(s));
+			}
+		}
+		int count = (status == FoodTruckStatusEnum.ALL) ? foodTrucks.size()
+				: (counts.containsKey(status) ? counts.get(status) : 0);
+		return new FoodTruckCluster(latitudeSum / foodTrucks.size(), longitudeSum / foodTrucks.size(), count, statusCounts);
+	}
+
+	private static long latIndex(double latitude, double cellSize)
+	{
+		return (long) Math.max(0, Math.min(Math.ceil(180 / cellSize) - 1, Math.floor((latitude + 90) / cellSize)));
+	}
+
+	private static long lonIndex(double longitude, double cellSize)
+	{
+		return (long) Math.max(0, Math.min(Math.ceil(360 / cellSize) - 1, Math.floor((longitude + 180) / cellSize)));
+	}
+
+	/**
+	 * Returns a food truck of the city, of another city or with an invalid position.
+	 */
+	private FoodTruck newFoodTruck(long id)
+	{
+		FoodTruck foodTruck = new FoodTruck();
+		foodTruck.setObjectid(id);
+		foodTruck.setStatus(STATUSES[random.nextInt(STATUSES.length)]);
+
+		int kind = random.nextInt(20);
+		if (kind == 0)
+		{
+			foodTruck.setLatitude(-90 + random.nextDouble() * 180);
+			foodTruck.setLongitude(-180 + random.nextDouble() * 360);
+		}
+		else if (kind == 1)
+		{
+			foodTruck.setLatitude(91);
+			foodTruck.setLongitude(-122.45);
+		}
+		else
+		{
+			foodTruck.setLatitude(MIN_LAT + 0.001 + random.nextDouble() * (MAX_LAT - MIN_LAT - 0.002));
+			foodTruck.setLongitude(MIN_LON + 0.001 + random.nextDouble() * (MAX_LON - MIN_LON - 0.002));
+		}
+		return foodTruck;
+	}
+}
@@ -0,0 +1,325 @@
+package com.uber.coding_challange.food_trucks.dataaccess;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.uber.coding_challange.food_trucks.model.FoodTruck;
+import com.uber.coding_challange.food_trucks.model.enums.FoodTruckStatusEnum;
+
+/**
+ * Checks FoodTruckSnapshotFile: the write/read round trip, the rejection of corrupt files
+ * (checksum, magic number, format version, truncation) and the atomic replacement of the previous file.
+ *
+ * @author alper.karacelik
+ *
+ */
+public class FoodTruckSnapshotFileTest
+{
+	// Constants ---------------------------------------------------------
+	private static final int HEADER_SIZE = 40;
+	private static final int FORMAT_VERSION_OFFSET = 4;
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+	private Path path;
+	private FoodTruckSnapshotFile snapshotFile;
+	// -------------------------------------------------------------------
+
+	@Before
+	public void createSnapshotFile()
+	{
+		path = new File(folder.getRoot(), "food_trucks.snapshot").toPath();
+		snapshotFile = new FoodTruckSnapshotFile(path);
+	}
+
+	@Test
+	public void readsWhatIsWritten() throws IOException
+	{
+		List<FoodTruck> foodTrucks = newFoodTrucks(1000);
+		// Nulls, non-ASCII and empty strings, extreme values
+		FoodTruck special = newFoodTruck(Long.MAX_VALUE, "REQUESTED");
+		special.setAddress(null);
+		special.setFooditems("Crêpes: Café au lait: 寿司");
+		special.setSchedule("");
+		special.setStatus(null);
+		special.setCnn(Integer.MIN_VALUE);
+		special.setLatitude(-90);
+		special.setLongitude(180);
+		foodTrucks.add(special);
+
+		assertFalse(snapshotFile.exists());
+		snapshotFile.write(foodTrucks);
+		assertTrue(snapshotFile.exists());
+
+		List<FoodTruck> read = snapshotFile.read();
+		assertEquals(foodTrucks, read);
+		assertEquals(FoodTruckStatusEnum.APPROVED, read.get(0).getStatusEnum());
+		assertEquals(FoodTruckStatusEnum.NO_STATEMENT, read.get(1000).getStatusEnum());
+
+		// Empty
+		snapshotFile.write(Collections.<FoodTruck>emptyList());
+		assertTrue(snapshotFile.read().isEmpty());
+	}
+
+	@Test
+	public void rejectsChecksumMismatch() throws IOException
+	{
+		snapshotFile.write(newFoodTrucks(100));
+		long length = path.toFile().length();
+
+		// Any byte of the payload
+		for (long position : new long[] {HEADER_SIZE, HEADER_SIZE + (length - HEADER_SIZE) / 2, length - 1})
+		{
+			snapshotFile.write(newFoodTrucks(100));
+			flipByte(position);
+			assertRejected("Checksum mismatch");
+		}
+	}
+
+	@Test
+	public void rejectsBadMagicNumber() throws IOException
+	{
+		snapshotFile.write(newFoodTrucks(10));
+		flipByte(0);
+		assertRejected("Not a food truck snapshot file");
+
+		// Too short for the header
+		writeBytes(new byte[] {'F', 'T', 'R', 'K'});
+		assertRejected("Not a food truck snapshot file");
+	}
+
+	@Test
+	public void rejectsOtherFormatVersion() throws IOException
+	{
+		snapshotFile.write(newFoodTrucks(10));
+		RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw");
+		try
+		{
+			file.seek(FORMAT_VERSION_OFFSET);
+			file.writeInt(2);
+		}
+		finally
+		{
+			file.close();
+		}
+		assertRejected("Unsupported food truck snapshot format version 2");
+	}
+
+	@Test
+	public void rejectsTruncatedFile() throws IOException
+	{
+		snapshotFile.write(newFoodTrucks(10));
+		RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw");
+		try
+		{
+			file.setLength(file.length() - 1);
+		}
+		finally
+		{
+			file.close();
+		}
+		assertRejected("Truncated food truck snapshot file");
+	}
+
+	@Test
+	public void keepsPreviousFileIfWriteFails() throws IOException
+	{
+		List<FoodTruck> previous = newFoodTrucks(10);
+		snapshotFile.write(previous);
+
+		try
+		{
+			snapshotFile.write(new FailingCollection(newFoodTrucks(20)));
+			fail("The write fails");
+		}
+		catch (IllegalStateException e)
+		{
+			// expected
+		}
+
+		assertEquals(previous, snapshotFile.read());
+		// The temporary file is removed
+		assertEquals(Arrays.asList(path.getFileName().toString()), Arrays.asList(folder.getRoot().list()));
+	}
+
+	@Test
+	public void readersSeeWholeFilesWhileReplaced() throws Exception
+	{
+		final List<FoodTruck> small = newFoodTrucks(100);
+		final List<FoodTruck> large = newFoodTrucks(3000);
+		snapshotFile.write(small);
+
+		final AtomicBoolean writing = new AtomicBoolean(true);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final int[] readCount = new int[1];
+		Thread reader = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					while (writing.get())
+					{
+						List<FoodTruck> read = snapshotFile.read();
+						assertTrue(read.equals(small) || read.equals(large));
+						readCount[0]++;
+					}
+				}
+				catch (Throwable e)
+				{
+					failure.set(e);
+				}
+			}
+		}, "snapshot-reader");
+		reader.start();
+
+		try
+		{
+			for (int i = 0; i < 100 && failure.get() == null; i++)
+			{
+				snapshotFile.write((i % 2 == 0) ? large : small);
+			}
+		}
+		finally
+		{
+			writing.set(false);
+			reader.join();
+		}
+
+		if (failure.get() != null)
+		{
+			throw new AssertionError("Partial snapshot file read", failure.get());
+		}
+		assertTrue(readCount[0] > 0);
+		assertEquals(1, folder.getRoot().list().length);
+	}
+
+	private void assertRejected(String message)
+	{
+		try
+		{
+			snapshotFile.read();
+			fail("Rejected: " + message);
+		}
+		catch (IOException e)
+		{
+			assertTrue(e.getMessage(), e.getMessage().startsWith(message));
+		}
+	}
+
+	private void flipByte(long position) throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw");
+		try
+		{
+			file.seek(position);
+			int value = file.read();
+			file.seek(position);
+			file.write(value ^ 0xff);
+		}
+		finally
+		{
+			file.close();
+		}
+	}
+
+	private void writeBytes(byte[] bytes) throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw");
+		try
+		{
+			file.setLength(0);
+			file.write(bytes);
+		}
+		finally
+		{
+			file.close();
+		}
+	}
+
+	private static List<FoodTruck> newFoodTrucks(int count)
+	{
+		List<FoodTruck> foodTrucks = new ArrayList<FoodTruck>();
+		for (int i = 1; i <= count; i++)
+		{
+			foodTrucks.add(newFoodTruck(i, (i % 3 == 0) ? "REQUESTED" : "APPROVED"));
+		}
+		return foodTrucks;
+	}
+
+	private static FoodTruck newFoodTruck(long id, String status)
+	{
+		FoodTruck foodTruck = new FoodTruck();
+		foodTruck.setObjectid(id);
+		foodTruck.setCnn((int) (id * 7));
+		foodTruck.setLatitude(37.70 + (id % 1000) * 0.0001);
+		foodTruck.setLongitude(-122.50 + (id % 997) * 0.0001);
+		foodTruck.setAddress(id + " Market St");
+		foodTruck.setLocationdescription("MARKET ST: " + (id % 100));
+		foodTruck.setApplicant("Applicant " + (id % 50));
+		foodTruck.setDayshours("Mo-Fr:7AM-3PM");
+		foodTruck.setFacilitytype("Truck");
+		foodTruck.setFooditems("Tacos: Burritos");
+		foodTruck.setPermit("18MFF-" + id);
+		foodTruck.setSchedule("http://example.com/schedule?id=" + id);
+		foodTruck.setStatus(status);
+		return foodTruck;
+	}
+
+	/**
+	 * Collection that fails on its second iteration (FoodTruckSnapshotFile.write() iterates twice).
+	 */
+	private static class FailingCollection extends AbstractCollection<FoodTruck>
+	{
+		// Attributes --------------------------------------------------------
+		private final List<FoodTruck> foodTrucks;
+		private int iterationCount = 0;
+		// -------------------------------------------------------------------
+
+		// Constructor(s) ----------------------------------------------------
+		FailingCollection(List<FoodTruck> foodTrucks)
+		{
+			this.foodTrucks = foodTrucks;
+		}
+		// -------------------------------------------------------------------
+
+		@Override
+		public Iterator<FoodTruck> iterator()
+		{
+			if (++iterationCount > 1)
+			{
+				throw new IllegalStateException("Write failure");
+			}
+			return foodTrucks.iterator();
+		}
+
+		@Override
+		public int size()
+		{
+			return foodTrucks.size();
+		}
+	}
+}
@@ -0,0 +1,197 @@
+package com.uber.coding_challange.food_trucks.dataaccess;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.uber.coding_challange.food_trucks.model.FoodTruck;
+import com.uber.coding_challange.food_trucks.model.enums.FoodTruckStatusEnum;
+
+/**
+ * Checks that FoodTruckStringPool shares the repetitive strings of the parsed food trucks
+ * and that FoodTruck resolves its status enum when the status is set.
+ * Reports the retained heap per food truck without and with the pool (see also FootprintBenchmark).
+ *
+ * @author alper.karacelik
+ *
+ */
+public class FoodTruckStringPoolTest
+{
+	// Constants ---------------------------------------------------------
+	private static final int FOOD_TRUCK_COUNT = 20000;
+	private static final String[] STATUSES = {"APPROVED", "REQUESTED", "EXPIRED", "SUSPEND"};
+	private static final String[] DAYS_HOURS = {"Mo-Fr:6AM-6PM", "Mo-Su:7AM-8PM", "Sa-Su:10AM-4PM", "Th-Sa:5PM-10PM"};
+	private static final String SCHEDULE_URL =
+			"http://bsm.sfdpw.org/PermitsTracker/reports/report.aspx?title=schedule&report=rptSchedule&params=permit=%s&ExportPDF=1";
+	private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	private final FoodTruckStringPool stringPool = FoodTruckStringPool.getInstance();
+	// -------------------------------------------------------------------
+
+	@Test
+	public void sharesRepetitiveStrings() throws IOException
+	{
+		Random random = new Random(21);
+		List<FoodTruck> foodTrucks = new ArrayList<FoodTruck>();
+		for (int i = 1; i <= 1000; i++)
+		{
+			// Parsed one at a time, so every food truck has its own string instances
+			foodTrucks.add(stringPool.intern(JSON_MAPPER.readValue(json(i, random), FoodTruck.class)));
+		}
+
+		// Equal values of the pooled properties are the same instance
+		Map<String, String> firstInstances = new HashMap<String, String>();
+		for (FoodTruck foodTruck : foodTrucks)
+		{
+			for (String value : Arrays.asList(foodTruck.getApplicant(), foodTruck.getDayshours(), foodTruck.getFacilitytype(),
+					foodTruck.getFooditems(), foodTruck.getPermit(), foodTruck.getSchedule(), foodTruck.getStatus()))
+			{
+				String first = firstInstances.get(value);
+				if (first == null)
+				{
+					firstInstances.put(value, value);
+				}
+				else
+				{
+					assertSame(value, first);
+				}
+			}
+		}
+		String status = foodTrucks.get(0).getStatus();
+		assertSame(status, stringPool.intern(new String(status)));
+
+		// The (unique) addresses are not pooled
+		FoodTruck foodTruck = foodTrucks.get(1);
+		String address = new String(foodTrucks.get(0).getAddress());
+		foodTruck.setAddress(address);
+		assertSame(address, stringPool.intern(foodTruck).getAddress());
+
+		// Nulls and long strings are kept as they are
+		assertNull(stringPool.intern((String) null));
+		char[] chars = new char[2000];
+		Arrays.fill(chars, 'x');
+		String longString = new String(chars);
+		assertSame(longString, stringPool.intern(longString));
+		assertNotSame(longString, stringPool.intern(new String(chars)));
+	}
+
+	@Test
+	public void resolvesStatusEnumWhenStatusIsSet() throws IOException
+	{
+		FoodTruck foodTruck = new FoodTruck();
+		assertEquals(FoodTruckStatusEnum.NO_STATEMENT, foodTruck.getStatusEnum());
+
+		foodTruck.setStatus("APPROVED");
+		assertEquals(FoodTruckStatusEnum.APPROVED, foodTruck.getStatusEnum());
+		foodTruck.setStatus("expired");
+		assertEquals(FoodTruckStatusEnum.EXPIRED, foodTruck.getStatusEnum());
+		foodTruck.setStatus("unknown");
+		assertEquals(FoodTruckStatusEnum.NO_STATEMENT, foodTruck.getStatusEnum());
+		foodTruck.setStatus(null);
+		assertEquals(FoodTruckStatusEnum.NO_STATEMENT, foodTruck.getStatusEnum());
+
+		// Parsed through setStatus(); the enum itself is not an input
+		FoodTruck parsed = JSON_MAPPER.readValue("{\"objectid\":\"1\",\"status\":\"REQUESTED\",\"statusEnum\":\"EXPIRED\"}",
+				FoodTruck.class);
+		assertEquals(FoodTruckStatusEnum.REQUESTED, parsed.getStatusEnum());
+
+		// Kept by the pool
+		parsed.setStatus(new String("SUSPEND"));
+		assertEquals(FoodTruckStatusEnum.SUSPEND, stringPool.intern(parsed).getStatusEnum());
+
+		// Still written to JSON
+		assertTrue(JSON_MAPPER.writeValueAsString(parsed).contains("\"statusEnum\":\"SUSPEND\""));
+	}
+
+	@Test
+	public void reportsBytesPerFoodTruck() throws IOException
+	{
+		long withoutPool = bytesPerFoodTruck(false);
+		long withPool = bytesPerFoodTruck(true);
+
+		System.out.println("FoodTruckStringPoolTest: " + withoutPool + " bytes per food truck without the pool, "
+				+ withPool + " with the pool");
+		assertTrue(withPool + " < " + withoutPool, withPool < withoutPool);
+	}
+
+	/**
+	 * Returns the retained heap per food truck of FOOD_TRUCK_COUNT parsed food trucks (after full GCs).
+	 */
+	private long bytesPerFoodTruck(boolean pooled) throws IOException
+	{
+		Random random = new Random(21);
+		FoodTruck[] foodTrucks = new FoodTruck[FOOD_TRUCK_COUNT];
+		long before = usedHeap();
+
+		for (int i = 0; i < FOOD_TRUCK_COUNT; i++)
+		{
+			FoodTruck foodTruck = JSON_MAPPER.readValue(json(i + 1, random), FoodTruck.class);
+			foodTrucks[i] = pooled ? stringPool.intern(foodTruck) : foodTruck;
+		}
+
+		long bytes = (usedHeap() - before) / FOOD_TRUCK_COUNT;
+		// Reachable until measured
+		assertNotNull(foodTrucks[FOOD_TRUCK_COUNT - 1]);
+		return bytes;
+	}
+
+	/**
+	 * Returns the JSON of a food truck with DataSF like repetitions:
+	 * a permit per ~5 food trucks (and its schedule URL), an applicant (and its food items) per ~20.
+	 */
+	private static String json(long objectid, Random random)
+	{
+		int permit = random.nextInt(FOOD_TRUCK_COUNT / 5);
+		int applicant = permit / 4;
+
+		return String.format(Locale.ROOT,
+				"{\"objectid\":\"%d\",\"applicant\":\"Applicant %d LLC\",\"facilitytype\":\"Truck\",\"cnn\":\"%d\","
+				+ "\"locationdescription\":\"MARKET ST: %d TO %d\",\"address\":\"%d Market St\",\"permit\":\"18MFF-%04d\","
+				+ "\"status\":\"%s\",\"fooditems\":\"Tacos: Burritos: Quesadillas: Tortas: Drinks of applicant %d\","
+				+ "\"latitude\":\"%.6f\",\"longitude\":\"%.6f\",\"schedule\":\"%s\",\"dayshours\":\"%s\"}",
+				objectid, applicant, objectid * 7, objectid, objectid + 100, objectid, permit,
+				STATUSES[random.nextInt(STATUSES.length)], applicant,
+				37.70 + random.nextDouble() * 0.1, -122.50 + random.nextDouble() * 0.1,
+				String.format(SCHEDULE_URL, String.format(Locale.ROOT, "18MFF-%04d", permit)),
+				DAYS_HOURS[random.nextInt(DAYS_HOURS.length)]);
+	}
+
+	/**
+	 * Returns the used heap after full GCs.
+	 */
+	private static long usedHeap()
+	{
+		Runtime runtime = Runtime.getRuntime();
+		long used = Long.MAX_VALUE;
+
+		// Repeat until the used heap does not decrease anymore
+		for (int i = 0; i < 10; i++)
+		{
+			System.gc();
+			long current = runtime.totalMemory() - runtime.freeMemory();
+			if (current >= used)
+			{
+				break;
+			}
+			used = current;
+		}
+		return used;
+	}
+}
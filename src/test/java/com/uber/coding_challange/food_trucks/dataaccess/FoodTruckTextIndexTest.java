@@ -0,0 +1,226 @@
+package com.uber.coding_challange.food_trucks.dataaccess;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.uber.coding_challange.food_trucks.ctrl.GeodesicDistanceCalculator;
+import com.uber.coding_challange.food_trucks.model.FoodTruck;
+import com.uber.coding_challange.food_trucks.model.enums.DistanceUnitEnum;
+import com.uber.coding_challange.food_trucks.model.enums.FoodTruckStatusEnum;
+
+/**
+ * Checks FoodTruckTextIndex.search() and FoodTruckAccessor.searchFoodTruckPage() (with a status and a circle)
+ * against a brute-force scan of the food trucks: a food truck matches if every word of the query
+ * is the prefix of a word of its 'applicant' or 'fooditems' field (case insensitive).
+ *
+ * @author alper.karacelik
+ *
+ */
+public class FoodTruckTextIndexTest
+{
+	// Constants ---------------------------------------------------------
+	private static final int FOOD_TRUCK_COUNT = 3000;
+	private static final String[] WORDS = {"Tacos", "taco", "Burritos", "burgers", "Burger", "Crêpes", "café", "coffee",
+			"tea", "hot", "dogs", "hot-dogs", "BBQ", "24", "24h", "kettle", "corn", "Kettle-Corn", "Pupusas", "Ice", "cream"};
+	private static final String[] SEPARATORS = {" ", ": ", ", ", " & ", "; ", " - ", "/", "  "};
+	private static final String[] STATUSES = {"APPROVED", "REQUESTED", "EXPIRED", null};
+	private static final String[] QUERIES = {"taco", "TACOS", "Taco Burr", "burr taco", "burger", "burgers", "b", "hot dogs",
+			"hot-dogs", "HOT, DOGS!", "caf", "CAFÉ", "crêpe", "24", "24h", "2", "kettle corn", "ice cream coffee",
+			"tacos tacos", "  ,;! - ", "", "zzz", "taco zzz", "tacosx", "ç"};
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	private final FoodTruckAccessor accessor = FoodTruckAccessor.getInstance();
+	private final GeodesicDistanceCalculator calculator = GeodesicDistanceCalculator.getInstance();
+	private final Random random = new Random(13);
+	private List<FoodTruck> foodTrucks;
+	// -------------------------------------------------------------------
+
+	@Before
+	public void fillStorage()
+	{
+		List<Long> ids = new ArrayList<Long>();
+		for (FoodTruck foodTruck : accessor.getAllFoodTrucks())
+		{
+			ids.add(foodTruck.getObjectid());
+		}
+		accessor.applyChanges(Collections.<FoodTruck>emptyList(), ids);
+
+		foodTrucks = new ArrayList<FoodTruck>();
+		for (int i = 1; i <= FOOD_TRUCK_COUNT; i++)
+		{
+			FoodTruck foodTruck = new FoodTruck();
+			foodTruck.setObjectid(i);
+			foodTruck.setApplicant((i % 100 == 0) ? null : randomText(3));
+			foodTruck.setFooditems((i % 150 == 0) ? null : randomText(6));
+			foodTruck.setStatus(STATUSES[random.nextInt(STATUSES.length)]);
+			foodTruck.setLatitude(37.70 + random.nextDouble() * 0.1);
+			foodTruck.setLongitude(-122.50 + random.nextDouble() * 0.1);
+			foodTrucks.add(foodTruck);
+		}
+		accessor.applyChanges(foodTrucks, Collections.<Long>emptyList());
+	}
+
+	@Test
+	public void searchMatchesBruteForce()
+	{
+		FoodTruckColumns columns = accessor.getSnapshot().getColumns();
+		FoodTruckTextIndex textIndex = new FoodTruckTextIndex(columns);
+
+		for (String query : QUERIES)
+		{
+			List<Integer> expected = new ArrayList<Integer>();
+			for (int row = 0; row < columns.size; row++)
+			{
+				if (matches(columns.foodTrucks[row], query))
+				{
+					expected.add(row);
+				}
+			}
+			assertArrayEquals("query '" + query + "'", toArray(expected), textIndex.search(query));
+		}
+
+		// Some queries match something, some nothing
+		assertTrue(textIndex.search("taco burr").length > 0);
+		assertEquals(0, textIndex.search("  ,;! - ").length);
+		assertEquals(0, textIndex.search("zzz").length);
+	}
+
+	@Test
+	public void searchPageMatchesBruteForce()
+	{
+		for (String query : QUERIES)
+		{
+			for (FoodTruckStatusEnum status : new FoodTruckStatusEnum[] {
+					FoodTruckStatusEnum.ALL, FoodTruckStatusEnum.APPROVED,
+					FoodTruckStatusEnum.REQUESTED, FoodTruckStatusEnum.NO_STATEMENT})
+			{
+				// Without and with a circle
+				assertPages(query, status, null);
+				double[] circle = {37.70 + random.nextDouble() * 0.1, -122.50 + random.nextDouble() * 0.1,
+						0.5 + random.nextDouble() * 3};
+				assertPages(query, status, circle);
+			}
+		}
+	}
+
+	/**
+	 * Pages through the search results (7 at a time) and compares them with the brute-force scan, ordered by object id.
+	 *
+	 * @param circle Latitude, longitude and radius (in km) of the circle, or null
+	 */
+	private void assertPages(String query, FoodTruckStatusEnum status, double[] circle)
+	{
+		List<Long> expected = new ArrayList<Long>();
+		for (FoodTruck foodTruck : foodTrucks)
+		{
+			// NO_STATEMENT is the status of an unknown query status, it matches nothing
+			boolean statusMatches = (status == FoodTruckStatusEnum.ALL)
+					|| (status != FoodTruckStatusEnum.NO_STATEMENT && foodTruck.getStatusEnum() == status);
+			boolean insideCircle = (circle == null) || calculator.distance(foodTruck.getLatitude(), foodTruck.getLongitude(),
+					circle[0], circle[1], DistanceUnitEnum.KILOMETERS) < circle[2];
+			if (statusMatches && insideCircle && matches(foodTruck, query))
+			{
+				expected.add(foodTruck.getObjectid());
+			}
+		}
+
+		List<Long> actual = new ArrayList<Long>();
+		long afterObjectid = FoodTruckPage.FIRST_PAGE;
+		FoodTruckPage page;
+		do
+		{
+			page = (circle == null)
+					? accessor.searchFoodTruckPage(query, status, afterObjectid, 7)
+					: accessor.searchFoodTruckPage(query, status, circle[0], circle[1], circle[2], DistanceUnitEnum.KILOMETERS,
+							afterObjectid, 7);
+			for (FoodTruck foodTruck : page)
+			{
+				actual.add(foodTruck.getObjectid());
+			}
+			afterObjectid = page.getLastObjectid();
+		}
+		while (page.hasMore());
+
+		assertEquals("query '" + query + "', status " + status + (circle != null ? ", circle " + Arrays.toString(circle) : ""),
+				expected, actual);
+	}
+
+	/**
+	 * Brute force: every word of the query is the prefix of a word of the food truck (no words match nothing).
+	 */
+	private static boolean matches(FoodTruck foodTruck, String query)
+	{
+		List<String> queryWords = words(query);
+		List<String> foodTruckWords = words(foodTruck.getApplicant());
+		foodTruckWords.addAll(words(foodTruck.getFooditems()));
+
+		if (queryWords.isEmpty())
+		{
+			return false;
+		}
+		for (String queryWord : queryWords)
+		{
+			boolean found = false;
+			for (String word : foodTruckWords)
+			{
+				found |= word.startsWith(queryWord);
+			}
+			if (!found)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the lower case words (runs of letters and digits) of the given text.
+	 */
+	private static List<String> words(String text)
+	{
+		List<String> words = new ArrayList<String>();
+		if (text != null)
+		{
+			for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{Nd}]+"))
+			{
+				if (!word.isEmpty())
+				{
+					words.add(word);
+				}
+			}
+		}
+		return words;
+	}
+
+	private String randomText(int maxWordCount)
+	{
+		StringBuilder text = new StringBuilder();
+		for (int i = random.nextInt(maxWordCount) + 1; i > 0; i--)
+		{
+			text.append(WORDS[random.nextInt(WORDS.length)]).append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+		}
+		return text.toString();
+	}
+
+	private static int[] toArray(List<Integer> values)
+	{
+		int[] array = new int[values.size()];
+		for (int i = 0; i < array.length; i++)
+		{
+			array[i] = values.get(i);
+		}
+		return array;
+	}
+}
@@ -0,0 +1,183 @@
+package com.uber.coding_challange.food_trucks.dataaccess;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.uber.coding_challange.food_trucks.ctrl.GeodesicDistanceCalculator;
+import com.uber.coding_challange.food_trucks.model.FoodTruck;
+import com.uber.coding_challange.food_trucks.model.enums.DistanceUnitEnum;
+import com.uber.coding_challange.food_trucks.model.enums.FoodTruckStatusEnum;
+
+/**
+ * Checks FoodTruckAccessor.getNearestFoodTrucks() (the KD-tree search) against sorting all the food trucks
+ * of the status by distance(), for several 'k' values and statuses, with centers in the city,
+ * at the poles and on the 180th meridian.
+ * distance() loses precision for close positions (arc cosine), so distances are compared within TOLERANCE_KM.
+ *
+ * @author alper.karacelik
+ *
+ */
+public class KdTreeTest
+{
+	// Constants ---------------------------------------------------------
+	private static final int FOOD_TRUCK_COUNT = 4000;
+	private static final double TOLERANCE_KM = 0.001;
+	private static final int[] K_VALUES = {1, 2, 5, 50, 500, 100000};
+	private static final String[] STATUSES = {"APPROVED", "REQUESTED", "EXPIRED", null};
+	private static final double[][] CENTERS = {
+			{37.78, -122.41}, {90, 0}, {-90, 45}, {89.99, -170}, {0, 180}, {0, -180}, {10, 179.999}, {-10, -179.999}};
+	// -------------------------------------------------------------------
+
+	// Attributes --------------------------------------------------------
+	private final FoodTruckAccessor accessor = FoodTruckAccessor.getInstance();
+	private final GeodesicDistanceCalculator calculator = GeodesicDistanceCalculator.getInstance();
+	private final Random random = new Random(2);
+	private List<FoodTruck> foodTrucks;
+	// -------------------------------------------------------------------
+
+	@Before
+	public void fillStorage()
+	{
+		List<Long> ids = new ArrayList<Long>();
+		for (FoodTruck foodTruck : accessor.getAllFoodTrucks())
+		{
+			ids.add(foodTruck.getObjectid());
+		}
+		accessor.applyChanges(Collections.<FoodTruck>emptyList(), ids);
+
+		// In the city, around the world, near the poles and the 180th meridian
+		foodTrucks = new ArrayList<FoodTruck>();
+		for (int i = 1; i <= FOOD_TRUCK_COUNT; i++)
+		{
+			FoodTruck foodTruck = new FoodTruck();
+			foodTruck.setObjectid(i);
+			foodTruck.setStatus(STATUSES[random.nextInt(STATUSES.length)]);
+			switch (i % 4)
+			{
+				case 0:
+					foodTruck.setLatitude(37.70 + random.nextDouble() * 0.1);
+					foodTruck.setLongitude(-122.50 + random.nextDouble() * 0.1);
+					break;
+				case 1:
+					foodTruck.setLatitude((random.nextBoolean() ? 1 : -1) * (88 + random.nextDouble() * 2));
+					foodTruck.setLongitude(-180 + random.nextDouble() * 360);
+					break;
+				case 2:
+					foodTruck.setLatitude(-20 + random.nextDouble() * 40);
+					foodTruck.setLongitude((random.nextBoolean() ? 1 : -1) * (178 + random.nextDouble() * 2));
+					break;
+				default:
+					foodTruck.setLatitude(-90 + random.nextDouble() * 180);
+					foodTruck.setLongitude(-180 + random.nextDouble() * 360);
+			}
+			foodTrucks.add(foodTruck);
+		}
+		accessor.applyChanges(foodTrucks, Collections.<Long>emptyList());
+	}
+
+	@Test
+	public void nearestMatchesSortedDistances()
+	{
+		for (FoodTruckStatusEnum status : new FoodTruckStatusEnum[] {
+				FoodTruckStatusEnum.ALL, FoodTruckStatusEnum.APPROVED, FoodTruckStatusEnum.REQUESTED})
+		{
+			for (double[] center : CENTERS)
+			{
+				for (int k : K_VALUES)
+				{
+					assertNearest(status, center[0], center[1], k);
+				}
+			}
+			// Random centers
+			for (int i = 0; i < 50; i++)
+			{
+				assertNearest(status, -90 + random.nextDouble() * 180, -180 + random.nextDouble() * 360, 1 + random.nextInt(20));
+			}
+		}
+	}
+
+	@Test
+	public void noStatementMatchesNothing()
+	{
+		assertTrue(accessor.getNearestFoodTrucks(FoodTruckStatusEnum.NO_STATEMENT, 37.78, -122.41, 10).isEmpty());
+	}
+
+	/**
+	 * The result has min(k, count) distinct food trucks of the status, closest first,
+	 * and its distances are the smallest ones of the status (within the tolerance).
+	 */
+	private void assertNearest(FoodTruckStatusEnum status, final double latitude, final double longitude, int k)
+	{
+		String description = "status " + status + ", center " + latitude + "," + longitude + ", k " + k;
+
+		// Brute force: the food trucks of the status, sorted by distance
+		List<FoodTruck> expected = new ArrayList<FoodTruck>();
+		for (FoodTruck foodTruck : foodTrucks)
+		{
+			if (status == FoodTruckStatusEnum.ALL || foodTruck.getStatusEnum() == status)
+			{
+				expected.add(foodTruck);
+			}
+		}
+		Collections.sort(expected, new Comparator<FoodTruck>()
+		{
+			@Override
+			public int compare(FoodTruck first, FoodTruck second)
+			{
+				return Double.compare(distance(first, latitude, longitude), distance(second, latitude, longitude));
+			}
+		});
+
+		List<FoodTruck> nearest = accessor.getNearestFoodTrucks(status, latitude, longitude, k);
+		assertEquals(description, Math.min(k, expected.size()), nearest.size());
+		assertEquals(description, nearest.size(), new HashSet<FoodTruck>(nearest).size());
+
+		double previousDistance = 0;
+		for (int i = 0; i < nearest.size(); i++)
+		{
+			FoodTruck foodTruck = nearest.get(i);
+			double distance = distance(foodTruck, latitude, longitude);
+			assertTrue(description, status == FoodTruckStatusEnum.ALL || foodTruck.getStatusEnum() == status);
+			// Closest first, and as close as the i-th closest one
+			assertTrue(description + ", position " + i, distance >= previousDistance - TOLERANCE_KM);
+			assertEquals(description + ", position " + i,
+					distance(expected.get(i), latitude, longitude), distance, TOLERANCE_KM);
+			previousDistance = distance;
+		}
+
+		// Every food truck that is clearly closer than the last result is in the result
+		if (!nearest.isEmpty())
+		{
+			Set<FoodTruck> nearestSet = new HashSet<FoodTruck>(nearest);
+			double lastDistance = distance(nearest.get(nearest.size() - 1), latitude, longitude);
+			for (FoodTruck foodTruck : expected)
+			{
+				if (distance(foodTruck, latitude, longitude) < lastDistance - TOLERANCE_KM)
+				{
+					assertTrue(description + ", missing " + foodTruck.getObjectid(), nearestSet.contains(foodTruck));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Distance in km; distance() is NaN for (almost) the same position.
+	 */
+	private double distance(FoodTruck foodTruck, double latitude, double longitude)
+	{
+		double distance = calculator.distance(foodTruck.getLatitude(), foodTruck.getLongitude(),
+				latitude, longitude, DistanceUnitEnum.KILOMETERS);
+		return Double.isNaN(distance) ? 0 : distance;
+	}
+}